@@ -1,7 +1,10 @@
 package at.ac.tuwien.sepm.assignment.individual.config;
 
+import at.ac.tuwien.sepm.assignment.individual.rest.HorseEndpoint;
+
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
@@ -12,6 +15,7 @@ public class WebConfig implements WebMvcConfigurer {
 
   @Override
   public void addCorsMappings(CorsRegistry registry) {
-    registry.addMapping("/**").allowedMethods("GET", "POST", "OPTIONS", "HEAD", "DELETE", "PUT", "PATCH");
+    registry.addMapping("/**").allowedMethods("GET", "POST", "OPTIONS", "HEAD", "DELETE", "PUT", "PATCH")
+        .exposedHeaders(HorseEndpoint.NEXT_CURSOR_HEADER, HttpHeaders.ETAG);
   }
 }
@@ -0,0 +1,15 @@
+package at.ac.tuwien.sepm.assignment.individual.dto;
+
+/**
+ * Query parameters for the descendants of a horse.
+ * Every generation is paged on its own, by {@code offset} and {@code limit};
+ * {@code generation} restricts the result to one generation, to get its further pages.
+ */
+public record DescendantsQueryParamsDto(
+    Long horseId,
+    Integer depth,
+    Integer generation,
+    Integer offset,
+    Integer limit
+) {
+}
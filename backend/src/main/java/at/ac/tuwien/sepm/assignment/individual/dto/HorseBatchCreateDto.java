@@ -0,0 +1,27 @@
+package at.ac.tuwien.sepm.assignment.individual.dto;
+
+import at.ac.tuwien.sepm.assignment.individual.type.Sex;
+
+import java.time.LocalDate;
+
+/**
+ * DTO for one horse of a batch of horses to be created together.
+ * The optional {@code key} tells the horse apart within the batch, and must be unique within it.
+ * A parent is given either by the ID of a stored horse ({@code motherId}, {@code fatherId})
+ * or by the key of another horse in the same batch ({@code motherKey}, {@code fatherKey}).
+ * A registry import uses the same form, but its keys are registry keys, which are stored,
+ * so a parent key may also be the registry key of a horse imported before.
+ */
+public record HorseBatchCreateDto(
+    String key,
+    String name,
+    String description,
+    LocalDate dateOfBirth,
+    Sex sex,
+    Long ownerId,
+    Long motherId,
+    Long fatherId,
+    String motherKey,
+    String fatherKey
+) {
+}
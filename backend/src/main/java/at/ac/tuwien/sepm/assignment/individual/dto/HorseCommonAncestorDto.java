@@ -0,0 +1,16 @@
+package at.ac.tuwien.sepm.assignment.individual.dto;
+
+import java.util.List;
+
+/**
+ * DTO for a closest common ancestor of two horses, with a shortest path from each of the horses to it.
+ * Both paths start at their horse and end at the ancestor, so a path holds one horse more than its distance.
+ */
+public record HorseCommonAncestorDto(
+    HorseMinimalDto ancestor,
+    int firstDistance,
+    int secondDistance,
+    List<HorseMinimalDto> firstPath,
+    List<HorseMinimalDto> secondPath
+) {
+}
@@ -0,0 +1,19 @@
+package at.ac.tuwien.sepm.assignment.individual.dto;
+
+import at.ac.tuwien.sepm.assignment.individual.type.Sex;
+
+import java.time.LocalDate;
+
+/**
+ * DTO for one descendant of a horse.
+ * The parents are referenced by their IDs, so the descendants of a generation can be placed below the ones of the generation before.
+ */
+public record HorseDescendantDto(
+    Long id,
+    String name,
+    LocalDate dateOfBirth,
+    Sex sex,
+    Long motherId,
+    Long fatherId
+) {
+}
@@ -0,0 +1,18 @@
+package at.ac.tuwien.sepm.assignment.individual.dto;
+
+import java.util.List;
+
+/**
+ * DTO for one page of the descendants of a horse in one generation, ordered by ID.
+ * Generation 1 are the children of the horse.
+ *
+ * @param generation the generation of the horses
+ * @param hasMore    whether the generation has more horses after this page
+ * @param horses     the horses on this page
+ */
+public record HorseDescendantGenerationDto(
+    int generation,
+    boolean hasMore,
+    List<HorseDescendantDto> horses
+) {
+}
@@ -0,0 +1,14 @@
+package at.ac.tuwien.sepm.assignment.individual.dto;
+
+import java.util.List;
+
+/**
+ * DTO for the descendants of a horse, generation by generation.
+ * A horse that descends along paths of different lengths is in the closest generation only.
+ * Generations without horses on the requested page are left out.
+ */
+public record HorseDescendantsDto(
+    Long horseId,
+    List<HorseDescendantGenerationDto> generations
+) {
+}
@@ -0,0 +1,13 @@
+package at.ac.tuwien.sepm.assignment.individual.dto;
+
+/**
+ * The details of a horse, together with the entity tag they were read with.
+ *
+ * @param horse     the details of the horse
+ * @param entityTag the entity tag of the details, taken before them, so they are never older than it
+ */
+public record HorseDetailWithETagDto(
+    HorseDetailDto horse,
+    String entityTag
+) {
+}
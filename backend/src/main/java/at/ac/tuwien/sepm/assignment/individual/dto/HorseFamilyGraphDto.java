@@ -0,0 +1,13 @@
+package at.ac.tuwien.sepm.assignment.individual.dto;
+
+import java.util.List;
+
+/**
+ * DTO for the family tree of a horse as a flat table, in which every ancestor appears once,
+ * however many paths lead to it.
+ * The horse itself is the first node, its ancestors follow generation by generation.
+ */
+public record HorseFamilyGraphDto(
+    List<HorseFamilyGraphNodeDto> nodes
+) {
+}
@@ -0,0 +1,21 @@
+package at.ac.tuwien.sepm.assignment.individual.dto;
+
+import at.ac.tuwien.sepm.assignment.individual.type.Sex;
+
+import java.time.LocalDate;
+
+/**
+ * DTO for one horse of a {@link HorseFamilyGraphDto}.
+ * The parents are referenced by their index in the nodes of the graph, and are {@code null} if they are not part of it.
+ * A horse can be reached along paths of different lengths,
+ * so a horse of the last generation of one path may still reference its parents.
+ */
+public record HorseFamilyGraphNodeDto(
+    Long id,
+    String name,
+    LocalDate dateOfBirth,
+    Sex sex,
+    Integer mother,
+    Integer father
+) {
+}
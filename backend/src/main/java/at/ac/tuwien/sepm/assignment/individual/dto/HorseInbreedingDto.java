@@ -0,0 +1,12 @@
+package at.ac.tuwien.sepm.assignment.individual.dto;
+
+/**
+ * DTO for the inbreeding coefficient of a horse, after Wright,
+ * computed from its pedigree up to the given number of generations back.
+ */
+public record HorseInbreedingDto(
+    Long horseId,
+    int generations,
+    double coefficient
+) {
+}
@@ -0,0 +1,15 @@
+package at.ac.tuwien.sepm.assignment.individual.dto;
+
+import java.util.List;
+
+/**
+ * One page of horse search results.
+ *
+ * @param horses     the horses on this page
+ * @param nextCursor the encoded {@link HorseSearchCursor} to get the next page with, or null if this is the last page
+ */
+public record HorsePageDto(
+    List<HorseListDto> horses,
+    String nextCursor
+) {
+}
@@ -0,0 +1,14 @@
+package at.ac.tuwien.sepm.assignment.individual.dto;
+
+import java.util.List;
+
+/**
+ * DTO for how two horses are related: their closest common ancestors, the ones that are no ancestor of another common ancestor.
+ * The list is empty if the horses are not related, and ordered by the length of the connection, closest first.
+ */
+public record HorseRelationshipDto(
+    HorseMinimalDto first,
+    HorseMinimalDto second,
+    List<HorseCommonAncestorDto> closestCommonAncestors
+) {
+}
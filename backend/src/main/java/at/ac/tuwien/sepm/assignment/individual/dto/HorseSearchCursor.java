@@ -0,0 +1,37 @@
+package at.ac.tuwien.sepm.assignment.individual.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position in the search results after which the next page of horses starts.
+ * Search results are ordered by name (ignoring case) and then id,
+ * so the name and id of the last horse of a page are enough to continue right after it.
+ * Clients only ever see the encoded, opaque form of the cursor.
+ *
+ * @param name the name of the last horse of the previous page
+ * @param id   the id of the last horse of the previous page
+ */
+public record HorseSearchCursor(String name, long id) {
+
+  public String encode() {
+    return Base64.getUrlEncoder().withoutPadding()
+        .encodeToString((id + ":" + name).getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Decode a cursor, that was previously created by {@link #encode()}.
+   *
+   * @param cursor the encoded cursor
+   * @return the decoded cursor
+   * @throws IllegalArgumentException if {@code cursor} is not a valid encoded cursor
+   */
+  public static HorseSearchCursor decode(String cursor) {
+    String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+    int separator = decoded.indexOf(':');
+    if (separator < 0) {
+      throw new IllegalArgumentException("Cursor does not contain an id");
+    }
+    return new HorseSearchCursor(decoded.substring(separator + 1), Long.parseLong(decoded.substring(0, separator)));
+  }
+}
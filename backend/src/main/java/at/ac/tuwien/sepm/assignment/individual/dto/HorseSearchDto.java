@@ -9,6 +9,8 @@ import org.springframework.format.annotation.DateTimeFormat;
 /**
  * DTO to bundle the query parameters used in searching horses.
  * Each field can be null, in which case this field is not filtered by.
+ * The results are ordered by name and id. If {@code cursor} is given,
+ * only horses after the position it encodes (see {@link HorseSearchCursor}) are returned.
  */
 public record HorseSearchDto(
     String name,
@@ -18,6 +20,7 @@ public record HorseSearchDto(
     Sex sex,
     Long ownerId,
     Integer limit,
-    Long idOfHorseToBeExcluded
+    Long idOfHorseToBeExcluded,
+    String cursor
 ) {
 }
@@ -0,0 +1,13 @@
+package at.ac.tuwien.sepm.assignment.individual.dto;
+
+import at.ac.tuwien.sepm.assignment.individual.type.KinshipMatrixJobStatus;
+
+/**
+ * DTO for a job that computes the kinship matrix of the horses that match a search.
+ */
+public record KinshipMatrixJobDto(
+    long id,
+    KinshipMatrixJobStatus status,
+    int horses
+) {
+}
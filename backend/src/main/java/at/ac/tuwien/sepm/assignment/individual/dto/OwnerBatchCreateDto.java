@@ -0,0 +1,13 @@
+package at.ac.tuwien.sepm.assignment.individual.dto;
+
+/**
+ * DTO for one owner of a batch of owners to be created together.
+ * The optional {@code key} is stored as the registry key of the owner and must be unique.
+ */
+public record OwnerBatchCreateDto(
+    String key,
+    String firstName,
+    String lastName,
+    String email
+) {
+}
@@ -0,0 +1,12 @@
+package at.ac.tuwien.sepm.assignment.individual.dto;
+
+/**
+ * DTO summarizing a finished registry import.
+ */
+public record RegistryImportResultDto(
+    long owners,
+    long horses,
+    long durationMillis,
+    long rowsPerSecond
+) {
+}
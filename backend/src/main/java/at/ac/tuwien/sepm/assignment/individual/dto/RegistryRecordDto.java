@@ -0,0 +1,31 @@
+package at.ac.tuwien.sepm.assignment.individual.dto;
+
+import at.ac.tuwien.sepm.assignment.individual.type.Sex;
+
+import java.time.LocalDate;
+
+/**
+ * DTO for one record of a registry file, which is either an owner or a horse, as given by {@code type}.
+ * Owners use {@code firstName}, {@code lastName} and {@code email},
+ * horses use {@code name}, {@code description}, {@code dateOfBirth}, {@code sex} and the references.
+ * The {@code key} is stored as the registry key of the record.
+ * The references {@code ownerKey}, {@code motherKey} and {@code fatherKey} name the key of
+ * a record further up in the same file, or the registry key of an already stored owner or horse.
+ */
+public record RegistryRecordDto(
+    String type,
+    String key,
+    String firstName,
+    String lastName,
+    String email,
+    String name,
+    String description,
+    LocalDate dateOfBirth,
+    Sex sex,
+    String ownerKey,
+    String motherKey,
+    String fatherKey
+) {
+  public static final String TYPE_OWNER = "owner";
+  public static final String TYPE_HORSE = "horse";
+}
@@ -0,0 +1,48 @@
+package at.ac.tuwien.sepm.assignment.individual.entity;
+
+/**
+ * Represents a common ancestor of two horses in the persistent data store,
+ * together with the number of generations between it and each of the horses, along the shortest path.
+ * A horse that is an ancestor of the other one is a common ancestor of both, zero generations from itself.
+ */
+public class CommonAncestor {
+  private long ancestorId;
+  private int firstDepth;
+  private int secondDepth;
+
+  public long getAncestorId() {
+    return ancestorId;
+  }
+
+  public CommonAncestor setAncestorId(long ancestorId) {
+    this.ancestorId = ancestorId;
+    return this;
+  }
+
+  public int getFirstDepth() {
+    return firstDepth;
+  }
+
+  public CommonAncestor setFirstDepth(int firstDepth) {
+    this.firstDepth = firstDepth;
+    return this;
+  }
+
+  public int getSecondDepth() {
+    return secondDepth;
+  }
+
+  public CommonAncestor setSecondDepth(int secondDepth) {
+    this.secondDepth = secondDepth;
+    return this;
+  }
+
+  @Override
+  public String toString() {
+    return "CommonAncestor{"
+        + "ancestorId=" + ancestorId
+        + ", firstDepth=" + firstDepth
+        + ", secondDepth=" + secondDepth
+        + '}';
+  }
+}
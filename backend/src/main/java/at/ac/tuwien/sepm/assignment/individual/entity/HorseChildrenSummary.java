@@ -0,0 +1,62 @@
+package at.ac.tuwien.sepm.assignment.individual.entity;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Represents how many children a horse has, and the earliest born of them, instead of all of them.
+ */
+public class HorseChildrenSummary {
+  private long count;
+  private long bornBeforeCount;
+  private List<HorseMinimal> earliestBorn = List.of();
+
+  public long getCount() {
+    return count;
+  }
+
+  public HorseChildrenSummary setCount(long count) {
+    this.count = count;
+    return this;
+  }
+
+  /**
+   * The number of children that were born before the date the summary was requested for.
+   */
+  public long getBornBeforeCount() {
+    return bornBeforeCount;
+  }
+
+  public HorseChildrenSummary setBornBeforeCount(long bornBeforeCount) {
+    this.bornBeforeCount = bornBeforeCount;
+    return this;
+  }
+
+  /**
+   * The earliest born children, in the order of their dates of birth. At most as many as the summary was requested for.
+   */
+  public List<HorseMinimal> getEarliestBorn() {
+    return earliestBorn;
+  }
+
+  public HorseChildrenSummary setEarliestBorn(List<HorseMinimal> earliestBorn) {
+    this.earliestBorn = earliestBorn;
+    return this;
+  }
+
+  /**
+   * The date of birth of the earliest born child, {@code null} if there are no children.
+   */
+  public LocalDate getEarliestDateOfBirth() {
+    return earliestBorn.isEmpty() ? null : earliestBorn.get(0).getDateOfBirth();
+  }
+
+  @Override
+  public String toString() {
+    return "HorseChildrenSummary{"
+        + "count=" + count
+        + ", bornBeforeCount=" + bornBeforeCount
+        + ", earliestBorn=" + earliestBorn
+        + '}';
+  }
+}
@@ -0,0 +1,47 @@
+package at.ac.tuwien.sepm.assignment.individual.entity;
+
+/**
+ * Represents a descendant of a horse in the persistent data store, together with its generation,
+ * and whether that generation has more descendants after the page it was read with.
+ */
+public class HorseDescendant {
+  private Horse horse;
+  private int generation;
+  private boolean moreInGeneration;
+
+  public Horse getHorse() {
+    return horse;
+  }
+
+  public HorseDescendant setHorse(Horse horse) {
+    this.horse = horse;
+    return this;
+  }
+
+  public int getGeneration() {
+    return generation;
+  }
+
+  public HorseDescendant setGeneration(int generation) {
+    this.generation = generation;
+    return this;
+  }
+
+  public boolean isMoreInGeneration() {
+    return moreInGeneration;
+  }
+
+  public HorseDescendant setMoreInGeneration(boolean moreInGeneration) {
+    this.moreInGeneration = moreInGeneration;
+    return this;
+  }
+
+  @Override
+  public String toString() {
+    return "HorseDescendant{"
+        + "horse=" + horse
+        + ", generation=" + generation
+        + ", moreInGeneration=" + moreInGeneration
+        + '}';
+  }
+}
@@ -0,0 +1,59 @@
+package at.ac.tuwien.sepm.assignment.individual.entity;
+
+/**
+ * Represents a horse in the persistent data store together with the entities it references:
+ * its owner and the minimal forms of its parents.
+ * Every reference that is not set on the horse is {@code null}.
+ */
+public class HorseDetail {
+  private Horse horse;
+  private Owner owner;
+  private HorseMinimal mother;
+  private HorseMinimal father;
+
+  public Horse getHorse() {
+    return horse;
+  }
+
+  public HorseDetail setHorse(Horse horse) {
+    this.horse = horse;
+    return this;
+  }
+
+  public Owner getOwner() {
+    return owner;
+  }
+
+  public HorseDetail setOwner(Owner owner) {
+    this.owner = owner;
+    return this;
+  }
+
+  public HorseMinimal getMother() {
+    return mother;
+  }
+
+  public HorseDetail setMother(HorseMinimal mother) {
+    this.mother = mother;
+    return this;
+  }
+
+  public HorseMinimal getFather() {
+    return father;
+  }
+
+  public HorseDetail setFather(HorseMinimal father) {
+    this.father = father;
+    return this;
+  }
+
+  @Override
+  public String toString() {
+    return "HorseDetail{"
+        + "horse=" + horse
+        + ", owner=" + owner
+        + ", mother=" + mother
+        + ", father=" + father
+        + '}';
+  }
+}
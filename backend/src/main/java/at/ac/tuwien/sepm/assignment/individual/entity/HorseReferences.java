@@ -0,0 +1,50 @@
+package at.ac.tuwien.sepm.assignment.individual.entity;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Represents the horses and owners that exist in the persistent data store, out of those a horse or a search refers to,
+ * and the referenced horses that descend from the horse, which must not become its parents.
+ */
+public class HorseReferences {
+  private List<HorseMinimal> horses = List.of();
+  private Set<Long> ownerIds = Set.of();
+  private Set<Long> descendantIds = Set.of();
+
+  public List<HorseMinimal> getHorses() {
+    return horses;
+  }
+
+  public HorseReferences setHorses(List<HorseMinimal> horses) {
+    this.horses = horses;
+    return this;
+  }
+
+  public Set<Long> getOwnerIds() {
+    return ownerIds;
+  }
+
+  public HorseReferences setOwnerIds(Set<Long> ownerIds) {
+    this.ownerIds = ownerIds;
+    return this;
+  }
+
+  public Set<Long> getDescendantIds() {
+    return descendantIds;
+  }
+
+  public HorseReferences setDescendantIds(Set<Long> descendantIds) {
+    this.descendantIds = descendantIds;
+    return this;
+  }
+
+  @Override
+  public String toString() {
+    return "HorseReferences{"
+        + "horses=" + horses
+        + ", ownerIds=" + ownerIds
+        + ", descendantIds=" + descendantIds
+        + '}';
+  }
+}
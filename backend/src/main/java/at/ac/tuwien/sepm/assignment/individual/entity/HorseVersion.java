@@ -0,0 +1,35 @@
+package at.ac.tuwien.sepm.assignment.individual.entity;
+
+/**
+ * Represents the version of a horse in the persistent data store, which is incremented by every update of the horse.
+ */
+public class HorseVersion {
+  private long id;
+  private long version;
+
+  public long getId() {
+    return id;
+  }
+
+  public HorseVersion setId(long id) {
+    this.id = id;
+    return this;
+  }
+
+  public long getVersion() {
+    return version;
+  }
+
+  public HorseVersion setVersion(long version) {
+    this.version = version;
+    return this;
+  }
+
+  @Override
+  public String toString() {
+    return "HorseVersion{"
+        + "id=" + id
+        + ", version=" + version
+        + '}';
+  }
+}
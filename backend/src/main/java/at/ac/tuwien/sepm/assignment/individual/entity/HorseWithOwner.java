@@ -0,0 +1,36 @@
+package at.ac.tuwien.sepm.assignment.individual.entity;
+
+/**
+ * Represents a horse in the persistent data store together with its owner,
+ * which is {@code null} if the horse has none.
+ */
+public class HorseWithOwner {
+  private Horse horse;
+  private Owner owner;
+
+  public Horse getHorse() {
+    return horse;
+  }
+
+  public HorseWithOwner setHorse(Horse horse) {
+    this.horse = horse;
+    return this;
+  }
+
+  public Owner getOwner() {
+    return owner;
+  }
+
+  public HorseWithOwner setOwner(Owner owner) {
+    this.owner = owner;
+    return this;
+  }
+
+  @Override
+  public String toString() {
+    return "HorseWithOwner{"
+        + "horse=" + horse
+        + ", owner=" + owner
+        + '}';
+  }
+}
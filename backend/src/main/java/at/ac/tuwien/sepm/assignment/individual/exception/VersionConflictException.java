@@ -0,0 +1,11 @@
+package at.ac.tuwien.sepm.assignment.individual.exception;
+
+/**
+ * Exception that signals, that a change was based on a version of the data,
+ * that is no longer the current one, because the data was changed since.
+ */
+public class VersionConflictException extends Exception {
+  public VersionConflictException(String message) {
+    super(message);
+  }
+}
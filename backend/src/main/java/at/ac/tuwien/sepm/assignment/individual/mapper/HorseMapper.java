@@ -1,15 +1,21 @@
 package at.ac.tuwien.sepm.assignment.individual.mapper;
 
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseDescendantDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseDescendantGenerationDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseDescendantsDto;
 import at.ac.tuwien.sepm.assignment.individual.dto.HorseDetailDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseExportDto;
 import at.ac.tuwien.sepm.assignment.individual.dto.HorseListDto;
 import at.ac.tuwien.sepm.assignment.individual.dto.HorseMinimalDto;
-import at.ac.tuwien.sepm.assignment.individual.dto.OwnerDto;
 import at.ac.tuwien.sepm.assignment.individual.entity.Horse;
+import at.ac.tuwien.sepm.assignment.individual.entity.HorseDescendant;
+import at.ac.tuwien.sepm.assignment.individual.entity.HorseDetail;
 import at.ac.tuwien.sepm.assignment.individual.entity.HorseMinimal;
-import at.ac.tuwien.sepm.assignment.individual.exception.FatalException;
+import at.ac.tuwien.sepm.assignment.individual.entity.HorseWithOwner;
 
 import java.lang.invoke.MethodHandles;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -19,8 +25,10 @@ import org.springframework.stereotype.Component;
 public class HorseMapper {
   private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
-  public HorseMapper() {
+  private final OwnerMapper ownerMapper;
 
+  public HorseMapper(OwnerMapper ownerMapper) {
+    this.ownerMapper = ownerMapper;
   }
 
   public HorseMinimalDto minimalEntityToMinimalDto(HorseMinimal horse) {
@@ -31,83 +39,96 @@ public class HorseMapper {
     return new HorseMinimalDto(horse.getId(), horse.getName(), horse.getDateOfBirth(), horse.getSex());
   }
 
+  public HorseMinimalDto entityToMinimalDto(Horse horse) {
+    LOG.trace("entityToMinimalDto {}", horse);
+    if (horse == null) {
+      return null;
+    }
+    return new HorseMinimalDto(horse.getId(), horse.getName(), horse.getDateOfBirth(), horse.getSex());
+  }
+
+  public HorseExportDto entityToExportDto(Horse horse) {
+    LOG.trace("entityToExportDto {}", horse);
+    if (horse == null) {
+      return null;
+    }
+    return new HorseExportDto(horse.getId(), horse.getName(), horse.getDescription(), horse.getDateOfBirth(), horse.getSex(),
+        horse.getOwnerId(), horse.getMotherId(), horse.getFatherId());
+  }
+
   /**
-   * Convert a horse entity object to a {@link HorseListDto}.
-   * The given map of owners needs to contain the owner of {@code horse}.
+   * Convert the descendants of a horse, ordered by generation, to a {@link HorseDescendantsDto}.
    *
-   * @param horse  the horse to convert
-   * @param owners a map of horse owners by their id, which needs to contain the owner referenced by {@code horse}
+   * @param horseId     the ID of the horse the descendants descend from
+   * @param descendants the descendants, ordered by generation
+   * @return the converted {@link HorseDescendantsDto}, with one entry for every generation of {@code descendants}
+   */
+  public HorseDescendantsDto descendantsToDto(Long horseId, List<HorseDescendant> descendants) {
+    LOG.trace("descendantsToDto {}, {} descendants", horseId, descendants.size());
+    List<HorseDescendantGenerationDto> generations = new ArrayList<>();
+    int start = 0;
+    while (start < descendants.size()) {
+      HorseDescendant first = descendants.get(start);
+      int end = start;
+      List<HorseDescendantDto> horses = new ArrayList<>();
+      while (end < descendants.size() && descendants.get(end).getGeneration() == first.getGeneration()) {
+        Horse horse = descendants.get(end).getHorse();
+        horses.add(new HorseDescendantDto(horse.getId(), horse.getName(), horse.getDateOfBirth(), horse.getSex(),
+            horse.getMotherId(), horse.getFatherId()));
+        end++;
+      }
+      generations.add(new HorseDescendantGenerationDto(first.getGeneration(), first.isMoreInGeneration(), horses));
+      start = end;
+    }
+    return new HorseDescendantsDto(horseId, generations);
+  }
+
+  /**
+   * Convert a horse entity object, together with its owner, to a {@link HorseListDto}.
+   *
+   * @param horseWithOwner the horse with its owner to convert
    * @return the converted {@link HorseListDto}
    */
-  public HorseListDto entityToListDto(Horse horse, Map<Long, OwnerDto> owners) {
-    LOG.trace("entityToDto({})", horse);
-    if (horse == null) {
+  public HorseListDto entityToListDto(HorseWithOwner horseWithOwner) {
+    LOG.trace("entityToListDto({})", horseWithOwner);
+    if (horseWithOwner == null) {
       return null;
     }
 
+    Horse horse = horseWithOwner.getHorse();
     return new HorseListDto(
         horse.getId(),
         horse.getName(),
         horse.getDescription(),
         horse.getDateOfBirth(),
         horse.getSex(),
-        getOwnerDto(horse.getOwnerId(), owners)
+        ownerMapper.entityToDto(horseWithOwner.getOwner())
     );
   }
 
   /**
-   * Convert a horse entity object to a {@link HorseListDto}.
-   * The given map of owners needs to contain the owner of {@code horse}.
+   * Convert a horse entity object, together with the entities it references, to a {@link HorseDetailDto}.
    *
-   * @param horse  the horse to convert
-   * @param owners a map of horse owners by their id, which needs to contain the owner referenced by {@code horse}
-   * @return the converted {@link HorseListDto}
+   * @param detail the horse with its owner and parents to convert
+   * @return the converted {@link HorseDetailDto}
    */
-  public HorseDetailDto entityToDetailDto(
-      Horse horse,
-      Map<Long, OwnerDto> owners,
-      Map<Long, HorseMinimalDto> mothers,
-      Map<Long, HorseMinimalDto> fathers
-  ) {
-    LOG.trace("entityToDto({})", horse);
-    if (horse == null) {
+  public HorseDetailDto entityToDetailDto(HorseDetail detail) {
+    LOG.trace("entityToDetailDto({})", detail);
+    if (detail == null) {
       return null;
     }
 
+    Horse horse = detail.getHorse();
     return new HorseDetailDto(
         horse.getId(),
         horse.getName(),
         horse.getDescription(),
         horse.getDateOfBirth(),
         horse.getSex(),
-        getOwnerDto(horse.getOwnerId(), owners),
-        getHorseMinimalDto(horse.getMotherId(), mothers),
-        getHorseMinimalDto(horse.getFatherId(), fathers)
+        ownerMapper.entityToDto(detail.getOwner()),
+        minimalEntityToMinimalDto(detail.getMother()),
+        minimalEntityToMinimalDto(detail.getFather())
     );
   }
 
-  private OwnerDto getOwnerDto(Long ownerId, Map<Long, OwnerDto> owners) {
-    LOG.trace("getOwnerDto {}", ownerId);
-    OwnerDto owner = null;
-    if (ownerId != null) {
-      if (!owners.containsKey(ownerId)) {
-        throw new FatalException("Given owner map does not contain owner of this Horse (%d)".formatted(ownerId)); // where would this be needed?
-      }
-      owner = owners.get(ownerId);
-    }
-    return owner;
-  }
-
-  private HorseMinimalDto getHorseMinimalDto(Long horseId, Map<Long, HorseMinimalDto> horses) {
-    LOG.trace("getHorseMinimalDto {}", horseId);
-    HorseMinimalDto horse = null;
-    if (horseId != null) {
-      if (!horses.containsKey(horseId)) {
-        throw new FatalException("Given owner map does not contain owner of this Horse (%d)".formatted(horseId)); // where would this be needed?
-      }
-      horse = horses.get(horseId);
-    }
-    return horse;
-  }
-
 }
@@ -7,6 +7,7 @@ import javax.sql.DataSource;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.DependsOn;
 import org.springframework.context.annotation.Profile;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.jdbc.datasource.init.ScriptUtils;
@@ -15,18 +16,23 @@ import org.springframework.stereotype.Component;
 /**
  * This component is only created, if the profile {@code datagen} is active
  * You can activate this profile by adding {@code -Dspring.profiles.active=datagen} to your maven command line
+ * The data is only generated after the {@link SchemaMigrator} brought the schema up to date.
+ * The script inserts the horses directly, so their ancestry is rebuilt afterwards.
  */
 @Component
+@DependsOn("schemaMigrator")
 @Profile("datagen")
 public class DataGeneratorBean {
   private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
   private final DataSource dataSource;
+  private final HorseDao horseDao;
 
   /**
    * Executed once when the component is instantiated. Inserts some dummy data.
    */
-  public DataGeneratorBean(DataSource dataSource) {
+  public DataGeneratorBean(DataSource dataSource, HorseDao horseDao) {
     this.dataSource = dataSource;
+    this.horseDao = horseDao;
   }
 
   @PostConstruct
@@ -34,6 +40,7 @@ public class DataGeneratorBean {
     LOGGER.info("Generating data…");
     try (var connection = dataSource.getConnection()) {
       ScriptUtils.executeSqlScript(connection, new ClassPathResource("sql/insertData.sql"));
+      horseDao.rebuildAncestry();
       LOGGER.info("Finished generating data without error.");
     }
   }
@@ -1,13 +1,27 @@
 package at.ac.tuwien.sepm.assignment.individual.persistence;
 
+import at.ac.tuwien.sepm.assignment.individual.dto.DescendantsQueryParamsDto;
 import at.ac.tuwien.sepm.assignment.individual.dto.FamilyTreeQueryParamsDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseBatchCreateDto;
 import at.ac.tuwien.sepm.assignment.individual.dto.HorseDetailDto;
 import at.ac.tuwien.sepm.assignment.individual.dto.HorseSearchDto;
+import at.ac.tuwien.sepm.assignment.individual.entity.CommonAncestor;
 import at.ac.tuwien.sepm.assignment.individual.entity.Horse;
+import at.ac.tuwien.sepm.assignment.individual.entity.HorseChildrenSummary;
+import at.ac.tuwien.sepm.assignment.individual.entity.HorseDescendant;
+import at.ac.tuwien.sepm.assignment.individual.entity.HorseDetail;
 import at.ac.tuwien.sepm.assignment.individual.entity.HorseMinimal;
+import at.ac.tuwien.sepm.assignment.individual.entity.HorseReferences;
+import at.ac.tuwien.sepm.assignment.individual.entity.HorseVersion;
+import at.ac.tuwien.sepm.assignment.individual.entity.HorseWithOwner;
 import at.ac.tuwien.sepm.assignment.individual.exception.NotFoundException;
+import at.ac.tuwien.sepm.assignment.individual.exception.VersionConflictException;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * Data Access Object for horses.
@@ -23,15 +37,19 @@ public interface HorseDao {
 
 
   /**
-   * Update the horse with the ID given in {@code horse}
+   * Update the horse with the given ID
    * with the data given in {@code horse}
-   * in the persistent data store.
+   * in the persistent data store, and increment its version.
+   * The previous state of the horse is returned by the update statement itself, so it is not read before.
    *
-   * @param horse the horse to update
-   * @return the updated horse
-   * @throws NotFoundException if the Horse with the given ID does not exist in the persistent data store
+   * @param id              the ID of the horse to update
+   * @param horse           the data to update the horse with
+   * @param expectedVersion the version the horse must have to be updated, {@code null} to update it whatever its version
+   * @return the horse as it was before the update
+   * @throws NotFoundException        if the Horse with the given ID does not exist in the persistent data store
+   * @throws VersionConflictException if the horse does not have the expected version
    */
-  Horse update(Long id, HorseDetailDto horse) throws NotFoundException;
+  Horse update(Long id, HorseDetailDto horse, Long expectedVersion) throws NotFoundException, VersionConflictException;
 
   /**
    * Get a horse by its ID from the persistent data store.
@@ -42,6 +60,16 @@ public interface HorseDao {
    */
   Horse getById(long id) throws NotFoundException;
 
+  /**
+   * Get a horse by its ID from the persistent data store,
+   * together with its owner and the minimal forms of its parents, in a single query.
+   *
+   * @param id the ID of the horse to get
+   * @return the horse and the entities it references
+   * @throws NotFoundException if the Horse with the given ID does not exist in the persistent data store
+   */
+  HorseDetail getDetailById(long id) throws NotFoundException;
+
   /**
    * Create a horse from a HorseDetailDto in the persistent data store.
    *
@@ -50,6 +78,27 @@ public interface HorseDao {
    */
   Horse create(HorseDetailDto toCreate);
 
+  /**
+   * Create all horses of a batch in the persistent data store, using batched inserts.
+   * The keys of the horses only tell them apart within the batch, they are not stored.
+   * A parent referenced by key is another horse of the batch, which is inserted before its children.
+   * The parent references within the batch must not form a cycle.
+   *
+   * @param toCreate the data of the horses to be created
+   * @return the horse entities that were created, in the same order as {@code toCreate}
+   */
+  List<Horse> createBatch(List<HorseBatchCreateDto> toCreate);
+
+  /**
+   * Create all horses of a batch of a registry import, like {@link #createBatch(List)}.
+   * The key of each horse is stored as its registry key.
+   * A parent referenced by key is either another horse of the batch, or a stored horse with that registry key.
+   *
+   * @param toImport the data of the horses to be imported
+   * @return the horse entities that were created, in the same order as {@code toImport}
+   */
+  List<Horse> importBatch(List<HorseBatchCreateDto> toImport);
+
   /**
    * Delete a horse by its ID from the persistent data store.
    *
@@ -61,11 +110,34 @@ public interface HorseDao {
   /**
    * Search all horses by all attributes that a HorseSearchDto has.
    * All search parameters are optional, a search with none specified will return all horses.
+   * The horses are ordered by name (ignoring case) and id. Each of them is returned together with its owner.
    *
    * @param searchParameters a DTO holding all of the search parameters
    * @return the list of Horses that matched the search
    */
-  List<Horse> search(HorseSearchDto searchParameters);
+  List<HorseWithOwner> search(HorseSearchDto searchParameters);
+
+  /**
+   * Search horses like {@link #search(HorseSearchDto)}, but stream them from the persistent data store
+   * instead of loading all of them into a list.
+   * A search without filters, or by name only, reads the name index in order, so its horses are streamed as they are read.
+   * A search by another filter reads the index of that filter, and the data store sorts all matching horses by name
+   * before it streams the first, so they are held in memory there, though not mapped to entities at once.
+   * The stream holds a connection to the data store, until either all horses have been read from it or it is closed.
+   *
+   * @param searchParameters a DTO holding all of the search parameters
+   * @return a stream of the horses that matched the search
+   */
+  Stream<HorseWithOwner> searchStream(HorseSearchDto searchParameters);
+
+  /**
+   * Stream all horses stored in the persistent data store, ordered by their ID,
+   * from a forward-only cursor instead of loading them into memory like {@link #getAll()}.
+   * The stream holds a connection to the data store, until either all horses have been read from it or it is closed.
+   *
+   * @return a stream of all stored horses
+   */
+  Stream<Horse> exportStream();
 
   /**
    * gets a minimal form of the normal horse by id.
@@ -77,12 +149,46 @@ public interface HorseDao {
   HorseMinimal getHorseMinimalById(Long id);
 
   /**
-   * Gets all the children of the horse by the horses id
+   * Fetch the minimal forms of a set of horses by their IDs from the persistent data store.
+   * This is best effort, if some horse can not be found in the data store, it is simply not in the returned collection.
+   *
+   * @param ids the IDs of the horses to fetch
+   * @return the minimal forms of all found horses
+   */
+  Collection<HorseMinimal> getHorseMinimalsByIds(Collection<Long> ids);
+
+  /**
+   * Fetch the minimal forms of a set of horses, which of a set of owners exist,
+   * and which of a set of horses descend from a horse, from the persistent data store, in one statement.
+   * This is best effort, horses and owners that can not be found are simply left out.
+   *
+   * @param horseIds      the IDs of the horses to fetch, may be empty
+   * @param ownerIds      the IDs of the owners to check, may be empty
+   * @param ancestorId    the ID of the horse to check {@code descendantIds} against, {@code null} to not check them
+   * @param descendantIds the IDs of the horses to check for descending from the horse {@code ancestorId}, may be empty
+   * @return the minimal forms of all found horses, the IDs of all found owners, and the IDs of the horses that descend from {@code ancestorId}
+   */
+  HorseReferences getReferences(Collection<Long> horseIds, Collection<Long> ownerIds, Long ancestorId, Collection<Long> descendantIds);
+
+  /**
+   * Fetch the minimal forms of a set of horses by their registry keys from the persistent data store.
+   * This is best effort, if no horse has some key, the key is simply not in the returned map.
+   *
+   * @param keys the registry keys of the horses to fetch
+   * @return the minimal forms of all found horses by their registry keys
+   */
+  Map<String, HorseMinimal> getHorseMinimalsByRegistryKeys(Collection<String> keys);
+
+  /**
+   * Summarizes the children of a horse in one statement, which reads the earliest born children only,
+   * so its cost does not grow with the number of children of the horse.
    *
-   * @param horseId the id of the horse whose children are desired
-   * @return A list of all horses that are children of the horse with the id
+   * @param horseId    the ID of the horse whose children are summarized
+   * @param bornBefore the date to count the children born before, {@code null} to count none
+   * @param sampleSize how many of the earliest born children to include
+   * @return the number of children, how many of them were born before {@code bornBefore}, and the earliest born
    */
-  List<HorseMinimal> getChildrenOf(Long horseId);
+  HorseChildrenSummary getChildrenSummary(long horseId, LocalDate bornBefore, int sampleSize);
 
   /**
    * Gets a list of all horses that are included in the specified horses id
@@ -92,4 +198,90 @@ public interface HorseDao {
    * @throws NotFoundException if the id specified in the queryParams was not found in the database
    */
   List<Horse> getListForFamilyTreeOfHorse(FamilyTreeQueryParamsDto queryParams) throws NotFoundException;
+
+  /**
+   * Gets the versions of a horse and its parents, which are all the horses the details of the horse are made of.
+   *
+   * @param id the ID of the horse
+   * @return the versions of the horse and of its parents, the horse first
+   * @throws NotFoundException if the horse was not found in the database
+   */
+  List<HorseVersion> getDetailVersions(long id) throws NotFoundException;
+
+  /**
+   * Gets the versions of all horses of a family tree, which are the same horses as {@link #getListForFamilyTreeOfHorse} gets.
+   *
+   * @param queryParams the horse id and the limit of the family tree
+   * @return the versions of the horse and its ancestors in the tree, in no particular order
+   * @throws NotFoundException if the id specified in the queryParams was not found in the database
+   */
+  List<HorseVersion> getFamilyTreeVersions(FamilyTreeQueryParamsDto queryParams) throws NotFoundException;
+
+  /**
+   * Gets a set of horses together with all their ancestors, from the stored ancestry.
+   * Every horse is in the list once, also if it is an ancestor of more than one of them, or one of the given horses itself.
+   *
+   * @param ids the IDs of the horses; must not be empty
+   * @return the horses that were found and all their ancestors
+   */
+  List<Horse> getPedigreeOfHorses(Collection<Long> ids);
+
+  /**
+   * Gets the closest common ancestors of two horses from the stored ancestry: the common ancestors that are no ancestor
+   * of another common ancestor. A horse that is an ancestor of the other one, or both horses if they are the same, is the only one.
+   *
+   * @param firstId  the ID of the first horse
+   * @param secondId the ID of the second horse
+   * @return the closest common ancestors with their distances to both horses, closest first; empty if the horses are not related
+   */
+  List<CommonAncestor> getClosestCommonAncestors(long firstId, long secondId);
+
+  /**
+   * Gets a shortest path from a horse up to one of its ancestors, from the stored ancestry.
+   * Every step goes to the parent that is an ancestor of the ancestor one generation less away, so only the horses on the path
+   * and their siblings on it are read, one indexed lookup per generation.
+   *
+   * @param descendant the horse the path starts at
+   * @param ancestorId the ID of the ancestor the path ends at
+   * @param depth      the number of generations between the horse and the ancestor, 0 if it is the horse itself
+   * @return the horses along the path, from the horse to the ancestor
+   */
+  List<Horse> getPathToAncestor(Horse descendant, long ancestorId, int depth);
+
+  /**
+   * Gets one page of the descendants of a horse for every generation, up to the given depth, from the stored ancestry.
+   * A horse that descends along paths of different lengths is in the closest generation only.
+   * Every generation is paged on its own, in the order of the IDs of its horses, with one statement per generation
+   * that reads the rows before and on its page, and one more to tell whether there are more. The generations are not counted.
+   * The statements stop at the first generation without descendants, so there is one per generation the horse has descendants in,
+   * and another one for a generation whose page is past its end.
+   *
+   * @param queryParams the horse, depth, and the page of every generation; {@code depth}, {@code offset} and {@code limit} must be given
+   * @return the descendants of the pages, ordered by generation and ID
+   * @throws NotFoundException if the horse was not found in the database
+   */
+  List<HorseDescendant> getDescendants(DescendantsQueryParamsDto queryParams) throws NotFoundException;
+
+  /**
+   * Checks whether a horse is an ancestor of another one, in any generation.
+   *
+   * @param ancestorId   the ID of the possible ancestor
+   * @param descendantId the ID of the possible descendant
+   * @return whether the horse with ID {@code ancestorId} is an ancestor of the horse with ID {@code descendantId}
+   */
+  boolean isAncestor(long ancestorId, long descendantId);
+
+  /**
+   * Rebuilds the ancestry of all stored horses from their parent references.
+   * The ancestry is kept up to date by every write of this DAO already,
+   * this is for repairing it after horses were written around it.
+   */
+  void rebuildAncestry();
+
+  /**
+   * Checks the stored ancestry of all horses against their parent references.
+   *
+   * @return the IDs of all horses whose stored ancestry is not the one their parents give them, ordered by ID
+   */
+  List<Long> getIdsWithInconsistentAncestry();
 }
@@ -1,11 +1,14 @@
 package at.ac.tuwien.sepm.assignment.individual.persistence;
 
+import at.ac.tuwien.sepm.assignment.individual.dto.OwnerBatchCreateDto;
 import at.ac.tuwien.sepm.assignment.individual.dto.OwnerCreateDto;
 import at.ac.tuwien.sepm.assignment.individual.dto.OwnerSearchDto;
 import at.ac.tuwien.sepm.assignment.individual.entity.Owner;
 import at.ac.tuwien.sepm.assignment.individual.exception.NotFoundException;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Data Access Object for owners.
@@ -60,4 +63,22 @@ public interface OwnerDao {
    * @return a collection of all owners that were in the ids and matched the queryParams
    */
   Collection<Owner> getOwnersByIdsAndFilter(Collection<Long> ownersOfHorses, OwnerSearchDto searchParameters);
+
+  /**
+   * Create all owners of a batch in the persistent data store, using batched inserts.
+   * The key of each owner is stored as its registry key.
+   *
+   * @param newOwners the data to create the new owners from
+   * @return the newly created owners, in the same order as {@code newOwners}
+   */
+  List<Owner> createBatch(List<OwnerBatchCreateDto> newOwners);
+
+  /**
+   * Fetch the IDs of a set of owners by their registry keys from the persistent data store.
+   * This is best effort, if no owner has some key, the key is simply not in the returned map.
+   *
+   * @param keys the registry keys of the owners
+   * @return the IDs of all found owners by their registry keys
+   */
+  Map<String, Long> getIdsByRegistryKeys(Collection<String> keys);
 }
@@ -0,0 +1,151 @@
+package at.ac.tuwien.sepm.assignment.individual.persistence;
+
+import at.ac.tuwien.sepm.assignment.individual.exception.FatalException;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.annotation.PostConstruct;
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.stereotype.Component;
+
+/**
+ * Brings the schema of the persistent data store up to date.
+ * Every script in {@code sql/migration} named {@code V<version>__<description>.sql} is one migration.
+ * Migrations that have not been applied yet are executed in the order of their version
+ * and recorded in the {@code schema_version} table, so each of them runs exactly once per database.
+ * This happens once at startup, instead of on every new JDBC connection.
+ * If the recorded version is already the latest one, a single query is all the work that is done.
+ */
+@Component
+public class SchemaMigrator {
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  private static final String MIGRATION_LOCATION = "classpath:sql/migration/V*__*.sql";
+  private static final Pattern MIGRATION_FILE_NAME = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+
+  private static final String SQL_CREATE_VERSION_TABLE = "CREATE TABLE IF NOT EXISTS schema_version"
+      + " (version INT PRIMARY KEY,"
+      + " description VARCHAR(255) NOT NULL,"
+      + " installed_on TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL)";
+  private static final String SQL_SELECT_CURRENT_VERSION = "SELECT COUNT(*) AS applied, MAX(version) AS version FROM schema_version";
+  private static final String SQL_SELECT_APPLIED_VERSIONS = "SELECT version FROM schema_version";
+  private static final String SQL_INSERT_VERSION = "INSERT INTO schema_version (version, description) VALUES (?, ?)";
+
+  private final DataSource dataSource;
+
+  public SchemaMigrator(DataSource dataSource) {
+    this.dataSource = dataSource;
+  }
+
+  /**
+   * Executed once when the component is instantiated. Applies all pending migrations.
+   */
+  @PostConstruct
+  public void migrate() throws SQLException {
+    long start = System.nanoTime();
+    List<Migration> migrations = findMigrations();
+    int latestVersion = migrations.isEmpty() ? 0 : migrations.get(migrations.size() - 1).version();
+    try (var connection = dataSource.getConnection()) {
+      if (isUpToDate(connection, migrations.size(), latestVersion)) {
+        LOG.info("Schema is up to date at version {} (checked in {} ms).", latestVersion, (System.nanoTime() - start) / 1_000_000);
+        return;
+      }
+
+      LOG.info("Migrating schema…");
+      Set<Integer> appliedVersions = getAppliedVersions(connection);
+      int applied = 0;
+      for (Migration migration : migrations) {
+        if (!appliedVersions.contains(migration.version())) {
+          apply(connection, migration);
+          applied++;
+        }
+      }
+      LOG.info("Finished migrating schema to version {}. Applied {} of {} migrations in {} ms.",
+          latestVersion, applied, migrations.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+  }
+
+  private boolean isUpToDate(Connection connection, int migrationCount, int latestVersion) throws SQLException {
+    LOG.trace("isUpToDate()");
+    try (var tables = connection.getMetaData().getTables(null, null, "SCHEMA_VERSION", null)) {
+      if (!tables.next()) {
+        return false;
+      }
+    }
+    try (var stmt = connection.createStatement();
+         var result = stmt.executeQuery(SQL_SELECT_CURRENT_VERSION)) {
+      result.next();
+      return result.getInt("applied") == migrationCount && result.getInt("version") == latestVersion;
+    }
+  }
+
+  private List<Migration> findMigrations() {
+    LOG.trace("findMigrations()");
+    List<Migration> migrations = new ArrayList<>();
+    try {
+      for (Resource script : new PathMatchingResourcePatternResolver().getResources(MIGRATION_LOCATION)) {
+        Matcher matcher = MIGRATION_FILE_NAME.matcher(script.getFilename());
+        if (!matcher.matches()) {
+          throw new FatalException("Migration script %s is not named V<version>__<description>.sql".formatted(script.getFilename()));
+        }
+        migrations.add(new Migration(Integer.parseInt(matcher.group(1)), matcher.group(2), script));
+      }
+    } catch (IOException e) {
+      throw new FatalException("Could not load migration scripts", e);
+    }
+    migrations.sort(Comparator.comparingInt(Migration::version));
+    return migrations;
+  }
+
+  private Set<Integer> getAppliedVersions(Connection connection) throws SQLException {
+    LOG.trace("getAppliedVersions()");
+    Set<Integer> versions = new HashSet<>();
+    try (var stmt = connection.createStatement()) {
+      stmt.execute(SQL_CREATE_VERSION_TABLE);
+      try (var result = stmt.executeQuery(SQL_SELECT_APPLIED_VERSIONS)) {
+        while (result.next()) {
+          versions.add(result.getInt("version"));
+        }
+      }
+    }
+    return versions;
+  }
+
+  private void apply(Connection connection, Migration migration) throws SQLException {
+    LOG.info("Applying migration V{}: {}", migration.version(), migration.description());
+    boolean autoCommit = connection.getAutoCommit();
+    connection.setAutoCommit(false);
+    try {
+      ScriptUtils.executeSqlScript(connection, migration.script());
+      try (var stmt = connection.prepareStatement(SQL_INSERT_VERSION)) {
+        stmt.setInt(1, migration.version());
+        stmt.setString(2, migration.description());
+        stmt.executeUpdate();
+      }
+      connection.commit();
+    } catch (SQLException | RuntimeException e) {
+      connection.rollback();
+      throw new FatalException("Migration V%d (%s) failed".formatted(migration.version(), migration.description()), e);
+    } finally {
+      connection.setAutoCommit(autoCommit);
+    }
+  }
+
+  private record Migration(int version, String description, Resource script) {
+  }
+}
@@ -1,16 +1,29 @@
 package at.ac.tuwien.sepm.assignment.individual.persistence.impl;
 
+import at.ac.tuwien.sepm.assignment.individual.dto.DescendantsQueryParamsDto;
 import at.ac.tuwien.sepm.assignment.individual.dto.FamilyTreeQueryParamsDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseBatchCreateDto;
 import at.ac.tuwien.sepm.assignment.individual.dto.HorseDetailDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseSearchCursor;
 import at.ac.tuwien.sepm.assignment.individual.dto.HorseSearchDto;
+import at.ac.tuwien.sepm.assignment.individual.entity.CommonAncestor;
 import at.ac.tuwien.sepm.assignment.individual.entity.Horse;
+import at.ac.tuwien.sepm.assignment.individual.entity.HorseChildrenSummary;
+import at.ac.tuwien.sepm.assignment.individual.entity.HorseDescendant;
+import at.ac.tuwien.sepm.assignment.individual.entity.HorseDetail;
 import at.ac.tuwien.sepm.assignment.individual.entity.HorseMinimal;
+import at.ac.tuwien.sepm.assignment.individual.entity.HorseReferences;
+import at.ac.tuwien.sepm.assignment.individual.entity.HorseVersion;
+import at.ac.tuwien.sepm.assignment.individual.entity.HorseWithOwner;
+import at.ac.tuwien.sepm.assignment.individual.entity.Owner;
 import at.ac.tuwien.sepm.assignment.individual.exception.FatalException;
 import at.ac.tuwien.sepm.assignment.individual.exception.NotFoundException;
+import at.ac.tuwien.sepm.assignment.individual.exception.VersionConflictException;
 import at.ac.tuwien.sepm.assignment.individual.persistence.HorseDao;
 import at.ac.tuwien.sepm.assignment.individual.type.Sex;
 
 import java.lang.invoke.MethodHandles;
+import java.sql.Connection;
 import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -18,13 +31,39 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import javax.sql.DataSource;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcOperations;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.JdbcUtils;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
 
@@ -34,15 +73,43 @@ public class HorseJdbcDao implements HorseDao {
 
 
   private static final String TABLE_NAME = "horse";
+  private static final String REFERENCE_HORSE = "horse";
+  private static final String REFERENCE_OWNER = "owner";
+  private static final String REFERENCE_DESCENDANT = "descendant";
   private static final String SQL_DELETE = "DELETE FROM " + TABLE_NAME + " WHERE id = ?";
   private static final String SQL_SELECT_ALL = "SELECT * FROM " + TABLE_NAME;
-  private static final String SQL_SELECT_BY_ID = "SELECT * FROM " + TABLE_NAME + " WHERE id = ?";
-  private static final String SQL_SELECT_MINIMAL_BY_ID = "SELECT horse.id, horse.name, horse.date_of_birth, horse.sex "
+  // the lookup queries are package-private, so their query plans can be checked in tests
+  static final String SQL_SELECT_BY_ID = "SELECT * FROM " + TABLE_NAME + " WHERE id = ?";
+  static final String SQL_SELECT_MINIMAL_BY_ID = "SELECT horse.id, horse.name, horse.date_of_birth, horse.sex "
       + " FROM " + TABLE_NAME + " WHERE id = ?";
+  static final String SQL_SELECT_DETAIL_BY_ID = "SELECT horse.*,"
+      + " owner.first_name AS owner_first_name, owner.last_name AS owner_last_name, owner.email AS owner_email,"
+      + " mother.name AS mother_name, mother.date_of_birth AS mother_date_of_birth, mother.sex AS mother_sex,"
+      + " father.name AS father_name, father.date_of_birth AS father_date_of_birth, father.sex AS father_sex"
+      + " FROM " + TABLE_NAME
+      + " LEFT JOIN owner ON owner.id = horse.owner_id"
+      + " LEFT JOIN " + TABLE_NAME + " mother ON mother.id = horse.mother_id"
+      + " LEFT JOIN " + TABLE_NAME + " father ON father.id = horse.father_id"
+      + " WHERE horse.id = ?";
+  private static final String SQL_SELECT_MINIMALS_BY_IDS = "SELECT id, name, date_of_birth, sex FROM " + TABLE_NAME + " WHERE id IN (:ids)";
+  // the owners, and the referenced horses that descend from a horse, take the columns of the horses, with their kind telling them apart
+  static final String SQL_SELECT_REFERENCED_HORSES = "SELECT id, name, date_of_birth, sex, '" + REFERENCE_HORSE + "' AS kind FROM " + TABLE_NAME
+      + " WHERE id IN (:horseIds)";
+  static final String SQL_SELECT_REFERENCED_OWNERS = "SELECT id, NULL AS name, NULL AS date_of_birth, NULL AS sex, '" + REFERENCE_OWNER + "' AS kind"
+      + " FROM owner WHERE id IN (:ownerIds)";
+  static final String SQL_SELECT_REFERENCED_DESCENDANTS = "SELECT id, NULL AS name, NULL AS date_of_birth, NULL AS sex,"
+      + " '" + REFERENCE_DESCENDANT + "' AS kind FROM " + TABLE_NAME + " WHERE id IN (:descendantIds)"
+      + " AND EXISTS (SELECT 1 FROM horse_ancestry WHERE descendant_id = horse.id AND ancestor_id = :ancestorId)";
+  private static final String SQL_SELECT_MINIMALS_BY_REGISTRY_KEYS = "SELECT id, name, date_of_birth, sex, registry_key FROM " + TABLE_NAME
+      + " WHERE registry_key IN (:keys)";
+  private static final String SQL_INSERT_WITH_REGISTRY_KEY = "INSERT INTO " + TABLE_NAME
+      + " (name, description, date_of_birth, sex, owner_id, mother_id, father_id, registry_key) "
+      + " VALUES (?,?,?,?,?,?,?,?)";
   private static final String SQL_INSERT = "INSERT INTO " + TABLE_NAME
       + " (name, description, date_of_birth, sex, owner_id, mother_id, father_id) "
       + " VALUES (?,?,?,?,?,?,?);";
-  private static final String SQL_UPDATE = "UPDATE " + TABLE_NAME
+  // the update answers with the previous state of the horse, which tells whether its parents changed without reading it before
+  private static final String SQL_UPDATE = "SELECT mother_id, father_id, date_of_birth, sex FROM OLD TABLE (UPDATE " + TABLE_NAME
       + " SET name = ?"
       + "  , description = ?"
       + "  , date_of_birth = ?"
@@ -50,73 +117,235 @@ public class HorseJdbcDao implements HorseDao {
       + "  , owner_id = ?"
       + "  , mother_id = ?"
       + "  , father_id = ?"
+      + "  , version = version + 1"
       + " WHERE id = ?";
-  private static final String SQL_SEARCH =
-      " SELECT * FROM " + TABLE_NAME + " WHERE "
-          + " (? IS NULL OR UPPER(name) LIKE UPPER(?)) AND "
-          + " (? IS NULL OR UPPER(description) LIKE UPPER(?)) AND "
-          + " (? IS NULL OR date_of_birth < ?) AND "
-          + " (? IS NULL OR sex = ?) AND "
-          + " (? IS NULL OR owner_id = ?)";
-  private static final String SQL_SELECT_ALL_CHILDREN = "SELECT * FROM " + TABLE_NAME + " WHERE mother_id = ? OR father_id = ?";
-
-  private static final String SQL_SEARCH_EXCLUDE_CLAUSE = " AND id != ?";
-  private static final String SQL_SEARCH_LIMIT_CLAUSE = " LIMIT ?";
-
-  private static final String SQL_LIST_FOR_FAMILY_TREE_OF_HORSE = "WITH RECURSIVE pedigree_horse (id, name, date_of_birth, sex, "
-      + "mother_id, father_id, generation_number) AS "
-      + "(SELECT id, name, date_of_birth, sex, mother_id, father_id, 1 AS generation_number "
-      + " FROM horse WHERE id = ?"
-      + " UNION "
-      + "SELECT horse.id, horse.name, horse.date_of_birth, horse.sex, "
-      + " horse.mother_id, horse.father_id, (generation_number + 1) AS generation_number "
-      + " FROM horse JOIN pedigree_horse "
-      + " ON (horse.id = pedigree_horse.mother_id OR horse.id = pedigree_horse.father_id)"
-      + " WHERE generation_number < ?) "
-      + "SELECT * FROM pedigree_horse";
+  private static final String SQL_UPDATE_END = ")";
+  private static final String SQL_UPDATE_IF_VERSION_END = " AND version = ?)";
+  private static final String SQL_SELECT_VERSION = "SELECT version FROM " + TABLE_NAME + " WHERE id = ?";
+  // the owner is joined in, instead of being looked up with a second query for all owner IDs in the result
+  private static final String SQL_SEARCH_SELECT = "SELECT horse.*,"
+      + " owner.first_name AS owner_first_name, owner.last_name AS owner_last_name, owner.email AS owner_email"
+      + " FROM " + TABLE_NAME
+      + " LEFT JOIN owner ON owner.id = horse.owner_id";
+  private static final String SQL_SEARCH_ORDER_CLAUSE = " ORDER BY name_normalized, horse.id";
+  // package-private, so the query plans of its statements can be checked in tests
+  static final SearchStatement<SearchPredicate> SEARCH = new SearchStatement<>(SearchPredicate.class, SQL_SEARCH_SELECT, SQL_SEARCH_ORDER_CLAUSE);
+  // ordered by the primary key, so the rows are read along its index and never have to be sorted
+  static final String SQL_EXPORT = "SELECT id, name, description, date_of_birth, sex, owner_id, mother_id, father_id FROM " + TABLE_NAME
+      + " ORDER BY id";
+  // a horse has children either as their mother or as their father, each looked up in its (parent, date_of_birth) index,
+  // which has the earliest born children first. "mother_id = ? OR father_id = ?" could only be answered by a table scan
+  // the counts come with every row of the sample, as one row without any if there are no children
+  static final String SQL_SELECT_CHILDREN_SUMMARY = "SELECT counts.children, counts.born_before, sample.id, sample.name, sample.date_of_birth, sample.sex"
+      + " FROM (SELECT SUM(children) AS children, SUM(born_before) AS born_before FROM ("
+      + "SELECT COUNT(*) AS children, COUNT(CASE WHEN date_of_birth < ? THEN 1 END) AS born_before FROM " + TABLE_NAME + " WHERE mother_id = ?"
+      + " UNION ALL"
+      + " SELECT COUNT(*), COUNT(CASE WHEN date_of_birth < ? THEN 1 END) FROM " + TABLE_NAME + " WHERE father_id = ?)) counts"
+      + " LEFT JOIN (SELECT id, name, date_of_birth, sex FROM ("
+      + "(SELECT id, name, date_of_birth, sex FROM " + TABLE_NAME + " WHERE mother_id = ? ORDER BY date_of_birth FETCH FIRST ? ROWS ONLY)"
+      + " UNION ALL"
+      + " (SELECT id, name, date_of_birth, sex FROM " + TABLE_NAME + " WHERE father_id = ? ORDER BY date_of_birth FETCH FIRST ? ROWS ONLY))"
+      + " ORDER BY date_of_birth FETCH FIRST ? ROWS ONLY) sample ON TRUE"
+      + " ORDER BY sample.date_of_birth";
+
+  // H2 only computes the rows of a lazily executed query while they are fetched, instead of buffering the whole result up front
+  private static final String SQL_LAZY_QUERY_EXECUTION_ON = "SET LAZY_QUERY_EXECUTION TRUE";
+  private static final String SQL_LAZY_QUERY_EXECUTION_OFF = "SET LAZY_QUERY_EXECUTION FALSE";
+  private static final int STREAM_FETCH_SIZE = 500;
+
+  // the ancestors come from the closure table, so the family tree is one indexed lookup instead of a recursive join
+  static final String SQL_LIST_FOR_FAMILY_TREE_OF_HORSE = "SELECT id, name, date_of_birth, sex, mother_id, father_id FROM " + TABLE_NAME
+      + " WHERE id = ?"
+      + " UNION ALL"
+      + " SELECT id, name, date_of_birth, sex, mother_id, father_id FROM " + TABLE_NAME
+      + " WHERE id IN (SELECT ancestor_id FROM horse_ancestry WHERE descendant_id = ? AND depth < ?)";
+  // the versions of the same horses, without reading any of the columns the tree is built from
+  static final String SQL_SELECT_FAMILY_TREE_VERSIONS = "SELECT id, version FROM " + TABLE_NAME
+      + " WHERE id = ?"
+      + " UNION ALL"
+      + " SELECT id, version FROM " + TABLE_NAME
+      + " WHERE id IN (SELECT ancestor_id FROM horse_ancestry WHERE descendant_id = ? AND depth < ?)";
+  static final String SQL_SELECT_DETAIL_VERSIONS = "SELECT horse.version,"
+      + " mother.id AS mother_id, mother.version AS mother_version, father.id AS father_id, father.version AS father_version"
+      + " FROM " + TABLE_NAME
+      + " LEFT JOIN " + TABLE_NAME + " mother ON mother.id = horse.mother_id"
+      + " LEFT JOIN " + TABLE_NAME + " father ON father.id = horse.father_id"
+      + " WHERE horse.id = ?";
+  // the same for a set of horses: UNION leaves every common ancestor in once
+  static final String SQL_SELECT_PEDIGREE_OF_HORSES = "SELECT id, name, date_of_birth, sex, mother_id, father_id FROM " + TABLE_NAME
+      + " WHERE id IN (:ids)"
+      + " UNION"
+      + " SELECT id, name, date_of_birth, sex, mother_id, father_id FROM " + TABLE_NAME
+      + " WHERE id IN (SELECT ancestor_id FROM horse_ancestry WHERE descendant_id IN (:ids))";
+
+  // ANCESTRY SQL
+  // the ancestry of a horse is derived from the ancestry of its parents: the parents themselves, and their ancestors one generation further back
+  static final String SQL_INSERT_ANCESTRY_OF = "INSERT INTO horse_ancestry (descendant_id, ancestor_id, depth)"
+      + " SELECT ?, ancestor_id, depth FROM ("
+      + " SELECT mother_id AS ancestor_id, 1 AS depth FROM " + TABLE_NAME + " WHERE id = ? AND mother_id IS NOT NULL"
+      + " UNION SELECT father_id, 1 FROM " + TABLE_NAME + " WHERE id = ? AND father_id IS NOT NULL"
+      + " UNION SELECT ancestry.ancestor_id, ancestry.depth + 1 FROM " + TABLE_NAME
+      + " JOIN horse_ancestry ancestry ON ancestry.descendant_id = horse.mother_id WHERE horse.id = ?"
+      + " UNION SELECT ancestry.ancestor_id, ancestry.depth + 1 FROM " + TABLE_NAME
+      + " JOIN horse_ancestry ancestry ON ancestry.descendant_id = horse.father_id WHERE horse.id = ?)";
+  // the horses whose ancestry is derived anew, selected by the data store, so the statements have the same text however many they are
+  // the table is local to its connection, and TRANSACTIONAL keeps creating it from committing the transaction
+  private static final String SQL_CREATE_REDERIVED = "CREATE LOCAL TEMPORARY TABLE IF NOT EXISTS ancestry_rederived (id BIGINT PRIMARY KEY)"
+      + " TRANSACTIONAL";
+  private static final String SQL_CLEAR_REDERIVED = "DELETE FROM ancestry_rederived";
+  static final String SQL_MARK_DESCENDANTS_REDERIVED = "INSERT INTO ancestry_rederived (id)"
+      + " SELECT DISTINCT descendant_id FROM horse_ancestry WHERE ancestor_id = ?";
+  private static final String SQL_MARK_REDERIVED = "INSERT INTO ancestry_rederived (id) VALUES (?)";
+  private static final String SQL_REDERIVED_IDS = " IN (SELECT id FROM ancestry_rederived)";
+  // the descendants of one generation, each in the closest generation it descends in only, read from the ancestor and depth index
+  private static final String SQL_DESCENDANTS_OF_GENERATION_CONDITION = " WHERE descendant.ancestor_id = ? AND descendant.depth = ?"
+      + " AND NOT EXISTS (SELECT 1 FROM horse_ancestry closer WHERE closer.descendant_id = descendant.descendant_id"
+      + " AND closer.ancestor_id = descendant.ancestor_id AND closer.depth < descendant.depth)";
+  static final String SQL_EXISTS_DESCENDANTS_OF_GENERATION = "SELECT EXISTS (SELECT 1 FROM horse_ancestry descendant"
+      + SQL_DESCENDANTS_OF_GENERATION_CONDITION + ")";
+  // ordered like the index, whose first two columns are fixed by the condition, so the page is read in order and not sorted
+  static final String SQL_SELECT_DESCENDANTS_OF_GENERATION = "SELECT horse.id, horse.name, horse.date_of_birth, horse.sex,"
+      + " horse.mother_id, horse.father_id, descendant.depth AS generation"
+      + " FROM horse_ancestry descendant JOIN " + TABLE_NAME + " ON horse.id = descendant.descendant_id"
+      + SQL_DESCENDANTS_OF_GENERATION_CONDITION
+      + " ORDER BY descendant.ancestor_id, descendant.depth, descendant.descendant_id OFFSET ? ROWS FETCH NEXT ? ROWS ONLY";
+  // the parents of a horse that are an ancestor of the horse at the end of a path, with the given number of generations in between
+  static final String SQL_SELECT_PARENTS_ON_PATH = "SELECT horse.id, horse.name, horse.date_of_birth, horse.sex, horse.mother_id, horse.father_id"
+      + " FROM " + TABLE_NAME + " JOIN horse_ancestry ancestry ON ancestry.descendant_id = horse.id"
+      + " WHERE horse.id IN (?, ?) AND ancestry.ancestor_id = ? AND ancestry.depth = ?";
+  static final String SQL_IS_ANCESTOR = "SELECT EXISTS (SELECT 1 FROM horse_ancestry WHERE descendant_id = ? AND ancestor_id = ?)";
+  // the lines of both horses are read by descendant from the stored ancestry, each with the horse itself at depth 0
+  static final String SQL_SELECT_COMMON_ANCESTORS = "SELECT first_line.ancestor_id, MIN(first_line.depth) AS first_depth,"
+      + " MIN(second_line.depth) AS second_depth"
+      + " FROM (SELECT CAST(? AS BIGINT) AS ancestor_id, 0 AS depth"
+      + " UNION ALL SELECT ancestor_id, depth FROM horse_ancestry WHERE descendant_id = ?) first_line"
+      + " JOIN (SELECT CAST(? AS BIGINT) AS ancestor_id, 0 AS depth"
+      + " UNION ALL SELECT ancestor_id, depth FROM horse_ancestry WHERE descendant_id = ?) second_line"
+      + " ON second_line.ancestor_id = first_line.ancestor_id"
+      + " GROUP BY first_line.ancestor_id ORDER BY MIN(first_line.depth) + MIN(second_line.depth), first_line.ancestor_id";
+  static final String SQL_SELECT_ANCESTOR_IDS_OF_HORSES = "SELECT DISTINCT ancestor_id FROM horse_ancestry WHERE descendant_id IN (:ids)";
+  private static final String SQL_DELETE_ALL_ANCESTRY = "DELETE FROM horse_ancestry";
+  private static final String SQL_INSERT_PARENT_ANCESTRY = "INSERT INTO horse_ancestry (descendant_id, ancestor_id, depth)"
+      + " SELECT id, mother_id, 1 FROM " + TABLE_NAME + " WHERE mother_id IS NOT NULL"
+      + " UNION SELECT id, father_id, 1 FROM " + TABLE_NAME + " WHERE father_id IS NOT NULL";
+  // extends every ancestry row of the given depth by the parents of its ancestor
+  private static final String SQL_INSERT_NEXT_GENERATION_ANCESTRY = "INSERT INTO horse_ancestry (descendant_id, ancestor_id, depth)"
+      + " SELECT DISTINCT ancestry.descendant_id, parent.ancestor_id, ancestry.depth + 1"
+      + " FROM horse_ancestry ancestry JOIN horse_ancestry parent ON parent.descendant_id = ancestry.ancestor_id AND parent.depth = 1"
+      + " WHERE ancestry.depth = :depth";
+  // the same for the ancestry of the rederived horses only, whose ancestry is derived anew when the parents of some of them changed
+  static final String SQL_DELETE_ANCESTRY_OF_REDERIVED = "DELETE FROM horse_ancestry WHERE descendant_id" + SQL_REDERIVED_IDS;
+  static final String SQL_INSERT_PARENT_ANCESTRY_OF_REDERIVED = "INSERT INTO horse_ancestry (descendant_id, ancestor_id, depth)"
+      + " SELECT id, mother_id, 1 FROM " + TABLE_NAME + " WHERE id" + SQL_REDERIVED_IDS + " AND mother_id IS NOT NULL"
+      + " UNION SELECT id, father_id, 1 FROM " + TABLE_NAME + " WHERE id" + SQL_REDERIVED_IDS + " AND father_id IS NOT NULL";
+  static final String SQL_INSERT_NEXT_GENERATION_ANCESTRY_OF_REDERIVED = SQL_INSERT_NEXT_GENERATION_ANCESTRY
+      + " AND ancestry.descendant_id" + SQL_REDERIVED_IDS;
+  private static final String SQL_EXPECTED_ANCESTRY = "SELECT id AS descendant_id, mother_id AS ancestor_id, 1 AS depth FROM " + TABLE_NAME
+      + " WHERE mother_id IS NOT NULL"
+      + " UNION SELECT id, father_id, 1 FROM " + TABLE_NAME + " WHERE father_id IS NOT NULL"
+      + " UNION SELECT horse.id, ancestry.ancestor_id, ancestry.depth + 1 FROM " + TABLE_NAME
+      + " JOIN horse_ancestry ancestry ON ancestry.descendant_id = horse.mother_id"
+      + " UNION SELECT horse.id, ancestry.ancestor_id, ancestry.depth + 1 FROM " + TABLE_NAME
+      + " JOIN horse_ancestry ancestry ON ancestry.descendant_id = horse.father_id";
+  private static final String SQL_STORED_ANCESTRY = "SELECT descendant_id, ancestor_id, depth FROM horse_ancestry";
+  // the stored rows of every horse have to be exactly the ones derived from the stored rows of its parents
+  private static final String SQL_SELECT_INCONSISTENT_ANCESTRY_IDS = "SELECT DISTINCT descendant_id FROM ("
+      + "((" + SQL_EXPECTED_ANCESTRY + ") EXCEPT (" + SQL_STORED_ANCESTRY + "))"
+      + " UNION ALL ((" + SQL_STORED_ANCESTRY + ") EXCEPT (" + SQL_EXPECTED_ANCESTRY + "))"
+      + ") ORDER BY descendant_id";
+  private static final String SQL_COUNT = "SELECT COUNT(*) FROM " + TABLE_NAME;
 
   private final JdbcTemplate jdbcTemplate;
+  private final NamedParameterJdbcTemplate jdbcNamed;
 
   public HorseJdbcDao(
-      JdbcTemplate jdbcTemplate) {
+      JdbcTemplate jdbcTemplate,
+      NamedParameterJdbcTemplate jdbcNamed) {
     this.jdbcTemplate = jdbcTemplate;
+    this.jdbcNamed = jdbcNamed;
   }
 
   @Override
-  public List<Horse> search(HorseSearchDto searchParameters) {
+  public List<HorseWithOwner> search(HorseSearchDto searchParameters) {
     LOG.trace("search horse. params: {}", searchParameters);
-    var args = new ArrayList<>();
-    args.add((searchParameters.name() != null) ? '%' + searchParameters.name() + '%' : null);
-    args.add((searchParameters.name() != null) ? '%' + searchParameters.name() + '%' : null);
-    args.add((searchParameters.description() != null) ? '%' + searchParameters.description() + '%' : null);
-    args.add((searchParameters.description() != null) ? '%' + searchParameters.description() + '%' : null);
-    args.add(searchParameters.bornBefore());
-    args.add(searchParameters.bornBefore());
-    args.add(searchParameters.sex() != null ? searchParameters.sex().toString() : null);
-    args.add(searchParameters.sex() != null ? searchParameters.sex().toString() : null);
-    args.add(searchParameters.ownerId());
-    args.add(searchParameters.ownerId());
-
-    String query = SQL_SEARCH;
-    var excludeThisId = searchParameters.idOfHorseToBeExcluded();
-    if (excludeThisId != null) {
-      query += SQL_SEARCH_EXCLUDE_CLAUSE;
-      args.add(excludeThisId);
-    }
-
-    var maxAmount = searchParameters.limit();
-    if (maxAmount != null) {
-      query += SQL_SEARCH_LIMIT_CLAUSE;
-      args.add(maxAmount);
-    }
-
+    SearchStatement.Query query = buildSearchQuery(searchParameters);
     try {
-      return jdbcTemplate.query(query, this::mapRow, args.toArray());
+      return jdbcTemplate.query(query.sql(), this::mapRowWithOwner, query.args());
     } catch (DataAccessException dae) {
       throw new FatalException("Error while querying all horses.", dae);
     }
   }
 
+  @Override
+  public Stream<HorseWithOwner> searchStream(HorseSearchDto searchParameters) {
+    LOG.trace("searchStream horse. params: {}", searchParameters);
+    SearchStatement.Query query = buildSearchQuery(searchParameters);
+    return stream(query.sql(), query.args(), this::mapRowWithOwner);
+  }
+
+  @Override
+  public Stream<Horse> exportStream() {
+    LOG.trace("exportStream horse");
+    return stream(SQL_EXPORT, new Object[0], this::mapRow);
+  }
+
+  /**
+   * Executes a query lazily on a forward-only cursor, and streams its rows as they are fetched.
+   */
+  private <T> Stream<T> stream(String sql, Object[] args, RowMapper<T> rowMapper) {
+    DataSource dataSource = jdbcTemplate.getDataSource();
+    Connection connection = DataSourceUtils.getConnection(dataSource);
+    PreparedStatement stmt = null;
+    try {
+      setLazyQueryExecution(connection, true);
+      stmt = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+      stmt.setFetchSize(STREAM_FETCH_SIZE);
+      for (int i = 0; i < args.length; i++) {
+        stmt.setObject(i + 1, args[i]);
+      }
+      ResultSet result = stmt.executeQuery();
+      return new ResultSetStream<>(connection, stmt, result, dataSource, rowMapper).stream();
+    } catch (SQLException e) {
+      JdbcUtils.closeStatement(stmt);
+      releaseStreamConnection(connection, dataSource);
+      throw new FatalException("Error while streaming horses.", e);
+    }
+  }
+
+  // package-private, so the query plans of searches can be checked in tests
+  static SearchStatement.Query buildSearchQuery(HorseSearchDto searchParameters) {
+    String name = searchParameters.name() != null ? '%' + searchParameters.name() + '%' : null;
+    String description = searchParameters.description() != null ? '%' + searchParameters.description() + '%' : null;
+    var query = SEARCH.builder()
+        .where(SearchPredicate.NAME, name)
+        .where(SearchPredicate.DESCRIPTION, description)
+        .where(SearchPredicate.BORN_BEFORE, searchParameters.bornBefore())
+        .where(SearchPredicate.SEX, searchParameters.sex() != null ? searchParameters.sex().toString() : null)
+        .where(SearchPredicate.OWNER, searchParameters.ownerId())
+        .where(SearchPredicate.EXCLUDED, searchParameters.idOfHorseToBeExcluded())
+        .limit(searchParameters.limit());
+    if (searchParameters.cursor() != null) {
+      var cursor = HorseSearchCursor.decode(searchParameters.cursor());
+      query.where(SearchPredicate.AFTER_CURSOR, cursor, cursor.name(), cursor.name(), cursor.id());
+    }
+    return query.build();
+  }
+
+  private static void setLazyQueryExecution(Connection connection, boolean lazy) throws SQLException {
+    try (var stmt = connection.createStatement()) {
+      stmt.execute(lazy ? SQL_LAZY_QUERY_EXECUTION_ON : SQL_LAZY_QUERY_EXECUTION_OFF);
+    }
+  }
+
+  private static void releaseStreamConnection(Connection connection, DataSource dataSource) {
+    try {
+      setLazyQueryExecution(connection, false);
+    } catch (SQLException e) {
+      LOG.warn("Could not reset lazy query execution of streaming connection", e);
+    }
+    DataSourceUtils.releaseConnection(connection, dataSource);
+  }
+
   @Override
   public List<Horse> getAll() {
     LOG.trace("horse: getAll()");
@@ -149,6 +378,25 @@ public class HorseJdbcDao implements HorseDao {
 
   }
 
+  @Override
+  public HorseDetail getDetailById(long id) throws NotFoundException {
+    LOG.trace("horse: getDetailById({})", id);
+    List<HorseDetail> horses;
+    try {
+      horses = jdbcTemplate.query(SQL_SELECT_DETAIL_BY_ID, this::mapRowDetail, id);
+    } catch (DataAccessException dae) {
+      throw new FatalException("Error while querying a horse with its owner and parents by id.", dae);
+    }
+
+    if (horses.isEmpty()) {
+      throw new NotFoundException("No horse with ID %d found".formatted(id));
+    }
+    if (horses.size() > 1) {
+      throw new FatalException("Too many horses with ID %d found".formatted(id));
+    }
+    return horses.get(0);
+  }
+
   @Override
   public HorseMinimal getHorseMinimalById(Long id) {
     LOG.trace("horse: getMinimalById({})", id);
@@ -173,6 +421,74 @@ public class HorseJdbcDao implements HorseDao {
     }
   }
 
+  @Override
+  public Collection<HorseMinimal> getHorseMinimalsByIds(Collection<Long> ids) {
+    LOG.trace("horse: getHorseMinimalsByIds({})", ids);
+    try {
+      List<HorseMinimal> horses = new ArrayList<>();
+      for (List<Long> chunk : InListChunks.of(ids)) {
+        horses.addAll(jdbcNamed.query(SQL_SELECT_MINIMALS_BY_IDS, Collections.singletonMap("ids", chunk), this::mapRowMinimal));
+      }
+      return horses;
+    } catch (DataAccessException dae) {
+      throw new FatalException("Error while getting minimal horses by ids", dae);
+    }
+  }
+
+  @Override
+  public HorseReferences getReferences(Collection<Long> horseIds, Collection<Long> ownerIds, Long ancestorId, Collection<Long> descendantIds) {
+    LOG.trace("horse: getReferences({}, {}, {}, {})", horseIds, ownerIds, ancestorId, descendantIds);
+    List<String> selects = new ArrayList<>();
+    Map<String, Object> parameters = new HashMap<>();
+    if (!horseIds.isEmpty()) {
+      selects.add(SQL_SELECT_REFERENCED_HORSES);
+      parameters.put("horseIds", horseIds);
+    }
+    if (!ownerIds.isEmpty()) {
+      selects.add(SQL_SELECT_REFERENCED_OWNERS);
+      parameters.put("ownerIds", ownerIds);
+    }
+    if (ancestorId != null && !descendantIds.isEmpty()) {
+      selects.add(SQL_SELECT_REFERENCED_DESCENDANTS);
+      parameters.put("ancestorId", ancestorId);
+      parameters.put("descendantIds", descendantIds);
+    }
+    if (selects.isEmpty()) {
+      return new HorseReferences();
+    }
+    List<HorseMinimal> horses = new ArrayList<>();
+    Set<Long> owners = new HashSet<>();
+    Set<Long> descendants = new HashSet<>();
+    try {
+      jdbcNamed.query(String.join(" UNION ALL ", selects), parameters, (RowCallbackHandler) result -> {
+        switch (result.getString("kind")) {
+          case REFERENCE_HORSE -> horses.add(mapRowMinimal(result, result.getRow()));
+          case REFERENCE_OWNER -> owners.add(result.getLong("id"));
+          case REFERENCE_DESCENDANT -> descendants.add(result.getLong("id"));
+          default -> throw new FatalException("Unknown kind of reference: " + result.getString("kind"));
+        }
+      });
+    } catch (DataAccessException dae) {
+      throw new FatalException("Error while getting referenced horses and owners", dae);
+    }
+    return new HorseReferences().setHorses(horses).setOwnerIds(owners).setDescendantIds(descendants);
+  }
+
+  @Override
+  public Map<String, HorseMinimal> getHorseMinimalsByRegistryKeys(Collection<String> keys) {
+    LOG.trace("horse: getHorseMinimalsByRegistryKeys({})", keys);
+    Map<String, HorseMinimal> horses = new HashMap<>();
+    try {
+      for (List<String> chunk : InListChunks.of(keys)) {
+        jdbcNamed.query(SQL_SELECT_MINIMALS_BY_REGISTRY_KEYS, Collections.singletonMap("keys", chunk),
+            (RowCallbackHandler) result -> horses.put(result.getString("registry_key"), mapRowMinimal(result, result.getRow())));
+      }
+    } catch (DataAccessException dae) {
+      throw new FatalException("Error while getting minimal horses by registry keys", dae);
+    }
+    return horses;
+  }
+
   @Override
   public Horse create(HorseDetailDto toCreate) {
     LOG.trace("create: {}", toCreate);
@@ -193,8 +509,9 @@ public class HorseJdbcDao implements HorseDao {
         return stmt;
       }, keyHolder);
 
-      return new Horse()
-          .setId(((Number) keyHolder.getKeys().get("id")).longValue())
+      long id = ((Number) keyHolder.getKeys().get("id")).longValue();
+      Horse horse = new Horse()
+          .setId(id)
           .setName(toCreate.name())
           .setDescription(toCreate.description())
           .setDateOfBirth(toCreate.dateOfBirth())
@@ -203,16 +520,136 @@ public class HorseJdbcDao implements HorseDao {
           .setMotherId(toCreate.motherId())
           .setFatherId(toCreate.fatherId())
           ;
+      insertAncestryOf(id);
+      return horse;
     } catch (DataAccessException dae) {
       throw new FatalException("Error while adding horse.", dae);
     }
   }
 
   @Override
-  public Horse update(Long id, HorseDetailDto horse) throws NotFoundException {
-    LOG.trace("update({})", horse);
+  public List<Horse> createBatch(List<HorseBatchCreateDto> toCreate) {
+    LOG.trace("createBatch: {} horses", toCreate.size());
+    return insertInRounds(toCreate, false);
+  }
+
+  @Override
+  public List<Horse> importBatch(List<HorseBatchCreateDto> toImport) {
+    LOG.trace("importBatch: {} horses", toImport.size());
+    return insertInRounds(toImport, true);
+  }
+
+  /**
+   * Inserts the horses of a batch, each round the ones whose parents within the batch are inserted already.
+   *
+   * @param registryKeys whether the keys are registry keys, which are stored,
+   *                     and may refer to horses that were imported before the batch
+   */
+  private List<Horse> insertInRounds(List<HorseBatchCreateDto> toCreate, boolean registryKeys) {
+    Horse[] created = new Horse[toCreate.size()];
+    Map<String, Long> idsByKey = new HashMap<>();
+    if (registryKeys) {
+      Set<String> batchKeys = toCreate.stream().map(HorseBatchCreateDto::key).filter(Objects::nonNull).collect(Collectors.toSet());
+      Set<String> storedParentKeys = new HashSet<>();
+      for (HorseBatchCreateDto horse : toCreate) {
+        for (String parentKey : new String[] {horse.motherKey(), horse.fatherKey()}) {
+          if (parentKey != null && !batchKeys.contains(parentKey)) {
+            storedParentKeys.add(parentKey);
+          }
+        }
+      }
+      if (!storedParentKeys.isEmpty()) {
+        getHorseMinimalsByRegistryKeys(storedParentKeys).forEach((key, horse) -> idsByKey.put(key, horse.getId()));
+      }
+    }
+    List<Integer> pending = IntStream.range(0, toCreate.size()).boxed().toList();
+    // each round inserts the horses whose parents within the batch have already been inserted
+    while (!pending.isEmpty()) {
+      List<Integer> ready = new ArrayList<>();
+      List<Integer> waiting = new ArrayList<>();
+      for (int index : pending) {
+        HorseBatchCreateDto horse = toCreate.get(index);
+        if (isInsertedOrNone(horse.motherKey(), idsByKey) && isInsertedOrNone(horse.fatherKey(), idsByKey)) {
+          ready.add(index);
+        } else {
+          waiting.add(index);
+        }
+      }
+      if (ready.isEmpty()) {
+        throw new FatalException("Parent references within the batch of horses form a cycle");
+      }
+      insertBatch(toCreate, ready, idsByKey, registryKeys, created);
+      pending = waiting;
+    }
+    return Arrays.asList(created);
+  }
+
+  private static boolean isInsertedOrNone(String key, Map<String, Long> idsByKey) {
+    return key == null || idsByKey.containsKey(key);
+  }
+
+  private void insertBatch(List<HorseBatchCreateDto> toCreate, List<Integer> indices, Map<String, Long> idsByKey, boolean registryKeys,
+                           Horse[] created) {
+    LOG.trace("insertBatch: {} horses", indices.size());
     try {
-      int updated = jdbcTemplate.update(SQL_UPDATE,
+      jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+        try (PreparedStatement stmt = connection.prepareStatement(SQL_INSERT_WITH_REGISTRY_KEY, Statement.RETURN_GENERATED_KEYS)) {
+          for (int index : indices) {
+            HorseBatchCreateDto horse = toCreate.get(index);
+            Horse entity = new Horse()
+                .setName(horse.name())
+                .setDescription(horse.description())
+                .setDateOfBirth(horse.dateOfBirth())
+                .setSex(horse.sex())
+                .setOwnerId(horse.ownerId())
+                .setMotherId(horse.motherKey() != null ? idsByKey.get(horse.motherKey()) : horse.motherId())
+                .setFatherId(horse.fatherKey() != null ? idsByKey.get(horse.fatherKey()) : horse.fatherId());
+            stmt.setString(1, entity.getName());
+            stmt.setString(2, entity.getDescription());
+            stmt.setObject(3, entity.getDateOfBirth());
+            stmt.setString(4, entity.getSex().toString());
+            stmt.setObject(5, entity.getOwnerId());
+            stmt.setObject(6, entity.getMotherId());
+            stmt.setObject(7, entity.getFatherId());
+            stmt.setString(8, registryKeys ? horse.key() : null);
+            stmt.addBatch();
+            created[index] = entity;
+          }
+          stmt.executeBatch();
+          try (ResultSet keys = stmt.getGeneratedKeys()) {
+            for (int index : indices) {
+              if (!keys.next()) {
+                throw new FatalException("Missing generated key of batch inserted horse");
+              }
+              created[index].setId(keys.getLong(1));
+              String key = toCreate.get(index).key();
+              if (key != null) {
+                idsByKey.put(key, created[index].getId());
+              }
+            }
+          }
+        }
+        // the parents of the round are inserted already, together with their ancestry
+        try (PreparedStatement stmt = connection.prepareStatement(SQL_INSERT_ANCESTRY_OF)) {
+          for (int index : indices) {
+            setAncestryOfParameters(stmt, created[index].getId());
+            stmt.addBatch();
+          }
+          stmt.executeBatch();
+        }
+        return null;
+      });
+    } catch (DataAccessException dae) {
+      throw new FatalException("Error while adding batch of horses.", dae);
+    }
+  }
+
+  @Override
+  public Horse update(Long id, HorseDetailDto horse, Long expectedVersion) throws NotFoundException, VersionConflictException {
+    LOG.trace("update({}, version {})", horse, expectedVersion);
+    List<Horse> previous;
+    try {
+      List<Object> parameters = new ArrayList<>(Arrays.asList(
           horse.name(),
           horse.description(),
           horse.dateOfBirth(),
@@ -220,21 +657,31 @@ public class HorseJdbcDao implements HorseDao {
           horse.ownerId(),
           horse.motherId(),
           horse.fatherId(),
-          id);
-      if (updated == 0) {
-        throw new NotFoundException("Could not update horse with ID " + horse.id() + ", because it does not exist");
+          id));
+      if (expectedVersion != null) {
+        parameters.add(expectedVersion);
       }
-
-      return new Horse()
-          .setId(id)
-          .setName(horse.name())
-          .setDescription(horse.description())
-          .setDateOfBirth(horse.dateOfBirth())
-          .setSex(horse.sex())
-          .setOwnerId(horse.ownerId())
-          .setMotherId(horse.motherId())
-          .setFatherId(horse.fatherId())
-          ;
+      previous = jdbcTemplate.query(SQL_UPDATE + (expectedVersion == null ? SQL_UPDATE_END : SQL_UPDATE_IF_VERSION_END),
+          (result, rowNum) -> new Horse()
+              .setId(id)
+              .setDateOfBirth(result.getObject("date_of_birth", LocalDate.class))
+              .setSex(Sex.valueOf(result.getString("sex")))
+              .setMotherId(result.getObject("mother_id", Long.class))
+              .setFatherId(result.getObject("father_id", Long.class)),
+          parameters.toArray());
+      if (previous.isEmpty()) {
+        // only a failed update tells a missing horse from one of another version apart
+        List<Long> versions = jdbcTemplate.queryForList(SQL_SELECT_VERSION, Long.class, id);
+        if (versions.isEmpty()) {
+          throw new NotFoundException("Could not update horse with ID " + id + ", because it does not exist");
+        }
+        throw new VersionConflictException("Horse with ID %d was changed: it is at version %d, not %d".formatted(id, versions.get(0), expectedVersion));
+      }
+      Horse old = previous.get(0);
+      if (!Objects.equals(old.getMotherId(), horse.motherId()) || !Objects.equals(old.getFatherId(), horse.fatherId())) {
+        rebuildAncestryFrom(id);
+      }
+      return old;
     } catch (DataAccessException dae) {
       throw new FatalException("Error while trying to update horses.");
     }
@@ -245,10 +692,15 @@ public class HorseJdbcDao implements HorseDao {
     LOG.trace("delete horse with id {}", id);
 
     try {
-      int noOfUpdates = jdbcTemplate.update(connection -> {
-        PreparedStatement stmt = connection.prepareStatement(SQL_DELETE, Statement.RETURN_GENERATED_KEYS);
-        stmt.setLong(1, id);
-        return stmt;
+      // the rows of the horse itself are deleted with it, but its descendants lose the ancestors they had through it,
+      // so they are marked before the rows telling them apart are gone
+      int noOfUpdates = onOneConnection(named -> {
+        markForRederivation(named, id, false);
+        int deleted = named.getJdbcOperations().update(SQL_DELETE, id);
+        if (deleted > 0) {
+          rederiveMarkedAncestry(named);
+        }
+        return deleted;
       });
 
       if (noOfUpdates < 1) {
@@ -260,20 +712,29 @@ public class HorseJdbcDao implements HorseDao {
   }
 
   @Override
-  public List<HorseMinimal> getChildrenOf(Long horseId) {
-    LOG.trace("getChildrenOf id={}", horseId);
+  public HorseChildrenSummary getChildrenSummary(long horseId, LocalDate bornBefore, int sampleSize) {
+    LOG.trace("getChildrenSummary({}, {}, {})", horseId, bornBefore, sampleSize);
+    var summary = new HorseChildrenSummary();
+    List<HorseMinimal> earliestBorn = new ArrayList<>();
     try {
-      return jdbcTemplate.query(SQL_SELECT_ALL_CHILDREN, this::mapRowMinimal, horseId, horseId);
+      jdbcTemplate.query(SQL_SELECT_CHILDREN_SUMMARY, (RowCallbackHandler) result -> {
+        summary.setCount(result.getLong("children")).setBornBeforeCount(result.getLong("born_before"));
+        if (result.getObject("id") != null) {
+          earliestBorn.add(mapRowMinimal(result, result.getRow()));
+        }
+      }, bornBefore, horseId, bornBefore, horseId, horseId, sampleSize, horseId, sampleSize, sampleSize);
     } catch (DataAccessException dae) {
-      throw new FatalException("Could not get children of mother with id %d".formatted(horseId), dae);
+      throw new FatalException("Could not get children of horse with id %d".formatted(horseId), dae);
     }
+    return summary.setEarliestBorn(earliestBorn);
   }
 
   @Override
   public List<Horse> getListForFamilyTreeOfHorse(FamilyTreeQueryParamsDto queryParams) throws NotFoundException {
     LOG.trace("getListForFamilyTreeOfHorse. Params: {}", queryParams);
     try {
-      List<Horse> list = jdbcTemplate.query(SQL_LIST_FOR_FAMILY_TREE_OF_HORSE, this::mapRowFamilyTree, queryParams.horseId(), queryParams.limit());
+      List<Horse> list = jdbcTemplate.query(SQL_LIST_FOR_FAMILY_TREE_OF_HORSE, this::mapRowFamilyTree,
+          queryParams.horseId(), queryParams.horseId(), queryParams.limit());
       if (list.isEmpty()) {
         throw new NotFoundException(String.format("Could not find horse with id %s", queryParams.horseId()));
       }
@@ -283,6 +744,243 @@ public class HorseJdbcDao implements HorseDao {
     }
   }
 
+  @Override
+  public List<HorseVersion> getDetailVersions(long id) throws NotFoundException {
+    LOG.trace("getDetailVersions({})", id);
+    List<List<HorseVersion>> rows;
+    try {
+      rows = jdbcTemplate.query(SQL_SELECT_DETAIL_VERSIONS, (result, rowNum) -> {
+        List<HorseVersion> versions = new ArrayList<>();
+        versions.add(new HorseVersion().setId(id).setVersion(result.getLong("version")));
+        for (String parent : List.of("mother", "father")) {
+          Long parentId = result.getObject(parent + "_id", Long.class);
+          if (parentId != null) {
+            versions.add(new HorseVersion().setId(parentId).setVersion(result.getLong(parent + "_version")));
+          }
+        }
+        return versions;
+      }, id);
+    } catch (DataAccessException dae) {
+      throw new FatalException("Error while querying the versions of a horse and its parents.", dae);
+    }
+    if (rows.isEmpty()) {
+      throw new NotFoundException("No horse with ID %d found".formatted(id));
+    }
+    return rows.get(0);
+  }
+
+  @Override
+  public List<HorseVersion> getFamilyTreeVersions(FamilyTreeQueryParamsDto queryParams) throws NotFoundException {
+    LOG.trace("getFamilyTreeVersions({})", queryParams);
+    try {
+      List<HorseVersion> versions = jdbcTemplate.query(SQL_SELECT_FAMILY_TREE_VERSIONS,
+          (result, rowNum) -> new HorseVersion().setId(result.getLong("id")).setVersion(result.getLong("version")),
+          queryParams.horseId(), queryParams.horseId(), queryParams.limit());
+      if (versions.isEmpty()) {
+        throw new NotFoundException(String.format("Could not find horse with id %s", queryParams.horseId()));
+      }
+      return versions;
+    } catch (DataAccessException e) {
+      throw new FatalException("Error when getting versions of the horses of a family tree.", e);
+    }
+  }
+
+  @Override
+  public List<Horse> getPedigreeOfHorses(Collection<Long> ids) {
+    LOG.trace("getPedigreeOfHorses of {} horses", ids.size());
+    try {
+      return jdbcNamed.query(SQL_SELECT_PEDIGREE_OF_HORSES, Collections.singletonMap("ids", ids), this::mapRowFamilyTree);
+    } catch (DataAccessException dae) {
+      throw new FatalException("Error when getting pedigree of horses", dae);
+    }
+  }
+
+  @Override
+  public List<CommonAncestor> getClosestCommonAncestors(long firstId, long secondId) {
+    LOG.trace("getClosestCommonAncestors({}, {})", firstId, secondId);
+    try {
+      List<CommonAncestor> common = jdbcTemplate.query(SQL_SELECT_COMMON_ANCESTORS, this::mapRowCommonAncestor,
+          firstId, firstId, secondId, secondId);
+      if (common.isEmpty()) {
+        return common;
+      }
+      // a common ancestor of another common ancestor is further away on every path through it
+      Set<Long> older = new HashSet<>(jdbcNamed.queryForList(SQL_SELECT_ANCESTOR_IDS_OF_HORSES,
+          Collections.singletonMap("ids", common.stream().map(CommonAncestor::getAncestorId).toList()), Long.class));
+      return common.stream().filter(ancestor -> !older.contains(ancestor.getAncestorId())).toList();
+    } catch (DataAccessException dae) {
+      throw new FatalException("Error when getting common ancestors of horses %d and %d".formatted(firstId, secondId), dae);
+    }
+  }
+
+  @Override
+  public List<Horse> getPathToAncestor(Horse descendant, long ancestorId, int depth) {
+    LOG.trace("getPathToAncestor({}, {}, {})", descendant.getId(), ancestorId, depth);
+    List<Horse> path = new ArrayList<>(depth + 1);
+    path.add(descendant);
+    try {
+      Horse horse = descendant;
+      for (int remaining = depth - 1; remaining > 0; remaining--) {
+        List<Horse> parents = jdbcTemplate.query(SQL_SELECT_PARENTS_ON_PATH, this::mapRowFamilyTree,
+            horse.getMotherId(), horse.getFatherId(), ancestorId, remaining);
+        if (parents.isEmpty()) {
+          throw new FatalException("Horse %d is no ancestor of horse %d in generation %d".formatted(ancestorId, descendant.getId(), depth));
+        }
+        // along the mother, if both parents are on a shortest path
+        final Long motherId = horse.getMotherId();
+        horse = parents.stream().filter(parent -> parent.getId().equals(motherId)).findFirst().orElse(parents.get(0));
+        path.add(horse);
+      }
+      if (depth > 0) {
+        path.addAll(jdbcTemplate.query(SQL_SELECT_BY_ID, this::mapRow, ancestorId));
+      }
+      return path;
+    } catch (DataAccessException dae) {
+      throw new FatalException("Error when getting path from horse %d to ancestor %d".formatted(descendant.getId(), ancestorId), dae);
+    }
+  }
+
+  @Override
+  public List<HorseDescendant> getDescendants(DescendantsQueryParamsDto queryParams) throws NotFoundException {
+    LOG.trace("getDescendants({})", queryParams);
+    int firstGeneration = queryParams.generation() != null ? queryParams.generation() : 1;
+    int lastGeneration = queryParams.generation() != null ? queryParams.generation() : queryParams.depth();
+    try {
+      List<HorseDescendant> descendants = new ArrayList<>();
+      for (int generation = firstGeneration; generation <= lastGeneration; generation++) {
+        // one more than the page, which tells whether there are more
+        List<HorseDescendant> page = jdbcTemplate.query(SQL_SELECT_DESCENDANTS_OF_GENERATION, this::mapRowDescendant,
+            queryParams.horseId(), generation, queryParams.offset(), queryParams.limit() + 1);
+        // every horse of a generation descends from one of the generation before, so there are none after an empty one
+        if (page.isEmpty()) {
+          if (queryParams.offset() == 0 || !Boolean.TRUE.equals(jdbcTemplate.queryForObject(SQL_EXISTS_DESCENDANTS_OF_GENERATION, Boolean.class,
+              queryParams.horseId(), generation))) {
+            break;
+          }
+          continue;
+        }
+        boolean more = page.size() > queryParams.limit();
+        for (HorseDescendant descendant : more ? page.subList(0, queryParams.limit()) : page) {
+          descendants.add(descendant.setMoreInGeneration(more));
+        }
+      }
+      if (descendants.isEmpty() && jdbcTemplate.query(SQL_SELECT_BY_ID, this::mapRow, queryParams.horseId()).isEmpty()) {
+        throw new NotFoundException("Could not find horse with id %d".formatted(queryParams.horseId()));
+      }
+      return descendants;
+    } catch (DataAccessException dae) {
+      throw new FatalException("Error when getting descendants of horse", dae);
+    }
+  }
+
+  @Override
+  public boolean isAncestor(long ancestorId, long descendantId) {
+    LOG.trace("isAncestor({}, {})", ancestorId, descendantId);
+    try {
+      return Boolean.TRUE.equals(jdbcTemplate.queryForObject(SQL_IS_ANCESTOR, Boolean.class, descendantId, ancestorId));
+    } catch (DataAccessException dae) {
+      throw new FatalException("Error when checking ancestry of horse", dae);
+    }
+  }
+
+  @Override
+  public void rebuildAncestry() {
+    LOG.trace("rebuildAncestry()");
+    try {
+      jdbcTemplate.update(SQL_DELETE_ALL_ANCESTRY);
+      insertAncestryByGeneration(jdbcNamed, SQL_INSERT_PARENT_ANCESTRY, SQL_INSERT_NEXT_GENERATION_ANCESTRY, new HashMap<>());
+    } catch (DataAccessException dae) {
+      throw new FatalException("Error when rebuilding ancestry of horses", dae);
+    }
+  }
+
+  @Override
+  public List<Long> getIdsWithInconsistentAncestry() {
+    LOG.trace("getIdsWithInconsistentAncestry()");
+    try {
+      return jdbcTemplate.queryForList(SQL_SELECT_INCONSISTENT_ANCESTRY_IDS, Long.class);
+    } catch (DataAccessException dae) {
+      throw new FatalException("Error when checking ancestry of horses", dae);
+    }
+  }
+
+  /**
+   * Derives the ancestry of the horse from its changed parents anew, together with the ancestry of all its descendants.
+   */
+  private void rebuildAncestryFrom(long id) {
+    onOneConnection(named -> {
+      markForRederivation(named, id, true);
+      rederiveMarkedAncestry(named);
+      return null;
+    });
+  }
+
+  /**
+   * Runs statements on one connection, which the table of the rederived horses is local to.
+   * Within a transaction, that is the connection of the transaction.
+   */
+  private <T> T onOneConnection(Function<NamedParameterJdbcTemplate, T> action) {
+    return jdbcTemplate.execute((ConnectionCallback<T>) connection ->
+        action.apply(new NamedParameterJdbcTemplate(new SingleConnectionDataSource(connection, true))));
+  }
+
+  /**
+   * Marks the descendants of a horse, and the horse itself if {@code withHorse}, as the horses {@link #rederiveMarkedAncestry}
+   * derives the ancestry of anew. They are selected from the stored ancestry by the data store, and never bound one by one.
+   */
+  private void markForRederivation(NamedParameterJdbcTemplate named, long id, boolean withHorse) {
+    JdbcOperations jdbc = named.getJdbcOperations();
+    jdbc.execute(SQL_CREATE_REDERIVED);
+    jdbc.update(SQL_CLEAR_REDERIVED);
+    jdbc.update(SQL_MARK_DESCENDANTS_REDERIVED, id);
+    if (withHorse) {
+      jdbc.update(SQL_MARK_REDERIVED, id);
+    }
+  }
+
+  /**
+   * Derives the ancestry of the marked horses anew, which must include all descendants of any of them whose parents changed.
+   * Their rows are deleted in one statement, and derived again with one statement per generation, whatever the number of horses,
+   * and every statement has the same text every time.
+   */
+  private void rederiveMarkedAncestry(NamedParameterJdbcTemplate named) {
+    named.getJdbcOperations().update(SQL_DELETE_ANCESTRY_OF_REDERIVED);
+    insertAncestryByGeneration(named, SQL_INSERT_PARENT_ANCESTRY_OF_REDERIVED, SQL_INSERT_NEXT_GENERATION_ANCESTRY_OF_REDERIVED, new HashMap<>());
+  }
+
+  /**
+   * Inserts the ancestry of horses without ancestry rows, generation by generation:
+   * first their parents, then the ancestors of each generation extended by their parents, until a generation has no parents left.
+   *
+   * @param named                the template to run the statements with
+   * @param insertParents        the statement inserting the parents
+   * @param insertNextGeneration the statement extending the generation at {@code :depth}
+   * @param parameters           the parameters of both statements, which {@code depth} is added to
+   */
+  private static void insertAncestryByGeneration(NamedParameterJdbcTemplate named, String insertParents, String insertNextGeneration,
+                                                 Map<String, Object> parameters) {
+    int inserted = named.update(insertParents, parameters);
+    // no pedigree can have more generations than there are horses, unless it has a cycle
+    long maxDepth = Objects.requireNonNull(named.getJdbcOperations().queryForObject(SQL_COUNT, Long.class));
+    for (int depth = 1; inserted > 0; depth++) {
+      if (depth > maxDepth) {
+        throw new FatalException("Parent references of the stored horses form a cycle");
+      }
+      parameters.put("depth", depth);
+      inserted = named.update(insertNextGeneration, parameters);
+    }
+  }
+
+  private void insertAncestryOf(long id) {
+    jdbcTemplate.update(SQL_INSERT_ANCESTRY_OF, stmt -> setAncestryOfParameters(stmt, id));
+  }
+
+  private static void setAncestryOfParameters(PreparedStatement stmt, long id) throws SQLException {
+    for (int i = 1; i <= 5; i++) {
+      stmt.setLong(i, id);
+    }
+  }
+
   private Horse mapRow(ResultSet result, int rowNum) throws SQLException {
     LOG.trace("mapRow set:{}, rowNum:{}", result, rowNum);
     Date d1 = result.getDate("date_of_birth");
@@ -309,6 +1007,57 @@ public class HorseJdbcDao implements HorseDao {
         ;
   }
 
+  private HorseDetail mapRowDetail(ResultSet result, int rowNum) throws SQLException {
+    LOG.trace("mapRowDetail set:{}, rowNum:{}", result, rowNum);
+    Horse horse = mapRow(result, rowNum);
+    return new HorseDetail()
+        .setHorse(horse)
+        .setOwner(mapOwner(result, horse.getOwnerId()))
+        .setMother(mapParent(result, horse.getMotherId(), "mother_"))
+        .setFather(mapParent(result, horse.getFatherId(), "father_"))
+        ;
+  }
+
+  private HorseWithOwner mapRowWithOwner(ResultSet result, int rowNum) throws SQLException {
+    LOG.trace("mapRowWithOwner set:{}, rowNum:{}", result, rowNum);
+    Horse horse = mapRow(result, rowNum);
+    return new HorseWithOwner()
+        .setHorse(horse)
+        .setOwner(mapOwner(result, horse.getOwnerId()))
+        ;
+  }
+
+  private Owner mapOwner(ResultSet result, Long ownerId) throws SQLException {
+    if (ownerId == null) {
+      return null;
+    }
+    return new Owner()
+        .setId(ownerId)
+        .setFirstName(result.getString("owner_first_name"))
+        .setLastName(result.getString("owner_last_name"))
+        .setEmail(result.getString("owner_email"))
+        ;
+  }
+
+  private HorseMinimal mapParent(ResultSet result, Long parentId, String columnPrefix) throws SQLException {
+    if (parentId == null) {
+      return null;
+    }
+    return new HorseMinimal()
+        .setId(parentId)
+        .setName(result.getString(columnPrefix + "name"))
+        .setDateOfBirth(result.getObject(columnPrefix + "date_of_birth", LocalDate.class))
+        .setSex(Sex.valueOf(result.getString(columnPrefix + "sex")))
+        ;
+  }
+
+  private CommonAncestor mapRowCommonAncestor(ResultSet result, int rowNum) throws SQLException {
+    return new CommonAncestor()
+        .setAncestorId(result.getLong("ancestor_id"))
+        .setFirstDepth(result.getInt("first_depth"))
+        .setSecondDepth(result.getInt("second_depth"));
+  }
+
   private Horse mapRowFamilyTree(ResultSet result, int rowNum) throws SQLException {
     LOG.trace("mapRowFamilyTree set:{}, rowNum:{}", result, rowNum);
     return new Horse()
@@ -320,4 +1069,103 @@ public class HorseJdbcDao implements HorseDao {
         .setFatherId(result.getObject("father_id", Long.class))
         ;
   }
+
+  private HorseDescendant mapRowDescendant(ResultSet result, int rowNum) throws SQLException {
+    return new HorseDescendant()
+        .setHorse(mapRowFamilyTree(result, rowNum))
+        .setGeneration(result.getInt("generation"));
+  }
+
+  /**
+   * The filters of a horse search, each of which is only part of the statement if it is used.
+   */
+  enum SearchPredicate implements SearchStatement.Predicate {
+    NAME("name_normalized LIKE UPPER(?)"),
+    DESCRIPTION("UPPER(description) LIKE UPPER(?)"),
+    BORN_BEFORE("date_of_birth < ?"),
+    SEX("sex = ?"),
+    OWNER("owner_id = ?"),
+    EXCLUDED("horse.id != ?"),
+    // seeks to the cursor position in the (name_normalized, id) index, so every page costs the same, no matter how far back it is
+    AFTER_CURSOR("name_normalized >= UPPER(?) AND (name_normalized > UPPER(?) OR horse.id > ?)");
+
+    private final String sql;
+
+    SearchPredicate(String sql) {
+      this.sql = sql;
+    }
+
+    @Override
+    public String sql() {
+      return sql;
+    }
+  }
+
+  /**
+   * Stream over the rows of an open result set.
+   * The result set, its statement and its connection are released as soon as the last row has been read,
+   * or when the stream is closed before that.
+   */
+  private static class ResultSetStream<T> implements Iterator<T> {
+    private final Connection connection;
+    private final Statement statement;
+    private final ResultSet result;
+    private final DataSource dataSource;
+    private final RowMapper<T> rowMapper;
+    private boolean closed = false;
+    private Boolean hasNext = null;
+    private int rowNum = 0;
+
+    ResultSetStream(Connection connection, Statement statement, ResultSet result, DataSource dataSource, RowMapper<T> rowMapper) {
+      this.connection = connection;
+      this.statement = statement;
+      this.result = result;
+      this.dataSource = dataSource;
+      this.rowMapper = rowMapper;
+    }
+
+    Stream<T> stream() {
+      return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+          .onClose(this::close);
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (hasNext == null) {
+        try {
+          hasNext = !closed && result.next();
+        } catch (SQLException e) {
+          close();
+          throw new FatalException("Error while streaming horses.", e);
+        }
+        if (!hasNext) {
+          close();
+        }
+      }
+      return hasNext;
+    }
+
+    @Override
+    public T next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      hasNext = null;
+      try {
+        return rowMapper.mapRow(result, rowNum++);
+      } catch (SQLException e) {
+        close();
+        throw new FatalException("Error while streaming horses.", e);
+      }
+    }
+
+    private void close() {
+      if (!closed) {
+        closed = true;
+        JdbcUtils.closeResultSet(result);
+        JdbcUtils.closeStatement(statement);
+        releaseStreamConnection(connection, dataSource);
+      }
+    }
+  }
 }
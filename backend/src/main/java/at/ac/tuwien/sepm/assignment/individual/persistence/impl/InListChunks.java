@@ -0,0 +1,40 @@
+package at.ac.tuwien.sepm.assignment.individual.persistence.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Splits the values of an {@code IN (:values)} list into chunks of the same size, so a lookup of many values
+ * binds a bounded number of parameters per statement, and every statement has the same text,
+ * which lets the statement cache of the connection reuse it, however many values are looked up.
+ * The last chunk is filled up by repeating its last value, which does not change what the IN list matches.
+ */
+final class InListChunks {
+  static final int SIZE = 500;
+
+  private InListChunks() {
+  }
+
+  /**
+   * @param values the values to look up
+   * @return the chunks of the values, each with {@link #SIZE} values; none if there are no values
+   */
+  static <T> List<List<T>> of(Collection<T> values) {
+    List<List<T>> chunks = new ArrayList<>((values.size() + SIZE - 1) / SIZE);
+    List<T> chunk = new ArrayList<>(SIZE);
+    for (T value : values) {
+      chunk.add(value);
+      if (chunk.size() == SIZE) {
+        chunks.add(chunk);
+        chunk = new ArrayList<>(SIZE);
+      }
+    }
+    if (!chunk.isEmpty()) {
+      chunk.addAll(Collections.nCopies(SIZE - chunk.size(), chunk.get(chunk.size() - 1)));
+      chunks.add(chunk);
+    }
+    return chunks;
+  }
+}
@@ -1,5 +1,6 @@
 package at.ac.tuwien.sepm.assignment.individual.persistence.impl;
 
+import at.ac.tuwien.sepm.assignment.individual.dto.OwnerBatchCreateDto;
 import at.ac.tuwien.sepm.assignment.individual.dto.OwnerCreateDto;
 import at.ac.tuwien.sepm.assignment.individual.dto.OwnerSearchDto;
 import at.ac.tuwien.sepm.assignment.individual.entity.Owner;
@@ -22,7 +23,9 @@ import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.stereotype.Repository;
@@ -32,16 +35,19 @@ public class OwnerJdbcDao implements OwnerDao {
   private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
   private static final String TABLE_NAME = "owner";
-  private static final String SQL_SELECT_BY_ID = "SELECT * FROM " + TABLE_NAME + " WHERE id = ?";
+  // package-private, so its query plan can be checked in tests
+  static final String SQL_SELECT_BY_ID = "SELECT * FROM " + TABLE_NAME + " WHERE id = ?";
   private static final String SQL_SELECT_OWNERS_BY_IDS = "SELECT * FROM " + TABLE_NAME + " WHERE id IN (:ids)";
-  private static final String SQL_SELECT_SEARCH = "SELECT * FROM " + TABLE_NAME
-      + " WHERE UPPER(first_name||' '||last_name) like UPPER('%'||COALESCE(?, '')||'%')";
-  private static final String SQL_SEARCH_LIMIT_CLAUSE = " LIMIT ?";
+  // package-private, so the query plans of its statements can be checked in tests
+  static final SearchStatement<SearchPredicate> SEARCH = new SearchStatement<>(SearchPredicate.class, "SELECT * FROM " + TABLE_NAME, "");
 
   private static final String SQL_SELECT_OWNERS_BY_IDS_AND_FILTER = "SELECT * FROM " + TABLE_NAME
       + " WHERE id IN (:ids) AND UPPER(first_name||' '||last_name) like UPPER('%'||COALESCE(:name, '')||'%')";
 
   private static final String SQL_CREATE = "INSERT INTO " + TABLE_NAME + " (first_name, last_name, email) VALUES (?, ?, ?)";
+  private static final String SQL_CREATE_WITH_REGISTRY_KEY = "INSERT INTO " + TABLE_NAME
+      + " (first_name, last_name, email, registry_key) VALUES (?, ?, ?, ?)";
+  private static final String SQL_SELECT_IDS_BY_REGISTRY_KEYS = "SELECT id, registry_key FROM " + TABLE_NAME + " WHERE registry_key IN (:keys)";
 
   private final JdbcTemplate jdbcTemplate;
   private final NamedParameterJdbcTemplate jdbcNamed;
@@ -119,9 +125,12 @@ public class OwnerJdbcDao implements OwnerDao {
   @Override
   public Collection<Owner> getOwnersByIds(Collection<Long> ownerIdsOfHorses) {
     LOG.trace("getAllById({})", ownerIdsOfHorses);
-    var statementParams = Collections.singletonMap("ids", ownerIdsOfHorses);
     try {
-      return jdbcNamed.query(SQL_SELECT_OWNERS_BY_IDS, statementParams, this::mapRow);
+      List<Owner> owners = new ArrayList<>();
+      for (List<Long> chunk : InListChunks.of(ownerIdsOfHorses)) {
+        owners.addAll(jdbcNamed.query(SQL_SELECT_OWNERS_BY_IDS, Collections.singletonMap("ids", chunk), this::mapRow));
+      }
+      return owners;
     } catch (DataAccessException dae) {
       throw new FatalException("Error when getting owners by ids");
     }
@@ -130,22 +139,73 @@ public class OwnerJdbcDao implements OwnerDao {
   @Override
   public Collection<Owner> search(OwnerSearchDto searchParameters) {
     LOG.trace("search({})", searchParameters);
-    var query = SQL_SELECT_SEARCH;
-    var params = new ArrayList<>();
-    params.add(searchParameters.name());
-    var maxAmount = searchParameters.maxAmount();
-    if (maxAmount != null) {
-      query += SQL_SEARCH_LIMIT_CLAUSE;
-      params.add(maxAmount);
+    SearchStatement.Query query = buildSearchQuery(searchParameters);
+    try {
+      return jdbcTemplate.query(query.sql(), this::mapRow, query.args());
+    } catch (DataAccessException dae) {
+      throw new FatalException("Error while searching owners");
     }
+  }
+
+  // package-private, so the query plans of searches can be checked in tests
+  static SearchStatement.Query buildSearchQuery(OwnerSearchDto searchParameters) {
+    String name = searchParameters.name() != null ? '%' + searchParameters.name() + '%' : null;
+    return SEARCH.builder()
+        .where(SearchPredicate.NAME, name)
+        .limit(searchParameters.maxAmount())
+        .build();
+  }
 
+  @Override
+  public List<Owner> createBatch(List<OwnerBatchCreateDto> newOwners) {
+    LOG.trace("createBatch({} owners)", newOwners.size());
     try {
-      return jdbcTemplate.query(query, this::mapRow, params.toArray());
+      return jdbcTemplate.execute((ConnectionCallback<List<Owner>>) connection -> {
+        try (PreparedStatement stmt = connection.prepareStatement(SQL_CREATE_WITH_REGISTRY_KEY, Statement.RETURN_GENERATED_KEYS)) {
+          for (OwnerBatchCreateDto newOwner : newOwners) {
+            stmt.setString(1, newOwner.firstName());
+            stmt.setString(2, newOwner.lastName());
+            stmt.setString(3, newOwner.email());
+            stmt.setString(4, newOwner.key());
+            stmt.addBatch();
+          }
+          stmt.executeBatch();
+          List<Owner> owners = new ArrayList<>(newOwners.size());
+          try (ResultSet keys = stmt.getGeneratedKeys()) {
+            for (OwnerBatchCreateDto newOwner : newOwners) {
+              if (!keys.next()) {
+                throw new FatalException("Missing generated key of batch inserted owner");
+              }
+              owners.add(new Owner()
+                  .setId(keys.getLong(1))
+                  .setFirstName(newOwner.firstName())
+                  .setLastName(newOwner.lastName())
+                  .setEmail(newOwner.email()));
+            }
+          }
+          return owners;
+        }
+      });
     } catch (DataAccessException dae) {
-      throw new FatalException("Error while searching owners");
+      throw new FatalException("Error while adding batch of owners.", dae);
     }
   }
 
+  @Override
+  public Map<String, Long> getIdsByRegistryKeys(Collection<String> keys) {
+    LOG.trace("getIdsByRegistryKeys({})", keys);
+    Map<String, Long> ids = new HashMap<>();
+    try {
+      for (List<String> chunk : InListChunks.of(keys)) {
+        jdbcNamed.query(SQL_SELECT_IDS_BY_REGISTRY_KEYS, Collections.singletonMap("keys", chunk),
+            (RowCallbackHandler) result -> ids.put(result.getString("registry_key"), result.getLong("id")));
+      }
+    } catch (DataAccessException dae) {
+      throw new FatalException("Error when getting owners by registry keys", dae);
+    }
+    return ids;
+  }
+
   private Owner mapRow(ResultSet resultSet, int i) throws SQLException {
     LOG.trace("mapRow result: {} rowNum: {}", resultSet, i);
     return new Owner()
@@ -155,4 +215,22 @@ public class OwnerJdbcDao implements OwnerDao {
         .setEmail(resultSet.getString("email"))
         ;
   }
+
+  /**
+   * The filters of an owner search, each of which is only part of the statement if it is used.
+   */
+  enum SearchPredicate implements SearchStatement.Predicate {
+    NAME("UPPER(first_name||' '||last_name) LIKE UPPER(?)");
+
+    private final String sql;
+
+    SearchPredicate(String sql) {
+      this.sql = sql;
+    }
+
+    @Override
+    public String sql() {
+      return sql;
+    }
+  }
 }
@@ -0,0 +1,135 @@
+package at.ac.tuwien.sepm.assignment.individual.persistence.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The statements of a search, that are specialized to the filters a search actually uses.
+ * A statement holds the predicates of the used filters only, instead of a catch-all {@code (? IS NULL OR ...)} for every filter,
+ * so H2 plans it with the indexes of the used filters, and binds every value once.
+ *
+ * <p>The predicates of the statement are appended in the order of their constants in {@code P}, whatever the order they were added in,
+ * so every combination of filters always has the same text. The texts are built once per combination and kept,
+ * which lets the statement cache of the connection reuse their prepared statements and plans.
+ *
+ * @param <P> the predicates of the search, each holding its SQL with a {@code ?} for every value it binds
+ */
+final class SearchStatement<P extends Enum<P> & SearchStatement.Predicate> {
+
+  /**
+   * A filter of a search.
+   */
+  interface Predicate {
+    /**
+     * @return the condition of the filter, with a {@code ?} for every value it binds
+     */
+    String sql();
+  }
+
+  private final Class<P> predicateType;
+  private final String select;
+  private final String orderBy;
+  private final Map<Key<P>, String> texts = new ConcurrentHashMap<>();
+
+  /**
+   * @param predicateType the predicates of the search
+   * @param select        the statement up to its WHERE clause, which is appended if any predicate is used
+   * @param orderBy       the ORDER BY clause of the statement, starting with a blank, or an empty string for none
+   */
+  SearchStatement(Class<P> predicateType, String select, String orderBy) {
+    this.predicateType = predicateType;
+    this.select = select;
+    this.orderBy = orderBy;
+  }
+
+  Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * The text of the statement for a combination of predicates, with a LIMIT clause if {@code limited}.
+   */
+  String text(Set<P> predicates, boolean limited) {
+    EnumSet<P> key = EnumSet.noneOf(predicateType);
+    key.addAll(predicates);
+    return texts.computeIfAbsent(new Key<>(Collections.unmodifiableSet(key), limited), k -> {
+      var sql = new StringBuilder(select);
+      String separator = " WHERE ";
+      for (P predicate : k.predicates()) {
+        sql.append(separator).append(predicate.sql());
+        separator = " AND ";
+      }
+      sql.append(orderBy);
+      if (k.limited()) {
+        sql.append(" LIMIT ?");
+      }
+      return sql.toString();
+    });
+  }
+
+  /**
+   * Collects the predicates one search uses, with their values.
+   */
+  final class Builder {
+    private final EnumMap<P, Object[]> args = new EnumMap<>(predicateType);
+    private Integer limit;
+
+    private Builder() {
+    }
+
+    /**
+     * Filters by the predicate, if its value is given.
+     *
+     * @param predicate the predicate
+     * @param value     the value of the predicate, {@code null} to not filter by it
+     * @param args      the values to bind to the {@code ?} of the predicate, in their order
+     */
+    Builder where(P predicate, Object value, Object... args) {
+      if (value != null) {
+        this.args.put(predicate, args);
+      }
+      return this;
+    }
+
+    /**
+     * Filters by the predicate, if its value is given. The predicate binds just that value.
+     */
+    Builder where(P predicate, Object value) {
+      return where(predicate, value, value);
+    }
+
+    /**
+     * Limits the number of rows, if {@code limit} is given.
+     */
+    Builder limit(Integer limit) {
+      this.limit = limit;
+      return this;
+    }
+
+    Query build() {
+      List<Object> values = new ArrayList<>();
+      for (Object[] predicateArgs : args.values()) {
+        Collections.addAll(values, predicateArgs);
+      }
+      if (limit != null) {
+        values.add(limit);
+      }
+      return new Query(text(args.keySet(), limit != null), values.toArray());
+    }
+  }
+
+  /**
+   * A statement text, and the values to bind to it, in their order.
+   */
+  record Query(String sql, Object[] args) {
+  }
+
+  private record Key<P extends Enum<P>>(Set<P> predicates, boolean limited) {
+  }
+}
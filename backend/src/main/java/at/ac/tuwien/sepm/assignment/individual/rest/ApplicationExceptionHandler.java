@@ -1,5 +1,6 @@
 package at.ac.tuwien.sepm.assignment.individual.rest;
 
+import at.ac.tuwien.sepm.assignment.individual.exception.ConflictException;
 import at.ac.tuwien.sepm.assignment.individual.exception.ValidationException;
 
 import java.lang.invoke.MethodHandles;
@@ -23,4 +24,12 @@ public class ApplicationExceptionHandler {
     LOG.warn("Terminating request processing with status 422 due to {}: {}", e.getClass().getSimpleName(), e.getMessage());
     return new ValidationErrorRestDto(e.summary(), e.errors());
   }
+
+  @ExceptionHandler
+  @ResponseStatus(HttpStatus.CONFLICT)
+  @ResponseBody
+  public ValidationErrorRestDto handleConflictException(ConflictException e) {
+    LOG.warn("Terminating request processing with status 409 due to {}: {}", e.getClass().getSimpleName(), e.getMessage());
+    return new ValidationErrorRestDto(e.summary(), e.errors());
+  }
 }
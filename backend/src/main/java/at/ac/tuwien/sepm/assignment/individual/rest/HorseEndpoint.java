@@ -1,35 +1,56 @@
 package at.ac.tuwien.sepm.assignment.individual.rest;
 
+import at.ac.tuwien.sepm.assignment.individual.dto.DescendantsQueryParamsDto;
 import at.ac.tuwien.sepm.assignment.individual.dto.FamilyTreeQueryParamsDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseBatchCreateDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseDescendantsDto;
 import at.ac.tuwien.sepm.assignment.individual.dto.HorseDetailDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseDetailWithETagDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseFamilyGraphDto;
 import at.ac.tuwien.sepm.assignment.individual.dto.HorseFamilyTreeDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseInbreedingDto;
 import at.ac.tuwien.sepm.assignment.individual.dto.HorseListDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseMinimalDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.HorsePageDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseRelationshipDto;
 import at.ac.tuwien.sepm.assignment.individual.dto.HorseSearchDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.KinshipMatrixJobDto;
 import at.ac.tuwien.sepm.assignment.individual.exception.ConflictException;
 import at.ac.tuwien.sepm.assignment.individual.exception.FatalException;
 import at.ac.tuwien.sepm.assignment.individual.exception.NotFoundException;
 import at.ac.tuwien.sepm.assignment.individual.exception.ValidationException;
+import at.ac.tuwien.sepm.assignment.individual.exception.VersionConflictException;
 import at.ac.tuwien.sepm.assignment.individual.service.HorseService;
 
+import java.io.IOException;
 import java.lang.invoke.MethodHandles;
 import java.time.LocalDate;
+import java.util.List;
 import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+import javax.servlet.http.HttpServletResponse;
 
+import at.ac.tuwien.sepm.assignment.individual.type.RegistryFormat;
 import at.ac.tuwien.sepm.assignment.individual.type.Sex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
 
 @RestController
@@ -38,6 +59,9 @@ public class HorseEndpoint {
   private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
   static final String BASE_PATH = "/horses";
+  public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+  static final String GZIP_VALUE = "application/gzip";
+  private static final int EXPORT_GZIP_BUFFER_SIZE = 64 * 1024;
 
   private final HorseService service;
 
@@ -45,21 +69,33 @@ public class HorseEndpoint {
     this.service = service;
   }
 
+  /**
+   * Searches horses. If a limit is given, the result is one page of at most that many horses.
+   * If there are more, the {@value #NEXT_CURSOR_HEADER} response header holds the cursor to request the next page with.
+   */
   @GetMapping
-  @ResponseStatus(HttpStatus.OK)
-  public Stream<HorseListDto> searchHorses(@RequestParam(required = false) String name,
-                                           @RequestParam(required = false) String description,
-                                           @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateOfBirth,
-                                           @RequestParam(required = false) Sex sex,
-                                           @RequestParam(required = false) Long ownerId,
-                                           @RequestParam(required = false) Integer limit,
-                                           @RequestParam(required = false) Long idOfHorseToBeExcluded) {
-    LOG.info("GET " + BASE_PATH + "?name={}&description={}&dateOfBirth={}&sex={}?ownerId={}&limit={}&idOfHorseToBeExcluded={}", name, description, dateOfBirth,
-        sex, ownerId, limit, idOfHorseToBeExcluded);
-    HorseSearchDto requestParams = new HorseSearchDto(name, description, dateOfBirth, sex, ownerId, limit, idOfHorseToBeExcluded);
+  public ResponseEntity<Stream<HorseListDto>> searchHorses(@RequestParam(required = false) String name,
+                                                           @RequestParam(required = false) String description,
+                                                           @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateOfBirth,
+                                                           @RequestParam(required = false) Sex sex,
+                                                           @RequestParam(required = false) Long ownerId,
+                                                           @RequestParam(required = false) Integer limit,
+                                                           @RequestParam(required = false) Long idOfHorseToBeExcluded,
+                                                           @RequestParam(required = false) String cursor) {
+    LOG.info("GET " + BASE_PATH + "?name={}&description={}&dateOfBirth={}&sex={}?ownerId={}&limit={}&idOfHorseToBeExcluded={}&cursor={}", name, description,
+        dateOfBirth, sex, ownerId, limit, idOfHorseToBeExcluded, cursor);
+    HorseSearchDto requestParams = new HorseSearchDto(name, description, dateOfBirth, sex, ownerId, limit, idOfHorseToBeExcluded, cursor);
     LOG.debug("request parameters: {}", requestParams);
     try {
-      return service.search(requestParams);
+      if (limit == null) {
+        return ResponseEntity.ok(service.search(requestParams));
+      }
+      HorsePageDto page = service.searchPage(requestParams);
+      var response = ResponseEntity.ok();
+      if (page.nextCursor() != null) {
+        response.header(NEXT_CURSOR_HEADER, page.nextCursor());
+      }
+      return response.body(page.horses().stream());
     } catch (ValidationException ve) {
       logClientError(HttpStatus.UNPROCESSABLE_ENTITY, "Invalid search RequestParams during horse search", ve);
       throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, ve.getMessage(), ve);
@@ -69,12 +105,134 @@ public class HorseEndpoint {
     }
   }
 
+  /**
+   * Exports all horses, with the IDs of their owners and parents, as a file download.
+   * The response is written while the horses are read from the data store, so it is never held in memory as a whole,
+   * and a slow client only slows down the export.
+   */
+  @GetMapping("export")
+  public void export(@RequestParam(defaultValue = "CSV") RegistryFormat format,
+                     @RequestParam(defaultValue = "false") boolean gzip,
+                     HttpServletResponse response) throws IOException {
+    LOG.info("GET " + BASE_PATH + "/export?format={}&gzip={}", format, gzip);
+    String fileName = format == RegistryFormat.CSV ? "horses.csv" : "horses.ndjson";
+    response.setContentType(format == RegistryFormat.CSV ? RegistryEndpoint.TEXT_CSV_VALUE : RegistryEndpoint.APPLICATION_NDJSON_VALUE);
+    if (gzip) {
+      response.setContentType(GZIP_VALUE);
+      fileName += ".gz";
+    }
+    response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(fileName).build().toString());
+    if (gzip) {
+      var out = new GZIPOutputStream(response.getOutputStream(), EXPORT_GZIP_BUFFER_SIZE);
+      service.export(format, out);
+      out.finish();
+    } else {
+      service.export(format, response.getOutputStream());
+    }
+  }
+
+  /**
+   * The kinship of all pairs of horses that match the search, as newline delimited JSON,
+   * with one line per horse that holds its kinship with itself and the horses of all lines before.
+   * The matrix is computed before the first line is written, so an invalid search is still answered with an error status.
+   */
+  @GetMapping(path = "kinship")
+  public void kinshipMatrix(@RequestParam(required = false) String name,
+                            @RequestParam(required = false) String description,
+                            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateOfBirth,
+                            @RequestParam(required = false) Sex sex,
+                            @RequestParam(required = false) Long ownerId,
+                            @RequestParam(required = false) Integer limit,
+                            HttpServletResponse response) throws IOException {
+    LOG.info("GET " + BASE_PATH + "/kinship?name={}&description={}&dateOfBirth={}&sex={}&ownerId={}&limit={}", name, description,
+        dateOfBirth, sex, ownerId, limit);
+    HorseSearchDto requestParams = new HorseSearchDto(name, description, dateOfBirth, sex, ownerId, limit, null, null);
+    response.setContentType(RegistryEndpoint.APPLICATION_NDJSON_VALUE);
+    try {
+      service.writeKinshipMatrix(requestParams, response.getOutputStream());
+    } catch (ValidationException ve) {
+      logClientError(HttpStatus.UNPROCESSABLE_ENTITY, "Invalid search RequestParams for kinship matrix", ve);
+      throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, ve.getMessage(), ve);
+    } catch (ConflictException ce) {
+      logClientError(HttpStatus.CONFLICT, "A conflict with the existing state arose while selecting the horses of a kinship matrix", ce);
+      throw new ResponseStatusException(HttpStatus.CONFLICT, ce.getMessage(), ce);
+    }
+  }
+
+  /**
+   * Starts a batch job that computes the kinship matrix of all horses that match the search.
+   * The search is checked right away, so an invalid one is answered with an error status, and the job is answered while it is queued.
+   */
+  @PostMapping(path = "kinship/jobs")
+  @ResponseStatus(HttpStatus.ACCEPTED)
+  public KinshipMatrixJobDto startKinshipMatrixJob(@RequestParam(required = false) String name,
+                                                   @RequestParam(required = false) String description,
+                                                   @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateOfBirth,
+                                                   @RequestParam(required = false) Sex sex,
+                                                   @RequestParam(required = false) Long ownerId,
+                                                   @RequestParam(required = false) Integer limit) {
+    LOG.info("POST " + BASE_PATH + "/kinship/jobs?name={}&description={}&dateOfBirth={}&sex={}&ownerId={}&limit={}", name, description,
+        dateOfBirth, sex, ownerId, limit);
+    HorseSearchDto requestParams = new HorseSearchDto(name, description, dateOfBirth, sex, ownerId, limit, null, null);
+    try {
+      return service.startKinshipMatrixJob(requestParams);
+    } catch (ValidationException ve) {
+      logClientError(HttpStatus.UNPROCESSABLE_ENTITY, "Invalid search RequestParams for kinship matrix job", ve);
+      throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, ve.getMessage(), ve);
+    } catch (ConflictException ce) {
+      logClientError(HttpStatus.CONFLICT, "Kinship matrix job could not be started", ce);
+      throw new ResponseStatusException(HttpStatus.CONFLICT, ce.getMessage(), ce);
+    }
+  }
+
+  /**
+   * The state of a kinship matrix job.
+   */
+  @GetMapping("kinship/jobs/{id}")
+  public KinshipMatrixJobDto getKinshipMatrixJob(@PathVariable long id) {
+    LOG.info("GET " + BASE_PATH + "/kinship/jobs/{}", id);
+    try {
+      return service.getKinshipMatrixJob(id);
+    } catch (NotFoundException e) {
+      HttpStatus status = HttpStatus.NOT_FOUND;
+      logClientError(status, "Kinship matrix job not found", e);
+      throw new ResponseStatusException(status, e.getMessage(), e);
+    }
+  }
+
+  /**
+   * The kinship matrix a job computed, as newline delimited JSON, like the one of {@code GET /horses/kinship}.
+   */
+  @GetMapping("kinship/jobs/{id}/matrix")
+  public void kinshipMatrixOfJob(@PathVariable long id, HttpServletResponse response) throws IOException {
+    LOG.info("GET " + BASE_PATH + "/kinship/jobs/{}/matrix", id);
+    response.setContentType(RegistryEndpoint.APPLICATION_NDJSON_VALUE);
+    try {
+      service.writeKinshipMatrixOfJob(id, response.getOutputStream());
+    } catch (NotFoundException e) {
+      HttpStatus status = HttpStatus.NOT_FOUND;
+      logClientError(status, "Kinship matrix job not found", e);
+      throw new ResponseStatusException(status, e.getMessage(), e);
+    } catch (ConflictException ce) {
+      logClientError(HttpStatus.CONFLICT, "Kinship matrix job is not done", ce);
+      throw new ResponseStatusException(HttpStatus.CONFLICT, ce.getMessage(), ce);
+    }
+  }
+
+  /**
+   * The details of a horse, with an entity tag. A request with a matching {@code If-None-Match} header is answered with
+   * {@code 304 Not Modified} from the tag alone, without loading the details.
+   */
   @GetMapping("{id}")
-  @ResponseStatus(HttpStatus.OK)
-  public HorseDetailDto getById(@PathVariable long id) {
+  public ResponseEntity<HorseDetailDto> getById(@PathVariable long id, WebRequest request) {
     LOG.info("GET " + BASE_PATH + "/{}", id);
     try {
-      return service.getById(id);
+      // the tag is taken before the details, so they are never older than it
+      String entityTag = service.getDetailETag(id);
+      if (request.checkNotModified(entityTag)) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(entityTag).build();
+      }
+      return ResponseEntity.ok().eTag(entityTag).body(service.getById(id));
     } catch (NotFoundException e) {
       HttpStatus status = HttpStatus.NOT_FOUND;
       logClientError(status, "Horse to get details of not found", e);
@@ -101,17 +259,39 @@ public class HorseEndpoint {
     }
   }
 
+  /**
+   * Creates all horses of a batch, or none of them if any is invalid.
+   * Errors are reported per horse, by its position in the batch.
+   */
+  @PostMapping("batch")
+  @ResponseStatus(HttpStatus.CREATED)
+  public List<HorseMinimalDto> createBatch(@RequestBody List<HorseBatchCreateDto> createData) throws ValidationException, ConflictException {
+    LOG.info("POST " + BASE_PATH + "/batch");
+    LOG.debug("Batch of {} horses in request", createData.size());
+    return service.createBatch(createData);
+  }
+
+  /**
+   * Updates a horse. With an {@code If-Match} header, only if the horse was not changed since the details with that entity tag,
+   * else the update is answered with {@code 412 Precondition Failed}. The response carries the entity tag of the updated details.
+   */
   @PutMapping("{id}")
-  @ResponseStatus(HttpStatus.OK)
-  public HorseDetailDto update(@PathVariable long id, @RequestBody HorseDetailDto updateData) throws ValidationException, ConflictException {
+  public ResponseEntity<HorseDetailDto> update(@PathVariable long id, @RequestBody HorseDetailDto updateData,
+                                               @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch)
+      throws ValidationException, ConflictException {
     LOG.info("PUT " + BASE_PATH + "/{}", id);
     LOG.debug("Body of request:\n{}", updateData);
     try {
-      return service.update(id, updateData);
+      HorseDetailWithETagDto updated = service.update(id, updateData, ifMatch);
+      return ResponseEntity.ok().eTag(updated.entityTag()).body(updated.horse());
     } catch (NotFoundException e) {
       HttpStatus status = HttpStatus.NOT_FOUND;
       logClientError(status, "Horse to update not found", e);
       throw new ResponseStatusException(status, e.getMessage(), e);
+    } catch (VersionConflictException e) {
+      HttpStatus status = HttpStatus.PRECONDITION_FAILED;
+      logClientError(status, "Horse to update was changed since", e);
+      throw new ResponseStatusException(status, e.getMessage(), e);
     } catch (ConflictException ce) {
       logClientError(HttpStatus.CONFLICT, "A conflict with the existing state arose while trying to update horse with id %d".formatted(id), ce);
       throw new ResponseStatusException(HttpStatus.CONFLICT, ce.getMessage(), ce);
@@ -130,15 +310,24 @@ public class HorseEndpoint {
     }
   }
 
+  /**
+   * The family tree of a horse, with an entity tag that covers every horse of the tree.
+   * A request with a matching {@code If-None-Match} header is answered with {@code 304 Not Modified} from the tag alone.
+   */
   @GetMapping(path = "/{id}/familyTree")
-  @ResponseStatus(HttpStatus.OK)
-  public HorseFamilyTreeDto familyTreeOfHorse(@PathVariable Long id, @RequestParam(required = false) Long limit) {
+  public ResponseEntity<HorseFamilyTreeDto> familyTreeOfHorse(@PathVariable Long id, @RequestParam(required = false) Long limit,
+                                                              WebRequest request) {
     LOG.info("GET " + BASE_PATH + "/{}/familyTree", id);
     LOG.debug("tree depth limit from request: {}", limit);
     try {
       Long actualLimit = (limit != null) ? limit : 1000;
       LOG.debug("actual tree depth limit: {}", actualLimit);
-      return service.getFamilyTree(new FamilyTreeQueryParamsDto(id, actualLimit));
+      var queryParams = new FamilyTreeQueryParamsDto(id, actualLimit);
+      String entityTag = service.getFamilyTreeETag(queryParams);
+      if (request.checkNotModified(entityTag)) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(entityTag).build();
+      }
+      return ResponseEntity.ok().eTag(entityTag).body(service.getFamilyTree(queryParams));
     } catch (ValidationException ve) {
       logClientError(HttpStatus.UNPROCESSABLE_ENTITY, "Invalid family tree request parameters", ve);
       throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, ve.getMessage());
@@ -148,6 +337,112 @@ public class HorseEndpoint {
     }
   }
 
+  /**
+   * The family tree of a horse as a flat table of nodes, in which every ancestor appears once,
+   * and the parents are referenced by their index in the table. It is tagged like the family tree.
+   */
+  @GetMapping(path = "/{id}/familyTree", params = "format=graph")
+  public ResponseEntity<HorseFamilyGraphDto> familyGraphOfHorse(@PathVariable Long id, @RequestParam(required = false) Long limit,
+                                                                WebRequest request) {
+    LOG.info("GET " + BASE_PATH + "/{}/familyTree?format=graph", id);
+    LOG.debug("tree depth limit from request: {}", limit);
+    try {
+      Long actualLimit = (limit != null) ? limit : 1000;
+      var queryParams = new FamilyTreeQueryParamsDto(id, actualLimit);
+      // the graph holds the same horses as the tree
+      String entityTag = service.getFamilyTreeETag(queryParams);
+      if (request.checkNotModified(entityTag)) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(entityTag).build();
+      }
+      return ResponseEntity.ok().eTag(entityTag).body(service.getFamilyGraph(queryParams));
+    } catch (ValidationException ve) {
+      logClientError(HttpStatus.UNPROCESSABLE_ENTITY, "Invalid family tree request parameters", ve);
+      throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, ve.getMessage());
+    } catch (NotFoundException nfe) {
+      logClientError(HttpStatus.NOT_FOUND, "Horse with id " + id + " not found", nfe);
+      throw new ResponseStatusException(HttpStatus.NOT_FOUND, nfe.getMessage());
+    }
+  }
+
+  /**
+   * The descendants of a horse, generation by generation, up to {@code depth} generations on.
+   * Every generation is paged on its own; {@code generation} restricts the result to one generation, to get its further pages.
+   */
+  @GetMapping(path = "/{id}/descendants")
+  @ResponseStatus(HttpStatus.OK)
+  public HorseDescendantsDto descendantsOfHorse(@PathVariable Long id,
+                                                @RequestParam(defaultValue = "1000") Integer depth,
+                                                @RequestParam(required = false) Integer generation,
+                                                @RequestParam(defaultValue = "0") Integer offset,
+                                                @RequestParam(defaultValue = "100") Integer limit) {
+    LOG.info("GET " + BASE_PATH + "/{}/descendants", id);
+    LOG.debug("depth {}, generation {}, offset {}, limit {}", depth, generation, offset, limit);
+    try {
+      return service.getDescendants(new DescendantsQueryParamsDto(id, depth, generation, offset, limit));
+    } catch (ValidationException ve) {
+      logClientError(HttpStatus.UNPROCESSABLE_ENTITY, "Invalid descendants request parameters", ve);
+      throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, ve.getMessage());
+    } catch (NotFoundException nfe) {
+      logClientError(HttpStatus.NOT_FOUND, "Horse with id " + id + " not found", nfe);
+      throw new ResponseStatusException(HttpStatus.NOT_FOUND, nfe.getMessage());
+    }
+  }
+
+  /**
+   * The inbreeding coefficient of a horse, from its pedigree up to {@code generations} generations back.
+   */
+  @GetMapping(path = "/{id}/inbreeding")
+  @ResponseStatus(HttpStatus.OK)
+  public HorseInbreedingDto inbreedingOfHorse(@PathVariable Long id, @RequestParam(defaultValue = "1000") Integer generations) {
+    LOG.info("GET " + BASE_PATH + "/{}/inbreeding", id);
+    LOG.debug("generations {}", generations);
+    try {
+      return service.getInbreeding(id, generations);
+    } catch (ValidationException ve) {
+      logClientError(HttpStatus.UNPROCESSABLE_ENTITY, "Invalid inbreeding request parameters", ve);
+      throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, ve.getMessage());
+    } catch (NotFoundException nfe) {
+      logClientError(HttpStatus.NOT_FOUND, "Horse with id " + id + " not found", nfe);
+      throw new ResponseStatusException(HttpStatus.NOT_FOUND, nfe.getMessage());
+    }
+  }
+
+  /**
+   * How two horses are related: their closest common ancestors, with a shortest path from each horse to every one of them.
+   */
+  @GetMapping(path = "/{id}/relationship/{otherId}")
+  @ResponseStatus(HttpStatus.OK)
+  public HorseRelationshipDto relationshipOfHorses(@PathVariable Long id, @PathVariable Long otherId) {
+    LOG.info("GET " + BASE_PATH + "/{}/relationship/{}", id, otherId);
+    try {
+      return service.getRelationship(id, otherId);
+    } catch (NotFoundException nfe) {
+      logClientError(HttpStatus.NOT_FOUND, "Horse of relationship not found", nfe);
+      throw new ResponseStatusException(HttpStatus.NOT_FOUND, nfe.getMessage());
+    }
+  }
+
+  /**
+   * Rebuilds the stored ancestry of all horses, which the family tree is read from.
+   */
+  @PostMapping("ancestry/rebuild")
+  @ResponseStatus(HttpStatus.NO_CONTENT)
+  public void rebuildAncestry() {
+    LOG.info("POST " + BASE_PATH + "/ancestry/rebuild");
+    service.rebuildAncestry();
+  }
+
+  /**
+   * Checks the stored ancestry of all horses.
+   *
+   * @return the IDs of the horses whose stored ancestry is inconsistent with their parents
+   */
+  @GetMapping("ancestry/inconsistencies")
+  public List<Long> ancestryInconsistencies() {
+    LOG.info("GET " + BASE_PATH + "/ancestry/inconsistencies");
+    return service.checkAncestry();
+  }
+
   private void logClientError(HttpStatus status, String message, Exception e) {
     LOG.warn("{} {}: {}: {}", status.value(), message, e.getClass().getSimpleName(), e.getMessage());
   }
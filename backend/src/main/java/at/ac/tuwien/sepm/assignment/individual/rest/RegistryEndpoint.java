@@ -0,0 +1,61 @@
+package at.ac.tuwien.sepm.assignment.individual.rest;
+
+import at.ac.tuwien.sepm.assignment.individual.dto.RegistryImportResultDto;
+import at.ac.tuwien.sepm.assignment.individual.exception.ConflictException;
+import at.ac.tuwien.sepm.assignment.individual.exception.ValidationException;
+import at.ac.tuwien.sepm.assignment.individual.service.RegistryImportService;
+import at.ac.tuwien.sepm.assignment.individual.type.RegistryFormat;
+
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping(path = RegistryEndpoint.BASE_PATH)
+public class RegistryEndpoint {
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  static final String BASE_PATH = "/registry";
+  static final String TEXT_CSV_VALUE = "text/csv";
+  static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+  private final RegistryImportService service;
+
+  public RegistryEndpoint(RegistryImportService service) {
+    this.service = service;
+  }
+
+  /**
+   * Imports a registry of owners and horses from the CSV request body, which is read as a stream.
+   * Nothing is imported if a record is invalid, unless {@code partial} is set, which keeps the chunks before it.
+   * Validation errors and conflicts are answered by the {@link ApplicationExceptionHandler}.
+   */
+  @PostMapping(path = "import", consumes = TEXT_CSV_VALUE)
+  @ResponseStatus(HttpStatus.CREATED)
+  public RegistryImportResultDto importCsv(InputStream body, @RequestParam(defaultValue = "false") boolean partial)
+      throws ValidationException, ConflictException {
+    LOG.info("POST " + BASE_PATH + "/import ({}, partial: {})", TEXT_CSV_VALUE, partial);
+    return service.importRegistry(body, RegistryFormat.CSV, partial);
+  }
+
+  /**
+   * Imports a registry of owners and horses from the NDJSON request body, which is read as a stream.
+   * Nothing is imported if a record is invalid, unless {@code partial} is set, which keeps the chunks before it.
+   * Validation errors and conflicts are answered by the {@link ApplicationExceptionHandler}.
+   */
+  @PostMapping(path = "import", consumes = APPLICATION_NDJSON_VALUE)
+  @ResponseStatus(HttpStatus.CREATED)
+  public RegistryImportResultDto importNdjson(InputStream body, @RequestParam(defaultValue = "false") boolean partial)
+      throws ValidationException, ConflictException {
+    LOG.info("POST " + BASE_PATH + "/import ({}, partial: {})", APPLICATION_NDJSON_VALUE, partial);
+    return service.importRegistry(body, RegistryFormat.NDJSON, partial);
+  }
+}
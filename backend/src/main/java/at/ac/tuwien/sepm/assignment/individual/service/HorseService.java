@@ -1,14 +1,29 @@
 package at.ac.tuwien.sepm.assignment.individual.service;
 
+import at.ac.tuwien.sepm.assignment.individual.dto.DescendantsQueryParamsDto;
 import at.ac.tuwien.sepm.assignment.individual.dto.FamilyTreeQueryParamsDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseBatchCreateDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseDescendantsDto;
 import at.ac.tuwien.sepm.assignment.individual.dto.HorseDetailDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseDetailWithETagDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseFamilyGraphDto;
 import at.ac.tuwien.sepm.assignment.individual.dto.HorseFamilyTreeDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseInbreedingDto;
 import at.ac.tuwien.sepm.assignment.individual.dto.HorseListDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseMinimalDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.HorsePageDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseRelationshipDto;
 import at.ac.tuwien.sepm.assignment.individual.dto.HorseSearchDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.KinshipMatrixJobDto;
 import at.ac.tuwien.sepm.assignment.individual.exception.ConflictException;
 import at.ac.tuwien.sepm.assignment.individual.exception.NotFoundException;
 import at.ac.tuwien.sepm.assignment.individual.exception.ValidationException;
+import at.ac.tuwien.sepm.assignment.individual.exception.VersionConflictException;
+import at.ac.tuwien.sepm.assignment.individual.type.RegistryFormat;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
 import java.util.stream.Stream;
 
 /**
@@ -28,6 +43,25 @@ public interface HorseService {
    */
   HorseDetailDto update(Long id, HorseDetailDto horse) throws NotFoundException, ValidationException, ConflictException;
 
+  /**
+   * Updates the horse with the given ID like {@link #update(Long, HorseDetailDto)}, but only if it was not changed
+   * since the client got the details the change is based on. The check is part of the update statement itself,
+   * so a concurrent change of the horse is never overwritten.
+   * A change of the parents of the horse since does not conflict with the update.
+   *
+   * @param id      the ID of the horse to update
+   * @param horse   the horse to update
+   * @param ifMatch the entity tag of the details the update is based on, see {@link #getDetailETag(long)}, or {@code *} for any
+   * @return the updated horse, with the entity tag of its details, both read in the transaction of the update,
+   *     so the tag is never newer than the details
+   * @throws NotFoundException        if the horse with given ID does not exist in the persistent data store
+   * @throws ValidationException      if the update data given for the horse is in itself incorrect
+   * @throws ConflictException        if the update data given for the horse is in conflict the data currently in the system
+   * @throws VersionConflictException if the horse was changed since the details with entity tag {@code ifMatch}
+   */
+  HorseDetailWithETagDto update(Long id, HorseDetailDto horse, String ifMatch)
+      throws NotFoundException, ValidationException, ConflictException, VersionConflictException;
+
 
   /**
    * Get the horse with given ID, with more detail information.
@@ -40,6 +74,16 @@ public interface HorseService {
    */
   HorseDetailDto getById(long id) throws NotFoundException;
 
+  /**
+   * Get the entity tag of the details of the horse with given ID, which changes whenever the details do,
+   * from the versions of the horse and its parents. This is much cheaper than getting the details.
+   *
+   * @param id the ID of the horse
+   * @return a strong entity tag, quoted
+   * @throws NotFoundException if the horse with the given ID does not exist in the persistent data store
+   */
+  String getDetailETag(long id) throws NotFoundException;
+
   /**
    * Creates a horse from the data given in the HorseDetailDto parameter
    *
@@ -50,6 +94,17 @@ public interface HorseService {
    */
   HorseDetailDto create(HorseDetailDto toCreate) throws ValidationException, ConflictException;
 
+  /**
+   * Creates all horses of a batch, in one transaction.
+   * Either all of them are created, or, if any of them is invalid, none.
+   *
+   * @param toCreate the horses to be created. They may reference each other as parents by their keys
+   * @return the horses that have been created, in the same order as {@code toCreate}
+   * @throws ValidationException if the data of any horse in the batch is invalid
+   * @throws ConflictException   if the data of any horse in the batch would cause a conflict with the existing state of the system
+   */
+  List<HorseMinimalDto> createBatch(List<HorseBatchCreateDto> toCreate) throws ValidationException, ConflictException;
+
   /**
    * deletes a horse from the system by its id
    *
@@ -69,6 +124,28 @@ public interface HorseService {
    */
   Stream<HorseListDto> search(HorseSearchDto searchParameters) throws ValidationException, ConflictException;
 
+  /**
+   * searches one page of horses with parameters specified in a HorseSearchDto.
+   * The page holds at most {@code searchParameters.limit} horses and starts after {@code searchParameters.cursor}, if given.
+   *
+   * @param searchParameters a HorseSearchDto which holds all the parameters that the horse has. Its limit is the page size and must be given.
+   * @return the page of horses, with the cursor to get the next page with
+   * @throws ValidationException if the searchParameters are invalid
+   * @throws ConflictException   if the searchParameters conflict with the existing state of the app
+   */
+  HorsePageDto searchPage(HorseSearchDto searchParameters) throws ValidationException, ConflictException;
+
+  /**
+   * Writes all stored horses, with the IDs of their owners and parents, to {@code out}.
+   * The horses are streamed from the persistent data store while they are written, through a buffer of fixed size,
+   * so the export never holds more than that in memory, and writes only as fast as {@code out} accepts the data.
+   *
+   * @param format the format to write the horses in
+   * @param out    the stream to write the horses to. It is flushed, but not closed
+   * @throws IOException if writing to {@code out} failed
+   */
+  void export(RegistryFormat format, OutputStream out) throws IOException;
+
   /**
    * Gets a DTO which holds the family tree of a single horse by the id of the horse and maximum limit of the tree
    *
@@ -78,4 +155,117 @@ public interface HorseService {
    * @throws ValidationException if the queryParameters of the request are invalid
    */
   HorseFamilyTreeDto getFamilyTree(FamilyTreeQueryParamsDto queryParams) throws NotFoundException, ValidationException;
+
+  /**
+   * Get the entity tag of the family tree given by {@code queryParams}, which changes whenever the tree does,
+   * from the versions of all horses in the tree. This is much cheaper than getting the tree.
+   *
+   * @param queryParams the queryParams of the family tree, which are the id of the horse and the depth-limit of the tree
+   * @return a strong entity tag, quoted
+   * @throws NotFoundException   if the horse from which the family-tree was requested was not found
+   * @throws ValidationException if the queryParameters of the request are invalid
+   */
+  String getFamilyTreeETag(FamilyTreeQueryParamsDto queryParams) throws NotFoundException, ValidationException;
+
+  /**
+   * Get the family tree of the horse with the ID given in {@code queryParams} as a graph,
+   * in which every ancestor appears once, instead of once per path that leads to it.
+   *
+   * @param queryParams the queryParams of the family tree, which are the id of the horse and the depth-limit of the tree
+   * @return a DTO which holds the horse and its ancestors, referencing their parents by index
+   * @throws NotFoundException   if the horse from which the family-tree was requested was not found
+   * @throws ValidationException if the queryParameters of the request are invalid
+   */
+  HorseFamilyGraphDto getFamilyGraph(FamilyTreeQueryParamsDto queryParams) throws NotFoundException, ValidationException;
+
+  /**
+   * Get the descendants of a horse, generation by generation, with every generation paged on its own.
+   *
+   * @param queryParams the horse, how many generations to go on, and which page of the generations to get
+   * @return a DTO which holds the requested page of every generation, together with whether the generation has more horses
+   * @throws NotFoundException   if the horse was not found
+   * @throws ValidationException if the queryParameters of the request are invalid
+   */
+  HorseDescendantsDto getDescendants(DescendantsQueryParamsDto queryParams) throws NotFoundException, ValidationException;
+
+  /**
+   * Get the inbreeding coefficient of a horse, from its pedigree up to the given number of generations back.
+   * Ancestors further back count as unknown.
+   *
+   * @param id          the ID of the horse
+   * @param generations how many generations of ancestors to take into account
+   * @return a DTO which holds the inbreeding coefficient of the horse
+   * @throws NotFoundException   if the horse was not found
+   * @throws ValidationException if the number of generations is invalid
+   */
+  HorseInbreedingDto getInbreeding(Long id, Integer generations) throws NotFoundException, ValidationException;
+
+  /**
+   * Get how two horses are related: their closest common ancestors, with a shortest path from each horse to every one of them.
+   * A horse that is an ancestor of the other one is their only closest common ancestor.
+   *
+   * @param firstId  the ID of the first horse
+   * @param secondId the ID of the second horse
+   * @return a DTO which holds the closest common ancestors of the horses and the paths to them; without any if they are not related
+   * @throws NotFoundException if one of the horses was not found
+   */
+  HorseRelationshipDto getRelationship(Long firstId, Long secondId) throws NotFoundException;
+
+  /**
+   * Writes the kinship of all pairs of horses that match a search to {@code out}, as newline delimited JSON.
+   * There is one line per horse, in the order of the search, holding its ID and its kinship with the horses of all lines
+   * up to and including its own, like {@code {"id":3,"kinship":[0.125,0.0,0.5]}} for the third horse.
+   * The kinship is computed from the complete pedigree of the horses, on the threads of the pool of kinship matrices.
+   *
+   * @param searchParameters the search that selects the horses; its limit is optional, the cursor and excluded horse are ignored
+   * @param out              the stream to write the kinship to. It is flushed, but not closed
+   * @throws ValidationException if the searchParameters are invalid, or more than 5000 horses match them
+   * @throws ConflictException   if the searchParameters conflict with the existing state of the app
+   * @throws IOException         if writing to {@code out} failed
+   */
+  void writeKinshipMatrix(HorseSearchDto searchParameters, OutputStream out) throws ValidationException, ConflictException, IOException;
+
+  /**
+   * Starts a batch job that computes the kinship matrix of all horses that match a search, like {@link #writeKinshipMatrix}.
+   * The horses are searched, and their pedigree is read, right away, the matrix is computed once the jobs before it are done.
+   *
+   * @param searchParameters the search that selects the horses; its limit is optional, the cursor and excluded horse are ignored
+   * @return the started job
+   * @throws ValidationException if the searchParameters are invalid, or more than 5000 horses match them
+   * @throws ConflictException   if the searchParameters conflict with the existing state of the app, or too many jobs are waiting already
+   */
+  KinshipMatrixJobDto startKinshipMatrixJob(HorseSearchDto searchParameters) throws ValidationException, ConflictException;
+
+  /**
+   * Gets the state of a kinship matrix job.
+   *
+   * @param id the ID of the job
+   * @return the job
+   * @throws NotFoundException if there is no such job, or its matrix is not kept anymore
+   */
+  KinshipMatrixJobDto getKinshipMatrixJob(long id) throws NotFoundException;
+
+  /**
+   * Writes the kinship matrix a job computed to {@code out}, in the format of {@link #writeKinshipMatrix}.
+   *
+   * @param id  the ID of the job
+   * @param out the stream to write the kinship to. It is flushed, but not closed
+   * @throws NotFoundException if there is no such job, or its matrix is not kept anymore
+   * @throws ConflictException if the job is not done
+   * @throws IOException       if writing to {@code out} failed
+   */
+  void writeKinshipMatrixOfJob(long id, OutputStream out) throws NotFoundException, ConflictException, IOException;
+
+  /**
+   * Rebuilds the stored ancestry of all horses from their parents, in one transaction.
+   * Every write of a horse keeps the ancestry up to date, this repairs it after the horses were written around the application.
+   */
+  void rebuildAncestry();
+
+  /**
+   * Checks the stored ancestry of all horses against their parents.
+   *
+   * @return the IDs of all horses whose stored ancestry is inconsistent with their parents. Empty if the ancestry is consistent
+   */
+  List<Long> checkAncestry();
 }
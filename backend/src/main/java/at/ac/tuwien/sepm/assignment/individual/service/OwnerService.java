@@ -33,6 +33,14 @@ public interface OwnerService {
    */
   Map<Long, OwnerDto> getOwnersByIds(Collection<Long> ids) throws NotFoundException;
 
+  /**
+   * Fetch the owners referenced by the IDs in {@code ids} that exist, and leave out those that do not.
+   *
+   * @param ids the IDs of the owners, that should be fetched
+   * @return a map that contains the owners that were found with their IDs as key
+   */
+  Map<Long, OwnerDto> findOwnersByIds(Collection<Long> ids);
+
   /**
    * Search for owners matching the criteria in {@code searchParameters}.
    * <p>
@@ -0,0 +1,33 @@
+package at.ac.tuwien.sepm.assignment.individual.service;
+
+import at.ac.tuwien.sepm.assignment.individual.dto.RegistryImportResultDto;
+import at.ac.tuwien.sepm.assignment.individual.exception.ConflictException;
+import at.ac.tuwien.sepm.assignment.individual.exception.ValidationException;
+import at.ac.tuwien.sepm.assignment.individual.type.RegistryFormat;
+
+import java.io.InputStream;
+
+/**
+ * Service for importing registries of owners and horses from files.
+ */
+public interface RegistryImportService {
+  /**
+   * Imports all owners and horses of a registry file, reading it as a stream,
+   * so the file never has to fit into memory.
+   * Records reference owners and parents by key. A referenced record has to come before the records referencing it,
+   * or has to be stored already with that registry key.
+   * The records are validated and written in chunks. Unless the import may be partial,
+   * all chunks are written in one transaction, and an invalid record leaves the stored data as it was.
+   * A partial import writes each chunk in a transaction of its own, and stops at the first chunk with an invalid record,
+   * all chunks before it stay imported.
+   *
+   * @param input   the registry file
+   * @param format  the format of the registry file
+   * @param partial whether the chunks before an invalid record stay imported
+   * @return how many owners and horses were imported, and how fast
+   * @throws ValidationException if a record is malformed or its data is invalid.
+   *                             The message names the line of the chunk that failed, and whether the records before it were imported
+   * @throws ConflictException   if a record is in conflict with the stored data, e.g. its key is used already
+   */
+  RegistryImportResultDto importRegistry(InputStream input, RegistryFormat format, boolean partial) throws ValidationException, ConflictException;
+}
@@ -0,0 +1,30 @@
+package at.ac.tuwien.sepm.assignment.individual.service.impl;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Defers changes of state held in memory until the transaction that wrote the data store is committed,
+ * so a rolled back transaction leaves them out, and no other thread sees them before the data store.
+ */
+final class AfterCommit {
+
+  private AfterCommit() {
+  }
+
+  /**
+   * Runs the change once the current transaction is committed, or right away if there is none.
+   */
+  static void run(Runnable change) {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCommit() {
+          change.run();
+        }
+      });
+    } else {
+      change.run();
+    }
+  }
+}
@@ -0,0 +1,129 @@
+package at.ac.tuwien.sepm.assignment.individual.service.impl;
+
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseFamilyGraphDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseFamilyGraphNodeDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseFamilyTreeDto;
+import at.ac.tuwien.sepm.assignment.individual.entity.Horse;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assembles the family tree of a horse from its ancestors, without recursion, either nested or as a graph.
+ *
+ * <p>For the nested tree, the ancestors are sorted into their generations from the horse on, and the tree is then built
+ * from the oldest generation back. A horse that is an ancestor twice in the same generation gets one subtree, which both places share.
+ * A horse that is an ancestor in several generations gets a subtree in each of them, as each is cut off after another number of generations,
+ * so the time is linear to the number of pairs of an ancestor and a generation it is in, which is at most the ancestors times the generations.
+ *
+ * <p>The graph holds every ancestor once, at the generation closest to the horse. It is built in time linear to the number of ancestors,
+ * as each of them is visited once only.
+ */
+final class FamilyTreeBuilder {
+
+  private FamilyTreeBuilder() {
+  }
+
+  /**
+   * Builds the family tree of a horse.
+   *
+   * @param horseId     the ID of the horse at the root of the tree
+   * @param horses      the horse and its ancestors, by their IDs; parents that are missing are left out of the tree
+   * @param generations how many generations the tree holds, counting the horse itself
+   * @return the family tree, or {@code null} if the horse is missing from {@code horses}
+   */
+  static HorseFamilyTreeDto build(Long horseId, Map<Long, Horse> horses, int generations) {
+    List<Map<Long, Horse>> levels = levels(horseId, horses, generations);
+
+    Map<Long, HorseFamilyTreeDto> olderTrees = Map.of();
+    for (int generation = levels.size() - 1; generation >= 0; generation--) {
+      Map<Long, HorseFamilyTreeDto> trees = new HashMap<>();
+      for (Horse horse : levels.get(generation).values()) {
+        trees.put(horse.getId(), new HorseFamilyTreeDto(
+            horse.getId(),
+            horse.getName(),
+            horse.getDateOfBirth(),
+            horse.getSex(),
+            horse.getMotherId() == null ? null : olderTrees.get(horse.getMotherId()),
+            horse.getFatherId() == null ? null : olderTrees.get(horse.getFatherId())));
+      }
+      olderTrees = trees;
+    }
+    return olderTrees.get(horseId);
+  }
+
+  /**
+   * Builds the family tree of a horse as a graph, in which every horse appears once, at the generation closest to the root.
+   *
+   * @param horseId     the ID of the horse at the root of the graph
+   * @param horses      the horse and its ancestors, by their IDs; parents that are missing are left out of the graph
+   * @param generations how many generations the graph holds, counting the horse itself
+   * @return the family graph, which has no nodes if the horse is missing from {@code horses}
+   */
+  static HorseFamilyGraphDto buildGraph(Long horseId, Map<Long, Horse> horses, int generations) {
+    // breadth first, so every horse is first reached on a shortest path, and the nodes up to then are those of the closer generations
+    Map<Long, Integer> indexes = new HashMap<>();
+    List<Horse> nodes = new ArrayList<>();
+    addNodeIfKnown(nodes, indexes, horseId, horses);
+    int generationStart = 0;
+    for (int generation = 1; generation < generations && generationStart < nodes.size(); generation++) {
+      int generationEnd = nodes.size();
+      for (int i = generationStart; i < generationEnd; i++) {
+        addNodeIfKnown(nodes, indexes, nodes.get(i).getMotherId(), horses);
+        addNodeIfKnown(nodes, indexes, nodes.get(i).getFatherId(), horses);
+      }
+      generationStart = generationEnd;
+    }
+    return new HorseFamilyGraphDto(nodes.stream()
+        .map(horse -> new HorseFamilyGraphNodeDto(
+            horse.getId(),
+            horse.getName(),
+            horse.getDateOfBirth(),
+            horse.getSex(),
+            horse.getMotherId() == null ? null : indexes.get(horse.getMotherId()),
+            horse.getFatherId() == null ? null : indexes.get(horse.getFatherId())))
+        .toList());
+  }
+
+  /**
+   * Sorts the horse and its ancestors into their generations, starting with the horse.
+   * An ancestor is in every generation it has a path to the horse of that length.
+   */
+  private static List<Map<Long, Horse>> levels(Long horseId, Map<Long, Horse> horses, int generations) {
+    List<Map<Long, Horse>> levels = new ArrayList<>();
+    Map<Long, Horse> level = new LinkedHashMap<>();
+    addIfKnown(level, horseId, horses);
+    while (!level.isEmpty() && levels.size() < generations) {
+      levels.add(level);
+      Map<Long, Horse> parents = new LinkedHashMap<>();
+      for (Horse horse : level.values()) {
+        addIfKnown(parents, horse.getMotherId(), horses);
+        addIfKnown(parents, horse.getFatherId(), horses);
+      }
+      level = parents;
+    }
+    return levels;
+  }
+
+  private static void addNodeIfKnown(List<Horse> nodes, Map<Long, Integer> indexes, Long id, Map<Long, Horse> horses) {
+    if (id != null && !indexes.containsKey(id)) {
+      Horse horse = horses.get(id);
+      if (horse != null) {
+        indexes.put(id, nodes.size());
+        nodes.add(horse);
+      }
+    }
+  }
+
+  private static void addIfKnown(Map<Long, Horse> level, Long id, Map<Long, Horse> horses) {
+    if (id != null) {
+      Horse horse = horses.get(id);
+      if (horse != null) {
+        level.putIfAbsent(id, horse);
+      }
+    }
+  }
+}
@@ -0,0 +1,191 @@
+package at.ac.tuwien.sepm.assignment.individual.service.impl;
+
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseFamilyTreeDto;
+import at.ac.tuwien.sepm.assignment.individual.entity.Horse;
+import at.ac.tuwien.sepm.assignment.individual.exception.NotFoundException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import java.lang.invoke.MethodHandles;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Family trees that were requested before, by the horse at their root and their number of generations.
+ * The cache is bounded by the number of horses all of its trees hold together, and evicts the trees
+ * that are least likely to be requested again, judged by how often and how recently they were (W-TinyLFU).
+ * Its hits, misses, evictions and load times are published as the metrics of the cache {@value #CACHE_NAME}.
+ *
+ * <p>Every horse of a cached tree references the tree in an index, so a change of a horse drops exactly the trees that hold it,
+ * and all others stay. A tree that was loaded while a horse changed may hold the old state of the horse,
+ * it is dropped once loaded, instead of being kept.
+ */
+@Component
+@ConditionalOnProperty(name = "family-tree-cache.enabled", havingValue = "true", matchIfMissing = true)
+public class FamilyTreeCache {
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  static final String CACHE_NAME = "familyTree";
+
+  private final Cache<Key, Entry> cache;
+  // the keys of the cached trees every horse is part of
+  private final Map<Long, Set<Key>> keysByHorse = new ConcurrentHashMap<>();
+  // counts the changes of horses, a tree loaded while it changed is not kept
+  private final AtomicLong changes = new AtomicLong();
+
+  public FamilyTreeCache(@Value("${family-tree-cache.maximum-weight:200000}") long maximumWeight, Optional<MeterRegistry> meterRegistry) {
+    cache = Caffeine.newBuilder()
+        .maximumWeight(maximumWeight)
+        .<Key, Entry>weigher((key, entry) -> entry.horseIds().length)
+        // runs atomically with the eviction, so a tree that is loaded anew under the same key is not unindexed
+        .evictionListener((key, entry, cause) -> unindex(key, entry))
+        .recordStats()
+        .build();
+    meterRegistry.ifPresent(registry -> CaffeineCacheMetrics.monitor(registry, cache, CACHE_NAME));
+  }
+
+  /**
+   * Loads the horses of a family tree.
+   */
+  @FunctionalInterface
+  public interface Loader {
+    /**
+     * @return the horse at the root of the tree and its ancestors, by their IDs
+     * @throws NotFoundException if the horse at the root of the tree was not found
+     */
+    Map<Long, Horse> load() throws NotFoundException;
+  }
+
+  /**
+   * Gets a family tree from the cache, or builds it from the horses of {@code loader} and caches it.
+   *
+   * @param horseId     the ID of the horse at the root of the tree
+   * @param generations how many generations the tree holds, counting the horse itself
+   * @param loader      loads the horses of the tree if it is not cached
+   * @return the family tree
+   * @throws NotFoundException if the tree is not cached, and {@code loader} did not find the horse
+   */
+  public HorseFamilyTreeDto get(long horseId, int generations, Loader loader) throws NotFoundException {
+    long changesBefore = changes.get();
+    var key = new Key(horseId, generations);
+    boolean[] loaded = {false};
+    Entry entry;
+    try {
+      entry = cache.get(key, k -> {
+        Map<Long, Horse> horses;
+        try {
+          horses = loader.load();
+        } catch (NotFoundException e) {
+          throw new LoadFailure(e);
+        }
+        var loadedEntry = new Entry(FamilyTreeBuilder.build(horseId, horses, generations),
+            horses.keySet().stream().mapToLong(Long::longValue).toArray());
+        index(k, loadedEntry);
+        loaded[0] = true;
+        return loadedEntry;
+      });
+    } catch (LoadFailure e) {
+      throw e.getCause();
+    }
+    if (loaded[0] && changes.get() != changesBefore) {
+      // a change that was applied before the tree was indexed did not find it
+      remove(key);
+    }
+    return entry.tree();
+  }
+
+  /**
+   * Drops every cached family tree that holds the horse, once the current transaction is committed.
+   * Must be called whenever a horse is changed or deleted.
+   *
+   * @param horseId the ID of the changed horse
+   */
+  public void invalidateHorse(long horseId) {
+    LOG.trace("invalidateHorse({})", horseId);
+    AfterCommit.run(() -> {
+      changes.incrementAndGet();
+      Set<Key> keys = keysByHorse.get(horseId);
+      if (keys != null) {
+        for (Key key : List.copyOf(keys)) {
+          remove(key);
+        }
+      }
+    });
+  }
+
+  /**
+   * Drops all cached family trees, once the current transaction is committed.
+   */
+  public void invalidateAll() {
+    LOG.trace("invalidateAll()");
+    AfterCommit.run(() -> {
+      changes.incrementAndGet();
+      for (Key key : List.copyOf(cache.asMap().keySet())) {
+        remove(key);
+      }
+    });
+  }
+
+  /**
+   * Checks whether the family tree of the horse with that many generations is cached.
+   */
+  public boolean isCached(long horseId, int generations) {
+    return cache.asMap().containsKey(new Key(horseId, generations));
+  }
+
+  private void remove(Key key) {
+    // atomic with loading the tree anew under the same key
+    cache.asMap().computeIfPresent(key, (k, entry) -> {
+      unindex(k, entry);
+      return null;
+    });
+  }
+
+  private void index(Key key, Entry entry) {
+    for (long horseId : entry.horseIds()) {
+      keysByHorse.computeIfAbsent(horseId, id -> ConcurrentHashMap.newKeySet()).add(key);
+    }
+  }
+
+  private void unindex(Key key, Entry entry) {
+    for (long horseId : entry.horseIds()) {
+      keysByHorse.computeIfPresent(horseId, (id, keys) -> {
+        keys.remove(key);
+        return keys.isEmpty() ? null : keys;
+      });
+    }
+  }
+
+
+  private record Key(long horseId, int generations) {
+  }
+
+  private record Entry(HorseFamilyTreeDto tree, long[] horseIds) {
+  }
+
+  /**
+   * Carries a {@link NotFoundException} of a loader out of the cache, which only lets unchecked exceptions pass.
+   */
+  private static final class LoadFailure extends RuntimeException {
+    LoadFailure(NotFoundException cause) {
+      super(cause);
+    }
+
+    @Override
+    public synchronized NotFoundException getCause() {
+      return (NotFoundException) super.getCause();
+    }
+  }
+}
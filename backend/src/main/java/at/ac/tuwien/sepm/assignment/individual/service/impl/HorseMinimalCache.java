@@ -0,0 +1,121 @@
+package at.ac.tuwien.sepm.assignment.individual.service.impl;
+
+import at.ac.tuwien.sepm.assignment.individual.entity.HorseMinimal;
+import at.ac.tuwien.sepm.assignment.individual.persistence.HorseDao;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import java.lang.invoke.MethodHandles;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * The name, date of birth and sex of horses, by their IDs, as they are looked up for every parent that is validated,
+ * and for every ancestor of a family tree. A few popular sires and dams are looked up over and over,
+ * so the cache is bounded by its number of horses, and keeps those that are most likely to be looked up again.
+ * A lookup of many horses loads only those that are not cached, in one query.
+ * Its hits, misses and evictions are published as the metrics of the cache {@value #CACHE_NAME}.
+ *
+ * <p>The cached horses are shared, they must not be modified.
+ * A horse that was loaded while a horse changed may be the old state of the changed one, it is not cached.
+ */
+@Component
+public class HorseMinimalCache {
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  static final String CACHE_NAME = "horseMinimal";
+
+  private final HorseDao horseDao;
+  private final Cache<Long, HorseMinimal> cache;
+  // counts the changes of horses, horses loaded while one changed are not cached
+  private final AtomicLong changes = new AtomicLong();
+
+  public HorseMinimalCache(HorseDao horseDao, @Value("${horse-minimal-cache.maximum-size:50000}") long maximumSize,
+                           Optional<MeterRegistry> meterRegistry) {
+    this.horseDao = horseDao;
+    this.cache = Caffeine.newBuilder()
+        .maximumSize(maximumSize)
+        .recordStats()
+        .build();
+    meterRegistry.ifPresent(registry -> CaffeineCacheMetrics.monitor(registry, cache, CACHE_NAME));
+  }
+
+  /**
+   * Gets the horses with the given IDs, from the cache, or in one lookup for all that are not cached.
+   *
+   * @param ids the IDs of the horses
+   * @return the horses that were found, by their IDs. IDs of horses that do not exist are left out
+   */
+  public Map<Long, HorseMinimal> getAll(Collection<Long> ids) {
+    return getAll(ids, horseDao::getHorseMinimalsByIds);
+  }
+
+  /**
+   * Gets the horses with the given IDs like {@link #getAll(Collection)}, but loads those that are not cached with {@code loader},
+   * which lets the caller look up more than the horses in the same query.
+   *
+   * @param ids    the IDs of the horses
+   * @param loader loads the horses with the IDs that are not cached, it is not called if all of them are
+   * @return the horses that were found, by their IDs. IDs of horses that do not exist are left out
+   */
+  public Map<Long, HorseMinimal> getAll(Collection<Long> ids, Function<Set<Long>, Collection<HorseMinimal>> loader) {
+    LOG.trace("getAll({})", ids);
+    Map<Long, HorseMinimal> horses = new HashMap<>(cache.getAllPresent(ids));
+    Set<Long> missing = new HashSet<>(ids);
+    missing.removeAll(horses.keySet());
+    if (!missing.isEmpty()) {
+      final long changesBefore = changes.get();
+      Map<Long, HorseMinimal> loaded = loader.apply(missing).stream()
+          .collect(Collectors.toUnmodifiableMap(HorseMinimal::getId, Function.identity()));
+      horses.putAll(loaded);
+      // within a transaction the horses may be uncommitted ones, that must not be seen by others before
+      AfterCommit.run(() -> putUnlessChanged(loaded, changesBefore));
+    }
+    return Collections.unmodifiableMap(horses);
+  }
+
+  /**
+   * Drops the horse from the cache, once the current transaction is committed.
+   * Must be called whenever a horse is changed or deleted.
+   *
+   * @param horseId the ID of the changed horse
+   */
+  public void invalidate(long horseId) {
+    LOG.trace("invalidate({})", horseId);
+    AfterCommit.run(() -> {
+      synchronized (this) {
+        changes.incrementAndGet();
+        cache.invalidate(horseId);
+      }
+    });
+  }
+
+  /**
+   * Checks whether the horse is cached.
+   */
+  public boolean isCached(long horseId) {
+    return cache.asMap().containsKey(horseId);
+  }
+
+  // synchronized with invalidate, so a change cannot slip in between checking and putting
+  private synchronized void putUnlessChanged(Map<Long, HorseMinimal> horses, long changesBefore) {
+    if (changes.get() == changesBefore) {
+      cache.putAll(horses);
+    }
+  }
+}
@@ -1,164 +1,539 @@
 package at.ac.tuwien.sepm.assignment.individual.service.impl;
 
+import at.ac.tuwien.sepm.assignment.individual.dto.DescendantsQueryParamsDto;
 import at.ac.tuwien.sepm.assignment.individual.dto.FamilyTreeQueryParamsDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseBatchCreateDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseCommonAncestorDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseDescendantsDto;
 import at.ac.tuwien.sepm.assignment.individual.dto.HorseDetailDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseDetailWithETagDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseExportDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseFamilyGraphDto;
 import at.ac.tuwien.sepm.assignment.individual.dto.HorseFamilyTreeDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseInbreedingDto;
 import at.ac.tuwien.sepm.assignment.individual.dto.HorseListDto;
 import at.ac.tuwien.sepm.assignment.individual.dto.HorseMinimalDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.HorsePageDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseRelationshipDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseSearchCursor;
 import at.ac.tuwien.sepm.assignment.individual.dto.HorseSearchDto;
-import at.ac.tuwien.sepm.assignment.individual.dto.OwnerDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.KinshipMatrixJobDto;
+import at.ac.tuwien.sepm.assignment.individual.entity.CommonAncestor;
 import at.ac.tuwien.sepm.assignment.individual.entity.Horse;
 import at.ac.tuwien.sepm.assignment.individual.entity.HorseMinimal;
+import at.ac.tuwien.sepm.assignment.individual.entity.HorseVersion;
 import at.ac.tuwien.sepm.assignment.individual.exception.ConflictException;
 import at.ac.tuwien.sepm.assignment.individual.exception.FatalException;
 import at.ac.tuwien.sepm.assignment.individual.exception.NotFoundException;
 import at.ac.tuwien.sepm.assignment.individual.exception.ValidationException;
+import at.ac.tuwien.sepm.assignment.individual.exception.VersionConflictException;
 import at.ac.tuwien.sepm.assignment.individual.mapper.HorseMapper;
 import at.ac.tuwien.sepm.assignment.individual.persistence.HorseDao;
 import at.ac.tuwien.sepm.assignment.individual.service.HorseService;
-import at.ac.tuwien.sepm.assignment.individual.service.OwnerService;
+import at.ac.tuwien.sepm.assignment.individual.type.KinshipMatrixJobStatus;
+import at.ac.tuwien.sepm.assignment.individual.type.RegistryFormat;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.lang.invoke.MethodHandles;
-import java.util.Collections;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 import java.util.stream.Stream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 @Service
 public class HorseServiceImpl implements HorseService {
   private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
+  private static final int EXPORT_BUFFER_SIZE = 64 * 1024;
+  private static final String EXPORT_CSV_HEADER = "id,name,description,date_of_birth,sex,owner_id,mother_id,father_id\n";
+  // the triangle of the kinship matrix of a herd this large takes 100 MB
+  private static final int KINSHIP_MATRIX_MAX_HORSES = 5_000;
+  // of the digest an entity tag is made of, 128 bits make a collision of two versions of a response unlikely enough
+  private static final int ENTITY_TAG_BYTES = 16;
+  private static final Pattern DETAIL_ENTITY_TAG = Pattern.compile("\"(\\d{1,18})-[0-9a-f]+\"");
+
   private final HorseDao dao;
   private final HorseMapper mapper;
   private final HorseValidator validator;
-  private final OwnerService ownerService;
+  private final ObjectMapper objectMapper;
+  private final Optional<PedigreeGraph> pedigreeGraph;
+  private final Optional<FamilyTreeCache> familyTreeCache;
+  private final HorseMinimalCache horseMinimalCache;
+  private final KinshipMatrixJobs kinshipMatrixJobs;
 
-  public HorseServiceImpl(HorseDao dao, HorseMapper mapper, HorseValidator validator, OwnerService ownerService) {
+  public HorseServiceImpl(HorseDao dao, HorseMapper mapper, HorseValidator validator, ObjectMapper objectMapper,
+                          Optional<PedigreeGraph> pedigreeGraph, Optional<FamilyTreeCache> familyTreeCache, HorseMinimalCache horseMinimalCache,
+                          KinshipMatrixJobs kinshipMatrixJobs) {
     this.dao = dao;
     this.mapper = mapper;
     this.validator = validator;
-    this.ownerService = ownerService;
+    this.objectMapper = objectMapper;
+    this.pedigreeGraph = pedigreeGraph;
+    this.familyTreeCache = familyTreeCache;
+    this.horseMinimalCache = horseMinimalCache;
+    this.kinshipMatrixJobs = kinshipMatrixJobs;
   }
 
   @Override
+  @Transactional(rollbackFor = ConflictException.class)
   public HorseDetailDto update(Long id, HorseDetailDto updateData) throws NotFoundException, ValidationException, ConflictException {
     LOG.trace("update({})", updateData);
-    validator.validateForUpdate(updateData);
-    var updatedHorse = dao.update(id, updateData);
-    return mapper.entityToDetailDto(
-        updatedHorse,
-        ownerMapForSingleId(updatedHorse.getOwnerId()),
-        horseMapForSingleId(updatedHorse.getMotherId()),
-        horseMapForSingleId(updatedHorse.getFatherId())
-    );
+    try {
+      return updateExpectingVersion(id, updateData, null).horse();
+    } catch (VersionConflictException e) {
+      throw new FatalException("Horse %d was updated regardless of its version, but its version conflicted".formatted(id), e);
+    }
+  }
+
+  @Override
+  // the children are validated against the written update, which is rolled back if they conflict with it
+  @Transactional(rollbackFor = ConflictException.class)
+  public HorseDetailWithETagDto update(Long id, HorseDetailDto updateData, String ifMatch)
+      throws NotFoundException, ValidationException, ConflictException, VersionConflictException {
+    LOG.trace("update({}, if match {})", updateData, ifMatch);
+    return updateExpectingVersion(id, updateData, ifMatch == null || ifMatch.trim().equals("*") ? null : versionOfDetailETag(ifMatch));
+  }
+
+  private HorseDetailWithETagDto updateExpectingVersion(Long id, HorseDetailDto updateData, Long expectedVersion)
+      throws NotFoundException, ValidationException, ConflictException, VersionConflictException {
+    validator.validateForUpdate(id, updateData);
+    Horse previous = dao.update(id, updateData, expectedVersion);
+    validator.validateChildrenOfUpdatedHorse(id, previous, updateData);
+    pedigreeGraph.ifPresent(graph -> graph.put(new Horse()
+        .setId(id)
+        .setName(updateData.name())
+        .setDateOfBirth(updateData.dateOfBirth())
+        .setSex(updateData.sex())
+        .setMotherId(updateData.motherId())
+        .setFatherId(updateData.fatherId())));
+    familyTreeCache.ifPresent(cache -> cache.invalidateHorse(id));
+    horseMinimalCache.invalidate(id);
+    // both are read before the update commits, and the tag before the details, so the tag is never newer than them
+    try {
+      String entityTag = getDetailETag(id);
+      return new HorseDetailWithETagDto(getDetailOfWrittenHorse(id), entityTag);
+    } catch (NotFoundException e) {
+      throw new FatalException("Horse %d was just written but not found".formatted(id), e);
+    }
   }
 
   @Override
   public HorseDetailDto getById(long id) throws NotFoundException {
     LOG.trace("details({})", id);
-    Horse horse = dao.getById(id);
-    return mapper.entityToDetailDto(
-        horse,
-        ownerMapForSingleId(horse.getOwnerId()),
-        horseMapForSingleId(horse.getMotherId()),
-        horseMapForSingleId(horse.getFatherId())
-    );
+    return mapper.entityToDetailDto(dao.getDetailById(id));
+  }
+
+  @Override
+  public String getDetailETag(long id) throws NotFoundException {
+    LOG.trace("getDetailETag({})", id);
+    List<HorseVersion> versions = dao.getDetailVersions(id);
+    // the version of the horse itself is part of the tag in plain, so an update can be made conditional on it
+    return "\"%d-%s\"".formatted(versions.get(0).getVersion(), digest(versions));
   }
 
   @Override
+  @Transactional
   public HorseDetailDto create(HorseDetailDto createData) throws ValidationException, ConflictException {
     LOG.trace("horse create body: {}", createData);
     validator.validateForCreate(createData);
     var createdHorse = dao.create(createData);
-    return mapper.entityToDetailDto(
-        createdHorse,
-        ownerMapForSingleId(createdHorse.getOwnerId()),
-        horseMapForSingleId(createdHorse.getMotherId()),
-        horseMapForSingleId(createdHorse.getFatherId())
-    );
+    pedigreeGraph.ifPresent(graph -> graph.put(createdHorse));
+    return getDetailOfWrittenHorse(createdHorse.getId());
+  }
+
+  @Override
+  @Transactional
+  public List<HorseMinimalDto> createBatch(List<HorseBatchCreateDto> toCreate) throws ValidationException, ConflictException {
+    LOG.trace("createBatch: {} horses", toCreate == null ? null : toCreate.size());
+    validator.validateForBatchCreate(toCreate);
+    List<Horse> created = dao.createBatch(toCreate);
+    pedigreeGraph.ifPresent(graph -> graph.putAll(created));
+    return created.stream()
+        .map(horse -> new HorseMinimalDto(horse.getId(), horse.getName(), horse.getDateOfBirth(), horse.getSex()))
+        .toList();
   }
 
-  private Map<Long, OwnerDto> ownerMapForSingleId(Long ownerId) {
-    LOG.trace("ownerMapForSingleId. ID={}", ownerId);
+  private HorseDetailDto getDetailOfWrittenHorse(long id) {
+    LOG.trace("getDetailOfWrittenHorse({})", id);
     try {
-      return ownerId == null
-          ? null
-          : Collections.singletonMap(ownerId, ownerService.getById(ownerId));
+      return mapper.entityToDetailDto(dao.getDetailById(id));
     } catch (NotFoundException e) {
-      throw new FatalException("Owner %d referenced by horse not found".formatted(ownerId));
+      throw new FatalException("Horse %d was just written but not found".formatted(id), e);
     }
   }
 
-  private Map<Long, HorseMinimalDto> horseMapForSingleId(Long horseId) {
-    LOG.trace("horseMapForSingleId. ID={}", horseId);
-    return horseId == null
-        ? null
-        : Collections.singletonMap(horseId, mapper.minimalEntityToMinimalDto(getMinimalHorseById(horseId)));
-  }
-
-  private HorseMinimal getMinimalHorseById(Long id) {
-    LOG.trace("minimals({})", id);
-    return dao.getHorseMinimalById(id);
-  }
-
   @Override
+  @Transactional
   public void delete(Long id) throws NotFoundException {
     LOG.trace("delete horse with id {}", id);
     dao.delete(id);
+    pedigreeGraph.ifPresent(graph -> graph.remove(id));
+    // the children of the horse lose it as their parent
+    familyTreeCache.ifPresent(cache -> cache.invalidateHorse(id));
+    horseMinimalCache.invalidate(id);
   }
 
   @Override
   public Stream<HorseListDto> search(HorseSearchDto searchParameters) throws ValidationException, ConflictException {
     LOG.trace("search. params: {}", searchParameters);
     validator.validateForSearch(searchParameters);
-    var horses = dao.search(searchParameters);
-    var ownerIds = horses.stream()
-        .map(Horse::getOwnerId)
-        .filter(Objects::nonNull)
-        .collect(Collectors.toUnmodifiableSet());
+    return dao.searchStream(searchParameters).map(mapper::entityToListDto);
+  }
 
-    try {
-      Map<Long, OwnerDto> horsesOwners = ownerService.getOwnersByIds(ownerIds);
-      Stream<HorseListDto> result = horses.stream().map(horse -> mapper.entityToListDto(horse, horsesOwners));
-      return result;
-    } catch (NotFoundException nfe) {
-      throw new FatalException("Error while trying to query owner of horse.");
+  @Override
+  public HorsePageDto searchPage(HorseSearchDto searchParameters) throws ValidationException, ConflictException {
+    LOG.trace("searchPage. params: {}", searchParameters);
+    Integer pageSize = searchParameters.limit();
+    if (pageSize == null) {
+      throw new ValidationException("Validation of horse search page failed", List.of("Limit must be given to search a page"));
+    }
+    validator.validateForSearch(searchParameters);
+    // one horse more than the page holds tells whether there is a next page
+    var lookAheadParameters = new HorseSearchDto(
+        searchParameters.name(),
+        searchParameters.description(),
+        searchParameters.bornBefore(),
+        searchParameters.sex(),
+        searchParameters.ownerId(),
+        pageSize + 1,
+        searchParameters.idOfHorseToBeExcluded(),
+        searchParameters.cursor());
+    List<HorseListDto> horses = dao.search(lookAheadParameters).stream().map(mapper::entityToListDto).toList();
+    if (horses.size() <= pageSize) {
+      return new HorsePageDto(horses, null);
     }
+    List<HorseListDto> page = horses.subList(0, pageSize);
+    HorseListDto last = page.get(pageSize - 1);
+    return new HorsePageDto(page, new HorseSearchCursor(last.name(), last.id()).encode());
+  }
+
+  @Override
+  public void export(RegistryFormat format, OutputStream out) throws IOException {
+    LOG.trace("export({})", format);
+    long exported = 0;
+    var writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), EXPORT_BUFFER_SIZE);
+    try (Stream<HorseExportDto> horses = dao.exportStream().map(mapper::entityToExportDto)) {
+      Iterator<HorseExportDto> iterator = horses.iterator();
+      ObjectWriter json = objectMapper.writerFor(HorseExportDto.class);
+      if (format == RegistryFormat.CSV) {
+        writer.write(EXPORT_CSV_HEADER);
+      }
+      while (iterator.hasNext()) {
+        HorseExportDto horse = iterator.next();
+        if (format == RegistryFormat.CSV) {
+          writeCsvLine(writer, horse);
+        } else {
+          writer.write(json.writeValueAsString(horse));
+          writer.write('\n');
+        }
+        exported++;
+      }
+    }
+    writer.flush();
+    LOG.debug("Exported {} horses", exported);
+  }
+
+  private static void writeCsvLine(Writer writer, HorseExportDto horse) throws IOException {
+    writer.write(String.valueOf(horse.id()));
+    writer.write(',');
+    writer.write(csvValue(horse.name()));
+    writer.write(',');
+    writer.write(csvValue(horse.description()));
+    writer.write(',');
+    writer.write(csvValue(horse.dateOfBirth()));
+    writer.write(',');
+    writer.write(csvValue(horse.sex()));
+    writer.write(',');
+    writer.write(csvValue(horse.ownerId()));
+    writer.write(',');
+    writer.write(csvValue(horse.motherId()));
+    writer.write(',');
+    writer.write(csvValue(horse.fatherId()));
+    writer.write('\n');
+  }
+
+  private static String csvValue(Object value) {
+    if (value == null) {
+      return "";
+    }
+    String text = value.toString();
+    if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+      return text;
+    }
+    return '"' + text.replace("\"", "\"\"") + '"';
+  }
+
+  @Override
+  @Transactional
+  public void rebuildAncestry() {
+    LOG.trace("rebuildAncestry()");
+    dao.rebuildAncestry();
+    // the rebuild repairs writes that went around this service, they are missing from the pedigree graph just as well
+    pedigreeGraph.ifPresent(PedigreeGraph::reload);
+    familyTreeCache.ifPresent(FamilyTreeCache::invalidateAll);
+  }
+
+  @Override
+  public List<Long> checkAncestry() {
+    LOG.trace("checkAncestry()");
+    List<Long> inconsistent = dao.getIdsWithInconsistentAncestry();
+    if (!inconsistent.isEmpty()) {
+      LOG.warn("Stored ancestry of {} horses is inconsistent with their parents", inconsistent.size());
+    }
+    return inconsistent;
   }
 
   @Override
   public HorseFamilyTreeDto getFamilyTree(FamilyTreeQueryParamsDto queryParams) throws NotFoundException, ValidationException {
     LOG.trace("get familyTree: {}", queryParams);
     validator.validateForFamilyTree(queryParams);
-    List<Horse> listOfHorsesForFamilyTree = dao.getListForFamilyTreeOfHorse(queryParams);
-    return getFamilyTreeDtoRecursively(listOfHorsesForFamilyTree.get(0).getId(), listOfHorsesForFamilyTree, queryParams.limit(), 1L);
+    int generations = queryParams.limit().intValue();
+    if (familyTreeCache.isPresent()) {
+      return familyTreeCache.get().get(queryParams.horseId(), generations, () -> getFamilyTreeHorses(queryParams));
+    }
+    return FamilyTreeBuilder.build(queryParams.horseId(), getFamilyTreeHorses(queryParams), generations);
   }
 
-  private HorseFamilyTreeDto getFamilyTreeDtoRecursively(Long horseId, List<Horse> list, Long limit, Long currentGeneration) {
-    LOG.trace("getFamilyTreeDtoRecursively: horseId={}, list={}, limit={}, currentGeneration={}",
-        horseId, list.toString(), limit.toString(), currentGeneration.toString());
-    if (horseId == null || currentGeneration > limit) {
-      return null;
-    } else {
-      List<Horse> oneHorse = list.stream().filter(h -> h.getId().equals(horseId)).toList(); // O(n)
+  @Override
+  public String getFamilyTreeETag(FamilyTreeQueryParamsDto queryParams) throws NotFoundException, ValidationException {
+    LOG.trace("getFamilyTreeETag: {}", queryParams);
+    validator.validateForFamilyTree(queryParams);
+    return "\"%s\"".formatted(digest(dao.getFamilyTreeVersions(queryParams)));
+  }
 
-      Horse h = oneHorse.get(0);
+  @Override
+  public HorseFamilyGraphDto getFamilyGraph(FamilyTreeQueryParamsDto queryParams) throws NotFoundException, ValidationException {
+    LOG.trace("get familyGraph: {}", queryParams);
+    validator.validateForFamilyTree(queryParams);
+    return FamilyTreeBuilder.buildGraph(queryParams.horseId(), getFamilyTreeHorses(queryParams), queryParams.limit().intValue());
+  }
 
-      return new HorseFamilyTreeDto(
-          h.getId(),
-          h.getName(),
-          h.getDateOfBirth(),
-          h.getSex(),
-          getFamilyTreeDtoRecursively(h.getMotherId(), list, limit, currentGeneration + 1),
-          getFamilyTreeDtoRecursively(h.getFatherId(), list, limit, currentGeneration + 1)
-      );
+  @Override
+  public HorseDescendantsDto getDescendants(DescendantsQueryParamsDto queryParams) throws NotFoundException, ValidationException {
+    LOG.trace("getDescendants: {}", queryParams);
+    validator.validateForDescendants(queryParams);
+    return mapper.descendantsToDto(queryParams.horseId(), dao.getDescendants(queryParams));
+  }
+
+  @Override
+  public HorseInbreedingDto getInbreeding(Long id, Integer generations) throws NotFoundException, ValidationException {
+    LOG.trace("getInbreeding({}, {})", id, generations);
+    validator.validateForInbreeding(id, generations);
+    // the family tree counts the horse itself as its first generation
+    Map<Long, Horse> pedigree = getFamilyTreeHorses(new FamilyTreeQueryParamsDto(id, generations + 1L));
+    try {
+      return new HorseInbreedingDto(id, generations, new KinshipCalculator(pedigree.values()).inbreeding(id));
+    } catch (IllegalArgumentException e) {
+      throw new FatalException("Pedigree of horse %d could not be evaluated".formatted(id), e);
+    }
+  }
+
+  @Override
+  public HorseRelationshipDto getRelationship(Long firstId, Long secondId) throws NotFoundException {
+    LOG.trace("getRelationship({}, {})", firstId, secondId);
+    Horse first = dao.getById(firstId);
+    Horse second = dao.getById(secondId);
+    // the stored ancestry tells which ancestors are the closest common ones, and leads the paths to them, so no pedigree is walked
+    List<HorseCommonAncestorDto> commonAncestors = new ArrayList<>();
+    for (CommonAncestor common : dao.getClosestCommonAncestors(firstId, secondId)) {
+      List<Horse> firstPath = dao.getPathToAncestor(first, common.getAncestorId(), common.getFirstDepth());
+      List<Horse> secondPath = dao.getPathToAncestor(second, common.getAncestorId(), common.getSecondDepth());
+      commonAncestors.add(new HorseCommonAncestorDto(
+          mapper.entityToMinimalDto(firstPath.get(firstPath.size() - 1)),
+          common.getFirstDepth(),
+          common.getSecondDepth(),
+          minimalsOf(firstPath),
+          minimalsOf(secondPath)));
+    }
+    return new HorseRelationshipDto(mapper.entityToMinimalDto(first), mapper.entityToMinimalDto(second), commonAncestors);
+  }
+
+  private List<HorseMinimalDto> minimalsOf(List<Horse> horses) {
+    return horses.stream().map(mapper::entityToMinimalDto).toList();
+  }
+
+  @Override
+  public void writeKinshipMatrix(HorseSearchDto searchParameters, OutputStream out) throws ValidationException, ConflictException, IOException {
+    LOG.trace("writeKinshipMatrix({})", searchParameters);
+    long[] ids = searchHerd(searchParameters);
+    KinshipMatrix matrix = null;
+    if (ids.length > 0) {
+      long start = System.nanoTime();
+      matrix = kinshipMatrixJobs.compute(herdCalculator(ids), ids);
+      LOG.debug("Computed kinship matrix of {} horses in {} ms", ids.length, (System.nanoTime() - start) / 1_000_000);
+    }
+    writeKinshipMatrix(matrix, out);
+  }
+
+  @Override
+  public KinshipMatrixJobDto startKinshipMatrixJob(HorseSearchDto searchParameters) throws ValidationException, ConflictException {
+    LOG.trace("startKinshipMatrixJob({})", searchParameters);
+    long[] ids = searchHerd(searchParameters);
+    // the pedigree is read right away, the job only computes
+    KinshipMatrixJobs.Job job = kinshipMatrixJobs.submit(ids.length == 0 ? null : herdCalculator(ids), ids);
+    return new KinshipMatrixJobDto(job.id(), job.status(), job.size());
+  }
+
+  @Override
+  public KinshipMatrixJobDto getKinshipMatrixJob(long id) throws NotFoundException {
+    LOG.trace("getKinshipMatrixJob({})", id);
+    KinshipMatrixJobs.Job job = getJob(id);
+    return new KinshipMatrixJobDto(job.id(), job.status(), job.size());
+  }
+
+  @Override
+  public void writeKinshipMatrixOfJob(long id, OutputStream out) throws NotFoundException, ConflictException, IOException {
+    LOG.trace("writeKinshipMatrixOfJob({})", id);
+    KinshipMatrixJobs.Job job = getJob(id);
+    if (job.status() != KinshipMatrixJobStatus.DONE) {
+      throw new ConflictException("Kinship matrix of job %d is not available".formatted(id),
+          List.of("Job is %s, not %s".formatted(job.status(), KinshipMatrixJobStatus.DONE)));
+    }
+    writeKinshipMatrix(job.matrix(), out);
+  }
+
+  private KinshipMatrixJobs.Job getJob(long id) throws NotFoundException {
+    return kinshipMatrixJobs.get(id)
+        .orElseThrow(() -> new NotFoundException("Kinship matrix job %d not found, or its matrix is not kept anymore".formatted(id)));
+  }
+
+  /**
+   * Searches the horses of a kinship matrix.
+   *
+   * @return the IDs of the horses, in the order of the search
+   */
+  private long[] searchHerd(HorseSearchDto searchParameters) throws ValidationException, ConflictException {
+    validator.validateForSearch(searchParameters);
+    // one horse more than allowed tells whether the herd is too large
+    int limit = searchParameters.limit() == null ? KINSHIP_MATRIX_MAX_HORSES + 1 : Math.min(searchParameters.limit(), KINSHIP_MATRIX_MAX_HORSES + 1);
+    var herdParameters = new HorseSearchDto(
+        searchParameters.name(),
+        searchParameters.description(),
+        searchParameters.bornBefore(),
+        searchParameters.sex(),
+        searchParameters.ownerId(),
+        limit,
+        null,
+        null);
+    long[] ids = dao.search(herdParameters).stream().mapToLong(horse -> horse.getHorse().getId()).toArray();
+    if (ids.length > KINSHIP_MATRIX_MAX_HORSES) {
+      throw new ValidationException("Validation of kinship matrix failed",
+          List.of("More than %d horses match the search, the kinship matrix is computed for at most that many".formatted(KINSHIP_MATRIX_MAX_HORSES)));
     }
+    return ids;
   }
 
+  private KinshipCalculator herdCalculator(long[] ids) {
+    try {
+      return new KinshipCalculator(dao.getPedigreeOfHorses(LongStream.of(ids).boxed().toList()));
+    } catch (IllegalArgumentException e) {
+      throw new FatalException("Pedigree of the horses could not be evaluated", e);
+    }
+  }
+
+  /**
+   * Writes a kinship matrix as newline delimited JSON, see {@link HorseService#writeKinshipMatrix}.
+   *
+   * @param matrix the matrix, or {@code null} for the matrix of an empty herd
+   */
+  private static void writeKinshipMatrix(KinshipMatrix matrix, OutputStream out) throws IOException {
+    var writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), EXPORT_BUFFER_SIZE);
+    if (matrix != null) {
+      for (int i = 0; i < matrix.size(); i++) {
+        writer.write("{\"id\":");
+        writer.write(Long.toString(matrix.idAt(i)));
+        writer.write(",\"kinship\":[");
+        for (int j = 0; j <= i; j++) {
+          if (j > 0) {
+            writer.write(',');
+          }
+          writer.write(Double.toString(matrix.get(i, j)));
+        }
+        writer.write("]}\n");
+      }
+    }
+    writer.flush();
+  }
+
+  private Map<Long, Horse> getFamilyTreeHorses(FamilyTreeQueryParamsDto queryParams) throws NotFoundException {
+    if (pedigreeGraph.isPresent() && pedigreeGraph.get().contains(queryParams.horseId())) {
+      return getFamilyTreeHorsesFromGraph(pedigreeGraph.get(), queryParams.horseId(), queryParams.limit().intValue());
+    }
+    return dao.getListForFamilyTreeOfHorse(queryParams).stream()
+        .collect(Collectors.toMap(Horse::getId, Function.identity()));
+  }
+
+  /**
+   * A digest of the IDs and versions of a set of horses. A horse that is changed gets a new version, and a horse that gets other parents,
+   * or loses one as it is deleted, changes itself, so the digest of the horses a response is made of changes whenever the response does.
+   */
+  private static String digest(List<HorseVersion> versions) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new FatalException("SHA-256 is not available", e);
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(2 * Long.BYTES);
+    for (HorseVersion version : versions.stream().sorted(Comparator.comparingLong(HorseVersion::getId)).toList()) {
+      digest.update(buffer.clear().putLong(version.getId()).putLong(version.getVersion()).flip());
+    }
+    return HexFormat.of().formatHex(digest.digest(), 0, ENTITY_TAG_BYTES);
+  }
+
+  private static long versionOfDetailETag(String entityTag) throws VersionConflictException {
+    Matcher matcher = DETAIL_ENTITY_TAG.matcher(entityTag.trim());
+    if (!matcher.matches()) {
+      // a weak or foreign tag never matches the current one
+      throw new VersionConflictException("Entity tag %s does not match the horse".formatted(entityTag));
+    }
+    return Long.parseLong(matcher.group(1));
+  }
+
+  /**
+   * Finds the horses of a family tree along the pedigree graph, so only their names are left to be read,
+   * from the data store for the horses that are not cached.
+   */
+  private Map<Long, Horse> getFamilyTreeHorsesFromGraph(PedigreeGraph graph, long horseId, int generations) {
+    long[] ancestorIds = graph.ancestors(horseId, generations - 1);
+    List<Long> ids = LongStream.concat(LongStream.of(horseId), LongStream.of(ancestorIds)).boxed().toList();
+    Map<Long, Horse> horses = new HashMap<>();
+    for (HorseMinimal horse : horseMinimalCache.getAll(ids).values()) {
+      long motherId = graph.motherOf(horse.getId());
+      long fatherId = graph.fatherOf(horse.getId());
+      horses.put(horse.getId(), new Horse()
+          .setId(horse.getId())
+          .setName(horse.getName())
+          .setDateOfBirth(horse.getDateOfBirth())
+          .setSex(horse.getSex())
+          .setMotherId(motherId == PedigreeGraph.NONE ? null : motherId)
+          .setFatherId(fatherId == PedigreeGraph.NONE ? null : fatherId));
+    }
+    return horses;
+  }
 }
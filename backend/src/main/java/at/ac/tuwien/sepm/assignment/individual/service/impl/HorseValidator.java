@@ -1,24 +1,33 @@
 package at.ac.tuwien.sepm.assignment.individual.service.impl;
 
+import at.ac.tuwien.sepm.assignment.individual.dto.DescendantsQueryParamsDto;
 import at.ac.tuwien.sepm.assignment.individual.dto.FamilyTreeQueryParamsDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseBatchCreateDto;
 import at.ac.tuwien.sepm.assignment.individual.dto.HorseDetailDto;
 import at.ac.tuwien.sepm.assignment.individual.dto.HorseMinimalDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseSearchCursor;
 import at.ac.tuwien.sepm.assignment.individual.dto.HorseSearchDto;
 import at.ac.tuwien.sepm.assignment.individual.entity.Horse;
+import at.ac.tuwien.sepm.assignment.individual.entity.HorseChildrenSummary;
 import at.ac.tuwien.sepm.assignment.individual.entity.HorseMinimal;
+import at.ac.tuwien.sepm.assignment.individual.entity.HorseReferences;
 import at.ac.tuwien.sepm.assignment.individual.exception.ConflictException;
-import at.ac.tuwien.sepm.assignment.individual.exception.NotFoundException;
 import at.ac.tuwien.sepm.assignment.individual.exception.ValidationException;
 
 import java.lang.invoke.MethodHandles;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.function.IntFunction;
 
 import at.ac.tuwien.sepm.assignment.individual.persistence.HorseDao;
-import at.ac.tuwien.sepm.assignment.individual.persistence.OwnerDao;
+import at.ac.tuwien.sepm.assignment.individual.service.OwnerService;
 import at.ac.tuwien.sepm.assignment.individual.type.Sex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,13 +36,18 @@ import org.springframework.stereotype.Component;
 @Component
 public class HorseValidator {
   private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  static final int MAX_BATCH_SIZE = 10_000;
+  // children named in a conflict, of all the children of a horse that are in the way of its update
+  static final int MAX_CHILDREN_NAMED = 10;
 
   private final HorseDao horseDao;
-  private final OwnerDao ownerDao;
+  private final OwnerService ownerService;
+  private final HorseMinimalCache horseMinimalCache;
 
-  public HorseValidator(HorseDao horseDao, OwnerDao ownerDao) {
+  public HorseValidator(HorseDao horseDao, OwnerService ownerService, HorseMinimalCache horseMinimalCache) {
     this.horseDao = horseDao;
-    this.ownerDao = ownerDao;
+    this.ownerService = ownerService;
+    this.horseMinimalCache = horseMinimalCache;
   }
 
   // START OF VALIDATE FOR CREATE OR UPDATE SECTION
@@ -42,7 +56,7 @@ public class HorseValidator {
     List<String> validationErrors = new ArrayList<>();
     List<String> conflictErrors = new ArrayList<>();
 
-    validateWhatsRequiredIfCreateOrUpdate(horse, validationErrors, conflictErrors);
+    validateWhatsRequiredIfCreateOrUpdate(horse, null, validationErrors, conflictErrors);
 
     if (!validationErrors.isEmpty()) {
       throw new ValidationException("Validation of horse for update failed", validationErrors);
@@ -53,12 +67,29 @@ public class HorseValidator {
     }
   }
 
-  private void validateWhatsRequiredIfCreateOrUpdate(HorseDetailDto horse, List<String> validationErrors, List<String> conflictErrors) {
+  /**
+   * Validates what a created and an updated horse have in common.
+   *
+   * @param updatedId the ID of the updated horse, whose descendants among the parents are looked up together with the parents,
+   *                  or {@code null} for a created horse
+   * @return the referenced horses and owners that exist
+   */
+  private References validateWhatsRequiredIfCreateOrUpdate(HorseDetailDto horse, Long updatedId, List<String> validationErrors,
+                                                           List<String> conflictErrors) {
     LOG.trace("validateWhatsRequiredIfCreateOrUpdate: {}", horse);
     validatePrimitiveHorseAttributes(horse.name(), horse.description(), horse.dateOfBirth(), horse.sex(), validationErrors);
 
+    // both parents and the owner in one lookup
+    Set<Long> parentIds = new HashSet<>();
+    addIfNotNull(parentIds, horse.motherId());
+    addIfNotNull(parentIds, horse.fatherId());
+    Set<Long> ownerIds = new HashSet<>();
+    addIfNotNull(ownerIds, horse.ownerId());
+    References references = lookUpReferences(parentIds, ownerIds, updatedId);
+    Map<Long, HorseMinimal> existingParents = references.horses();
+
     if (horse.ownerId() != null) {
-      validateThatOwnerExistsInDB(horse.ownerId(), conflictErrors);
+      validateThatOwnerExistsInDB(horse.ownerId(), references.ownerIds(), conflictErrors);
     }
 
     if (horse.mother() != null) {
@@ -66,7 +97,7 @@ public class HorseValidator {
         validationErrors.add("Mother's sex must be female");
       }
       validateThatHorseYoungerThanMother(horse, horse.mother(), conflictErrors);
-      validateThatMotherExistsInDB(horse.motherId(), conflictErrors);
+      validateThatMotherExistsInDB(horse.motherId(), existingParents, conflictErrors);
     }
 
     if (horse.father() != null) {
@@ -74,7 +105,7 @@ public class HorseValidator {
         validationErrors.add("Father's sex must be male");
       }
       validateThatHorseYoungerThanFather(horse, horse.father(), conflictErrors);
-      validateThatFatherExistsInDB(horse.fatherId(), conflictErrors);
+      validateThatFatherExistsInDB(horse.fatherId(), existingParents, conflictErrors);
     }
 
     if (horse.motherId() != null && horse.fatherId() != null) {
@@ -82,6 +113,7 @@ public class HorseValidator {
         validationErrors.add("Mother ID must not equal Father ID");
       }
     }
+    return references;
   }
 
   private void validateThatHorseYoungerThanMother(HorseDetailDto horse, HorseMinimalDto mother, List<String> validationErrors) {
@@ -98,29 +130,23 @@ public class HorseValidator {
     }
   }
 
-  private void validateThatMotherExistsInDB(Long motherId, List<String> validationErrors) {
+  private void validateThatMotherExistsInDB(Long motherId, Map<Long, HorseMinimal> existingParents, List<String> validationErrors) {
     LOG.trace("validateThatMotherExistsInDB: id={}", motherId);
-    try {
-      horseDao.getById(motherId);
-    } catch (NotFoundException nfe) {
+    if (!existingParents.containsKey(motherId)) {
       validationErrors.add("Could not find provided mother");
     }
   }
 
-  private void validateThatFatherExistsInDB(Long fatherId, List<String> validationErrors) {
+  private void validateThatFatherExistsInDB(Long fatherId, Map<Long, HorseMinimal> existingParents, List<String> validationErrors) {
     LOG.trace("validateThatFatherExistsInDB id: {}", fatherId);
-    try {
-      horseDao.getById(fatherId);
-    } catch (NotFoundException nfe) {
+    if (!existingParents.containsKey(fatherId)) {
       validationErrors.add("Could not find provided father");
     }
   }
 
-  private void validateThatOwnerExistsInDB(Long ownerId, List<String> validationErrors) {
+  private void validateThatOwnerExistsInDB(Long ownerId, Set<Long> existingOwners, List<String> validationErrors) {
     LOG.trace("validateThatOwnerExistsInDB id={}", ownerId);
-    try {
-      ownerDao.getById(ownerId);
-    } catch (NotFoundException nfe) {
+    if (!existingOwners.contains(ownerId)) {
       validationErrors.add("Could not find provided owner");
     }
   }
@@ -169,81 +195,357 @@ public class HorseValidator {
     }
   }
 
-  // START OF VALIDATE-FOR-UPDATE-ONLY SECTION
-  public void validateForUpdate(HorseDetailDto horse) throws ValidationException, ConflictException {
-    LOG.trace("validateForUpdate({})", horse);
+  // START OF VALIDATE-FOR-BATCH-CREATE SECTION
+  /**
+   * Validates a batch of horses to be created together.
+   * All referenced owners and parents are looked up together, in one query, instead of one query per horse.
+   * A parent key has to be the key of another horse of the batch.
+   * Every error names the position of the horse in the batch it belongs to.
+   */
+  public void validateForBatchCreate(List<HorseBatchCreateDto> horses) throws ValidationException, ConflictException {
+    LOG.trace("validateForBatchCreate: {} horses", horses == null ? null : horses.size());
+    validateBatch(horses, i -> "Horse %d".formatted(i + 1), false);
+  }
+
+  /**
+   * Validates a batch of horses of a registry import, like {@link #validateForBatchCreate(List)}.
+   * The keys are registry keys: they must not be used by a stored horse,
+   * and a parent key that is not the key of another horse of the batch has to be the registry key of a stored horse.
+   * Every error starts with the label {@code horseLabel} gives the index of the horse it belongs to.
+   */
+  public void validateForRegistryImport(List<HorseBatchCreateDto> horses, IntFunction<String> horseLabel)
+      throws ValidationException, ConflictException {
+    LOG.trace("validateForRegistryImport: {} horses", horses == null ? null : horses.size());
+    validateBatch(horses, horseLabel, true);
+  }
+
+  private void validateBatch(List<HorseBatchCreateDto> horses, IntFunction<String> horseLabel, boolean registryKeys)
+      throws ValidationException, ConflictException {
     List<String> validationErrors = new ArrayList<>();
     List<String> conflictErrors = new ArrayList<>();
 
-    validateWhatsRequiredIfCreateOrUpdate(horse, validationErrors, conflictErrors);
+    if (horses == null || horses.isEmpty() || horses.size() > MAX_BATCH_SIZE) {
+      throw new ValidationException("Validation of horse batch failed",
+          List.of("Batch must contain between 1 and %d horses".formatted(MAX_BATCH_SIZE)));
+    }
 
-    if (Objects.equals(horse.id(), horse.motherId()) || Objects.equals(horse.id(), horse.fatherId())) {
-      validationErrors.add("A horse cannot be the parent of itself");
+    Map<String, Integer> indicesByKey = new HashMap<>();
+    for (int i = 0; i < horses.size(); i++) {
+      String key = horses.get(i).key();
+      if (key != null && indicesByKey.putIfAbsent(key, i) != null) {
+        validationErrors.add(batchError(horseLabel, i, "Key '%s' is used by more than one horse of the batch".formatted(key)));
+      }
     }
 
-    if (!validationErrors.isEmpty()) {
-      throw new ValidationException("Validation of horse-update data failed", validationErrors);
+    Set<Long> parentIds = new HashSet<>();
+    Set<String> keys = new HashSet<>(indicesByKey.keySet());
+    Set<Long> ownerIds = new HashSet<>();
+    for (HorseBatchCreateDto horse : horses) {
+      addIfNotNull(parentIds, horse.motherId());
+      addIfNotNull(parentIds, horse.fatherId());
+      addIfNotNull(keys, horse.motherKey());
+      addIfNotNull(keys, horse.fatherKey());
+      addIfNotNull(ownerIds, horse.ownerId());
     }
+    // a batch references too many horses and owners for one statement, they are looked up in chunks of a fixed size each
+    Map<Long, HorseMinimal> existingParents = horseMinimalCache.getAll(parentIds);
+    Set<Long> existingOwners = ownerIds.isEmpty() ? Set.of() : ownerService.findOwnersByIds(ownerIds).keySet();
+    // one lookup for both: keys of the batch that are taken already, and parents that are referenced by the key of a stored horse
+    Map<String, HorseMinimal> storedHorsesByKey = !registryKeys || keys.isEmpty() ? Map.of() : horseDao.getHorseMinimalsByRegistryKeys(keys);
+
+    for (int i = 0; i < horses.size(); i++) {
+      HorseBatchCreateDto horse = horses.get(i);
+      List<String> horseValidationErrors = new ArrayList<>();
+      List<String> horseConflictErrors = new ArrayList<>();
+      if (horse.key() != null && storedHorsesByKey.containsKey(horse.key())) {
+        horseConflictErrors.add("Key '%s' is already used by a stored horse".formatted(horse.key()));
+      }
+      validatePrimitiveHorseAttributes(horse.name(), horse.description(), horse.dateOfBirth(), horse.sex(), horseValidationErrors);
 
-    validateWhatsRequiredOnlyIfUpdate(horse, conflictErrors);
+      if (horse.ownerId() != null && !existingOwners.contains(horse.ownerId())) {
+        horseConflictErrors.add("Could not find provided owner");
+      }
+      validateBatchParent(horses, i, "Mother", Sex.FEMALE, horse.motherId(), horse.motherKey(),
+          existingParents, indicesByKey, registryKeys, storedHorsesByKey, horseValidationErrors, horseConflictErrors);
+      validateBatchParent(horses, i, "Father", Sex.MALE, horse.fatherId(), horse.fatherKey(),
+          existingParents, indicesByKey, registryKeys, storedHorsesByKey, horseValidationErrors, horseConflictErrors);
+      if ((horse.motherId() != null && horse.motherId().equals(horse.fatherId()))
+          || (horse.motherKey() != null && horse.motherKey().equals(horse.fatherKey()))) {
+        horseValidationErrors.add("Mother must not be the same horse as father");
+      }
+
+      for (String error : horseValidationErrors) {
+        validationErrors.add(batchError(horseLabel, i, error));
+      }
+      for (String error : horseConflictErrors) {
+        conflictErrors.add(batchError(horseLabel, i, error));
+      }
+    }
+
+    if (validationErrors.isEmpty()) {
+      for (int i : indicesInParentCycle(horses, indicesByKey)) {
+        validationErrors.add(batchError(horseLabel, i, "Parent references within the batch form a cycle"));
+      }
+    }
+
+    if (!validationErrors.isEmpty()) {
+      throw new ValidationException("Validation of horse batch failed", validationErrors);
+    }
     if (!conflictErrors.isEmpty()) {
-      throw new ConflictException("Conflict arose while trying to update horse data", conflictErrors);
+      throw new ConflictException("Conflict arose while trying to create horse batch", conflictErrors);
     }
   }
 
-  private void validateWhatsRequiredOnlyIfUpdate(HorseDetailDto horse, List<String> conflictErrors) {
-    LOG.trace("validateWhatsRequiredOnlyIfUpdate: horse={}", horse);
-    if (horse.id() != null) {
-      Horse oldHorse;
-      try {
-        oldHorse = horseDao.getById(horse.id());
-
-        if (oldHorse.getSex() != horse.sex()) {
-          validateThatHorseDoesntHaveChildren(horse.id(), conflictErrors);
+  private void validateBatchParent(List<HorseBatchCreateDto> horses, int index, String role, Sex expectedSex, Long parentId, String parentKey,
+                                   Map<Long, HorseMinimal> existingParents, Map<String, Integer> indicesByKey, boolean registryKeys,
+                                   Map<String, HorseMinimal> storedHorsesByKey, List<String> validationErrors, List<String> conflictErrors) {
+    HorseBatchCreateDto horse = horses.get(index);
+    Sex parentSex;
+    LocalDate parentDateOfBirth;
+    if (parentId != null && parentKey != null) {
+      validationErrors.add("%s must be given either by ID or by key, not both".formatted(role));
+      return;
+    } else if (parentId != null) {
+      HorseMinimal parent = existingParents.get(parentId);
+      if (parent == null) {
+        conflictErrors.add("Could not find provided %s".formatted(role.toLowerCase()));
+        return;
+      }
+      parentSex = parent.getSex();
+      parentDateOfBirth = parent.getDateOfBirth();
+    } else if (parentKey != null) {
+      Integer parentIndex = indicesByKey.get(parentKey);
+      if (parentIndex != null) {
+        if (parentIndex == index) {
+          validationErrors.add("A horse cannot be the parent of itself");
+          return;
         }
-
-        if (oldHorse.getDateOfBirth() != horse.dateOfBirth()) {
-          validateThatHorsesChildrenAreStillYoungerThanTheirParent(horse.id(), horse.dateOfBirth(), conflictErrors);
+        HorseBatchCreateDto parent = horses.get(parentIndex);
+        parentSex = parent.sex();
+        parentDateOfBirth = parent.dateOfBirth();
+      } else if (!registryKeys) {
+        validationErrors.add("%s key '%s' does not refer to a horse of the batch".formatted(role, parentKey));
+        return;
+      } else {
+        HorseMinimal parent = storedHorsesByKey.get(parentKey);
+        if (parent == null) {
+          conflictErrors.add("Could not find provided %s with key '%s'".formatted(role.toLowerCase(), parentKey));
+          return;
         }
-      } catch (NotFoundException ignored) {
-        conflictErrors.add("Horse to be updated was not found. Could not validate remaining horse values");
+        parentSex = parent.getSex();
+        parentDateOfBirth = parent.getDateOfBirth();
       }
-    }  // else block was already handled by basic attribute validation
-  }
+    } else {
+      return;
+    }
 
-  private void validateThatHorsesChildrenAreStillYoungerThanTheirParent(Long parentId, LocalDate horseDateOfBirth, List<String> conflictErrors) {
-    LOG.trace("validateThatHorsesChildrenAreStillYoungerThanTheirParent {}", parentId);
-    List<HorseMinimal> children = horseDao.getChildrenOf(parentId);
+    if (parentSex != null && parentSex != expectedSex) {
+      validationErrors.add("%s's sex must be %s".formatted(role, expectedSex.toString().toLowerCase()));
+    }
+    if (parentDateOfBirth != null && horse.dateOfBirth() != null && horse.dateOfBirth().isBefore(parentDateOfBirth)) {
+      conflictErrors.add("Horse must be younger than its %s".formatted(role.toLowerCase()));
+    }
+  }
 
-    if (children.size() > 0) {
-      List<String> childrenOlderThanTheirParent = new ArrayList<>();
-      for (HorseMinimal child : children) {
-        if (child.getDateOfBirth().isBefore(horseDateOfBirth)) {
-          childrenOlderThanTheirParent.add(child.getName());
+  /**
+   * Finds the horses of the batch that can not be ordered after their parents within the batch,
+   * because they are their own ancestors or descend from such a horse.
+   * The horses are ordered topologically in one pass, which visits every horse and every parent reference once:
+   * a horse is ordered once all its parents within the batch are, and those that never are remain.
+   */
+  private List<Integer> indicesInParentCycle(List<HorseBatchCreateDto> horses, Map<String, Integer> indicesByKey) {
+    int[] unorderedParents = new int[horses.size()];
+    // the children of every horse, as the parent references of the batch: the first of every horse, and the next of every reference
+    int[] firstChild = new int[horses.size()];
+    int[] nextChild = new int[2 * horses.size()];
+    Arrays.fill(firstChild, -1);
+    for (int i = 0; i < horses.size(); i++) {
+      addChild(i, 2 * i, horses.get(i).motherKey(), indicesByKey, unorderedParents, firstChild, nextChild);
+      addChild(i, 2 * i + 1, horses.get(i).fatherKey(), indicesByKey, unorderedParents, firstChild, nextChild);
+    }
+    int[] ordered = new int[horses.size()];
+    int orderedCount = 0;
+    for (int i = 0; i < horses.size(); i++) {
+      if (unorderedParents[i] == 0) {
+        ordered[orderedCount++] = i;
+      }
+    }
+    for (int head = 0; head < orderedCount; head++) {
+      for (int reference = firstChild[ordered[head]]; reference != -1; reference = nextChild[reference]) {
+        int child = reference / 2;
+        if (--unorderedParents[child] == 0) {
+          ordered[orderedCount++] = child;
         }
       }
-      if (childrenOlderThanTheirParent.size() > 0) {
-        conflictErrors.add("Cannot change date of birth: When moving this horse's date of birth into the future "
-            + "as at least one of its children would become older than the horse");
-        conflictErrors.add("The following children would become older than their parent:\n" + Arrays.toString(childrenOlderThanTheirParent.toArray()));
+    }
+    List<Integer> unordered = new ArrayList<>();
+    for (int i = 0; i < horses.size(); i++) {
+      if (unorderedParents[i] > 0) {
+        unordered.add(i);
       }
     }
+    return unordered;
   }
 
-  private void validateThatHorseDoesntHaveChildren(Long horseId, List<String> conflictErrors) {
-    LOG.trace("validateThatHorseDoesntHaveChildren id={}", horseId);
-    List<HorseMinimal> children = horseDao.getChildrenOf(horseId);
+  private static void addChild(int child, int reference, String parentKey, Map<String, Integer> indicesByKey, int[] unorderedParents,
+                               int[] firstChild, int[] nextChild) {
+    // a key that is not in the batch refers to a stored horse of a registry import, which cannot be in a cycle with the batch
+    Integer parent = parentKey == null ? null : indicesByKey.get(parentKey);
+    if (parent != null) {
+      unorderedParents[child]++;
+      nextChild[reference] = firstChild[parent];
+      firstChild[parent] = reference;
+    }
+  }
 
-    if (children.size() > 0) {
-      List<String> childrenNames = new ArrayList<>();
-      for (HorseMinimal child : children) {
-        childrenNames.add(child.getName());
+  /**
+   * Looks up which of the referenced horses and owners exist, and which of the horses descend from {@code ancestorId}, in one query at most.
+   * Horses that are not cached are loaded together with the owners and the descendants.
+   * If all of them are cached, the owners and descendants are looked up without them,
+   * and without descendants to look up, the owners are looked up on their own, through their cache.
+   *
+   * @param ancestorId the ID of the horse whose descendants among {@code horseIds} are looked up, or {@code null} to not look them up
+   */
+  private References lookUpReferences(Set<Long> horseIds, Set<Long> ownerIds, Long ancestorId) {
+    Set<Long> existingOwners = new HashSet<>();
+    Set<Long> descendants = new HashSet<>();
+    boolean[] lookedUp = {false};
+    Map<Long, HorseMinimal> horses = horseMinimalCache.getAll(horseIds, missing -> {
+      HorseReferences references = horseDao.getReferences(missing, ownerIds, ancestorId, horseIds);
+      existingOwners.addAll(references.getOwnerIds());
+      descendants.addAll(references.getDescendantIds());
+      lookedUp[0] = true;
+      return references.getHorses();
+    });
+    if (!lookedUp[0]) {
+      if (ancestorId != null && !horseIds.isEmpty()) {
+        HorseReferences references = horseDao.getReferences(Set.of(), ownerIds, ancestorId, horseIds);
+        existingOwners.addAll(references.getOwnerIds());
+        descendants.addAll(references.getDescendantIds());
+      } else if (!ownerIds.isEmpty()) {
+        existingOwners.addAll(ownerService.findOwnersByIds(ownerIds).keySet());
       }
+    }
+    return new References(horses, existingOwners, descendants);
+  }
+
+  private record References(Map<Long, HorseMinimal> horses, Set<Long> ownerIds, Set<Long> descendantIds) {
+  }
+
+  private static <T> void addIfNotNull(Set<T> values, T value) {
+    if (value != null) {
+      values.add(value);
+    }
+  }
+
+  private static String batchError(IntFunction<String> horseLabel, int index, String error) {
+    return "%s: %s".formatted(horseLabel.apply(index), error);
+  }
+
+  // START OF VALIDATE-FOR-UPDATE-ONLY SECTION
+  /**
+   * Validates the update of the horse with the given ID. Parents are checked against that ID, which is the one updated,
+   * not against the ID in the body, which may be left out or differ.
+   *
+   * @param id    the ID of the horse to update
+   * @param horse the data to update the horse with
+   * @throws ValidationException if the data is in itself incorrect
+   * @throws ConflictException   if the data conflicts with the stored horses and owners
+   */
+  public void validateForUpdate(long id, HorseDetailDto horse) throws ValidationException, ConflictException {
+    LOG.trace("validateForUpdate({}, {})", id, horse);
+    List<String> validationErrors = new ArrayList<>();
+    List<String> conflictErrors = new ArrayList<>();
+
+    References references = validateWhatsRequiredIfCreateOrUpdate(horse, id, validationErrors, conflictErrors);
+
+    if (Objects.equals(id, horse.motherId()) || Objects.equals(id, horse.fatherId())) {
+      validationErrors.add("A horse cannot be the parent of itself");
+    }
+
+    if (!validationErrors.isEmpty()) {
+      throw new ValidationException("Validation of horse-update data failed", validationErrors);
+    }
+
+    validateWhatsRequiredOnlyIfUpdate(horse, references, conflictErrors);
+    if (!conflictErrors.isEmpty()) {
+      throw new ConflictException("Conflict arose while trying to update horse data", conflictErrors);
+    }
+  }
+
+  private void validateWhatsRequiredOnlyIfUpdate(HorseDetailDto horse, References references, List<String> conflictErrors) {
+    LOG.trace("validateWhatsRequiredOnlyIfUpdate: horse={}", horse);
+    // the descendants among the parents were looked up together with the parents
+    if (horse.motherId() != null && references.descendantIds().contains(horse.motherId())) {
+      conflictErrors.add("Mother must not be a descendant of the horse");
+    }
+    if (horse.fatherId() != null && references.descendantIds().contains(horse.fatherId())) {
+      conflictErrors.add("Father must not be a descendant of the horse");
+    }
+  }
+
+  /**
+   * Validates the change of a horse against its children, once the horse is updated.
+   * The previous state of the horse comes from the update itself, so it does not have to be read before.
+   *
+   * @param id       the ID of the updated horse
+   * @param previous the horse as it was before the update
+   * @param horse    the data the horse was updated with
+   * @throws ConflictException if the children of the horse do not allow the change. The update has to be rolled back
+   */
+  public void validateChildrenOfUpdatedHorse(long id, Horse previous, HorseDetailDto horse) throws ConflictException {
+    LOG.trace("validateChildrenOfUpdatedHorse({})", id);
+    boolean sexChanged = previous.getSex() != horse.sex();
+    // children can only become older than the horse if it is born later than before
+    boolean bornLater = horse.dateOfBirth().isAfter(previous.getDateOfBirth());
+    if (!sexChanged && !bornLater) {
+      return;
+    }
+    // both checks are answered by one summary of the children, however many there are
+    HorseChildrenSummary children = horseDao.getChildrenSummary(id, bornLater ? horse.dateOfBirth() : null, MAX_CHILDREN_NAMED);
+    List<String> conflictErrors = new ArrayList<>();
+    if (sexChanged) {
+      validateThatHorseDoesntHaveChildren(children, conflictErrors);
+    }
+    if (bornLater) {
+      validateThatHorsesChildrenAreStillYoungerThanTheirParent(children, horse.dateOfBirth(), conflictErrors);
+    }
+    if (!conflictErrors.isEmpty()) {
+      throw new ConflictException("Conflict arose while trying to update horse data", conflictErrors);
+    }
+  }
+
+  private void validateThatHorsesChildrenAreStillYoungerThanTheirParent(HorseChildrenSummary children, LocalDate horseDateOfBirth,
+                                                                         List<String> conflictErrors) {
+    LOG.trace("validateThatHorsesChildrenAreStillYoungerThanTheirParent {}", children);
+    LocalDate earliestDateOfBirth = children.getEarliestDateOfBirth();
+    if (earliestDateOfBirth != null && earliestDateOfBirth.isBefore(horseDateOfBirth)) {
+      // the earliest born children come first, so those older than their parent are at the start
+      List<String> childrenOlderThanTheirParent = children.getEarliestBorn().stream()
+          .filter(child -> child.getDateOfBirth().isBefore(horseDateOfBirth))
+          .map(HorseMinimal::getName)
+          .toList();
+      conflictErrors.add("Cannot change date of birth: When moving this horse's date of birth into the future "
+          + "as at least one of its children would become older than the horse");
+      conflictErrors.add("The following children would become older than their parent:\n"
+          + namesOf(childrenOlderThanTheirParent, children.getBornBeforeCount()));
+    }
+  }
+
+  private void validateThatHorseDoesntHaveChildren(HorseChildrenSummary children, List<String> conflictErrors) {
+    LOG.trace("validateThatHorseDoesntHaveChildren {}", children);
+    if (children.getCount() > 0) {
+      List<String> childrenNames = children.getEarliestBorn().stream().map(HorseMinimal::getName).toList();
       conflictErrors.add("Cannot change the sex of the horse since at least one child already has it as their (female/male) parent");
-      conflictErrors.add("The following horse-children already have this horse as their parent:\n" + Arrays.toString(childrenNames.toArray()));
+      conflictErrors.add("The following horse-children already have this horse as their parent:\n" + namesOf(childrenNames, children.getCount()));
     }
   }
 
+  private static String namesOf(List<String> names, long count) {
+    String list = Arrays.toString(names.toArray());
+    return count > names.size() ? "%s and %d more".formatted(list, count - names.size()) : list;
+  }
+
   // START OF "THE REST" SECTION
   public void validateForSearch(HorseSearchDto horse) throws ValidationException, ConflictException {
     LOG.trace("validateForSearch({})", horse);
@@ -255,26 +557,25 @@ public class HorseValidator {
         horse.description(),
         horse.bornBefore(),
         horse.limit(),
+        horse.cursor(),
         validationErrors);
 
     if (!validationErrors.isEmpty()) {
       throw new ValidationException("Validation of horse search filter failed", validationErrors);
     }
 
-    if (horse.idOfHorseToBeExcluded() != null) {
-      try {
-        horseDao.getById(horse.idOfHorseToBeExcluded());
-      } catch (NotFoundException nfe) {
-        conflictErrors.add("Horse to be excluded from search not found");
-      }
+    Set<Long> horseIds = new HashSet<>();
+    addIfNotNull(horseIds, horse.idOfHorseToBeExcluded());
+    Set<Long> ownerIds = new HashSet<>();
+    addIfNotNull(ownerIds, horse.ownerId());
+    References references = lookUpReferences(horseIds, ownerIds, null);
+
+    if (horse.idOfHorseToBeExcluded() != null && !references.horses().containsKey(horse.idOfHorseToBeExcluded())) {
+      conflictErrors.add("Horse to be excluded from search not found");
     }
 
-    if (horse.ownerId() != null) {
-      try {
-        ownerDao.getById(horse.ownerId());
-      } catch (NotFoundException nfe) {
-        conflictErrors.add("Owner of search-filter not found");
-      }
+    if (horse.ownerId() != null && !references.ownerIds().contains(horse.ownerId())) {
+      conflictErrors.add("Owner of search-filter not found");
     }
 
     if (!conflictErrors.isEmpty()) {
@@ -282,9 +583,9 @@ public class HorseValidator {
     }
   }
 
-  public void validateSearchHorsePrimitiveAttributes(String name, String description, LocalDate bornBefore, Integer limit,
+  public void validateSearchHorsePrimitiveAttributes(String name, String description, LocalDate bornBefore, Integer limit, String cursor,
                                                      List<String> validationErrors) {
-    LOG.trace("validateSearchHorsePrimitiveAttributes {} {} {} {}", name, description, bornBefore, limit);
+    LOG.trace("validateSearchHorsePrimitiveAttributes {} {} {} {} {}", name, description, bornBefore, limit, cursor);
     if (name != null) {
       if (name.isBlank()) {
         validationErrors.add("Horse name is given but blank");
@@ -321,6 +622,14 @@ public class HorseValidator {
     if (limit != null && limit <= 0) {
       validationErrors.add("Limit must be > 0");
     }
+
+    if (cursor != null) {
+      try {
+        HorseSearchCursor.decode(cursor);
+      } catch (IllegalArgumentException e) {
+        validationErrors.add("Cursor is invalid");
+      }
+    }
   }
 
   public void validateForFamilyTree(FamilyTreeQueryParamsDto queryParams) throws ValidationException {
@@ -339,4 +648,46 @@ public class HorseValidator {
       throw new ValidationException("Error while validating family tree query params", validationErrors);
     }
   }
+
+  public void validateForDescendants(DescendantsQueryParamsDto queryParams) throws ValidationException {
+    LOG.trace("validateForDescendants {}", queryParams);
+    List<String> validationErrors = new ArrayList<>();
+
+    if (queryParams.horseId() == null) {
+      validationErrors.add("Id of the horse must not be null");
+    }
+    if (queryParams.depth() == null || queryParams.depth() <= 0 || queryParams.depth() > 1000) {
+      validationErrors.add("Depth must be in range [1,1000]");
+    }
+    if (queryParams.generation() != null && (queryParams.generation() <= 0
+        || (queryParams.depth() != null && queryParams.generation() > queryParams.depth()))) {
+      validationErrors.add("Generation must be in range [1,depth]");
+    }
+    if (queryParams.offset() == null || queryParams.offset() < 0) {
+      validationErrors.add("Offset must not be negative");
+    }
+    if (queryParams.limit() == null || queryParams.limit() <= 0 || queryParams.limit() > 1000) {
+      validationErrors.add("Limit must be in range [1,1000]");
+    }
+
+    if (!validationErrors.isEmpty()) {
+      throw new ValidationException("Error while validating descendants query params", validationErrors);
+    }
+  }
+
+  public void validateForInbreeding(Long id, Integer generations) throws ValidationException {
+    LOG.trace("validateForInbreeding {}, {}", id, generations);
+    List<String> validationErrors = new ArrayList<>();
+
+    if (id == null) {
+      validationErrors.add("Id of the horse must not be null");
+    }
+    if (generations == null || generations <= 0 || generations > 1000) {
+      validationErrors.add("Generations must be in range [1,1000]");
+    }
+
+    if (!validationErrors.isEmpty()) {
+      throw new ValidationException("Error while validating inbreeding query params", validationErrors);
+    }
+  }
 }
@@ -0,0 +1,330 @@
+package at.ac.tuwien.sepm.assignment.individual.service.impl;
+
+import at.ac.tuwien.sepm.assignment.individual.entity.Horse;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Computes inbreeding coefficients and kinship of the horses of a pedigree, after Meuwissen and Luo (1992).
+ * The relationship matrix of the pedigree is decomposed into L D L', where a row of L holds what every ancestor
+ * contributes to a horse, and D the part of a horse that is not explained by its parents.
+ * The row of a horse is collected from the horse to its ancestors, youngest first, without any recursion,
+ * and the inbreeding coefficient of every horse is kept once computed, as D of its offspring needs it.
+ * That makes the cost of a horse linear in the number of its ancestors, however often they appear in its pedigree,
+ * where enumerating the paths through common ancestors grows exponentially with inbreeding.
+ * Parents outside the pedigree count as unknown, so a pedigree that is cut after some generations treats its oldest horses as founders.
+ *
+ * <p>Instances are not thread safe, they are meant to serve the computations of one request.
+ */
+final class KinshipCalculator {
+
+  private static final int UNKNOWN = -1;
+
+  // horses by their position in the pedigree, ordered so parents come before their offspring
+  private final long[] ids;
+  private final int[] mothers;
+  private final int[] fathers;
+  private final Map<Long, Integer> positions;
+  // inbreeding coefficients, NaN until computed
+  private final double[] inbreeding;
+  // part of the variance of every horse not explained by its parents, NaN until computed
+  private final double[] withinFamily;
+
+  // reused by every collection of a row of L: the contributions, and the positions they were set at
+  private final double[] contributions;
+  private final int[] touched;
+  private final IntMaxHeap queue;
+
+  /**
+   * Orders the pedigree so parents come before their offspring.
+   *
+   * @param pedigree the horses of the pedigree; parents referenced by them, but missing from it, are unknown
+   * @throws IllegalArgumentException if the pedigree holds a horse that is its own ancestor
+   */
+  KinshipCalculator(Collection<Horse> pedigree) {
+    int size = pedigree.size();
+    Horse[] horses = pedigree.toArray(new Horse[0]);
+    Map<Long, Integer> indexes = new HashMap<>();
+    for (int i = 0; i < size; i++) {
+      indexes.put(horses[i].getId(), i);
+    }
+    // Kahn's algorithm on the edges from parents to their offspring
+    int[] knownParents = new int[size];
+    int[] firstChild = new int[size];
+    int[] nextSibling = new int[2 * size];
+    int[] siblingChild = new int[2 * size];
+    Arrays.fill(firstChild, UNKNOWN);
+    int edges = 0;
+    for (int i = 0; i < size; i++) {
+      for (Long parentId : Arrays.asList(horses[i].getMotherId(), horses[i].getFatherId())) {
+        Integer parent = parentId == null ? null : indexes.get(parentId);
+        if (parent != null) {
+          knownParents[i]++;
+          siblingChild[edges] = i;
+          nextSibling[edges] = firstChild[parent];
+          firstChild[parent] = edges++;
+        }
+      }
+    }
+    int[] order = new int[size];
+    int ordered = 0;
+    for (int i = 0; i < size; i++) {
+      if (knownParents[i] == 0) {
+        order[ordered++] = i;
+      }
+    }
+    for (int next = 0; next < ordered; next++) {
+      for (int edge = firstChild[order[next]]; edge != UNKNOWN; edge = nextSibling[edge]) {
+        if (--knownParents[siblingChild[edge]] == 0) {
+          order[ordered++] = siblingChild[edge];
+        }
+      }
+    }
+    if (ordered < size) {
+      throw new IllegalArgumentException("Pedigree holds a horse that is its own ancestor");
+    }
+
+    ids = new long[size];
+    mothers = new int[size];
+    fathers = new int[size];
+    positions = new HashMap<>();
+    for (int position = 0; position < size; position++) {
+      ids[position] = horses[order[position]].getId();
+      positions.put(ids[position], position);
+    }
+    for (int position = 0; position < size; position++) {
+      Horse horse = horses[order[position]];
+      mothers[position] = positionOf(horse.getMotherId());
+      fathers[position] = positionOf(horse.getFatherId());
+    }
+    inbreeding = new double[size];
+    withinFamily = new double[size];
+    Arrays.fill(inbreeding, Double.NaN);
+    Arrays.fill(withinFamily, Double.NaN);
+    contributions = new double[size];
+    touched = new int[size];
+    queue = new IntMaxHeap(size);
+  }
+
+  /**
+   * The inbreeding coefficient of a horse: the probability that both alleles of a locus are identical by descent.
+   *
+   * @param id the ID of a horse of the pedigree
+   * @return the inbreeding coefficient, between 0 and 1
+   * @throws IllegalArgumentException if the horse is not part of the pedigree
+   */
+  double inbreeding(long id) {
+    return inbreedingAt(requirePosition(id));
+  }
+
+  /**
+   * The kinship (coancestry) of two horses: the probability that an allele drawn from each of them is identical by descent.
+   * It is the inbreeding coefficient their offspring would have.
+   *
+   * @throws IllegalArgumentException if one of the horses is not part of the pedigree
+   */
+  double kinship(long firstId, long secondId) {
+    int first = requirePosition(firstId);
+    int second = requirePosition(secondId);
+    // D of all their ancestors is known once their inbreeding is
+    double firstInbreeding = inbreedingAt(first);
+    inbreedingAt(second);
+    if (first == second) {
+      return (1 + firstInbreeding) / 2;
+    }
+    Map<Integer, Double> firstRow = new HashMap<>();
+    int count = collectRow(first);
+    for (int i = 0; i < count; i++) {
+      firstRow.put(touched[i], contributions[touched[i]]);
+    }
+    clearRow(count);
+    double relationship = 0;
+    count = collectRow(second);
+    for (int i = 0; i < count; i++) {
+      Double contribution = firstRow.get(touched[i]);
+      if (contribution != null) {
+        relationship += contribution * contributions[touched[i]] * withinFamily[touched[i]];
+      }
+    }
+    clearRow(count);
+    return relationship / 2;
+  }
+
+  /**
+   * The row of L of a horse, with the contribution of every ancestor scaled by the square root of its D.
+   * The kinship of two horses is half the dot product of their rows, the kinship of a horse with itself included,
+   * so the rows of a herd are all that is needed to compute the kinship of all its pairs, independent of this calculator.
+   *
+   * @throws IllegalArgumentException if the horse is not part of the pedigree
+   */
+  ScaledRow scaledRow(long id) {
+    int position = requirePosition(id);
+    inbreedingAt(position);
+    int count = collectRow(position);
+    int[] ancestry = Arrays.copyOf(touched, count);
+    Arrays.sort(ancestry);
+    double[] values = new double[count];
+    for (int i = 0; i < count; i++) {
+      values[i] = contributions[ancestry[i]] * Math.sqrt(withinFamily[ancestry[i]]);
+    }
+    clearRow(count);
+    return new ScaledRow(ancestry, values);
+  }
+
+  /**
+   * The number of horses of the pedigree, which every position of a {@link ScaledRow} is less than.
+   */
+  int size() {
+    return ids.length;
+  }
+
+  /**
+   * A sparse row of L, scaled by the square root of D.
+   *
+   * @param positions the positions of the horse and its ancestors in the pedigree, ascending
+   * @param values    the scaled contributions, in the order of {@code positions}
+   */
+  record ScaledRow(int[] positions, double[] values) {
+  }
+
+  private double inbreedingAt(int position) {
+    if (Double.isNaN(inbreeding[position])) {
+      // the row of the horse touches all its ancestors, computing them in order has the inbreeding of all parents ready
+      int count = collectRow(position);
+      int[] ancestry = Arrays.copyOf(touched, count);
+      clearRow(count);
+      Arrays.sort(ancestry);
+      for (int ancestor : ancestry) {
+        if (Double.isNaN(inbreeding[ancestor])) {
+          computeInbreeding(ancestor);
+        }
+      }
+    }
+    return inbreeding[position];
+  }
+
+  private void computeInbreeding(int position) {
+    withinFamily[position] = withinFamilyVariance(position);
+    int count = collectRow(position);
+    double diagonal = 0;
+    for (int i = 0; i < count; i++) {
+      double contribution = contributions[touched[i]];
+      diagonal += contribution * contribution * withinFamily[touched[i]];
+    }
+    clearRow(count);
+    // rounding must not make a horse that is not inbred a little less than that
+    inbreeding[position] = Math.max(0, diagonal - 1);
+  }
+
+  private double withinFamilyVariance(int position) {
+    int mother = mothers[position];
+    int father = fathers[position];
+    if (mother != UNKNOWN && father != UNKNOWN) {
+      return 0.5 - 0.25 * (inbreeding[mother] + inbreeding[father]);
+    } else if (mother != UNKNOWN) {
+      return 0.75 - 0.25 * inbreeding[mother];
+    } else if (father != UNKNOWN) {
+      return 0.75 - 0.25 * inbreeding[father];
+    }
+    return 1;
+  }
+
+  /**
+   * Collects the row of L of a horse into {@code contributions}, visiting the youngest horse first,
+   * so the contribution of a horse is complete once it is visited.
+   *
+   * @return how many positions were set, they are the first ones of {@code touched}
+   */
+  private int collectRow(int position) {
+    int count = 0;
+    contributions[position] = 1;
+    touched[count++] = position;
+    queue.push(position);
+    while (!queue.isEmpty()) {
+      int horse = queue.pop();
+      double half = contributions[horse] / 2;
+      count = addContribution(mothers[horse], half, count);
+      count = addContribution(fathers[horse], half, count);
+    }
+    return count;
+  }
+
+  private int addContribution(int parent, double contribution, int count) {
+    if (parent == UNKNOWN) {
+      return count;
+    }
+    // every contribution is positive, so a horse without one was not reached yet
+    if (contributions[parent] == 0) {
+      touched[count++] = parent;
+      queue.push(parent);
+    }
+    contributions[parent] += contribution;
+    return count;
+  }
+
+  private void clearRow(int count) {
+    for (int i = 0; i < count; i++) {
+      contributions[touched[i]] = 0;
+    }
+  }
+
+  private int positionOf(Long id) {
+    Integer position = id == null ? null : positions.get(id);
+    return position == null ? UNKNOWN : position;
+  }
+
+  private int requirePosition(long id) {
+    Integer position = positions.get(id);
+    if (position == null) {
+      throw new IllegalArgumentException("Horse %d is not part of the pedigree".formatted(id));
+    }
+    return position;
+  }
+
+  /**
+   * A binary max-heap of positions, so the youngest horse is visited first, without boxing them.
+   */
+  private static final class IntMaxHeap {
+    private final int[] values;
+    private int size;
+
+    IntMaxHeap(int capacity) {
+      values = new int[Math.max(1, capacity)];
+    }
+
+    boolean isEmpty() {
+      return size == 0;
+    }
+
+    void push(int value) {
+      int i = size++;
+      while (i > 0 && values[(i - 1) / 2] < value) {
+        values[i] = values[(i - 1) / 2];
+        i = (i - 1) / 2;
+      }
+      values[i] = value;
+    }
+
+    int pop() {
+      int top = values[0];
+      int last = values[--size];
+      int i = 0;
+      while (2 * i + 1 < size) {
+        int child = 2 * i + 1;
+        if (child + 1 < size && values[child + 1] > values[child]) {
+          child++;
+        }
+        if (values[child] <= last) {
+          break;
+        }
+        values[i] = values[child];
+        i = child;
+      }
+      values[i] = last;
+      return top;
+    }
+  }
+}
@@ -0,0 +1,152 @@
+package at.ac.tuwien.sepm.assignment.individual.service.impl;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The kinship of all pairs of horses of a herd, computed in parallel from the scaled rows of L of the herd,
+ * see {@link KinshipCalculator#scaledRow(long)}.
+ * The matrix is symmetric, so only its lower triangle is stored, row by row, in one array of primitives:
+ * the kinship of the horses at {@code i} and {@code j <= i} is at {@code i * (i + 1) / 2 + j}.
+ *
+ * <p>The triangle is cut into square tiles, which are the tasks of a fork-join pool.
+ * A tile scatters the row of each of its horses into a dense array once, and takes the dot products with the sparse rows
+ * of the other horses of the tile from it, so a pair costs the ancestors of one of its horses only, and the sparse rows
+ * of a tile stay in the cache while they are used again for every horse of the other side.
+ * Each task that computes tiles allocates its own dense array, which is garbage once the task is done,
+ * so no array the size of the pedigree outlives the computation on the threads of the pool.
+ * The tiles share no state but the array they write disjoint parts of, so the computation scales with the cores of the pool.
+ */
+final class KinshipMatrix {
+
+  static final int TILE_SIZE = 64;
+  // tiles computed by one task without splitting it any further
+  private static final int TILES_PER_TASK = 4;
+
+  private final long[] ids;
+  private final double[] values;
+
+  private KinshipMatrix(long[] ids, double[] values) {
+    this.ids = ids;
+    this.values = values;
+  }
+
+  /**
+   * Computes the kinship of all pairs of horses of a herd.
+   *
+   * @param calculator the calculator of a pedigree that holds the herd and all its ancestors
+   * @param ids        the IDs of the horses of the herd, in the order of the rows of the matrix
+   * @param pool       the pool to compute the tiles of the matrix in
+   * @throws IllegalArgumentException if a horse is not part of the pedigree, or the herd is too large for its triangle to fit an array
+   */
+  static KinshipMatrix compute(KinshipCalculator calculator, long[] ids, ForkJoinPool pool) {
+    int size = ids.length;
+    long cells = (long) size * (size + 1) / 2;
+    if (cells > Integer.MAX_VALUE - 8) {
+      throw new IllegalArgumentException("Herd of %d horses is too large for a kinship matrix".formatted(size));
+    }
+    // the calculator is not thread safe, the rows are read from it before the tiles are computed in parallel
+    KinshipCalculator.ScaledRow[] rows = new KinshipCalculator.ScaledRow[size];
+    for (int i = 0; i < size; i++) {
+      rows[i] = calculator.scaledRow(ids[i]);
+    }
+    var matrix = new KinshipMatrix(ids.clone(), new double[(int) cells]);
+    int tileRows = (size + TILE_SIZE - 1) / TILE_SIZE;
+    int tiles = tileRows * (tileRows + 1) / 2;
+    pool.invoke(new Tiles(matrix, rows, calculator.size(), 0, tiles));
+    return matrix;
+  }
+
+  int size() {
+    return ids.length;
+  }
+
+  long idAt(int index) {
+    return ids[index];
+  }
+
+  /**
+   * The kinship of the horses at rows {@code i} and {@code j}, in any order.
+   */
+  double get(int i, int j) {
+    return i >= j ? values[rowOffset(i) + j] : values[rowOffset(j) + i];
+  }
+
+  // in long, as row * (row + 1) overflows an int before it is halved for the last rows of a triangle that fits an array
+  private static int rowOffset(int row) {
+    return (int) ((long) row * (row + 1) / 2);
+  }
+
+  /**
+   * A range of tiles, numbered along the rows of tiles of the lower triangle.
+   */
+  private static final class Tiles extends RecursiveAction {
+    private final KinshipMatrix matrix;
+    private final KinshipCalculator.ScaledRow[] rows;
+    // the size of the pedigree, which the dense rows span
+    private final int denseSize;
+    private final int from;
+    private final int to;
+
+    Tiles(KinshipMatrix matrix, KinshipCalculator.ScaledRow[] rows, int denseSize, int from, int to) {
+      this.matrix = matrix;
+      this.rows = rows;
+      this.denseSize = denseSize;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from > TILES_PER_TASK) {
+        int middle = (from + to) >>> 1;
+        invokeAll(new Tiles(matrix, rows, denseSize, from, middle), new Tiles(matrix, rows, denseSize, middle, to));
+        return;
+      }
+      // allocated per task, which computes TILES_PER_TASK tiles of TILE_SIZE squared pairs with it
+      double[] dense = new double[denseSize];
+      for (int tile = from; tile < to; tile++) {
+        // tile row r holds the tiles r * (r + 1) / 2 to r * (r + 1) / 2 + r
+        int tileRow = (int) ((Math.sqrt(8.0 * tile + 1) - 1) / 2);
+        while (tileRow * (tileRow + 1) / 2 > tile) {
+          tileRow--;
+        }
+        while ((tileRow + 1) * (tileRow + 2) / 2 <= tile) {
+          tileRow++;
+        }
+        int tileColumn = tile - tileRow * (tileRow + 1) / 2;
+        computeTile(tileRow * TILE_SIZE, tileColumn * TILE_SIZE, dense);
+      }
+    }
+
+    private void computeTile(int firstRow, int firstColumn, double[] dense) {
+      int rowEnd = Math.min(firstRow + TILE_SIZE, rows.length);
+      int columnEnd = Math.min(firstColumn + TILE_SIZE, rows.length);
+      for (int i = firstRow; i < rowEnd; i++) {
+        KinshipCalculator.ScaledRow row = rows[i];
+        int[] positions = row.positions();
+        double[] scaled = row.values();
+        for (int k = 0; k < positions.length; k++) {
+          dense[positions[k]] = scaled[k];
+        }
+        int offset = rowOffset(i);
+        for (int j = firstColumn; j < columnEnd && j <= i; j++) {
+          matrix.values[offset + j] = dotProduct(dense, rows[j]) / 2;
+        }
+        for (int position : positions) {
+          dense[position] = 0;
+        }
+      }
+    }
+
+    private static double dotProduct(double[] dense, KinshipCalculator.ScaledRow row) {
+      int[] positions = row.positions();
+      double[] scaled = row.values();
+      double sum = 0;
+      for (int k = 0; k < positions.length; k++) {
+        sum += dense[positions[k]] * scaled[k];
+      }
+      return sum;
+    }
+  }
+}
@@ -0,0 +1,160 @@
+package at.ac.tuwien.sepm.assignment.individual.service.impl;
+
+import at.ac.tuwien.sepm.assignment.individual.exception.ConflictException;
+import at.ac.tuwien.sepm.assignment.individual.type.KinshipMatrixJobStatus;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.lang.invoke.MethodHandles;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Computes kinship matrices on a fork-join pool of their own, so their CPU heavy tiles do not take the common pool
+ * from the rest of the application, and never run on more threads than the pool is configured with.
+ *
+ * <p>A matrix is either computed right away, or as a batch job. The jobs are computed one at a time, each on all threads of the pool,
+ * a bounded number of jobs waits for its turn, and the matrices of the latest jobs are kept for a while, until they are fetched.
+ */
+@Component
+public class KinshipMatrixJobs {
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  private final ForkJoinPool pool;
+  private final ThreadPoolExecutor jobExecutor;
+  private final int queueSize;
+  private final Cache<Long, Job> jobs;
+  private final AtomicLong jobIds = new AtomicLong();
+
+  public KinshipMatrixJobs(@Value("${kinship-matrix.parallelism:0}") int parallelism,
+                           @Value("${kinship-matrix.jobs.queue-size:4}") int queueSize,
+                           @Value("${kinship-matrix.jobs.maximum-size:4}") long maximumSize,
+                           @Value("${kinship-matrix.jobs.retention-minutes:60}") long retentionMinutes) {
+    int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    AtomicInteger threadNumbers = new AtomicInteger();
+    // no spare threads are added while tasks wait for their subtasks, so the pool never grows beyond its parallelism
+    this.pool = new ForkJoinPool(threads, forkJoinPool -> {
+      ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+      thread.setName("kinship-matrix-" + threadNumbers.incrementAndGet());
+      return thread;
+    }, null, false, 0, threads, 1, forkJoinPool -> true, 60, TimeUnit.SECONDS);
+    this.jobExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueSize), runnable -> {
+      Thread thread = new Thread(runnable, "kinship-matrix-jobs");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.queueSize = queueSize;
+    this.jobs = Caffeine.newBuilder()
+        .maximumSize(maximumSize)
+        .expireAfterWrite(retentionMinutes, TimeUnit.MINUTES)
+        .build();
+    LOG.info("Kinship matrices are computed on {} threads", threads);
+  }
+
+  /**
+   * Computes the kinship of all pairs of horses of a herd right away, see {@link KinshipMatrix#compute}.
+   */
+  KinshipMatrix compute(KinshipCalculator calculator, long[] ids) {
+    return KinshipMatrix.compute(calculator, ids, pool);
+  }
+
+  /**
+   * Queues the computation of the kinship of all pairs of horses of a herd as a job.
+   *
+   * @param calculator the calculator of a pedigree that holds the herd and all its ancestors, {@code null} if the herd is empty.
+   *                   It is used by the job only
+   * @param ids        the IDs of the horses of the herd, in the order of the rows of the matrix
+   * @return the queued job
+   * @throws ConflictException if too many jobs are queued already
+   */
+  Job submit(KinshipCalculator calculator, long[] ids) throws ConflictException {
+    var job = new Job(jobIds.incrementAndGet(), ids.length);
+    jobs.put(job.id(), job);
+    try {
+      jobExecutor.execute(() -> run(job, calculator, ids));
+    } catch (RejectedExecutionException e) {
+      jobs.invalidate(job.id());
+      throw new ConflictException("Kinship matrix job could not be started",
+          List.of("%d kinship matrix jobs are waiting already, try again later".formatted(queueSize)));
+    }
+    LOG.debug("Queued kinship matrix job {} of {} horses", job.id(), ids.length);
+    return job;
+  }
+
+  /**
+   * Gets a job, unless it was dropped, since more recent jobs took its place, or its matrix was kept long enough.
+   */
+  Optional<Job> get(long id) {
+    return Optional.ofNullable(jobs.getIfPresent(id));
+  }
+
+  private void run(Job job, KinshipCalculator calculator, long[] ids) {
+    job.status = KinshipMatrixJobStatus.RUNNING;
+    long start = System.nanoTime();
+    try {
+      job.matrix = ids.length == 0 ? null : compute(calculator, ids);
+      job.status = KinshipMatrixJobStatus.DONE;
+      LOG.debug("Computed kinship matrix job {} of {} horses in {} ms", job.id(), ids.length, (System.nanoTime() - start) / 1_000_000);
+    } catch (RuntimeException e) {
+      job.status = KinshipMatrixJobStatus.FAILED;
+      LOG.error("Kinship matrix job {} of {} horses failed", job.id(), ids.length, e);
+    }
+  }
+
+  @PreDestroy
+  void shutdown() {
+    jobExecutor.shutdownNow();
+    pool.shutdownNow();
+  }
+
+  /**
+   * A job that computes a kinship matrix. Its matrix is set before it is done.
+   */
+  static final class Job {
+    private final long id;
+    private final int size;
+    private volatile KinshipMatrixJobStatus status = KinshipMatrixJobStatus.QUEUED;
+    private volatile KinshipMatrix matrix;
+
+    private Job(long id, int size) {
+      this.id = id;
+      this.size = size;
+    }
+
+    long id() {
+      return id;
+    }
+
+    /**
+     * The number of horses of the herd.
+     */
+    int size() {
+      return size;
+    }
+
+    KinshipMatrixJobStatus status() {
+      return status;
+    }
+
+    /**
+     * The computed matrix, once the job is done. It is {@code null} for an empty herd.
+     */
+    KinshipMatrix matrix() {
+      return matrix;
+    }
+  }
+}
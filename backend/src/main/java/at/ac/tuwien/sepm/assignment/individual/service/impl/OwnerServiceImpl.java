@@ -9,48 +9,76 @@ import at.ac.tuwien.sepm.assignment.individual.exception.ValidationException;
 import at.ac.tuwien.sepm.assignment.individual.mapper.OwnerMapper;
 import at.ac.tuwien.sepm.assignment.individual.persistence.OwnerDao;
 import at.ac.tuwien.sepm.assignment.individual.service.OwnerService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 
 import java.lang.invoke.MethodHandles;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+/**
+ * Owners are looked up far more often than they are written, by every horse that is validated against its owner,
+ * so they are read through a bounded cache that is shared by all threads.
+ * A lookup of many owners loads only those that are not cached, in one query, and a created owner is cached right away.
+ * Owners are never changed or deleted, so a cached owner stays valid for as long as it is cached.
+ * The hits, misses and evictions of the cache are published as the metrics of the cache {@value #CACHE_NAME}.
+ */
 @Service
 public class OwnerServiceImpl implements OwnerService {
   private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
+  static final String CACHE_NAME = "owner";
+
   private final OwnerDao dao;
   private final OwnerMapper mapper;
   private final OwnerValidator validator;
+  private final Cache<Long, OwnerDto> cache;
 
   public OwnerServiceImpl(
       OwnerDao dao,
       OwnerMapper mapper,
-      OwnerValidator validator) {
+      OwnerValidator validator,
+      @Value("${owner-cache.maximum-size:10000}") long maximumSize,
+      Optional<MeterRegistry> meterRegistry) {
     this.dao = dao;
     this.mapper = mapper;
     this.validator = validator;
+    this.cache = Caffeine.newBuilder()
+        .maximumSize(maximumSize)
+        .recordStats()
+        .build();
+    meterRegistry.ifPresent(registry -> CaffeineCacheMetrics.monitor(registry, cache, CACHE_NAME));
   }
 
   @Override
   public OwnerDto getById(long id) throws NotFoundException {
     LOG.trace("getById({})", id);
-    return mapper.entityToDto(dao.getById(id));
+    OwnerDto owner = findOwnersByIds(Set.of(id)).get(id);
+    if (owner == null) {
+      throw new NotFoundException("Owner with ID %d not found".formatted(id));
+    }
+    return owner;
   }
 
   @Override
   public Map<Long, OwnerDto> getOwnersByIds(Collection<Long> ids) throws NotFoundException {
     LOG.trace("getAllById({})", ids);
-    Map<Long, OwnerDto> owners =
-        dao.getOwnersByIds(ids).stream()
-            .map(mapper::entityToDto)
-            .collect(Collectors.toUnmodifiableMap(OwnerDto::id, Function.identity()));
+    Map<Long, OwnerDto> owners = findOwnersByIds(ids);
     for (final var id : ids) {
       if (!owners.containsKey(id)) {
         throw new NotFoundException("Owner with ID %d not found".formatted(id));
@@ -59,6 +87,24 @@ public class OwnerServiceImpl implements OwnerService {
     return owners;
   }
 
+  @Override
+  public Map<Long, OwnerDto> findOwnersByIds(Collection<Long> ids) {
+    LOG.trace("findOwnersByIds({})", ids);
+    Map<Long, OwnerDto> owners = new HashMap<>(cache.getAllPresent(ids));
+    Set<Long> missing = new HashSet<>(ids);
+    missing.removeAll(owners.keySet());
+    if (!missing.isEmpty()) {
+      Map<Long, OwnerDto> loaded = dao.getOwnersByIds(missing).stream()
+          .map(mapper::entityToDto)
+          .collect(Collectors.toUnmodifiableMap(OwnerDto::id, Function.identity()));
+      owners.putAll(loaded);
+      // within a transaction the owners may be uncommitted ones, like those of an import, that must not be seen by others before
+      // owners that were not found are not cached, as they may be created any time
+      AfterCommit.run(() -> cache.putAll(loaded));
+    }
+    return Collections.unmodifiableMap(owners);
+  }
+
   @Override
   public Stream<OwnerDto> search(OwnerSearchDto searchParameters) throws ValidationException {
     LOG.trace("search({})", searchParameters);
@@ -76,6 +122,8 @@ public class OwnerServiceImpl implements OwnerService {
   public OwnerDto create(OwnerCreateDto newOwner) throws ValidationException, ConflictException {
     LOG.trace("create({})", newOwner);
     validator.validateForCreate(newOwner);
-    return mapper.entityToDto(dao.create(newOwner));
+    OwnerDto owner = mapper.entityToDto(dao.create(newOwner));
+    AfterCommit.run(() -> cache.put(owner.id(), owner));
+    return owner;
   }
 }
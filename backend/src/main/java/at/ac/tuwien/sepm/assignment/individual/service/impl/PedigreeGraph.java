@@ -0,0 +1,586 @@
+package at.ac.tuwien.sepm.assignment.individual.service.impl;
+
+import at.ac.tuwien.sepm.assignment.individual.entity.Horse;
+import at.ac.tuwien.sepm.assignment.individual.persistence.HorseDao;
+import at.ac.tuwien.sepm.assignment.individual.type.Sex;
+
+import java.lang.invoke.MethodHandles;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * The whole pedigree of all stored horses in memory, so ancestors and descendants can be found without the data store.
+ * It is loaded once all beans are created, and kept up to date by the services writing horses.
+ * It can be switched off with {@code pedigree-graph.enabled=false}.
+ *
+ * <p>Every horse is a node, kept in parallel primitive arrays instead of objects, so no horse costs an object header or a boxed ID:
+ * its ID (8 bytes), the nodes of its parents (2 * 4 bytes), its date of birth and sex packed into one int (4 bytes),
+ * and the heads and links of the lists of its children (3 * 4 bytes), 32 bytes in total.
+ * The index from ID to node is an open addressing table of ints, which is between 50% and 70% full, so it costs another 6 to 8 bytes.
+ * That makes 38 to 40 bytes per horse. The node arrays grow by a quarter when they are full, so right after growing,
+ * up to a fifth of them is spare capacity.
+ */
+@Component
+@ConditionalOnProperty(name = "pedigree-graph.enabled", havingValue = "true", matchIfMissing = true)
+public class PedigreeGraph implements SmartInitializingSingleton {
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  /**
+   * Returned instead of an ID, where there is no horse.
+   */
+  public static final long NONE = Long.MIN_VALUE;
+  private static final int NO_NODE = -1;
+  private static final int EMPTY_SLOT = -1;
+  private static final double MAX_LOAD = 0.7;
+  private static final double GROWN_LOAD = 0.5;
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final HorseDao horseDao;
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  // the nodes; a free node has the ID NONE, and is linked to the next free node by nextMaternalSiblings
+  private long[] ids;
+  private int[] mothers;
+  private int[] fathers;
+  // epoch day of the date of birth, shifted left by one, the lowest bit is set for males
+  private int[] birthsAndSexes;
+  // the children of a node are linked through their next sibling on the side of that node: maternal if it is their mother
+  private int[] firstChildren;
+  private int[] nextMaternalSiblings;
+  private int[] nextPaternalSiblings;
+  private int usedNodes;
+  private int firstFreeNode;
+  private int size;
+  // index from ID to node, with linear probing
+  private int[] slots;
+
+  public PedigreeGraph(HorseDao horseDao) {
+    this.horseDao = horseDao;
+    clear(INITIAL_CAPACITY);
+  }
+
+  @Override
+  public void afterSingletonsInstantiated() {
+    reload();
+  }
+
+  /**
+   * Loads the pedigree of all stored horses anew.
+   */
+  public void reload() {
+    LOG.trace("reload()");
+    long start = System.nanoTime();
+    lock.writeLock().lock();
+    try (Stream<Horse> horses = horseDao.exportStream()) {
+      clear(INITIAL_CAPACITY);
+      // parents may come after their children, so all nodes are created before any of them is linked
+      long[] motherIds = new long[ids.length];
+      long[] fatherIds = new long[ids.length];
+      for (Iterator<Horse> iterator = horses.iterator(); iterator.hasNext(); ) {
+        Horse horse = iterator.next();
+        int node = addNode(horse.getId());
+        if (node >= motherIds.length) {
+          motherIds = Arrays.copyOf(motherIds, ids.length);
+          fatherIds = Arrays.copyOf(fatherIds, ids.length);
+        }
+        birthsAndSexes[node] = birthAndSex(horse);
+        motherIds[node] = horse.getMotherId() == null ? NONE : horse.getMotherId();
+        fatherIds[node] = horse.getFatherId() == null ? NONE : horse.getFatherId();
+      }
+      for (int node = 0; node < usedNodes; node++) {
+        linkParents(node, findNode(motherIds[node]), findNode(fatherIds[node]));
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+    LOG.info("Loaded pedigree of {} horses in {} ms", size, (System.nanoTime() - start) / 1_000_000);
+  }
+
+  /**
+   * Adds horses to the pedigree, or updates them, if they are in it already.
+   * Within a transaction, this happens only after it committed, so the pedigree never holds what was rolled back.
+   * Parents that are not in the pedigree, and not among {@code horses}, are left out.
+   */
+  public void putAll(Collection<Horse> horses) {
+    LOG.trace("putAll({} horses)", horses.size());
+    AfterCommit.run(() -> {
+      lock.writeLock().lock();
+      try {
+        // the horses may be parents of each other, so all of them need a node before any of them is linked
+        int[] nodes = new int[horses.size()];
+        int i = 0;
+        for (Horse horse : horses) {
+          int node = findNode(horse.getId());
+          nodes[i++] = node == NO_NODE ? addNode(horse.getId()) : node;
+        }
+        i = 0;
+        for (Horse horse : horses) {
+          int node = nodes[i++];
+          unlinkParents(node);
+          birthsAndSexes[node] = birthAndSex(horse);
+          linkParents(node,
+              horse.getMotherId() == null ? NO_NODE : findNode(horse.getMotherId()),
+              horse.getFatherId() == null ? NO_NODE : findNode(horse.getFatherId()));
+        }
+      } finally {
+        lock.writeLock().unlock();
+      }
+    });
+  }
+
+  /**
+   * Adds a horse to the pedigree, or updates it, like {@link #putAll(Collection)}.
+   */
+  public void put(Horse horse) {
+    putAll(List.of(horse));
+  }
+
+  /**
+   * Removes a horse from the pedigree. Its children lose it as their parent.
+   * Within a transaction, this happens only after it committed.
+   */
+  public void remove(long id) {
+    LOG.trace("remove({})", id);
+    AfterCommit.run(() -> {
+      lock.writeLock().lock();
+      try {
+        int node = findNode(id);
+        if (node == NO_NODE) {
+          return;
+        }
+        unlinkParents(node);
+        int child = firstChildren[node];
+        while (child != NO_NODE) {
+          int next;
+          if (mothers[child] == node) {
+            next = nextMaternalSiblings[child];
+            mothers[child] = NO_NODE;
+          } else {
+            next = nextPaternalSiblings[child];
+            fathers[child] = NO_NODE;
+          }
+          child = next;
+        }
+        removeNode(node);
+      } finally {
+        lock.writeLock().unlock();
+      }
+    });
+  }
+
+  /**
+   * The number of horses in the pedigree.
+   */
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return size;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public boolean contains(long id) {
+    lock.readLock().lock();
+    try {
+      return findNode(id) != NO_NODE;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * The ID of the mother of a horse, or {@link #NONE} if it has none, or is not in the pedigree.
+   */
+  public long motherOf(long id) {
+    lock.readLock().lock();
+    try {
+      int node = findNode(id);
+      return node == NO_NODE ? NONE : idOf(mothers[node]);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * The ID of the father of a horse, or {@link #NONE} if it has none, or is not in the pedigree.
+   */
+  public long fatherOf(long id) {
+    lock.readLock().lock();
+    try {
+      int node = findNode(id);
+      return node == NO_NODE ? NONE : idOf(fathers[node]);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Finds the ancestors of a horse, up to the given number of generations back.
+   * Every ancestor is returned once, even if it is an ancestor in more than one generation.
+   *
+   * @param id          the ID of the horse
+   * @param generations how many generations to go back: 1 are the parents only
+   * @return the IDs of the ancestors, generation by generation; empty if the horse is not in the pedigree
+   */
+  public long[] ancestors(long id, int generations) {
+    return relatives(id, generations, true);
+  }
+
+  /**
+   * Finds the descendants of a horse, up to the given number of generations on.
+   * Every descendant is returned once, even if it is a descendant in more than one generation.
+   *
+   * @param id          the ID of the horse
+   * @param generations how many generations to go on: 1 are the children only
+   * @return the IDs of the descendants, generation by generation; empty if the horse is not in the pedigree
+   */
+  public long[] descendants(long id, int generations) {
+    return relatives(id, generations, false);
+  }
+
+  /**
+   * Checks whether a horse is an ancestor of another one, in any generation.
+   */
+  public boolean isAncestor(long ancestorId, long descendantId) {
+    lock.readLock().lock();
+    try {
+      int ancestor = findNode(ancestorId);
+      int descendant = findNode(descendantId);
+      if (ancestor == NO_NODE || descendant == NO_NODE) {
+        return false;
+      }
+      NodeSet visited = new NodeSet();
+      NodeQueue queue = new NodeQueue();
+      queue.add(descendant);
+      for (int head = 0; head < queue.size; head++) {
+        int node = queue.nodes[head];
+        if (mothers[node] == ancestor || fathers[node] == ancestor) {
+          return true;
+        }
+        queue.addUnvisited(mothers[node], visited);
+        queue.addUnvisited(fathers[node], visited);
+      }
+      return false;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+
+  /**
+   * The date of birth of a horse, or {@code null} if it is not in the pedigree.
+   */
+  public LocalDate dateOfBirthOf(long id) {
+    lock.readLock().lock();
+    try {
+      int node = findNode(id);
+      return node == NO_NODE ? null : LocalDate.ofEpochDay(birthsAndSexes[node] >> 1);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * The sex of a horse, or {@code null} if it is not in the pedigree.
+   */
+  public Sex sexOf(long id) {
+    lock.readLock().lock();
+    try {
+      int node = findNode(id);
+      return node == NO_NODE ? null : (birthsAndSexes[node] & 1) == 1 ? Sex.MALE : Sex.FEMALE;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private long[] relatives(long id, int generations, boolean ancestors) {
+    lock.readLock().lock();
+    try {
+      int start = findNode(id);
+      if (start == NO_NODE) {
+        return new long[0];
+      }
+      NodeSet visited = new NodeSet();
+      visited.add(start);
+      // breadth first, so the queue holds one generation after the other
+      NodeQueue queue = new NodeQueue();
+      queue.add(start);
+      int head = 0;
+      for (int generation = 0; generation < generations && head < queue.size; generation++) {
+        int generationEnd = queue.size;
+        for (; head < generationEnd; head++) {
+          int node = queue.nodes[head];
+          if (ancestors) {
+            queue.addUnvisited(mothers[node], visited);
+            queue.addUnvisited(fathers[node], visited);
+          } else {
+            for (int child = firstChildren[node]; child != NO_NODE; child = nextSibling(child, node)) {
+              queue.addUnvisited(child, visited);
+            }
+          }
+        }
+      }
+      long[] result = new long[queue.size - 1];
+      for (int i = 1; i < queue.size; i++) {
+        result[i - 1] = ids[queue.nodes[i]];
+      }
+      return result;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+
+  private static int birthAndSex(Horse horse) {
+    return (int) horse.getDateOfBirth().toEpochDay() << 1 | (horse.getSex() == Sex.MALE ? 1 : 0);
+  }
+
+  private long idOf(int node) {
+    return node == NO_NODE ? NONE : ids[node];
+  }
+
+  private int nextSibling(int child, int parent) {
+    return mothers[child] == parent ? nextMaternalSiblings[child] : nextPaternalSiblings[child];
+  }
+
+  private void linkParents(int node, int mother, int father) {
+    mothers[node] = mother;
+    fathers[node] = father;
+    if (mother != NO_NODE) {
+      nextMaternalSiblings[node] = firstChildren[mother];
+      firstChildren[mother] = node;
+    }
+    if (father != NO_NODE) {
+      nextPaternalSiblings[node] = firstChildren[father];
+      firstChildren[father] = node;
+    }
+  }
+
+  private void unlinkParents(int node) {
+    if (mothers[node] != NO_NODE) {
+      unlinkChild(mothers[node], node);
+      mothers[node] = NO_NODE;
+    }
+    if (fathers[node] != NO_NODE) {
+      unlinkChild(fathers[node], node);
+      fathers[node] = NO_NODE;
+    }
+  }
+
+  private void unlinkChild(int parent, int node) {
+    int next = nextSibling(node, parent);
+    if (firstChildren[parent] == node) {
+      firstChildren[parent] = next;
+      return;
+    }
+    int previous = firstChildren[parent];
+    int child = nextSibling(previous, parent);
+    while (child != node) {
+      previous = child;
+      child = nextSibling(child, parent);
+    }
+    if (mothers[previous] == parent) {
+      nextMaternalSiblings[previous] = next;
+    } else {
+      nextPaternalSiblings[previous] = next;
+    }
+  }
+
+  private void clear(int capacity) {
+    ids = new long[capacity];
+    mothers = new int[capacity];
+    fathers = new int[capacity];
+    birthsAndSexes = new int[capacity];
+    firstChildren = new int[capacity];
+    nextMaternalSiblings = new int[capacity];
+    nextPaternalSiblings = new int[capacity];
+    usedNodes = 0;
+    firstFreeNode = NO_NODE;
+    size = 0;
+    slots = new int[(int) (capacity / GROWN_LOAD) + 1];
+    Arrays.fill(slots, EMPTY_SLOT);
+  }
+
+  private int addNode(long id) {
+    int node;
+    if (firstFreeNode != NO_NODE) {
+      node = firstFreeNode;
+      firstFreeNode = nextMaternalSiblings[node];
+    } else {
+      if (usedNodes == ids.length) {
+        growNodes();
+      }
+      node = usedNodes++;
+    }
+    ids[node] = id;
+    mothers[node] = NO_NODE;
+    fathers[node] = NO_NODE;
+    firstChildren[node] = NO_NODE;
+    size++;
+    if (size > slots.length * MAX_LOAD) {
+      growSlots();
+    } else {
+      insertSlot(node);
+    }
+    return node;
+  }
+
+  private void removeNode(int node) {
+    int slot = slotOf(ids[node]);
+    // backward shift deletion, so no later node of the same probe sequence is cut off by the empty slot
+    slots[slot] = EMPTY_SLOT;
+    int next = slot;
+    while (true) {
+      next = next + 1 == slots.length ? 0 : next + 1;
+      if (slots[next] == EMPTY_SLOT) {
+        break;
+      }
+      int home = home(ids[slots[next]]);
+      boolean staysBehindEmptySlot = slot <= next ? slot < home && home <= next : slot < home || home <= next;
+      if (!staysBehindEmptySlot) {
+        slots[slot] = slots[next];
+        slots[next] = EMPTY_SLOT;
+        slot = next;
+      }
+    }
+    ids[node] = NONE;
+    firstChildren[node] = NO_NODE;
+    nextMaternalSiblings[node] = firstFreeNode;
+    firstFreeNode = node;
+    size--;
+  }
+
+  private void growNodes() {
+    int capacity = ids.length + ids.length / 4 + INITIAL_CAPACITY;
+    ids = Arrays.copyOf(ids, capacity);
+    mothers = Arrays.copyOf(mothers, capacity);
+    fathers = Arrays.copyOf(fathers, capacity);
+    birthsAndSexes = Arrays.copyOf(birthsAndSexes, capacity);
+    firstChildren = Arrays.copyOf(firstChildren, capacity);
+    nextMaternalSiblings = Arrays.copyOf(nextMaternalSiblings, capacity);
+    nextPaternalSiblings = Arrays.copyOf(nextPaternalSiblings, capacity);
+  }
+
+  private void growSlots() {
+    slots = new int[(int) (size / GROWN_LOAD) + 1];
+    Arrays.fill(slots, EMPTY_SLOT);
+    for (int node = 0; node < usedNodes; node++) {
+      if (ids[node] != NONE) {
+        insertSlot(node);
+      }
+    }
+  }
+
+  private void insertSlot(int node) {
+    int slot = home(ids[node]);
+    while (slots[slot] != EMPTY_SLOT) {
+      slot = slot + 1 == slots.length ? 0 : slot + 1;
+    }
+    slots[slot] = node;
+  }
+
+  private int findNode(long id) {
+    int slot = slotOf(id);
+    return slot == EMPTY_SLOT ? NO_NODE : slots[slot];
+  }
+
+  private int slotOf(long id) {
+    if (id == NONE) {
+      return EMPTY_SLOT;
+    }
+    int slot = home(id);
+    while (slots[slot] != EMPTY_SLOT) {
+      if (ids[slots[slot]] == id) {
+        return slot;
+      }
+      slot = slot + 1 == slots.length ? 0 : slot + 1;
+    }
+    return EMPTY_SLOT;
+  }
+
+  private int home(long id) {
+    // IDs are mostly consecutive, so they are spread over the table first
+    return (int) (((id * 0x9E3779B97F4A7C15L) >>> 1) % slots.length);
+  }
+
+  /**
+   * Nodes already visited by a search, as an open addressing set of ints, so visiting a node does not box it.
+   */
+  private static final class NodeSet {
+    private int[] nodes = new int[32];
+    private int size;
+
+    NodeSet() {
+      Arrays.fill(nodes, NO_NODE);
+    }
+
+    /**
+     * Adds a node, and tells whether it was not in the set yet.
+     */
+    boolean add(int node) {
+      if (size * 2 >= nodes.length) {
+        int[] old = nodes;
+        nodes = new int[old.length * 2];
+        Arrays.fill(nodes, NO_NODE);
+        for (int oldNode : old) {
+          if (oldNode != NO_NODE) {
+            insert(oldNode);
+          }
+        }
+      }
+      if (insert(node)) {
+        size++;
+        return true;
+      }
+      return false;
+    }
+
+    private boolean insert(int node) {
+      int mask = nodes.length - 1;
+      int hash = node * 0x9E3779B9;
+      int slot = (hash ^ hash >>> 16) & mask;
+      while (nodes[slot] != NO_NODE) {
+        if (nodes[slot] == node) {
+          return false;
+        }
+        slot = slot + 1 & mask;
+      }
+      nodes[slot] = node;
+      return true;
+    }
+  }
+
+  /**
+   * A growing array of nodes, in the order they were added.
+   */
+  private static final class NodeQueue {
+    private int[] nodes = new int[16];
+    private int size;
+
+    void add(int node) {
+      if (size == nodes.length) {
+        nodes = Arrays.copyOf(nodes, size * 2);
+      }
+      nodes[size++] = node;
+    }
+
+    void addUnvisited(int node, NodeSet visited) {
+      if (node != NO_NODE && visited.add(node)) {
+        add(node);
+      }
+    }
+  }
+}
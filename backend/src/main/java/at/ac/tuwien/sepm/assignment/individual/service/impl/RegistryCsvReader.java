@@ -0,0 +1,164 @@
+package at.ac.tuwien.sepm.assignment.individual.service.impl;
+
+import at.ac.tuwien.sepm.assignment.individual.dto.RegistryRecordDto;
+import at.ac.tuwien.sepm.assignment.individual.type.Sex;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads a registry from CSV as described by RFC 4180.
+ * The first line is a header naming the columns, in any order:
+ * {@value #COLUMNS}. Only {@code type} is required, missing columns and empty values are {@code null}.
+ * Values may be quoted with {@code "}, then they may contain commas, line breaks and doubled quotes.
+ */
+class RegistryCsvReader implements RegistryReader {
+  static final String COLUMNS = "type,key,first_name,last_name,email,name,description,date_of_birth,sex,owner_key,mother_key,father_key";
+
+  private final BufferedReader input;
+  private final int[] columnIndices;
+  private long nextLine = 1;
+  private long line;
+
+  RegistryCsvReader(InputStream input) throws IOException {
+    this.input = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+    List<String> header = readFields();
+    if (header == null) {
+      throw new IllegalArgumentException("Header line is missing");
+    }
+    Map<String, Integer> headerIndices = new HashMap<>();
+    for (int i = 0; i < header.size(); i++) {
+      if (headerIndices.putIfAbsent(header.get(i).trim(), i) != null) {
+        throw new IllegalArgumentException("Column '%s' is given more than once".formatted(header.get(i)));
+      }
+    }
+    String[] columns = COLUMNS.split(",");
+    columnIndices = new int[columns.length];
+    for (int i = 0; i < columns.length; i++) {
+      columnIndices[i] = headerIndices.getOrDefault(columns[i], -1);
+    }
+    if (columnIndices[0] < 0) {
+      throw new IllegalArgumentException("Column 'type' is missing");
+    }
+  }
+
+  @Override
+  public RegistryRecordDto next() throws IOException {
+    List<String> fields = readFields();
+    if (fields == null) {
+      return null;
+    }
+    return new RegistryRecordDto(
+        field(fields, 0),
+        field(fields, 1),
+        field(fields, 2),
+        field(fields, 3),
+        field(fields, 4),
+        field(fields, 5),
+        field(fields, 6),
+        parseDate(field(fields, 7)),
+        parseSex(field(fields, 8)),
+        field(fields, 9),
+        field(fields, 10),
+        field(fields, 11));
+  }
+
+  @Override
+  public long line() {
+    return line;
+  }
+
+  @Override
+  public void close() throws IOException {
+    input.close();
+  }
+
+  private String field(List<String> fields, int column) {
+    int index = columnIndices[column];
+    if (index < 0 || index >= fields.size() || fields.get(index).isEmpty()) {
+      return null;
+    }
+    return fields.get(index);
+  }
+
+  private static LocalDate parseDate(String value) {
+    try {
+      return value == null ? null : LocalDate.parse(value);
+    } catch (DateTimeParseException e) {
+      throw new IllegalArgumentException("Date of birth '%s' is not an ISO date".formatted(value), e);
+    }
+  }
+
+  private static Sex parseSex(String value) {
+    try {
+      return value == null ? null : Sex.valueOf(value);
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Sex '%s' is neither MALE nor FEMALE".formatted(value), e);
+    }
+  }
+
+  /**
+   * Reads the fields of the next record, skipping empty lines.
+   *
+   * @return the fields of the next record, or {@code null} at the end of the file
+   */
+  private List<String> readFields() throws IOException {
+    String text;
+    do {
+      text = input.readLine();
+      line = nextLine++;
+    } while (text != null && text.isEmpty());
+    if (text == null) {
+      return null;
+    }
+
+    List<String> fields = new ArrayList<>();
+    StringBuilder field = new StringBuilder();
+    boolean quoted = false;
+    int i = 0;
+    while (true) {
+      if (i == text.length()) {
+        if (!quoted) {
+          fields.add(field.toString());
+          return fields;
+        }
+        // a quoted value continues on the next line
+        text = input.readLine();
+        nextLine++;
+        if (text == null) {
+          throw new IllegalArgumentException("Quoted value is not closed");
+        }
+        field.append('\n');
+        i = 0;
+        continue;
+      }
+      char c = text.charAt(i++);
+      if (quoted) {
+        if (c != '"') {
+          field.append(c);
+        } else if (i < text.length() && text.charAt(i) == '"') {
+          field.append('"');
+          i++;
+        } else {
+          quoted = false;
+        }
+      } else if (c == '"' && field.isEmpty()) {
+        quoted = true;
+      } else if (c == ',') {
+        fields.add(field.toString());
+        field.setLength(0);
+      } else {
+        field.append(c);
+      }
+    }
+  }
+}
@@ -0,0 +1,288 @@
+package at.ac.tuwien.sepm.assignment.individual.service.impl;
+
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseBatchCreateDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.OwnerBatchCreateDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.OwnerCreateDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.RegistryImportResultDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.RegistryRecordDto;
+import at.ac.tuwien.sepm.assignment.individual.entity.Horse;
+import at.ac.tuwien.sepm.assignment.individual.entity.Owner;
+import at.ac.tuwien.sepm.assignment.individual.exception.ConflictException;
+import at.ac.tuwien.sepm.assignment.individual.exception.FatalException;
+import at.ac.tuwien.sepm.assignment.individual.exception.ValidationException;
+import at.ac.tuwien.sepm.assignment.individual.persistence.HorseDao;
+import at.ac.tuwien.sepm.assignment.individual.persistence.OwnerDao;
+import at.ac.tuwien.sepm.assignment.individual.service.RegistryImportService;
+import at.ac.tuwien.sepm.assignment.individual.type.RegistryFormat;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+
+@Service
+public class RegistryImportServiceImpl implements RegistryImportService {
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  static final int CHUNK_SIZE = 1_000;
+  private static final long PROGRESS_INTERVAL_ROWS = 100_000;
+
+  private final OwnerDao ownerDao;
+  private final HorseDao horseDao;
+  private final OwnerValidator ownerValidator;
+  private final HorseValidator horseValidator;
+  private final ObjectMapper objectMapper;
+  private final PlatformTransactionManager transactionManager;
+  private final Optional<PedigreeGraph> pedigreeGraph;
+
+  public RegistryImportServiceImpl(OwnerDao ownerDao, HorseDao horseDao, OwnerValidator ownerValidator, HorseValidator horseValidator,
+                                   ObjectMapper objectMapper, PlatformTransactionManager transactionManager,
+                                   Optional<PedigreeGraph> pedigreeGraph) {
+    this.ownerDao = ownerDao;
+    this.horseDao = horseDao;
+    this.ownerValidator = ownerValidator;
+    this.horseValidator = horseValidator;
+    this.objectMapper = objectMapper;
+    this.transactionManager = transactionManager;
+    this.pedigreeGraph = pedigreeGraph;
+  }
+
+  /**
+   * A record of the registry, together with the line of the file it starts at.
+   */
+  private record Row(long line, RegistryRecordDto record) {
+  }
+
+  @Override
+  public RegistryImportResultDto importRegistry(InputStream input, RegistryFormat format, boolean partial)
+      throws ValidationException, ConflictException {
+    LOG.trace("importRegistry({}, partial: {})", format, partial);
+    // unless the import may be partial, all chunks share one transaction, which is rolled back at the first invalid chunk
+    TransactionStatus transaction = partial ? null : transactionManager.getTransaction(TransactionDefinition.withDefaults());
+    RegistryImportResultDto result;
+    try {
+      result = importChunks(input, format, partial);
+    } catch (ValidationException | ConflictException | RuntimeException e) {
+      rollbackIfPresent(transaction);
+      throw e;
+    }
+    if (transaction != null) {
+      transactionManager.commit(transaction);
+      // the horses of the chunks are not kept until the commit, the pedigree reads them from the data store once instead
+      pedigreeGraph.ifPresent(PedigreeGraph::reload);
+    }
+    return result;
+  }
+
+  private RegistryImportResultDto importChunks(InputStream input, RegistryFormat format, boolean partial)
+      throws ValidationException, ConflictException {
+    long start = System.nanoTime();
+    long[] imported = new long[2];
+    long nextProgress = PROGRESS_INTERVAL_ROWS;
+    List<Row> chunk = new ArrayList<>(CHUNK_SIZE);
+    try (RegistryReader reader = openReader(input, format)) {
+      while (true) {
+        RegistryRecordDto record;
+        try {
+          record = reader.next();
+        } catch (IllegalArgumentException e) {
+          long importedUpTo = chunk.isEmpty() ? reader.line() : chunk.get(0).line();
+          throw new ValidationException(stoppedSummary(importedUpTo, partial), List.of("Line %d: %s".formatted(reader.line(), e.getMessage())));
+        }
+        if (record != null) {
+          chunk.add(new Row(reader.line(), record));
+        }
+        if (chunk.size() == CHUNK_SIZE || (record == null && !chunk.isEmpty())) {
+          importChunk(chunk, imported, partial);
+          chunk.clear();
+        }
+        if (imported[0] + imported[1] >= nextProgress) {
+          LOG.info("Imported {} owners and {} horses, {} rows/s", imported[0], imported[1], rowsPerSecond(imported[0] + imported[1], start));
+          nextProgress += PROGRESS_INTERVAL_ROWS;
+        }
+        if (record == null) {
+          break;
+        }
+      }
+    } catch (IllegalArgumentException e) {
+      // only the header of a CSV file is read when opening the reader
+      throw new ValidationException(stoppedSummary(1, partial), List.of("Line 1: " + e.getMessage()));
+    } catch (IOException e) {
+      throw new FatalException("Could not read registry", e);
+    }
+
+    long durationMillis = (System.nanoTime() - start) / 1_000_000;
+    long rowsPerSecond = rowsPerSecond(imported[0] + imported[1], start);
+    LOG.info("Finished importing {} owners and {} horses in {} ms, {} rows/s", imported[0], imported[1], durationMillis, rowsPerSecond);
+    return new RegistryImportResultDto(imported[0], imported[1], durationMillis, rowsPerSecond);
+  }
+
+  private RegistryReader openReader(InputStream input, RegistryFormat format) throws IOException {
+    return switch (format) {
+      case CSV -> new RegistryCsvReader(input);
+      case NDJSON -> new RegistryNdjsonReader(input, objectMapper);
+    };
+  }
+
+  /**
+   * Imports one chunk of records, in a transaction of its own if the import may be partial,
+   * and adds the number of imported owners and horses to {@code imported}.
+   */
+  private void importChunk(List<Row> chunk, long[] imported, boolean partial) throws ValidationException, ConflictException {
+    TransactionStatus transaction = partial ? transactionManager.getTransaction(TransactionDefinition.withDefaults()) : null;
+    try {
+      int owners = importRecords(chunk, partial);
+      if (transaction != null) {
+        transactionManager.commit(transaction);
+      }
+      imported[0] += owners;
+      imported[1] += chunk.size() - owners;
+    } catch (ValidationException e) {
+      rollbackIfPresent(transaction);
+      throw new ValidationException(stoppedSummary(chunk.get(0).line(), partial), e.errors());
+    } catch (ConflictException e) {
+      rollbackIfPresent(transaction);
+      throw new ConflictException(stoppedSummary(chunk.get(0).line(), partial), e.errors());
+    } catch (RuntimeException e) {
+      rollbackIfPresent(transaction);
+      throw e;
+    }
+  }
+
+  private void rollbackIfPresent(TransactionStatus transaction) {
+    if (transaction != null) {
+      transactionManager.rollback(transaction);
+    }
+  }
+
+  /**
+   * Validates and creates the owners and horses of a chunk.
+   * The owners are created first, so the horses of the chunk can reference them.
+   * If the import may be partial, the horses are put into the pedigree once the transaction of the chunk is committed.
+   *
+   * @return the number of created owners
+   */
+  private int importRecords(List<Row> chunk, boolean partial) throws ValidationException, ConflictException {
+    List<String> validationErrors = new ArrayList<>();
+    List<String> conflictErrors = new ArrayList<>();
+    List<Row> ownerRows = new ArrayList<>();
+    List<Row> horseRows = new ArrayList<>();
+    Set<String> ownerKeys = new HashSet<>();
+    for (Row row : chunk) {
+      String type = row.record().type();
+      if (RegistryRecordDto.TYPE_OWNER.equals(type)) {
+        ownerRows.add(row);
+        addIfNotNull(ownerKeys, row.record().key());
+      } else if (RegistryRecordDto.TYPE_HORSE.equals(type)) {
+        horseRows.add(row);
+        addIfNotNull(ownerKeys, row.record().ownerKey());
+      } else {
+        validationErrors.add(rowError(row, "Type must be '%s' or '%s'".formatted(RegistryRecordDto.TYPE_OWNER, RegistryRecordDto.TYPE_HORSE)));
+      }
+    }
+    // one lookup for both: keys of owners that are taken already, and owners of horses that are stored already
+    Map<String, Long> storedOwnerIds = ownerKeys.isEmpty() ? Map.of() : ownerDao.getIdsByRegistryKeys(ownerKeys);
+
+    Set<String> chunkOwnerKeys = new HashSet<>();
+    for (Row row : ownerRows) {
+      RegistryRecordDto owner = row.record();
+      try {
+        ownerValidator.validateForCreate(new OwnerCreateDto(owner.firstName(), owner.lastName(), owner.email()));
+      } catch (ValidationException e) {
+        e.errors().forEach(error -> validationErrors.add(rowError(row, error)));
+      }
+      if (owner.key() != null) {
+        if (!chunkOwnerKeys.add(owner.key())) {
+          validationErrors.add(rowError(row, "Key '%s' is used by more than one owner of the chunk".formatted(owner.key())));
+        } else if (storedOwnerIds.containsKey(owner.key())) {
+          conflictErrors.add(rowError(row, "Key '%s' is already used by a stored owner".formatted(owner.key())));
+        }
+      }
+    }
+    for (Row row : horseRows) {
+      String ownerKey = row.record().ownerKey();
+      if (ownerKey != null && !chunkOwnerKeys.contains(ownerKey) && !storedOwnerIds.containsKey(ownerKey)) {
+        conflictErrors.add(rowError(row, "Could not find provided owner with key '%s'".formatted(ownerKey)));
+      }
+    }
+
+    if (!horseRows.isEmpty()) {
+      // owners are checked above already, they are set once the owners of the chunk have IDs
+      List<HorseBatchCreateDto> horses = horseRows.stream().map(row -> toHorse(row.record(), null)).toList();
+      try {
+        horseValidator.validateForRegistryImport(horses, i -> "Line " + horseRows.get(i).line());
+      } catch (ValidationException e) {
+        validationErrors.addAll(e.errors());
+      } catch (ConflictException e) {
+        conflictErrors.addAll(e.errors());
+      }
+    }
+
+    if (!validationErrors.isEmpty()) {
+      throw new ValidationException("Validation of registry chunk failed", validationErrors);
+    }
+    if (!conflictErrors.isEmpty()) {
+      throw new ConflictException("Conflict arose while importing registry chunk", conflictErrors);
+    }
+
+    Map<String, Long> ownerIds = new HashMap<>(storedOwnerIds);
+    if (!ownerRows.isEmpty()) {
+      List<Owner> owners = ownerDao.createBatch(ownerRows.stream()
+          .map(row -> new OwnerBatchCreateDto(row.record().key(), row.record().firstName(), row.record().lastName(), row.record().email()))
+          .toList());
+      for (int i = 0; i < owners.size(); i++) {
+        String key = ownerRows.get(i).record().key();
+        if (key != null) {
+          ownerIds.put(key, owners.get(i).getId());
+        }
+      }
+    }
+    if (!horseRows.isEmpty()) {
+      List<Horse> horses = horseDao.importBatch(horseRows.stream()
+          .map(row -> toHorse(row.record(), row.record().ownerKey() == null ? null : ownerIds.get(row.record().ownerKey())))
+          .toList());
+      if (partial) {
+        pedigreeGraph.ifPresent(graph -> graph.putAll(horses));
+      }
+    }
+    return ownerRows.size();
+  }
+
+  private static HorseBatchCreateDto toHorse(RegistryRecordDto record, Long ownerId) {
+    return new HorseBatchCreateDto(record.key(), record.name(), record.description(), record.dateOfBirth(), record.sex(),
+        ownerId, null, null, record.motherKey(), record.fatherKey());
+  }
+
+  private static void addIfNotNull(Set<String> values, String value) {
+    if (value != null) {
+      values.add(value);
+    }
+  }
+
+  private static String rowError(Row row, String error) {
+    return "Line %d: %s".formatted(row.line(), error);
+  }
+
+  private static String stoppedSummary(long line, boolean partial) {
+    return partial
+        ? "Import of registry stopped, the records before line %d were imported".formatted(line)
+        : "Import of registry stopped at line %d, no record was imported".formatted(line);
+  }
+
+  private static long rowsPerSecond(long rows, long startNanos) {
+    return rows * 1_000_000_000L / Math.max(1, System.nanoTime() - startNanos);
+  }
+}
@@ -0,0 +1,46 @@
+package at.ac.tuwien.sepm.assignment.individual.service.impl;
+
+import at.ac.tuwien.sepm.assignment.individual.dto.RegistryRecordDto;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads a registry from newline delimited JSON, one object per record,
+ * with the properties of {@link RegistryRecordDto}.
+ */
+class RegistryNdjsonReader implements RegistryReader {
+  private final MappingIterator<RegistryRecordDto> records;
+  private long line;
+
+  RegistryNdjsonReader(InputStream input, ObjectMapper objectMapper) throws IOException {
+    this.records = objectMapper.readerFor(RegistryRecordDto.class).readValues(input);
+  }
+
+  @Override
+  public RegistryRecordDto next() throws IOException {
+    try {
+      if (!records.hasNextValue()) {
+        return null;
+      }
+      line = records.getParser().getTokenLocation().getLineNr();
+      return records.nextValue();
+    } catch (JsonProcessingException e) {
+      line = e.getLocation() == null ? line : e.getLocation().getLineNr();
+      throw new IllegalArgumentException(e.getOriginalMessage(), e);
+    }
+  }
+
+  @Override
+  public long line() {
+    return line;
+  }
+
+  @Override
+  public void close() throws IOException {
+    records.close();
+  }
+}
@@ -0,0 +1,27 @@
+package at.ac.tuwien.sepm.assignment.individual.service.impl;
+
+import at.ac.tuwien.sepm.assignment.individual.dto.RegistryRecordDto;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Reads the records of a registry file one after the other,
+ * holding no more than the current record in memory.
+ */
+interface RegistryReader extends Closeable {
+  /**
+   * Reads the next record.
+   *
+   * @return the next record, or {@code null} if the file has no more records
+   * @throws IllegalArgumentException if the next record is malformed
+   * @throws IOException              if reading the file failed
+   */
+  RegistryRecordDto next() throws IOException;
+
+  /**
+   * The line of the file the last read record starts at,
+   * or, if reading it failed, the line the error was found in.
+   */
+  long line();
+}
@@ -0,0 +1,23 @@
+package at.ac.tuwien.sepm.assignment.individual.type;
+
+/**
+ * The states a job that computes a kinship matrix goes through.
+ */
+public enum KinshipMatrixJobStatus {
+  /**
+   * Waiting for the jobs before it to be done.
+   */
+  QUEUED,
+  /**
+   * Being computed.
+   */
+  RUNNING,
+  /**
+   * Computed, its matrix can be fetched.
+   */
+  DONE,
+  /**
+   * Could not be computed.
+   */
+  FAILED
+}
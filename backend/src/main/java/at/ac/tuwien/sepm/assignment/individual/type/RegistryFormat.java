@@ -0,0 +1,15 @@
+package at.ac.tuwien.sepm.assignment.individual.type;
+
+/**
+ * The file formats a registry of owners and horses can be imported from and exported to.
+ */
+public enum RegistryFormat {
+  /**
+   * Comma separated values, with a header line naming the columns.
+   */
+  CSV,
+  /**
+   * Newline delimited JSON, one JSON object per line.
+   */
+  NDJSON
+}
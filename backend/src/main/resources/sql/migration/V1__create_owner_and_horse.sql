@@ -1,3 +1,6 @@
+-- initial schema
+-- IF NOT EXISTS lets databases that were created before schema versioning existed be adopted as version 1
+
 CREATE TABLE IF NOT EXISTS owner
 (
     id         BIGINT AUTO_INCREMENT PRIMARY KEY,
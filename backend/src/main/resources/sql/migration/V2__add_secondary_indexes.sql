@@ -0,0 +1,10 @@
+-- secondary indexes for the columns horses are looked up, filtered and joined by
+-- owner_id, mother_id and father_id need none of their own: H2 backs every foreign key column with an index already
+-- name_normalized holds the upper-cased name, so case-insensitive name searches can use an index
+
+ALTER TABLE horse
+    ADD COLUMN IF NOT EXISTS name_normalized VARCHAR(255) GENERATED ALWAYS AS (UPPER(name));
+
+CREATE INDEX IF NOT EXISTS horse_date_of_birth_idx ON horse (date_of_birth);
+CREATE INDEX IF NOT EXISTS horse_sex_idx ON horse (sex);
+CREATE INDEX IF NOT EXISTS horse_name_normalized_idx ON horse (name_normalized);
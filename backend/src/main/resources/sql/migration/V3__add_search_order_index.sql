@@ -0,0 +1,5 @@
+-- horse searches are ordered by (name_normalized, id), so pages can be continued right after the last horse of the previous one
+-- the new index also serves everything the single-column name index did
+
+DROP INDEX IF EXISTS horse_name_normalized_idx;
+CREATE INDEX IF NOT EXISTS horse_name_normalized_id_idx ON horse (name_normalized, id);
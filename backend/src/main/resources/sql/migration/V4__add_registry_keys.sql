@@ -0,0 +1,11 @@
+-- registry keys identify owners and horses of the registry they were imported from, so imported data can reference each other by them
+-- they are optional, but unique where given
+-- the keys of a batch of horses only tell its horses apart within the batch, they are not stored
+
+ALTER TABLE owner
+    ADD COLUMN IF NOT EXISTS registry_key VARCHAR(255);
+ALTER TABLE horse
+    ADD COLUMN IF NOT EXISTS registry_key VARCHAR(255);
+
+CREATE UNIQUE INDEX IF NOT EXISTS owner_registry_key_idx ON owner (registry_key);
+CREATE UNIQUE INDEX IF NOT EXISTS horse_registry_key_idx ON horse (registry_key);
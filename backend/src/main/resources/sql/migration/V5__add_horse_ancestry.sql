@@ -0,0 +1,28 @@
+-- closure table of the pedigree: one row for every ancestor of a horse, and every generation it is an ancestor in
+-- a horse can be an ancestor in more than one generation, when its descendants are bred with each other
+-- the rows are kept up to date by the horse DAO on every write of a horse
+-- the primary key serves lookups by descendant, the index H2 backs the ancestor foreign key with serves lookups by ancestor
+
+CREATE TABLE IF NOT EXISTS horse_ancestry
+(
+    descendant_id BIGINT NOT NULL,
+    ancestor_id   BIGINT NOT NULL,
+    depth         INT    NOT NULL,
+    PRIMARY KEY (descendant_id, ancestor_id, depth),
+    FOREIGN KEY (descendant_id) REFERENCES horse (id) ON DELETE CASCADE,
+    FOREIGN KEY (ancestor_id) REFERENCES horse (id) ON DELETE CASCADE
+);
+
+INSERT INTO horse_ancestry (descendant_id, ancestor_id, depth)
+WITH RECURSIVE ancestry (descendant_id, ancestor_id, depth) AS (
+    SELECT horse.id, parent.id, 1
+    FROM horse
+             JOIN horse parent ON parent.id = horse.mother_id OR parent.id = horse.father_id
+    UNION
+    SELECT ancestry.descendant_id, parent.id, ancestry.depth + 1
+    FROM ancestry
+             JOIN horse ancestor ON ancestor.id = ancestry.ancestor_id
+             JOIN horse parent ON parent.id = ancestor.mother_id OR parent.id = ancestor.father_id
+)
+SELECT DISTINCT descendant_id, ancestor_id, depth
+FROM ancestry;
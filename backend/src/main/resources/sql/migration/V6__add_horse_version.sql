@@ -0,0 +1,4 @@
+-- the version of a horse is incremented by every update of it, so clients can tell whether their copy is still current
+-- created horses start at version 0
+
+ALTER TABLE horse ADD COLUMN IF NOT EXISTS version BIGINT DEFAULT 0 NOT NULL;
@@ -0,0 +1,6 @@
+-- the children of a horse are looked up by their parent, earliest born first, when the horse is updated
+-- with the date of birth in the index, the earliest children are the first entries of their range,
+-- and the children born before a date are counted from the index, without reading their rows
+
+CREATE INDEX IF NOT EXISTS horse_mother_id_date_of_birth_idx ON horse (mother_id, date_of_birth);
+CREATE INDEX IF NOT EXISTS horse_father_id_date_of_birth_idx ON horse (father_id, date_of_birth);
@@ -0,0 +1,4 @@
+-- the descendants of a horse are read one generation at a time, and paged in the order of their IDs
+-- with the depth and the descendant in the index, a page of a generation is a range of the index, read in order, without a sort
+
+CREATE INDEX IF NOT EXISTS horse_ancestry_ancestor_id_depth_idx ON horse_ancestry (ancestor_id, depth, descendant_id);
@@ -6,8 +6,14 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import at.ac.tuwien.sepm.assignment.individual.dto.HorseDetailDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseMinimalDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseSearchDto;
 import at.ac.tuwien.sepm.assignment.individual.dto.OwnerDto;
 import at.ac.tuwien.sepm.assignment.individual.entity.Horse;
+import at.ac.tuwien.sepm.assignment.individual.entity.HorseChildrenSummary;
+import at.ac.tuwien.sepm.assignment.individual.entity.HorseMinimal;
+import at.ac.tuwien.sepm.assignment.individual.entity.HorseReferences;
+import at.ac.tuwien.sepm.assignment.individual.entity.HorseWithOwner;
 
 import java.lang.invoke.MethodHandles;
 import java.time.LocalDate;
@@ -15,12 +21,14 @@ import java.util.List;
 
 import at.ac.tuwien.sepm.assignment.individual.exception.ConflictException;
 import at.ac.tuwien.sepm.assignment.individual.exception.NotFoundException;
+import at.ac.tuwien.sepm.assignment.individual.exception.VersionConflictException;
 import at.ac.tuwien.sepm.assignment.individual.type.Sex;
 import org.junit.jupiter.api.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.ActiveProfiles;
 
 @ActiveProfiles({"test", "datagen"}) // enable "test" spring profile during test execution in order to pick up configuration from application-test.yml
@@ -32,6 +40,9 @@ public class HorseDaoTest {
   @Autowired
   HorseDao horseDao;
 
+  @Autowired
+  JdbcTemplate jdbcTemplate;
+
   @Test
   public void getAllReturnsAllStoredHorses() {
     LOG.trace("getAllReturnsAllStoredHorses");
@@ -42,6 +53,95 @@ public class HorseDaoTest {
         .contains(tuple(-1L, "Wendy"));
   }
 
+  @Test
+  public void searchReturnsHorsesWithTheirOwners() {
+    LOG.trace("searchReturnsHorsesWithTheirOwners");
+    List<HorseWithOwner> horses = horseDao.search(new HorseSearchDto(null, null, null, null, -10L, null, null, null));
+    assertThat(horses).isNotEmpty();
+    assertThat(horses)
+        .extracting(h -> h.getHorse().getOwnerId(), h -> h.getOwner().getId(), h -> h.getOwner().getFirstName())
+        .containsOnly(tuple(-10L, -10L, "Padme"));
+  }
+
+  @Test
+  public void ancestryOfGeneratedHorsesIsConsistent() {
+    LOG.trace("ancestryOfGeneratedHorsesIsConsistent");
+    assertThat(horseDao.getIdsWithInconsistentAncestry()).isEmpty();
+    assertThat(horseDao.isAncestor(-2L, -8L)).isTrue();
+    assertThat(horseDao.isAncestor(-8L, -2L)).isFalse();
+  }
+
+  @Test
+  public void rebuildingAncestryRepairsInconsistentAncestry() {
+    LOG.trace("rebuildingAncestryRepairsInconsistentAncestry");
+    jdbcTemplate.update("DELETE FROM horse_ancestry WHERE descendant_id = -9 AND depth = 2");
+    assertThat(horseDao.getIdsWithInconsistentAncestry()).containsExactly(-9L);
+
+    horseDao.rebuildAncestry();
+    assertThat(horseDao.getIdsWithInconsistentAncestry()).isEmpty();
+    assertThat(horseDao.isAncestor(-6L, -9L)).isTrue();
+  }
+
+  @Test
+  public void writingHorsesKeepsAncestryOfTheirDescendantsConsistent() throws NotFoundException, VersionConflictException {
+    LOG.trace("writingHorsesKeepsAncestryOfTheirDescendantsConsistent");
+    Horse dam = horseDao.create(new HorseDetailDto(null, "Ancestry Dam", null, LocalDate.of(2000, 1, 1), Sex.FEMALE, null, null, null));
+    Horse sire = horseDao.create(new HorseDetailDto(null, "Ancestry Sire", null, LocalDate.of(2000, 1, 1), Sex.MALE, null, null, null));
+    HorseDetailDto foalData = new HorseDetailDto(null, "Ancestry Foal", null, LocalDate.of(2010, 1, 1), Sex.FEMALE, null, minimal(dam), minimal(sire));
+    Horse foal = horseDao.create(foalData);
+    Horse grandFoal = horseDao.create(
+        new HorseDetailDto(null, "Ancestry Grandfoal", null, LocalDate.of(2020, 1, 1), Sex.MALE, null, minimal(foal), null));
+    assertThat(horseDao.isAncestor(sire.getId(), grandFoal.getId())).isTrue();
+
+    horseDao.update(foal.getId(), new HorseDetailDto(foal.getId(), foalData.name(), null, foalData.dateOfBirth(), foalData.sex(), null,
+        minimal(dam), null), null);
+    assertThat(horseDao.isAncestor(sire.getId(), grandFoal.getId())).isFalse();
+    assertThat(horseDao.isAncestor(dam.getId(), grandFoal.getId())).isTrue();
+
+    horseDao.delete(foal.getId());
+    assertThat(horseDao.isAncestor(dam.getId(), grandFoal.getId())).isFalse();
+    assertThat(horseDao.getIdsWithInconsistentAncestry()).isEmpty();
+
+    // cleanup:
+    horseDao.delete(grandFoal.getId());
+    horseDao.delete(dam.getId());
+    horseDao.delete(sire.getId());
+  }
+
+  @Test
+  public void getReferencesLeavesOutHorsesAndOwnersThatDoNotExist() {
+    LOG.trace("getReferencesLeavesOutHorsesAndOwnersThatDoNotExist");
+    HorseReferences references = horseDao.getReferences(List.of(-8L, -7L, -9999L), List.of(-1L, -9999L), -2L, List.of(-8L, -7L));
+    assertThat(references.getHorses())
+        .extracting(HorseMinimal::getId, HorseMinimal::getSex)
+        .containsExactlyInAnyOrder(tuple(-8L, Sex.FEMALE), tuple(-7L, Sex.MALE));
+    assertThat(references.getOwnerIds()).containsExactly(-1L);
+    assertThat(references.getDescendantIds()).containsExactly(-8L);
+
+    assertThat(horseDao.getReferences(List.of(), List.of(-2L), null, List.of()).getOwnerIds()).containsExactly(-2L);
+    assertThat(horseDao.getReferences(List.of(), List.of(), -2L, List.of(-8L)).getDescendantIds()).containsExactly(-8L);
+    assertThat(horseDao.getReferences(List.of(), List.of(), null, List.of()).getHorses()).isEmpty();
+  }
+
+  @Test
+  public void childrenSummaryCountsAllChildrenAndHoldsTheEarliestBorn() {
+    LOG.trace("childrenSummaryCountsAllChildrenAndHoldsTheEarliestBorn");
+    Horse dam = horseDao.create(new HorseDetailDto(null, "Summary Dam", null, LocalDate.of(2000, 1, 1), Sex.FEMALE, null, null, null));
+    for (int year = 2005; year < 2010; year++) {
+      horseDao.create(new HorseDetailDto(null, "Summary Foal " + year, null, LocalDate.of(year, 1, 1), Sex.MALE, null, minimal(dam), null));
+    }
+
+    HorseChildrenSummary summary = horseDao.getChildrenSummary(dam.getId(), LocalDate.of(2007, 6, 1), 2);
+    assertThat(summary.getCount()).isEqualTo(5);
+    assertThat(summary.getBornBeforeCount()).isEqualTo(3);
+    assertThat(summary.getEarliestBorn()).extracting(HorseMinimal::getName).containsExactly("Summary Foal 2005", "Summary Foal 2006");
+    assertThat(summary.getEarliestDateOfBirth()).isEqualTo(LocalDate.of(2005, 1, 1));
+
+    HorseChildrenSummary none = horseDao.getChildrenSummary(-9L, null, 2);
+    assertThat(none.getCount()).isZero();
+    assertThat(none.getEarliestBorn()).isEmpty();
+  }
+
   @Test
   public void getNonExistentThrowsNotFound() {
     LOG.trace("getNonExistentThrowsNotFound");
@@ -85,4 +185,8 @@ public class HorseDaoTest {
     // cleanup:
     horseDao.delete(created.getId());
   }
+
+  private static HorseMinimalDto minimal(Horse horse) {
+    return new HorseMinimalDto(horse.getId(), horse.getName(), horse.getDateOfBirth(), horse.getSex());
+  }
 }
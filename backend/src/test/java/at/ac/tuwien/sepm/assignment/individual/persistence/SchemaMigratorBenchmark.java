@@ -0,0 +1,81 @@
+package at.ac.tuwien.sepm.assignment.individual.persistence;
+
+import java.lang.invoke.MethodHandles;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+/**
+ * Compares running the schema script on every new connection (H2's {@code INIT=RUNSCRIPT}, as it was done before)
+ * with running the {@link SchemaMigrator} once at startup.
+ * Not part of the regular test run, execute it with {@code mvn test -Pbenchmark}.
+ */
+public class SchemaMigratorBenchmark {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  private static final String INIT_SCRIPT_URL = "jdbc:h2:mem:%s;DB_CLOSE_DELAY=-1;INIT=RUNSCRIPT FROM 'classpath:sql/migration/V1__create_owner_and_horse.sql'";
+  private static final String PLAIN_URL = "jdbc:h2:mem:%s;DB_CLOSE_DELAY=-1";
+  private static final int WARMUP_ROUNDS = 200;
+  private static final int MEASURED_ROUNDS = 1000;
+
+  @Test
+  public void openingConnections() throws SQLException {
+    LOG.trace("openingConnections");
+    double withInitScript = averageConnectionOpenMillis(INIT_SCRIPT_URL.formatted("connectionsWithInitScript"));
+
+    String plainUrl = PLAIN_URL.formatted("connectionsWithoutInitScript");
+    new SchemaMigrator(new DriverManagerDataSource(plainUrl)).migrate();
+    double withoutInitScript = averageConnectionOpenMillis(plainUrl);
+
+    LOG.info("Opening a connection: with INIT script {} ms, without {} ms", format(withInitScript), format(withoutInitScript));
+  }
+
+  @Test
+  public void migratingAtStartup() throws SQLException {
+    LOG.trace("migratingAtStartup");
+    int rounds = MEASURED_ROUNDS / 10;
+    long freshNanos = 0;
+    for (int i = 0; i < rounds; i++) {
+      var dataSource = new DriverManagerDataSource(PLAIN_URL.formatted("freshDatabase" + i));
+      long start = System.nanoTime();
+      new SchemaMigrator(dataSource).migrate();
+      freshNanos += System.nanoTime() - start;
+    }
+
+    var upToDate = new DriverManagerDataSource(PLAIN_URL.formatted("upToDateDatabase"));
+    new SchemaMigrator(upToDate).migrate();
+    long upToDateNanos = 0;
+    for (int i = 0; i < rounds; i++) {
+      long start = System.nanoTime();
+      new SchemaMigrator(upToDate).migrate();
+      upToDateNanos += System.nanoTime() - start;
+    }
+
+    LOG.info("Startup schema initialization: fresh database {} ms, up-to-date database {} ms",
+        format(freshNanos / 1_000_000.0 / rounds), format(upToDateNanos / 1_000_000.0 / rounds));
+  }
+
+  private double averageConnectionOpenMillis(String url) throws SQLException {
+    // one connection stays open, so the in-memory database is not dropped in between
+    try (Connection keepAlive = DriverManager.getConnection(url)) {
+      for (int i = 0; i < WARMUP_ROUNDS; i++) {
+        DriverManager.getConnection(url).close();
+      }
+      long start = System.nanoTime();
+      for (int i = 0; i < MEASURED_ROUNDS; i++) {
+        DriverManager.getConnection(url).close();
+      }
+      return (System.nanoTime() - start) / 1_000_000.0 / MEASURED_ROUNDS;
+    }
+  }
+
+  private static String format(double millis) {
+    return "%.3f".formatted(millis);
+  }
+}
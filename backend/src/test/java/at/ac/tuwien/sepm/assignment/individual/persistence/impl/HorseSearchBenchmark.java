@@ -0,0 +1,114 @@
+package at.ac.tuwien.sepm.assignment.individual.persistence.impl;
+
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseListDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseSearchDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.OwnerDto;
+import at.ac.tuwien.sepm.assignment.individual.entity.Horse;
+import at.ac.tuwien.sepm.assignment.individual.mapper.HorseMapper;
+import at.ac.tuwien.sepm.assignment.individual.mapper.OwnerMapper;
+import at.ac.tuwien.sepm.assignment.individual.persistence.SchemaMigrator;
+import at.ac.tuwien.sepm.assignment.individual.type.Sex;
+
+import java.lang.invoke.MethodHandles;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+/**
+ * Compares the two ways of resolving the owners of the horses found by a search:
+ * a second query for all owner IDs of the result, as it was done before,
+ * and joining the owner into the search query.
+ * Not part of the regular test run, execute it with {@code mvn test -Pbenchmark}.
+ */
+public class HorseSearchBenchmark {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  private static final String URL = "jdbc:h2:mem:horseSearch%d;DB_CLOSE_DELAY=-1";
+  private static final int[] HORSE_COUNTS = {10_000, 100_000, 1_000_000};
+  private static final int HORSES_PER_OWNER = 10;
+  private static final int MEASURED_SEARCHED_HORSES = 1_000_000;
+
+  private static final String SQL_INSERT_OWNERS = "INSERT INTO owner (first_name, last_name, email)"
+      + " SELECT 'First' || x, 'Last' || x, 'owner' || x || '@example.com' FROM SYSTEM_RANGE(1, ?)";
+  // every tenth horse has no owner
+  private static final String SQL_INSERT_HORSES = "INSERT INTO horse (name, description, date_of_birth, sex, owner_id)"
+      + " SELECT 'Horse ' || x, 'Description of horse ' || x, DATEADD(DAY, MOD(x, 7000), DATE '2000-01-01'),"
+      + " CASE WHEN MOD(x, 2) = 0 THEN 'MALE' ELSE 'FEMALE' END,"
+      + " CASE WHEN MOD(x, 10) = 0 THEN NULL ELSE MOD(x, ?) + 1 END"
+      + " FROM SYSTEM_RANGE(1, ?)";
+  private static final String SQL_SEARCH_WITHOUT_OWNER = "SELECT * FROM horse ORDER BY name_normalized, id";
+
+  @Test
+  public void resolvingOwnersOfSearchResult() throws SQLException {
+    LOG.trace("resolvingOwnersOfSearchResult");
+    for (int horseCount : HORSE_COUNTS) {
+      var jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(URL.formatted(horseCount)));
+      new SchemaMigrator(jdbcTemplate.getDataSource()).migrate();
+      int ownerCount = horseCount / HORSES_PER_OWNER;
+      jdbcTemplate.update(SQL_INSERT_OWNERS, ownerCount);
+      jdbcTemplate.update(SQL_INSERT_HORSES, ownerCount, horseCount);
+
+      var ownerDao = new OwnerJdbcDao(jdbcTemplate, new NamedParameterJdbcTemplate(jdbcTemplate));
+      var ownerMapper = new OwnerMapper();
+      Supplier<List<HorseListDto>> secondQuery = () -> {
+        List<Horse> horses = jdbcTemplate.query(SQL_SEARCH_WITHOUT_OWNER, (result, rowNum) -> new Horse()
+            .setId(result.getLong("id"))
+            .setName(result.getString("name"))
+            .setDescription(result.getString("description"))
+            .setDateOfBirth(result.getObject("date_of_birth", LocalDate.class))
+            .setSex(Sex.valueOf(result.getString("sex")))
+            .setOwnerId(result.getObject("owner_id", Long.class)));
+        var ownerIds = horses.stream().map(Horse::getOwnerId).filter(Objects::nonNull).collect(Collectors.toUnmodifiableSet());
+        Map<Long, OwnerDto> owners = ownerDao.getOwnersByIds(ownerIds).stream()
+            .map(ownerMapper::entityToDto)
+            .collect(Collectors.toUnmodifiableMap(OwnerDto::id, Function.identity()));
+        return horses.stream()
+            .map(horse -> new HorseListDto(horse.getId(), horse.getName(), horse.getDescription(), horse.getDateOfBirth(),
+                horse.getSex(), horse.getOwnerId() == null ? null : owners.get(horse.getOwnerId())))
+            .toList();
+      };
+
+      var horseDao = new HorseJdbcDao(jdbcTemplate, new NamedParameterJdbcTemplate(jdbcTemplate));
+      var horseMapper = new HorseMapper(ownerMapper);
+      var searchAll = new HorseSearchDto(null, null, null, null, null, null, null, null);
+      Supplier<List<HorseListDto>> join = () -> horseDao.search(searchAll).stream().map(horseMapper::entityToListDto).toList();
+
+      int rounds = Math.max(1, MEASURED_SEARCHED_HORSES / horseCount);
+      double secondQueryMillis = averageMillis(secondQuery, horseCount, rounds);
+      double joinMillis = averageMillis(join, horseCount, rounds);
+      LOG.info("Searching {} horses of {} owners: second query for owners {} ms, owner joined {} ms",
+          horseCount, ownerCount, format(secondQueryMillis), format(joinMillis));
+
+      jdbcTemplate.execute("DROP ALL OBJECTS");
+    }
+  }
+
+  private double averageMillis(Supplier<List<HorseListDto>> search, int expectedSize, int rounds) {
+    // the first round only warms up
+    if (search.get().size() != expectedSize) {
+      throw new IllegalStateException("Search did not find all horses");
+    }
+    long start = System.nanoTime();
+    for (int i = 0; i < rounds; i++) {
+      search.get();
+    }
+    return (System.nanoTime() - start) / 1_000_000.0 / rounds;
+  }
+
+  private static String format(double millis) {
+    return "%.3f".formatted(millis);
+  }
+}
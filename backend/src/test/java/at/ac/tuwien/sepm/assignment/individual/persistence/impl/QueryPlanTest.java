@@ -0,0 +1,323 @@
+package at.ac.tuwien.sepm.assignment.individual.persistence.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseSearchCursor;
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseSearchDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.OwnerSearchDto;
+import at.ac.tuwien.sepm.assignment.individual.type.Sex;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * Checks the query plans H2 chooses for the DAO queries,
+ * to make sure that none of them has to scan a whole table.
+ */
+@ActiveProfiles({"test", "datagen"}) // enable "test" spring profile during test execution in order to pick up configuration from application-test.yml
+@SpringBootTest
+public class QueryPlanTest {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  @Autowired
+  JdbcTemplate jdbcTemplate;
+
+  @Test
+  public void allMigrationsAreRecorded() throws IOException {
+    LOG.trace("allMigrationsAreRecorded");
+    int migrationCount = new PathMatchingResourcePatternResolver().getResources("classpath:sql/migration/V*__*.sql").length;
+    List<Integer> versions = jdbcTemplate.queryForList("SELECT version FROM schema_version ORDER BY version", Integer.class);
+    assertThat(versions).hasSize(migrationCount).last().isEqualTo(migrationCount);
+  }
+
+  @Test
+  public void getHorseByIdUsesPrimaryKey() {
+    LOG.trace("getHorseByIdUsesPrimaryKey");
+    String plan = explain(HorseJdbcDao.SQL_SELECT_BY_ID, -1L);
+    assertThat(plan).contains("PRIMARY_KEY").doesNotContain("tableScan");
+  }
+
+  @Test
+  public void getHorseDetailByIdJoinsByPrimaryKeys() {
+    LOG.trace("getHorseDetailByIdJoinsByPrimaryKeys");
+    String plan = explain(HorseJdbcDao.SQL_SELECT_DETAIL_BY_ID, -1L);
+    assertThat(plan)
+        .contains("PRIMARY_KEY")
+        .contains(": ID = HORSE.OWNER_ID */")
+        .contains(": ID = HORSE.MOTHER_ID */")
+        .contains(": ID = HORSE.FATHER_ID */")
+        .doesNotContain("tableScan");
+  }
+
+  @Test
+  public void getDetailVersionsJoinsByPrimaryKeys() {
+    LOG.trace("getDetailVersionsJoinsByPrimaryKeys");
+    String plan = explain(HorseJdbcDao.SQL_SELECT_DETAIL_VERSIONS, -1L);
+    assertThat(plan)
+        .contains(": ID = HORSE.MOTHER_ID */")
+        .contains(": ID = HORSE.FATHER_ID */")
+        .doesNotContain("tableScan");
+  }
+
+  @Test
+  public void getFamilyTreeVersionsReadsAncestryByDescendant() {
+    LOG.trace("getFamilyTreeVersionsReadsAncestryByDescendant");
+    String plan = explain(HorseJdbcDao.SQL_SELECT_FAMILY_TREE_VERSIONS, -1L, -1L, 10L);
+    assertThat(plan)
+        .contains("PUBLIC.PRIMARY_KEY_")
+        .contains(": DESCENDANT_ID = ?2")
+        .doesNotContain("tableScan");
+  }
+
+  @Test
+  public void getReferencesUsesPrimaryKeysOfAllTables() {
+    LOG.trace("getReferencesUsesPrimaryKeysOfAllTables");
+    String plan = explain(HorseJdbcDao.SQL_SELECT_REFERENCED_HORSES.replace(":horseIds", "?, ?")
+        + " UNION ALL " + HorseJdbcDao.SQL_SELECT_REFERENCED_OWNERS.replace(":ownerIds", "?")
+        + " UNION ALL " + HorseJdbcDao.SQL_SELECT_REFERENCED_DESCENDANTS.replace(":descendantIds", "?, ?").replace(":ancestorId", "?"),
+        -1L, -2L, -1L, -1L, -2L, -3L);
+    assertThat(plan)
+        .contains(": ID IN(?1, ?2) */")
+        .contains(": ID = ?3 */")
+        .contains(": ID IN(?4, ?5) */")
+        .contains("AND DESCENDANT_ID = HORSE.ID")
+        .doesNotContain("tableScan");
+  }
+
+  @Test
+  public void getHorseMinimalByIdUsesPrimaryKey() {
+    LOG.trace("getHorseMinimalByIdUsesPrimaryKey");
+    String plan = explain(HorseJdbcDao.SQL_SELECT_MINIMAL_BY_ID, -1L);
+    assertThat(plan).contains("PRIMARY_KEY").doesNotContain("tableScan");
+  }
+
+  @Test
+  public void exportReadsAlongPrimaryKeyWithoutSorting() {
+    LOG.trace("exportReadsAlongPrimaryKeyWithoutSorting");
+    String plan = explain(HorseJdbcDao.SQL_EXPORT);
+    assertThat(plan).contains("PRIMARY_KEY").contains("index sorted");
+  }
+
+  @Test
+  public void childrenSummaryReadsParentBirthDateIndexes() {
+    LOG.trace("childrenSummaryReadsParentBirthDateIndexes");
+    LocalDate bornBefore = LocalDate.of(2000, 1, 1);
+    String plan = explain(HorseJdbcDao.SQL_SELECT_CHILDREN_SUMMARY, bornBefore, -1L, bornBefore, -1L, -1L, 10, -1L, 10, 10);
+    assertThat(plan)
+        .contains("PUBLIC.HORSE_MOTHER_ID_DATE_OF_BIRTH_IDX: MOTHER_ID = ?")
+        .contains("PUBLIC.HORSE_FATHER_ID_DATE_OF_BIRTH_IDX: FATHER_ID = ?")
+        .doesNotContain("tableScan");
+  }
+
+  @Test
+  public void familyTreeLooksUpAncestorsByPrimaryKeys() {
+    LOG.trace("familyTreeLooksUpAncestorsByPrimaryKeys");
+    String plan = explain(HorseJdbcDao.SQL_LIST_FOR_FAMILY_TREE_OF_HORSE, -1L, -1L, 10L);
+    assertThat(plan)
+        .contains("PUBLIC.PRIMARY_KEY_")
+        .contains(": DESCENDANT_ID = ?2")
+        .doesNotContain("tableScan");
+  }
+
+  @Test
+  public void ancestryQueriesUseClosureTableIndexes() {
+    LOG.trace("ancestryQueriesUseClosureTableIndexes");
+    assertThat(explain(HorseJdbcDao.SQL_IS_ANCESTOR, -1L, -2L))
+        .contains(": DESCENDANT_ID = ?1")
+        .doesNotContain("tableScan");
+    assertThat(explain(HorseJdbcDao.SQL_INSERT_ANCESTRY_OF, -1L, -1L, -1L, -1L, -1L))
+        .doesNotContain("tableScan");
+  }
+
+  @Test
+  public void rederivedAncestryIsSelectedByIndexes() {
+    LOG.trace("rederivedAncestryIsSelectedByIndexes");
+    // the table of the rederived horses is local to the connection, so it is created on the one explaining
+    jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+      try (Statement stmt = connection.createStatement()) {
+        stmt.execute("CREATE LOCAL TEMPORARY TABLE IF NOT EXISTS ancestry_rederived (id BIGINT PRIMARY KEY) TRANSACTIONAL");
+        assertThat(explain(stmt, HorseJdbcDao.SQL_MARK_DESCENDANTS_REDERIVED.replace("?", "-1")))
+            .contains(": ANCESTOR_ID = CAST(-1 AS BIGINT) */")
+            .doesNotContain("tableScan");
+        assertThat(explain(stmt, HorseJdbcDao.SQL_DELETE_ANCESTRY_OF_REDERIVED))
+            .contains("DESCENDANT_ID IN(SELECT")
+            .doesNotContain("HORSE_ANCESTRY.tableScan");
+        assertThat(explain(stmt, HorseJdbcDao.SQL_INSERT_PARENT_ANCESTRY_OF_REDERIVED))
+            .contains(": ID IN(SELECT")
+            .doesNotContain("HORSE.tableScan");
+        assertThat(explain(stmt, HorseJdbcDao.SQL_INSERT_NEXT_GENERATION_ANCESTRY_OF_REDERIVED.replace(":depth", "1")))
+            .contains("DESCENDANT_ID IN(SELECT")
+            .doesNotContain("HORSE_ANCESTRY.tableScan");
+      }
+      return null;
+    });
+  }
+
+  @Test
+  public void pedigreeOfHorsesIsReadFromAncestryByIndex() {
+    LOG.trace("pedigreeOfHorsesIsReadFromAncestryByIndex");
+    // the IDs are a list of named parameters, expanded to two of them here
+    String plan = explain(HorseJdbcDao.SQL_SELECT_PEDIGREE_OF_HORSES.replace(":ids", "?, ?"), -9L, -6L, -9L, -6L);
+    assertThat(plan)
+        .contains(": ID IN(?1, ?2) */")
+        .contains(": DESCENDANT_ID IN(?3, ?4) */")
+        .doesNotContain("tableScan");
+  }
+
+  @Test
+  public void closestCommonAncestorsAreFoundByDescendantIndex() {
+    LOG.trace("closestCommonAncestorsAreFoundByDescendantIndex");
+    assertThat(explain(HorseJdbcDao.SQL_SELECT_COMMON_ANCESTORS, -9L, -9L, -6L, -6L))
+        .contains(": DESCENDANT_ID = ?2 */")
+        .contains(": DESCENDANT_ID = ?4")
+        .doesNotContain("tableScan");
+    assertThat(explain(HorseJdbcDao.SQL_SELECT_ANCESTOR_IDS_OF_HORSES.replace(":ids", "?, ?"), -6L, -2L))
+        .contains(": DESCENDANT_ID IN(?1, ?2) */")
+        .doesNotContain("tableScan");
+  }
+
+  @Test
+  public void stepOfPathToAncestorReadsParentsAndAncestryByPrimaryKeys() {
+    LOG.trace("stepOfPathToAncestorReadsParentsAndAncestryByPrimaryKeys");
+    assertThat(explain(HorseJdbcDao.SQL_SELECT_PARENTS_ON_PATH, -8L, -7L, -2L, 1))
+        .contains(": ID IN(?1, ?2)")
+        .contains("PUBLIC.PRIMARY_KEY_")
+        .doesNotContain("tableScan");
+  }
+
+  @Test
+  public void pageOfDescendantsReadsAncestryByGenerationInOrder() {
+    LOG.trace("pageOfDescendantsReadsAncestryByGenerationInOrder");
+    String plan = explain(HorseJdbcDao.SQL_SELECT_DESCENDANTS_OF_GENERATION, -2L, 2, 0, 100);
+    assertThat(plan)
+        .contains("PUBLIC.HORSE_ANCESTRY_ANCESTOR_ID_DEPTH_IDX: ANCESTOR_ID = ?1")
+        .contains("index sorted")
+        .doesNotContain("tableScan");
+    assertThat(explain(HorseJdbcDao.SQL_EXISTS_DESCENDANTS_OF_GENERATION, -2L, 2))
+        .contains("PUBLIC.HORSE_ANCESTRY_ANCESTOR_ID_DEPTH_IDX: ANCESTOR_ID = ?1")
+        .doesNotContain("tableScan");
+  }
+
+  @Test
+  public void firstPageOfUnfilteredSearchReadsNameIndexInOrder() {
+    LOG.trace("firstPageOfUnfilteredSearchReadsNameIndexInOrder");
+    String plan = explainSearch(new HorseSearchDto(null, null, null, null, null, 20, null, null));
+    assertThat(plan)
+        .contains("PUBLIC.HORSE_NAME_NORMALIZED_ID_IDX */")
+        .contains("index sorted")
+        .doesNotContain("IS NULL");
+  }
+
+  @Test
+  public void searchByOwnerUsesOwnerIndex() {
+    LOG.trace("searchByOwnerUsesOwnerIndex");
+    String plan = explainSearch(new HorseSearchDto(null, null, null, null, -1L, null, null, null));
+    assertThat(plan)
+        .contains(": OWNER_ID = ?1 */")
+        .doesNotContain("tableScan");
+  }
+
+  @Test
+  public void searchBySexAndDateOfBirthUsesAnIndex() {
+    LOG.trace("searchBySexAndDateOfBirthUsesAnIndex");
+    String plan = explainSearch(new HorseSearchDto(null, null, LocalDate.of(1990, 1, 1), Sex.FEMALE, null, 20, null, null));
+    assertThat(plan)
+        .containsAnyOf(": SEX = ?2 */", ": DATE_OF_BIRTH < ?1 */")
+        .doesNotContain("tableScan");
+  }
+
+  @Test
+  public void searchByNameReadsNameIndexInOrder() {
+    LOG.trace("searchByNameReadsNameIndexInOrder");
+    String plan = explainSearch(new HorseSearchDto("wen", null, null, null, null, 20, null, null));
+    assertThat(plan)
+        .contains("PUBLIC.HORSE_NAME_NORMALIZED_ID_IDX")
+        .contains("index sorted")
+        .doesNotContain("tableScan");
+  }
+
+  @Test
+  public void unpagedSearchIsSortedUnlessItReadsNameIndex() {
+    LOG.trace("unpagedSearchIsSortedUnlessItReadsNameIndex");
+    // these are streamed from the cursor as they are read
+    assertThat(explainSearch(new HorseSearchDto(null, null, null, null, null, null, null, null)))
+        .contains("PUBLIC.HORSE_NAME_NORMALIZED_ID_IDX")
+        .contains("index sorted");
+    assertThat(explainSearch(new HorseSearchDto("wen", null, null, null, null, null, null, null)))
+        .contains("PUBLIC.HORSE_NAME_NORMALIZED_ID_IDX")
+        .contains("index sorted");
+    // these are read by the index of their filter, and sorted by name, so all their rows are read before the first is streamed
+    assertThat(explainSearch(new HorseSearchDto(null, null, null, null, -1L, null, null, null)))
+        .contains(": OWNER_ID = ?1 */")
+        .doesNotContain("index sorted");
+    assertThat(explainSearch(new HorseSearchDto(null, null, LocalDate.of(1990, 1, 1), Sex.FEMALE, null, null, null, null)))
+        .containsAnyOf(": SEX = ?2 */", ": DATE_OF_BIRTH < ?1 */")
+        .doesNotContain("index sorted");
+  }
+
+  @Test
+  public void nextPageOfSearchSeeksToCursorInNameIndex() {
+    LOG.trace("nextPageOfSearchSeeksToCursorInNameIndex");
+    String cursor = new HorseSearchCursor("WENDY", -1L).encode();
+    String plan = explainSearch(new HorseSearchDto(null, null, null, null, null, 20, -2L, cursor));
+    assertThat(plan)
+        .contains("PUBLIC.HORSE_NAME_NORMALIZED_ID_IDX: NAME_NORMALIZED >= UPPER(?2) */")
+        .contains("index sorted")
+        .doesNotContain("tableScan");
+  }
+
+  @Test
+  public void searchesWithTheSameFiltersShareTheirStatementText() {
+    LOG.trace("searchesWithTheSameFiltersShareTheirStatementText");
+    SearchStatement.Query first = HorseJdbcDao.buildSearchQuery(new HorseSearchDto("a", null, null, Sex.MALE, -1L, 10, null, null));
+    SearchStatement.Query second = HorseJdbcDao.buildSearchQuery(new HorseSearchDto("b", null, null, Sex.FEMALE, -2L, 20, null, null));
+    assertThat(second.sql()).isSameAs(first.sql());
+    assertThat(second.args()).containsExactly("%b%", "FEMALE", -2L, 20);
+
+    assertThat(OwnerJdbcDao.buildSearchQuery(new OwnerSearchDto(null, 5)).sql()).isEqualTo("SELECT * FROM owner LIMIT ?");
+    assertThat(OwnerJdbcDao.buildSearchQuery(new OwnerSearchDto("an", null)).args()).containsExactly("%an%");
+  }
+
+  @Test
+  public void getOwnerByIdUsesPrimaryKey() {
+    LOG.trace("getOwnerByIdUsesPrimaryKey");
+    String plan = explain(OwnerJdbcDao.SQL_SELECT_BY_ID, -1L);
+    assertThat(plan).contains("PRIMARY_KEY").doesNotContain("tableScan");
+  }
+
+  private String explainSearch(HorseSearchDto searchParameters) {
+    SearchStatement.Query query = HorseJdbcDao.buildSearchQuery(searchParameters);
+    return explain(query.sql(), query.args());
+  }
+
+  private static String explain(Statement stmt, String sql) throws SQLException {
+    try (ResultSet result = stmt.executeQuery("EXPLAIN " + sql)) {
+      result.next();
+      String plan = result.getString(1);
+      LOG.debug("plan of {}:\n{}", sql, plan);
+      return plan;
+    }
+  }
+
+  private String explain(String sql, Object... args) {
+    String plan = jdbcTemplate.queryForObject("EXPLAIN " + sql, String.class, args);
+    LOG.debug("plan of {}:\n{}", sql, plan);
+    return plan;
+  }
+}
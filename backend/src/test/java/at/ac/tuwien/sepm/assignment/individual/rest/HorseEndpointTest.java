@@ -2,29 +2,44 @@ package at.ac.tuwien.sepm.assignment.individual.rest;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.tuple;
+import static org.assertj.core.api.Assertions.within;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseBatchCreateDto;
 import at.ac.tuwien.sepm.assignment.individual.dto.HorseDetailDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseExportDto;
 import at.ac.tuwien.sepm.assignment.individual.dto.HorseListDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseMinimalDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseSearchDto;
 import at.ac.tuwien.sepm.assignment.individual.entity.Horse;
 import at.ac.tuwien.sepm.assignment.individual.service.HorseService;
 import at.ac.tuwien.sepm.assignment.individual.type.Sex;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import java.io.ByteArrayInputStream;
 import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
 
+import org.hamcrest.Matchers;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.web.WebAppConfiguration;
@@ -76,6 +91,62 @@ public class HorseEndpointTest {
     assertThat(horseResult).extracting(HorseListDto::id, HorseListDto::name).contains(tuple(-1L, "Wendy"));
   }
 
+  @Test
+  public void gettingLimitedHorsesReturnsCursorToNextPage() throws Exception {
+    LOG.trace("gettingLimitedHorsesReturnsCursorToNextPage");
+    MvcResult firstPage = mockMvc
+        .perform(MockMvcRequestBuilders
+            .get("/horses")
+            .param("limit", "2")
+            .accept(MediaType.APPLICATION_JSON)
+        ).andExpect(status().isOk())
+        .andExpect(jsonPath("$.length()").value(2))
+        .andExpect(header().exists(HorseEndpoint.NEXT_CURSOR_HEADER))
+        .andReturn();
+
+    mockMvc
+        .perform(MockMvcRequestBuilders
+            .get("/horses")
+            .param("limit", "2")
+            .param("cursor", firstPage.getResponse().getHeader(HorseEndpoint.NEXT_CURSOR_HEADER))
+            .accept(MediaType.APPLICATION_JSON)
+        ).andExpect(status().isOk())
+        .andExpect(jsonPath("$.length()").value(2));
+  }
+
+  @Test
+  public void exportingCsvReturnsAllHorsesWithOwnerAndParentIds() throws Exception {
+    LOG.trace("exportingCsvReturnsAllHorsesWithOwnerAndParentIds");
+    String csv = mockMvc
+        .perform(MockMvcRequestBuilders
+            .get("/horses/export")
+        ).andExpect(status().isOk())
+        .andExpect(header().string(HttpHeaders.CONTENT_TYPE, RegistryEndpoint.TEXT_CSV_VALUE))
+        .andReturn().getResponse().getContentAsString();
+
+    assertThat(csv.lines())
+        .startsWith("id,name,description,date_of_birth,sex,owner_id,mother_id,father_id")
+        .contains("-6,1-MOTHER-M,The famous one!,2019-12-12,FEMALE,-10,-2,");
+  }
+
+  @Test
+  public void exportingGzippedNdjsonReturnsCompressedHorses() throws Exception {
+    LOG.trace("exportingGzippedNdjsonReturnsCompressedHorses");
+    byte[] body = mockMvc
+        .perform(MockMvcRequestBuilders
+            .get("/horses/export")
+            .param("format", "NDJSON")
+            .param("gzip", "true")
+        ).andExpect(status().isOk())
+        .andExpect(header().string(HttpHeaders.CONTENT_TYPE, HorseEndpoint.GZIP_VALUE))
+        .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"horses.ndjson.gz\""))
+        .andReturn().getResponse().getContentAsByteArray();
+
+    List<HorseExportDto> horses = objectMapper.readerFor(HorseExportDto.class)
+        .<HorseExportDto>readValues(new GZIPInputStream(new ByteArrayInputStream(body))).readAll();
+    assertThat(horses).contains(new HorseExportDto(-8L, "1-MOTHER", "The famous one!", LocalDate.of(2021, 12, 12), Sex.FEMALE, null, -6L, -5L));
+  }
+
   @Test
   public void gettingNonexistentUrlReturns404() throws Exception {
     LOG.trace("gettingNonexistentUrlReturns404");
@@ -107,6 +178,57 @@ public class HorseEndpointTest {
     horseService.delete(horseResult.getId());
   }
 
+  @Test
+  public void postBatchReturns201AndCreatedHorsesInOrder() throws Exception {
+    LOG.trace("postBatchReturns201AndCreatedHorsesInOrder");
+    List<HorseBatchCreateDto> batch = List.of(
+        new HorseBatchCreateDto(null, "Batch Foal", null, LocalDate.of(2021, 5, 5), Sex.MALE, -1L, null, null, "dam", "sire"),
+        new HorseBatchCreateDto("dam", "Batch Dam", null, LocalDate.of(2015, 1, 1), Sex.FEMALE, null, null, null, null, null),
+        new HorseBatchCreateDto("sire", "Batch Sire", null, LocalDate.of(2014, 1, 1), Sex.MALE, null, null, null, null, null));
+
+    MvcResult result = mockMvc.perform(
+            post("/horses/batch")
+                .content(objectMapper.writeValueAsString(batch))
+                .contentType(MediaType.APPLICATION_JSON)
+        )
+        .andExpect(status().isCreated())
+        .andExpect(jsonPath("$.length()").value(3))
+        .andExpect(jsonPath("$[0].name").value("Batch Foal"))
+        .andReturn();
+
+    List<HorseMinimalDto> created = objectMapper.readerFor(HorseMinimalDto.class).<HorseMinimalDto>
+        readValues(result.getResponse().getContentAsByteArray()).readAll();
+    HorseDetailDto foal = horseService.getById(created.get(0).id());
+    assertThat(foal.mother()).isEqualTo(created.get(1));
+    assertThat(foal.father()).isEqualTo(created.get(2));
+
+    // cleanup:
+    for (HorseMinimalDto horse : created) {
+      horseService.delete(horse.id());
+    }
+  }
+
+  @Test
+  public void postInvalidBatchReturns422WithErrorsPerHorse() throws Exception {
+    LOG.trace("postInvalidBatchReturns422WithErrorsPerHorse");
+    List<HorseBatchCreateDto> batch = List.of(
+        new HorseBatchCreateDto(null, "Valid Batch Horse", null, LocalDate.of(2021, 5, 5), Sex.MALE, null, null, null, null, null),
+        new HorseBatchCreateDto(null, "Batch Foal", null, LocalDate.of(2021, 5, 5), Sex.MALE, null, null, null, "sire", null),
+        new HorseBatchCreateDto("sire", "Batch Sire", null, LocalDate.of(2014, 1, 1), Sex.MALE, null, null, null, null, null));
+
+    mockMvc.perform(
+            post("/horses/batch")
+                .content(objectMapper.writeValueAsString(batch))
+                .contentType(MediaType.APPLICATION_JSON)
+        )
+        .andExpect(status().isUnprocessableEntity())
+        .andExpect(jsonPath("$.errors.length()").value(1))
+        .andExpect(jsonPath("$.errors[0]").value("Horse 2: Mother's sex must be female"));
+
+    HorseSearchDto search = new HorseSearchDto("Valid Batch Horse", null, null, null, null, null, null, null);
+    assertThat(horseService.search(search).toList()).isEmpty();
+  }
+
   @Test
   public void deleteReturns204AndThenGetReturns404() throws Exception {
     LOG.trace("deleteReturns204AndThenGetReturns404");
@@ -139,4 +261,334 @@ public class HorseEndpointTest {
             .content(objectMapper.writeValueAsString(toBeCreated))
     );
   }
+
+  @Test
+  public void familyGraphHoldsInbredAncestorOnce() throws Exception {
+    LOG.trace("familyGraphHoldsInbredAncestorOnce");
+    HorseDetailDto dam = horseService.create(new HorseDetailDto(null, "Inbred Dam", null, LocalDate.of(2000, 1, 1), Sex.FEMALE, null, null, null));
+    HorseMinimalDto damMinimal = new HorseMinimalDto(dam.id(), dam.name(), dam.dateOfBirth(), dam.sex());
+    HorseDetailDto sire = horseService.create(
+        new HorseDetailDto(null, "Inbred Sire", null, LocalDate.of(2005, 1, 1), Sex.MALE, null, damMinimal, null));
+    HorseDetailDto foal = horseService.create(new HorseDetailDto(null, "Inbred Foal", null, LocalDate.of(2010, 1, 1), Sex.FEMALE, null,
+        damMinimal, new HorseMinimalDto(sire.id(), sire.name(), sire.dateOfBirth(), sire.sex())));
+    try {
+      mockMvc
+          .perform(get("/horses/{id}/familyTree", foal.id()).param("format", "graph").accept(MediaType.APPLICATION_JSON))
+          .andExpect(status().isOk())
+          .andExpect(jsonPath("$.nodes.length()").value(3))
+          .andExpect(jsonPath("$.nodes[0].id").value(foal.id()))
+          .andExpect(jsonPath("$.nodes[1].id").value(dam.id()))
+          .andExpect(jsonPath("$.nodes[2].id").value(sire.id()))
+          .andExpect(jsonPath("$.nodes[0].mother").value(1))
+          .andExpect(jsonPath("$.nodes[0].father").value(2))
+          .andExpect(jsonPath("$.nodes[2].mother").value(1));
+      // the nested tree holds the dam once per path
+      mockMvc
+          .perform(get("/horses/{id}/familyTree", foal.id()).accept(MediaType.APPLICATION_JSON))
+          .andExpect(status().isOk())
+          .andExpect(jsonPath("$.mother.id").value(dam.id()))
+          .andExpect(jsonPath("$.father.mother.id").value(dam.id()));
+    } finally {
+      horseService.delete(foal.id());
+      horseService.delete(sire.id());
+      horseService.delete(dam.id());
+    }
+  }
+
+  @Test
+  public void detailAndFamilyTreeAreNotModifiedUntilOneOfTheirHorsesChanges() throws Exception {
+    LOG.trace("detailAndFamilyTreeAreNotModifiedUntilOneOfTheirHorsesChanges");
+    HorseDetailDto dam = horseService.create(new HorseDetailDto(null, "Tagged Dam", null, LocalDate.of(2000, 1, 1), Sex.FEMALE, null, null, null));
+    HorseDetailDto foal = horseService.create(new HorseDetailDto(null, "Tagged Foal", null, LocalDate.of(2010, 1, 1), Sex.FEMALE, null,
+        new HorseMinimalDto(dam.id(), dam.name(), dam.dateOfBirth(), dam.sex()), null));
+    boolean damDeleted = false;
+    try {
+      String detailTag = mockMvc.perform(get("/horses/{id}", foal.id()).accept(MediaType.APPLICATION_JSON))
+          .andExpect(status().isOk())
+          .andExpect(jsonPath("$.mother.name").value("Tagged Dam"))
+          .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+      String treeTag = mockMvc.perform(get("/horses/{id}/familyTree", foal.id()).accept(MediaType.APPLICATION_JSON))
+          .andExpect(status().isOk())
+          .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+      assertThat(detailTag).startsWith("\"").endsWith("\"");
+      mockMvc.perform(get("/horses/{id}", foal.id()).header(HttpHeaders.IF_NONE_MATCH, detailTag))
+          .andExpect(status().isNotModified())
+          .andExpect(header().string(HttpHeaders.ETAG, detailTag))
+          .andExpect(content().string(""));
+      mockMvc.perform(get("/horses/{id}/familyTree", foal.id()).header(HttpHeaders.IF_NONE_MATCH, treeTag))
+          .andExpect(status().isNotModified());
+
+      // renaming the dam changes the details of the foal, and its tree
+      horseService.update(dam.id(), new HorseDetailDto(dam.id(), "Renamed Dam", null, dam.dateOfBirth(), dam.sex(), null, null, null));
+      String renamedDetailTag = mockMvc.perform(get("/horses/{id}", foal.id()).header(HttpHeaders.IF_NONE_MATCH, detailTag))
+          .andExpect(status().isOk())
+          .andExpect(jsonPath("$.mother.name").value("Renamed Dam"))
+          .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+      assertThat(renamedDetailTag).isNotEqualTo(detailTag);
+      mockMvc.perform(get("/horses/{id}/familyTree", foal.id()).header(HttpHeaders.IF_NONE_MATCH, treeTag))
+          .andExpect(status().isOk())
+          .andExpect(jsonPath("$.mother.name").value("Renamed Dam"));
+
+      // deleting the dam leaves the foal without its mother, without any update of the foal itself
+      horseService.delete(dam.id());
+      damDeleted = true;
+      mockMvc.perform(get("/horses/{id}", foal.id()).header(HttpHeaders.IF_NONE_MATCH, renamedDetailTag))
+          .andExpect(status().isOk())
+          .andExpect(jsonPath("$.mother").doesNotExist());
+    } finally {
+      horseService.delete(foal.id());
+      if (!damDeleted) {
+        horseService.delete(dam.id());
+      }
+    }
+  }
+
+  @Test
+  public void updateWithOutdatedEntityTagFails() throws Exception {
+    LOG.trace("updateWithOutdatedEntityTagFails");
+    HorseDetailDto horse = horseService.create(new HorseDetailDto(null, "Contested", null, LocalDate.of(2000, 1, 1), Sex.MALE, null, null, null));
+    try {
+      String tag = horseService.getDetailETag(horse.id());
+      byte[] firstEdit = objectMapper.writeValueAsBytes(
+          new HorseDetailDto(horse.id(), "First Edit", null, horse.dateOfBirth(), horse.sex(), null, null, null));
+      String updatedTag = mockMvc.perform(put("/horses/{id}", horse.id()).header(HttpHeaders.IF_MATCH, tag)
+              .contentType(MediaType.APPLICATION_JSON).content(firstEdit))
+          .andExpect(status().isOk())
+          .andExpect(jsonPath("$.name").value("First Edit"))
+          .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+      assertThat(updatedTag).isNotEqualTo(tag).isEqualTo(horseService.getDetailETag(horse.id()));
+
+      // a second edit based on the same details would overwrite the first one
+      byte[] secondEdit = objectMapper.writeValueAsBytes(
+          new HorseDetailDto(horse.id(), "Second Edit", null, horse.dateOfBirth(), horse.sex(), null, null, null));
+      mockMvc.perform(put("/horses/{id}", horse.id()).header(HttpHeaders.IF_MATCH, tag)
+              .contentType(MediaType.APPLICATION_JSON).content(secondEdit))
+          .andExpect(status().isPreconditionFailed());
+      mockMvc.perform(put("/horses/{id}", horse.id()).header(HttpHeaders.IF_MATCH, "W/" + updatedTag)
+              .contentType(MediaType.APPLICATION_JSON).content(secondEdit))
+          .andExpect(status().isPreconditionFailed());
+      assertThat(horseService.getById(horse.id()).name()).isEqualTo("First Edit");
+
+      mockMvc.perform(put("/horses/{id}", horse.id()).header(HttpHeaders.IF_MATCH, "*")
+              .contentType(MediaType.APPLICATION_JSON).content(secondEdit))
+          .andExpect(status().isOk())
+          .andExpect(jsonPath("$.name").value("Second Edit"));
+      mockMvc.perform(put("/horses/{id}", -99_999L).header(HttpHeaders.IF_MATCH, updatedTag)
+              .contentType(MediaType.APPLICATION_JSON).content(secondEdit))
+          .andExpect(status().isNotFound());
+    } finally {
+      horseService.delete(horse.id());
+    }
+  }
+
+  @Test
+  public void descendantsArePagedPerGeneration() throws Exception {
+    LOG.trace("descendantsArePagedPerGeneration");
+    mockMvc
+        .perform(get("/horses/{id}/descendants", -2L).accept(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.generations[0].generation").value(1))
+        .andExpect(jsonPath("$.generations[0].horses[0].id").value(-6))
+        .andExpect(jsonPath("$.generations[1].horses[0].id").value(-8))
+        .andExpect(jsonPath("$.generations[2].horses[0].id").value(-9));
+
+    HorseDetailDto sire = horseService.create(new HorseDetailDto(null, "Prolific Sire", null, LocalDate.of(2000, 1, 1), Sex.MALE, null, null, null));
+    HorseMinimalDto sireMinimal = new HorseMinimalDto(sire.id(), sire.name(), sire.dateOfBirth(), sire.sex());
+    List<Long> foalIds = new ArrayList<>();
+    try {
+      for (String name : List.of("Foal A", "Foal B", "Foal C")) {
+        foalIds.add(horseService.create(new HorseDetailDto(null, name, null, LocalDate.of(2010, 1, 1), Sex.FEMALE, null, null, sireMinimal)).id());
+      }
+      mockMvc
+          .perform(get("/horses/{id}/descendants", sire.id()).param("depth", "1").param("limit", "2").accept(MediaType.APPLICATION_JSON))
+          .andExpect(status().isOk())
+          .andExpect(jsonPath("$.generations.length()").value(1))
+          .andExpect(jsonPath("$.generations[0].hasMore").value(true))
+          .andExpect(jsonPath("$.generations[0].horses[*].name").value(Matchers.contains("Foal A", "Foal B")))
+          .andExpect(jsonPath("$.generations[0].horses[0].fatherId").value(sire.id()));
+      mockMvc
+          .perform(get("/horses/{id}/descendants", sire.id())
+              .param("depth", "1").param("generation", "1").param("offset", "2").param("limit", "2").accept(MediaType.APPLICATION_JSON))
+          .andExpect(status().isOk())
+          .andExpect(jsonPath("$.generations[0].horses[*].name").value(Matchers.contains("Foal C")))
+          .andExpect(jsonPath("$.generations[0].hasMore").value(false));
+    } finally {
+      for (Long foalId : foalIds) {
+        horseService.delete(foalId);
+      }
+      horseService.delete(sire.id());
+    }
+
+    mockMvc
+        .perform(get("/horses/{id}/descendants", -2L).param("depth", "0").accept(MediaType.APPLICATION_JSON))
+        .andExpect(status().isUnprocessableEntity());
+    mockMvc
+        .perform(get("/horses/{id}/descendants", -9999L).accept(MediaType.APPLICATION_JSON))
+        .andExpect(status().isNotFound());
+  }
+
+  @Test
+  public void inbreedingOfFoalOfFullSiblingsIsAQuarter() throws Exception {
+    LOG.trace("inbreedingOfFoalOfFullSiblingsIsAQuarter");
+    // -8 and -7 have no common ancestors
+    mockMvc
+        .perform(get("/horses/{id}/inbreeding", -9L).accept(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.coefficient").value(0.0));
+
+    HorseMinimalDto dam = minimal(horseService.create(
+        new HorseDetailDto(null, "Founder Dam", null, LocalDate.of(2000, 1, 1), Sex.FEMALE, null, null, null)));
+    HorseMinimalDto sire = minimal(horseService.create(
+        new HorseDetailDto(null, "Founder Sire", null, LocalDate.of(2000, 1, 1), Sex.MALE, null, null, null)));
+    HorseMinimalDto sister = minimal(horseService.create(
+        new HorseDetailDto(null, "Full Sister", null, LocalDate.of(2005, 1, 1), Sex.FEMALE, null, dam, sire)));
+    HorseMinimalDto brother = minimal(horseService.create(
+        new HorseDetailDto(null, "Full Brother", null, LocalDate.of(2005, 1, 1), Sex.MALE, null, dam, sire)));
+    HorseMinimalDto foal = minimal(horseService.create(
+        new HorseDetailDto(null, "Inbred Foal", null, LocalDate.of(2010, 1, 1), Sex.MALE, null, sister, brother)));
+    try {
+      mockMvc
+          .perform(get("/horses/{id}/inbreeding", foal.id()).accept(MediaType.APPLICATION_JSON))
+          .andExpect(status().isOk())
+          .andExpect(jsonPath("$.coefficient").value(0.25));
+      // one generation back the common ancestors are cut off
+      mockMvc
+          .perform(get("/horses/{id}/inbreeding", foal.id()).param("generations", "1").accept(MediaType.APPLICATION_JSON))
+          .andExpect(status().isOk())
+          .andExpect(jsonPath("$.coefficient").value(0.0));
+    } finally {
+      for (HorseMinimalDto horse : List.of(foal, brother, sister, sire, dam)) {
+        horseService.delete(horse.id());
+      }
+    }
+  }
+
+  @Test
+  public void relationshipHoldsClosestCommonAncestorsWithPaths() throws Exception {
+    LOG.trace("relationshipHoldsClosestCommonAncestorsWithPaths");
+    // -6 is the mother of the mother -8 of -9, so it is the only closest one of its common ancestors with -9
+    mockMvc
+        .perform(get("/horses/{id}/relationship/{otherId}", -9L, -6L).accept(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.closestCommonAncestors[*].ancestor.id").value(Matchers.contains(-6)))
+        .andExpect(jsonPath("$.closestCommonAncestors[0].firstDistance").value(2))
+        .andExpect(jsonPath("$.closestCommonAncestors[0].secondDistance").value(0))
+        .andExpect(jsonPath("$.closestCommonAncestors[0].firstPath[*].id").value(Matchers.contains(-9, -8, -6)))
+        .andExpect(jsonPath("$.closestCommonAncestors[0].secondPath[*].id").value(Matchers.contains(-6)));
+    mockMvc
+        .perform(get("/horses/{id}/relationship/{otherId}", -8L, -7L).accept(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.closestCommonAncestors").isEmpty());
+
+    // the dam is an ancestor of the foal of two of her children along two paths, and closer to the foal than her own dam
+    HorseMinimalDto granddam = minimal(horseService.create(
+        new HorseDetailDto(null, "Related Granddam", null, LocalDate.of(1995, 1, 1), Sex.FEMALE, null, null, null)));
+    HorseMinimalDto dam = minimal(horseService.create(
+        new HorseDetailDto(null, "Related Dam", null, LocalDate.of(2000, 1, 1), Sex.FEMALE, null, granddam, null)));
+    HorseMinimalDto sire = minimal(horseService.create(
+        new HorseDetailDto(null, "Related Sire", null, LocalDate.of(2000, 1, 1), Sex.MALE, null, null, null)));
+    HorseMinimalDto sister = minimal(horseService.create(
+        new HorseDetailDto(null, "Related Sister", null, LocalDate.of(2005, 1, 1), Sex.FEMALE, null, dam, sire)));
+    HorseMinimalDto brother = minimal(horseService.create(
+        new HorseDetailDto(null, "Related Brother", null, LocalDate.of(2005, 1, 1), Sex.MALE, null, dam, sire)));
+    HorseMinimalDto foal = minimal(horseService.create(
+        new HorseDetailDto(null, "Related Foal", null, LocalDate.of(2010, 1, 1), Sex.MALE, null, sister, brother)));
+    try {
+      mockMvc
+          .perform(get("/horses/{id}/relationship/{otherId}", sister.id(), brother.id()).accept(MediaType.APPLICATION_JSON))
+          .andExpect(status().isOk())
+          .andExpect(jsonPath("$.closestCommonAncestors[*].ancestor.id")
+              .value(Matchers.containsInAnyOrder(dam.id().intValue(), sire.id().intValue())))
+          .andExpect(jsonPath("$.closestCommonAncestors[*].firstDistance").value(Matchers.contains(1, 1)));
+      mockMvc
+          .perform(get("/horses/{id}/relationship/{otherId}", foal.id(), granddam.id()).accept(MediaType.APPLICATION_JSON))
+          .andExpect(status().isOk())
+          .andExpect(jsonPath("$.closestCommonAncestors[*].ancestor.id").value(Matchers.contains(granddam.id().intValue())))
+          .andExpect(jsonPath("$.closestCommonAncestors[0].firstDistance").value(3))
+          .andExpect(jsonPath("$.closestCommonAncestors[0].firstPath[*].id")
+              .value(Matchers.contains(foal.id().intValue(), sister.id().intValue(), dam.id().intValue(), granddam.id().intValue())));
+    } finally {
+      for (HorseMinimalDto horse : List.of(foal, brother, sister, sire, dam, granddam)) {
+        horseService.delete(horse.id());
+      }
+    }
+
+    mockMvc
+        .perform(get("/horses/{id}/relationship/{otherId}", -9L, 999L).accept(MediaType.APPLICATION_JSON))
+        .andExpect(status().isNotFound());
+  }
+
+  @Test
+  public void kinshipMatrixHoldsLowerTriangleOfSearchedHorses() throws Exception {
+    LOG.trace("kinshipMatrixHoldsLowerTriangleOfSearchedHorses");
+    // -5 is the father and -6 the mother of -8, -2 the mother of -6
+    byte[] body = mockMvc
+        .perform(get("/horses/kinship").param("name", "1-MOTHER"))
+        .andExpect(status().isOk())
+        .andReturn().getResponse().getContentAsByteArray();
+    List<JsonNode> rows = new ArrayList<>();
+    for (String line : new String(body, StandardCharsets.UTF_8).split("\n")) {
+      rows.add(objectMapper.readTree(line));
+    }
+    assertThat(rows).extracting(row -> row.get("id").asLong()).containsExactly(-8L, -5L, -6L, -2L);
+    double[][] expected = {
+        {0.5},
+        {0.25, 0.5},
+        {0.25, 0.0, 0.5},
+        {0.125, 0.0, 0.25, 0.5}};
+    for (int i = 0; i < expected.length; i++) {
+      JsonNode kinship = rows.get(i).get("kinship");
+      assertThat(kinship).hasSize(i + 1);
+      for (int j = 0; j <= i; j++) {
+        assertThat(kinship.get(j).asDouble()).isCloseTo(expected[i][j], within(1e-12));
+      }
+    }
+
+    mockMvc
+        .perform(get("/horses/kinship").param("limit", "-1"))
+        .andExpect(status().isUnprocessableEntity());
+  }
+
+  @Test
+  public void kinshipMatrixJobComputesTheMatrixOfTheSearch() throws Exception {
+    LOG.trace("kinshipMatrixJobComputesTheMatrixOfTheSearch");
+    byte[] expected = mockMvc
+        .perform(get("/horses/kinship").param("name", "1-MOTHER"))
+        .andExpect(status().isOk())
+        .andReturn().getResponse().getContentAsByteArray();
+
+    byte[] job = mockMvc
+        .perform(post("/horses/kinship/jobs").param("name", "1-MOTHER"))
+        .andExpect(status().isAccepted())
+        .andExpect(jsonPath("$.horses").value(4))
+        .andReturn().getResponse().getContentAsByteArray();
+    long id = objectMapper.readTree(job).get("id").asLong();
+    String status = null;
+    for (int attempt = 0; attempt < 100 && !"DONE".equals(status); attempt++) {
+      byte[] state = mockMvc
+          .perform(get("/horses/kinship/jobs/{id}", id))
+          .andExpect(status().isOk())
+          .andReturn().getResponse().getContentAsByteArray();
+      status = objectMapper.readTree(state).get("status").asText();
+      Thread.sleep(50);
+    }
+    assertThat(status).isEqualTo("DONE");
+
+    byte[] matrix = mockMvc
+        .perform(get("/horses/kinship/jobs/{id}/matrix", id))
+        .andExpect(status().isOk())
+        .andReturn().getResponse().getContentAsByteArray();
+    assertThat(matrix).isEqualTo(expected);
+
+    mockMvc
+        .perform(get("/horses/kinship/jobs/{id}", -1L))
+        .andExpect(status().isNotFound());
+    mockMvc
+        .perform(post("/horses/kinship/jobs").param("limit", "-1"))
+        .andExpect(status().isUnprocessableEntity());
+  }
+
+  private static HorseMinimalDto minimal(HorseDetailDto horse) {
+    return new HorseMinimalDto(horse.id(), horse.name(), horse.dateOfBirth(), horse.sex());
+  }
 }
@@ -0,0 +1,81 @@
+package at.ac.tuwien.sepm.assignment.individual.rest;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseListDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseSearchDto;
+import at.ac.tuwien.sepm.assignment.individual.service.HorseService;
+
+import java.lang.invoke.MethodHandles;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+
+@ActiveProfiles({"test", "datagen"}) // enable "test" spring profile during test execution in order to pick up configuration from application-test.yml
+@SpringBootTest
+@EnableWebMvc
+@WebAppConfiguration
+public class RegistryEndpointTest {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  @Autowired
+  private WebApplicationContext webAppContext;
+  private MockMvc mockMvc;
+
+  @Autowired
+  private HorseService horseService;
+
+  @BeforeEach
+  public void setup() {
+    LOG.trace("setup");
+    this.mockMvc = MockMvcBuilders.webAppContextSetup(webAppContext).build();
+  }
+
+  @Test
+  public void postNdjsonImportReturns201AndImportedCounts() throws Exception {
+    LOG.trace("postNdjsonImportReturns201AndImportedCounts");
+    String ndjson = """
+        {"type": "owner", "key": "endpoint-owner", "firstName": "Lena", "lastName": "Gruber"}
+        {"type": "horse", "name": "Endpoint Import", "dateOfBirth": "2015-07-07", "sex": "MALE", "ownerKey": "endpoint-owner"}
+        """;
+
+    mockMvc.perform(
+            post("/registry/import")
+                .content(ndjson)
+                .contentType(RegistryEndpoint.APPLICATION_NDJSON_VALUE)
+        )
+        .andExpect(status().isCreated())
+        .andExpect(jsonPath("$.owners").value(1))
+        .andExpect(jsonPath("$.horses").value(1));
+
+    // cleanup:
+    for (HorseListDto horse : horseService.search(new HorseSearchDto("Endpoint Import", null, null, null, null, null, null, null)).toList()) {
+      horseService.delete(horse.id());
+    }
+  }
+
+  @Test
+  public void postCsvImportWithoutTypeColumnReturns422() throws Exception {
+    LOG.trace("postCsvImportWithoutTypeColumnReturns422");
+    mockMvc.perform(
+            post("/registry/import")
+                .content("key,name\nno-type,No Type\n")
+                .contentType(RegistryEndpoint.TEXT_CSV_VALUE)
+        )
+        .andExpect(status().isUnprocessableEntity())
+        .andExpect(jsonPath("$.errors[0]").value("Line 1: Column 'type' is missing"));
+  }
+}
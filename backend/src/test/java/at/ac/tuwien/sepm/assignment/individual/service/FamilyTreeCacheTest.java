@@ -0,0 +1,66 @@
+package at.ac.tuwien.sepm.assignment.individual.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import at.ac.tuwien.sepm.assignment.individual.dto.FamilyTreeQueryParamsDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseDetailDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseFamilyTreeDto;
+import at.ac.tuwien.sepm.assignment.individual.exception.ConflictException;
+import at.ac.tuwien.sepm.assignment.individual.exception.NotFoundException;
+import at.ac.tuwien.sepm.assignment.individual.exception.ValidationException;
+import at.ac.tuwien.sepm.assignment.individual.service.impl.FamilyTreeCache;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.lang.invoke.MethodHandles;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+@ActiveProfiles({"test", "datagen"}) // enable "test" spring profile during test execution in order to pick up configuration from application-test.yml
+@SpringBootTest
+public class FamilyTreeCacheTest {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  @Autowired
+  FamilyTreeCache familyTreeCache;
+
+  @Autowired
+  HorseService horseService;
+
+  @Autowired
+  MeterRegistry meterRegistry;
+
+  @Test
+  public void changingHorseEvictsOnlyTreesHoldingIt() throws ValidationException, NotFoundException, ConflictException {
+    LOG.trace("changingHorseEvictsOnlyTreesHoldingIt");
+    final double hitsBefore = hits();
+    HorseFamilyTreeDto tree = horseService.getFamilyTree(new FamilyTreeQueryParamsDto(-9L, 3L));
+    assertThat(horseService.getFamilyTree(new FamilyTreeQueryParamsDto(-9L, 3L))).isSameAs(tree);
+    horseService.getFamilyTree(new FamilyTreeQueryParamsDto(-7L, 3L));
+    assertThat(familyTreeCache.isCached(-9, 3)).isTrue();
+    assertThat(familyTreeCache.isCached(-7, 3)).isTrue();
+    assertThat(hits()).isGreaterThan(hitsBefore);
+
+    // -5 is the father of the mother of -9, and not related to -7
+    HorseDetailDto horse = horseService.getById(-5);
+    HorseDetailDto changed = new HorseDetailDto(horse.id(), horse.name(), "Changed for the cache", horse.dateOfBirth(), horse.sex(),
+        horse.owner(), horse.mother(), horse.father());
+    horseService.update(horse.id(), changed);
+    try {
+      assertThat(familyTreeCache.isCached(-9, 3)).isFalse();
+      assertThat(familyTreeCache.isCached(-7, 3)).isTrue();
+      assertThat(horseService.getFamilyTree(new FamilyTreeQueryParamsDto(-9L, 3L))).isNotSameAs(tree).isEqualTo(tree);
+    } finally {
+      horseService.update(horse.id(), horse);
+    }
+  }
+
+  private double hits() {
+    return meterRegistry.get("cache.gets").tag("cache", "familyTree").tag("result", "hit").functionCounter().count();
+  }
+}
@@ -0,0 +1,82 @@
+package at.ac.tuwien.sepm.assignment.individual.service;
+
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseBatchCreateDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseDetailDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseMinimalDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.OwnerDto;
+import at.ac.tuwien.sepm.assignment.individual.exception.ConflictException;
+import at.ac.tuwien.sepm.assignment.individual.exception.ValidationException;
+import at.ac.tuwien.sepm.assignment.individual.type.Sex;
+
+import java.lang.invoke.MethodHandles;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * Compares creating horses one at a time with {@link HorseService#create} to creating them with {@link HorseService#createBatch}.
+ * Every horse has an owner and both parents, which are created in the same batch.
+ * Not part of the regular test run, execute it with {@code mvn test -Pbenchmark}.
+ */
+@ActiveProfiles({"test", "datagen"})
+@SpringBootTest
+public class HorseBatchCreateBenchmark {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  private static final int FAMILIES = 1_000;
+  private static final long OWNER_ID = -1L;
+  private static final OwnerDto OWNER = new OwnerDto(OWNER_ID, "Max", "Mustermann", "max.must@gmail.com");
+
+  @Autowired
+  HorseService horseService;
+
+  @Test
+  public void creatingHorses() throws ValidationException, ConflictException {
+    LOG.trace("creatingHorses");
+    // warm up both paths
+    createSequentially(FAMILIES / 10);
+    createBatch(FAMILIES / 10);
+
+    long start = System.nanoTime();
+    int sequential = createSequentially(FAMILIES);
+    double sequentialPerSecond = sequential / ((System.nanoTime() - start) / 1_000_000_000.0);
+
+    start = System.nanoTime();
+    int batched = createBatch(FAMILIES);
+    double batchedPerSecond = batched / ((System.nanoTime() - start) / 1_000_000_000.0);
+
+    LOG.info("Creating {} horses: sequentially {} horses/s, batched {} horses/s ({}x)",
+        sequential, Math.round(sequentialPerSecond), Math.round(batchedPerSecond), Math.round(batchedPerSecond / sequentialPerSecond));
+  }
+
+  private int createSequentially(int families) throws ValidationException, ConflictException {
+    for (int i = 0; i < families; i++) {
+      HorseDetailDto dam = horseService.create(new HorseDetailDto(null, "Dam " + i, null, LocalDate.of(2010, 1, 1), Sex.FEMALE, OWNER, null, null));
+      HorseDetailDto sire = horseService.create(new HorseDetailDto(null, "Sire " + i, null, LocalDate.of(2010, 1, 1), Sex.MALE, OWNER, null, null));
+      horseService.create(new HorseDetailDto(null, "Foal " + i, null, LocalDate.of(2020, 1, 1), Sex.MALE, OWNER, minimal(dam), minimal(sire)));
+    }
+    return 3 * families;
+  }
+
+  private int createBatch(int families) throws ValidationException, ConflictException {
+    List<HorseBatchCreateDto> batch = new ArrayList<>();
+    for (int i = 0; i < families; i++) {
+      batch.add(new HorseBatchCreateDto("dam" + i, "Dam " + i, null, LocalDate.of(2010, 1, 1), Sex.FEMALE, OWNER_ID, null, null, null, null));
+      batch.add(new HorseBatchCreateDto("sire" + i, "Sire " + i, null, LocalDate.of(2010, 1, 1), Sex.MALE, OWNER_ID, null, null, null, null));
+      batch.add(new HorseBatchCreateDto(null, "Foal " + i, null, LocalDate.of(2020, 1, 1), Sex.MALE, OWNER_ID, null, null, "dam" + i, "sire" + i));
+    }
+    return horseService.createBatch(batch).size();
+  }
+
+  private static HorseMinimalDto minimal(HorseDetailDto horse) {
+    return new HorseMinimalDto(horse.id(), horse.name(), horse.dateOfBirth(), horse.sex());
+  }
+}
@@ -0,0 +1,76 @@
+package at.ac.tuwien.sepm.assignment.individual.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseDetailDto;
+import at.ac.tuwien.sepm.assignment.individual.entity.HorseMinimal;
+import at.ac.tuwien.sepm.assignment.individual.exception.ConflictException;
+import at.ac.tuwien.sepm.assignment.individual.exception.NotFoundException;
+import at.ac.tuwien.sepm.assignment.individual.exception.ValidationException;
+import at.ac.tuwien.sepm.assignment.individual.service.impl.HorseMinimalCache;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.lang.invoke.MethodHandles;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+@ActiveProfiles({"test", "datagen"}) // enable "test" spring profile during test execution in order to pick up configuration from application-test.yml
+@SpringBootTest
+public class HorseMinimalCacheTest {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  @Autowired
+  HorseMinimalCache horseMinimalCache;
+
+  @Autowired
+  HorseService horseService;
+
+  @Autowired
+  MeterRegistry meterRegistry;
+
+  @Test
+  public void batchLookupLoadsOnlyMissingHorses() {
+    LOG.trace("batchLookupLoadsOnlyMissingHorses");
+    horseMinimalCache.getAll(List.of(-8L));
+    final double hitsBefore = gets("hit");
+    final double missesBefore = gets("miss");
+    Map<Long, HorseMinimal> horses = horseMinimalCache.getAll(List.of(-8L, 999_999L));
+    assertThat(horses).containsOnlyKeys(-8L);
+    assertThat(horses.get(-8L).getName()).isEqualTo("1-MOTHER");
+    assertThat(gets("hit")).isEqualTo(hitsBefore + 1);
+    assertThat(gets("miss")).isEqualTo(missesBefore + 1);
+    assertThat(horseMinimalCache.isCached(999_999L)).isFalse();
+  }
+
+  @Test
+  public void changingHorseEvictsIt() throws ValidationException, NotFoundException, ConflictException {
+    LOG.trace("changingHorseEvictsIt");
+    horseMinimalCache.getAll(List.of(-5L, -6L));
+    assertThat(horseMinimalCache.isCached(-5)).isTrue();
+    assertThat(horseMinimalCache.isCached(-6)).isTrue();
+
+    HorseDetailDto horse = horseService.getById(-5);
+    HorseDetailDto changed = new HorseDetailDto(horse.id(), "Renamed for the cache", horse.description(), horse.dateOfBirth(), horse.sex(),
+        horse.owner(), horse.mother(), horse.father());
+    horseService.update(horse.id(), changed);
+    try {
+      assertThat(horseMinimalCache.isCached(-5)).isFalse();
+      assertThat(horseMinimalCache.isCached(-6)).isTrue();
+      assertThat(horseMinimalCache.getAll(List.of(-5L)).get(-5L).getName()).isEqualTo("Renamed for the cache");
+    } finally {
+      horseService.update(horse.id(), horse);
+    }
+  }
+
+  private double gets(String result) {
+    return meterRegistry.get("cache.gets").tag("cache", "horseMinimal").tag("result", result).functionCounter().count();
+  }
+}
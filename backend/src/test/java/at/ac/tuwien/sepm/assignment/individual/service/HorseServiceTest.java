@@ -5,10 +5,15 @@ import static org.assertj.core.api.Assertions.tuple;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import at.ac.tuwien.sepm.assignment.individual.dto.FamilyTreeQueryParamsDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseBatchCreateDto;
 import at.ac.tuwien.sepm.assignment.individual.dto.HorseDetailDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseFamilyTreeDto;
 import at.ac.tuwien.sepm.assignment.individual.dto.HorseListDto;
 import at.ac.tuwien.sepm.assignment.individual.dto.HorseMinimalDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.HorsePageDto;
 import at.ac.tuwien.sepm.assignment.individual.dto.HorseSearchDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.OwnerDto;
 import at.ac.tuwien.sepm.assignment.individual.exception.ConflictException;
 import at.ac.tuwien.sepm.assignment.individual.exception.NotFoundException;
 import at.ac.tuwien.sepm.assignment.individual.exception.ValidationException;
@@ -16,7 +21,9 @@ import at.ac.tuwien.sepm.assignment.individual.type.Sex;
 
 import java.lang.invoke.MethodHandles;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Stream;
 
 import org.junit.jupiter.api.Test;
 import org.slf4j.Logger;
@@ -30,6 +37,8 @@ import org.springframework.test.context.ActiveProfiles;
 public class HorseServiceTest {
 
   private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  // default maximum pool size of HikariCP
+  private static final int CONNECTION_POOL_SIZE = 10;
 
   @Autowired
   HorseService horseService;
@@ -37,7 +46,7 @@ public class HorseServiceTest {
   @Test
   public void getAllReturnsAllStoredHorses() throws ValidationException, ConflictException {
     LOG.trace("getAllReturnsAllStoredHorses");
-    HorseSearchDto h = new HorseSearchDto(null, null, null, null, null, null, null);
+    HorseSearchDto h = new HorseSearchDto(null, null, null, null, null, null, null, null);
     List<HorseListDto> horses = horseService.search(h)
         .toList();
     assertThat(horses.size()).isGreaterThanOrEqualTo(10);
@@ -46,6 +55,131 @@ public class HorseServiceTest {
         .contains(tuple(-1L, Sex.FEMALE));
   }
 
+  @Test
+  public void pagingThroughSearchReturnsEveryHorseOnceInOrder() throws ValidationException, ConflictException {
+    LOG.trace("pagingThroughSearchReturnsEveryHorseOnceInOrder");
+    List<HorseListDto> all = horseService.search(new HorseSearchDto(null, null, null, null, null, null, null, null)).toList();
+
+    List<HorseListDto> paged = new ArrayList<>();
+    String cursor = null;
+    do {
+      HorsePageDto page = horseService.searchPage(new HorseSearchDto(null, null, null, null, null, 3, null, cursor));
+      assertThat(page.horses().size()).isLessThanOrEqualTo(3);
+      paged.addAll(page.horses());
+      cursor = page.nextCursor();
+    } while (cursor != null);
+
+    assertThat(paged).containsExactlyElementsOf(all);
+  }
+
+  @Test
+  public void getByIdReturnsHorseWithOwnerAndParents() throws NotFoundException {
+    LOG.trace("getByIdReturnsHorseWithOwnerAndParents");
+    HorseDetailDto horse = horseService.getById(-6L);
+    assertThat(horse.name()).isEqualTo("1-MOTHER-M");
+    assertEquals(new OwnerDto(-10L, "Padme", "Amidala", "padme99@icloud.com"), horse.owner());
+    assertEquals(new HorseMinimalDto(-2L, "1-MOTHER-M-M", LocalDate.of(2015, 12, 12), Sex.FEMALE), horse.mother());
+    assertThat(horse.father()).isNull();
+  }
+
+  @Test
+  public void searchingMoreOftenThanThereArePooledConnectionsReleasesThem() throws ValidationException, ConflictException {
+    LOG.trace("searchingMoreOftenThanThereArePooledConnectionsReleasesThem");
+    for (int i = 0; i < 3 * CONNECTION_POOL_SIZE; i++) {
+      assertThat(horseService.search(new HorseSearchDto(null, null, null, null, null, null, null, null)).toList()).isNotEmpty();
+    }
+  }
+
+  @Test
+  public void closingPartiallyReadSearchReleasesConnection() throws ValidationException, ConflictException {
+    LOG.trace("closingPartiallyReadSearchReleasesConnection");
+    for (int i = 0; i < 3 * CONNECTION_POOL_SIZE; i++) {
+      try (Stream<HorseListDto> horses = horseService.search(new HorseSearchDto(null, null, null, null, null, null, null, null))) {
+        assertThat(horses.findFirst()).isPresent();
+      }
+    }
+  }
+
+  @Test
+  public void createBatchWithParentCycleThrowsValidationException() {
+    LOG.trace("createBatchWithParentCycleThrowsValidationException");
+    List<HorseBatchCreateDto> batch = List.of(
+        new HorseBatchCreateDto("a", "Cycle Mare", null, LocalDate.of(2020, 1, 1), Sex.FEMALE, null, null, null, null, "b"),
+        new HorseBatchCreateDto("b", "Cycle Stallion", null, LocalDate.of(2020, 1, 1), Sex.MALE, null, null, null, "a", null));
+    var exception = assertThrows(ValidationException.class, () -> horseService.createBatch(batch));
+    assertThat(exception.errors()).containsExactly(
+        "Horse 1: Parent references within the batch form a cycle",
+        "Horse 2: Parent references within the batch form a cycle");
+  }
+
+  @Test
+  public void createBatchResolvesKeysWithinTheBatchOnly() throws ValidationException, ConflictException, NotFoundException {
+    LOG.trace("createBatchResolvesKeysWithinTheBatchOnly");
+    List<HorseBatchCreateDto> family = List.of(
+        new HorseBatchCreateDto("dam", "Local Dam", null, LocalDate.of(2010, 1, 1), Sex.FEMALE, null, null, null, null, null),
+        new HorseBatchCreateDto(null, "Local Foal", null, LocalDate.of(2020, 1, 1), Sex.MALE, null, null, null, "dam", null));
+    List<HorseMinimalDto> first = horseService.createBatch(family);
+    List<HorseMinimalDto> second = horseService.createBatch(family);
+    List<HorseBatchCreateDto> orphan = List.of(
+        new HorseBatchCreateDto(null, "Local Orphan", null, LocalDate.of(2020, 1, 1), Sex.MALE, null, null, null, "dam", null));
+
+    var exception = assertThrows(ValidationException.class, () -> horseService.createBatch(orphan));
+
+    assertThat(exception.errors()).containsExactly("Horse 1: Mother key 'dam' does not refer to a horse of the batch");
+    assertThat(horseService.getById(second.get(1).id()).motherId()).isEqualTo(second.get(0).id());
+    // cleanup:
+    for (List<HorseMinimalDto> batch : List.of(first, second)) {
+      horseService.delete(batch.get(1).id());
+      horseService.delete(batch.get(0).id());
+    }
+  }
+
+  @Test
+  public void updatingHorseToDescendFromItselfThrowsConflictException() throws NotFoundException {
+    LOG.trace("updatingHorseToDescendFromItselfThrowsConflictException");
+    HorseDetailDto horse = horseService.getById(-2L);
+    HorseMinimalDto greatGrandchild = new HorseMinimalDto(-8L, "1-MOTHER", LocalDate.of(2021, 12, 12), Sex.FEMALE);
+    HorseDetailDto update = new HorseDetailDto(horse.id(), horse.name(), horse.description(), horse.dateOfBirth(), horse.sex(), horse.owner(),
+        greatGrandchild, null);
+
+    ConflictException e = assertThrows(ConflictException.class, () -> horseService.update(horse.id(), update));
+    assertThat(e.errors()).contains("Mother must not be a descendant of the horse");
+  }
+
+  @Test
+  public void updatingHorseWithoutIdInBodyToDescendFromItselfThrowsConflictException() throws NotFoundException {
+    LOG.trace("updatingHorseWithoutIdInBodyToDescendFromItselfThrowsConflictException");
+    HorseDetailDto horse = horseService.getById(-2L);
+    HorseMinimalDto greatGrandchild = new HorseMinimalDto(-8L, "1-MOTHER", LocalDate.of(2021, 12, 12), Sex.FEMALE);
+    HorseDetailDto update = new HorseDetailDto(null, horse.name(), horse.description(), horse.dateOfBirth(), horse.sex(), horse.owner(),
+        greatGrandchild, null);
+
+    ConflictException e = assertThrows(ConflictException.class, () -> horseService.update(horse.id(), update));
+    assertThat(e.errors()).contains("Mother must not be a descendant of the horse");
+  }
+
+  @Test
+  public void changingSexOfHorseWithChildrenIsRolledBack() throws NotFoundException {
+    LOG.trace("changingSexOfHorseWithChildrenIsRolledBack");
+    // -8 is the mother of -9
+    HorseDetailDto horse = horseService.getById(-8L);
+    final String tag = horseService.getDetailETag(-8L);
+    HorseDetailDto update = new HorseDetailDto(horse.id(), "Stallion Now", horse.description(), horse.dateOfBirth(), Sex.MALE, horse.owner(),
+        horse.mother(), horse.father());
+
+    ConflictException e = assertThrows(ConflictException.class, () -> horseService.update(horse.id(), update));
+    assertThat(e.errors()).contains("Cannot change the sex of the horse since at least one child already has it as their (female/male) parent");
+    assertThat(horseService.getById(-8L)).isEqualTo(horse);
+    assertThat(horseService.getDetailETag(-8L)).isEqualTo(tag);
+  }
+
+  @Test
+  public void searchWithInvalidCursorThrowsValidationException() {
+    LOG.trace("searchWithInvalidCursorThrowsValidationException");
+    HorseSearchDto search = new HorseSearchDto(null, null, null, null, null, 3, null, "not a cursor");
+    assertThrows(ValidationException.class, () -> horseService.searchPage(search));
+  }
+
   @Test
   public void shouldNotCreateHorseWithSameSexParents() throws ValidationException, NotFoundException, ConflictException {
     LOG.trace("shouldNotCreateHorseWithSameSexParents");
@@ -108,4 +242,17 @@ public class HorseServiceTest {
     );
     assertEquals(updatedWendy, wendyShouldHaveBeenUpdatedLikeThis);
   }
+
+  @Test
+  public void familyTreeHoldsAncestorsUpToLimit() throws NotFoundException, ValidationException {
+    LOG.trace("familyTreeHoldsAncestorsUpToLimit");
+    HorseFamilyTreeDto tree = horseService.getFamilyTree(new FamilyTreeQueryParamsDto(-9L, 3L));
+    assertThat(tree.id()).isEqualTo(-9L);
+    assertThat(tree.mother().id()).isEqualTo(-8L);
+    assertThat(tree.father().id()).isEqualTo(-7L);
+    assertThat(tree.mother().mother().id()).isEqualTo(-6L);
+    assertThat(tree.father().father().id()).isEqualTo(-3L);
+    // the mother of -6 is one generation beyond the limit
+    assertThat(tree.mother().mother().mother()).isNull();
+  }
 }
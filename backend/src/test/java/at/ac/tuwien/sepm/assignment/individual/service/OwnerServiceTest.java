@@ -0,0 +1,77 @@
+package at.ac.tuwien.sepm.assignment.individual.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import at.ac.tuwien.sepm.assignment.individual.dto.OwnerCreateDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.OwnerDto;
+import at.ac.tuwien.sepm.assignment.individual.exception.ConflictException;
+import at.ac.tuwien.sepm.assignment.individual.exception.NotFoundException;
+import at.ac.tuwien.sepm.assignment.individual.exception.ValidationException;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.lang.invoke.MethodHandles;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+@ActiveProfiles({"test", "datagen"}) // enable "test" spring profile during test execution in order to pick up configuration from application-test.yml
+@SpringBootTest
+public class OwnerServiceTest {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  @Autowired
+  OwnerService ownerService;
+
+  @Autowired
+  MeterRegistry meterRegistry;
+
+  @Test
+  public void repeatedLookupsAreServedFromCache() throws NotFoundException {
+    LOG.trace("repeatedLookupsAreServedFromCache");
+    OwnerDto owner = ownerService.getById(-1);
+    final double hitsBefore = gets("hit");
+    final double missesBefore = gets("miss");
+    assertThat(ownerService.getById(-1)).isEqualTo(owner);
+    assertThat(gets("hit")).isEqualTo(hitsBefore + 1);
+    assertThat(gets("miss")).isEqualTo(missesBefore);
+  }
+
+  @Test
+  public void batchLookupLoadsOnlyMissingOwnersAndNeverCachesUnknownOnes() {
+    LOG.trace("batchLookupLoadsOnlyMissingOwnersAndNeverCachesUnknownOnes");
+    ownerService.findOwnersByIds(List.of(-2L));
+    final double hitsBefore = gets("hit");
+    final double missesBefore = gets("miss");
+    Map<Long, OwnerDto> owners = ownerService.findOwnersByIds(List.of(-2L, 999_999L));
+    assertThat(owners).containsOnlyKeys(-2L);
+    assertThat(gets("hit")).isEqualTo(hitsBefore + 1);
+    assertThat(gets("miss")).isEqualTo(missesBefore + 1);
+
+    assertThat(ownerService.findOwnersByIds(List.of(999_999L))).isEmpty();
+    assertThat(gets("miss")).isEqualTo(missesBefore + 2);
+    assertThatThrownBy(() -> ownerService.getOwnersByIds(List.of(-2L, 999_999L))).isInstanceOf(NotFoundException.class);
+  }
+
+  @Test
+  public void createdOwnerIsCachedRightAway() throws ValidationException, ConflictException, NotFoundException {
+    LOG.trace("createdOwnerIsCachedRightAway");
+    OwnerDto created = ownerService.create(new OwnerCreateDto("Cached", "Owner", null));
+    final double hitsBefore = gets("hit");
+    final double missesBefore = gets("miss");
+    assertThat(ownerService.getById(created.id())).isEqualTo(created);
+    assertThat(gets("hit")).isEqualTo(hitsBefore + 1);
+    assertThat(gets("miss")).isEqualTo(missesBefore);
+  }
+
+  private double gets(String result) {
+    return meterRegistry.get("cache.gets").tag("cache", "owner").tag("result", result).functionCounter().count();
+  }
+}
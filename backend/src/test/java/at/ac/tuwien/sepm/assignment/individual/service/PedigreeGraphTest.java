@@ -0,0 +1,104 @@
+package at.ac.tuwien.sepm.assignment.individual.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseDetailDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseMinimalDto;
+import at.ac.tuwien.sepm.assignment.individual.entity.Horse;
+import at.ac.tuwien.sepm.assignment.individual.exception.ConflictException;
+import at.ac.tuwien.sepm.assignment.individual.exception.NotFoundException;
+import at.ac.tuwien.sepm.assignment.individual.exception.ValidationException;
+import at.ac.tuwien.sepm.assignment.individual.service.impl.PedigreeGraph;
+import at.ac.tuwien.sepm.assignment.individual.type.Sex;
+
+import java.lang.invoke.MethodHandles;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+@ActiveProfiles({"test", "datagen"}) // enable "test" spring profile during test execution in order to pick up configuration from application-test.yml
+@SpringBootTest
+public class PedigreeGraphTest {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  @Autowired
+  PedigreeGraph pedigreeGraph;
+
+  @Autowired
+  HorseService horseService;
+
+  @Test
+  public void graphHoldsPedigreeOfStoredHorses() {
+    LOG.trace("graphHoldsPedigreeOfStoredHorses");
+    assertThat(pedigreeGraph.motherOf(-9)).isEqualTo(-8);
+    assertThat(pedigreeGraph.fatherOf(-9)).isEqualTo(-7);
+    assertThat(pedigreeGraph.sexOf(-8)).isEqualTo(Sex.FEMALE);
+    assertThat(pedigreeGraph.ancestors(-9, 1)).containsExactlyInAnyOrder(-8, -7);
+    assertThat(pedigreeGraph.ancestors(-9, 2)).containsExactlyInAnyOrder(-8, -7, -6, -5, -4, -3);
+    assertThat(pedigreeGraph.ancestors(-9, 1000)).contains(-2);
+    assertThat(pedigreeGraph.descendants(-6, 1000)).contains(-8, -9);
+    assertThat(pedigreeGraph.isAncestor(-2, -9)).isTrue();
+    assertThat(pedigreeGraph.isAncestor(-9, -2)).isFalse();
+  }
+
+  @Test
+  public void writingHorsesThroughServiceUpdatesGraph() throws ValidationException, ConflictException, NotFoundException {
+    LOG.trace("writingHorsesThroughServiceUpdatesGraph");
+    HorseDetailDto foal = horseService.create(new HorseDetailDto(null, "Graph Foal", null, LocalDate.of(2022, 5, 1), Sex.MALE, null,
+        minimal(-6), minimal(-5)));
+    assertThat(pedigreeGraph.ancestors(foal.id(), 1)).containsExactlyInAnyOrder(-6, -5);
+    assertThat(pedigreeGraph.descendants(-6, 1)).contains(foal.id());
+    assertThat(pedigreeGraph.dateOfBirthOf(foal.id())).isEqualTo(LocalDate.of(2022, 5, 1));
+
+    horseService.update(foal.id(), new HorseDetailDto(foal.id(), foal.name(), null, foal.dateOfBirth(), foal.sex(), null,
+        null, minimal(-5)));
+    assertThat(pedigreeGraph.motherOf(foal.id())).isEqualTo(PedigreeGraph.NONE);
+    assertThat(pedigreeGraph.descendants(-6, 1)).doesNotContain(foal.id());
+    assertThat(pedigreeGraph.descendants(-5, 1)).contains(foal.id());
+
+    horseService.delete(foal.id());
+    assertThat(pedigreeGraph.contains(foal.id())).isFalse();
+    assertThat(pedigreeGraph.descendants(-5, 1)).doesNotContain(foal.id());
+  }
+
+  @Test
+  public void removingHorsesKeepsOthersFindable() {
+    LOG.trace("removingHorsesKeepsOthersFindable");
+    // not the bean, so the horses made up here do not mix with the stored ones
+    var graph = new PedigreeGraph(null);
+    int count = 10_000;
+    List<Horse> horses = new ArrayList<>();
+    for (long id = 1; id <= count; id++) {
+      horses.add(new Horse().setId(id).setDateOfBirth(LocalDate.of(2000, 1, 1)).setSex(id % 2 == 0 ? Sex.MALE : Sex.FEMALE)
+          .setMotherId(id > 2 && id % 2 == 1 ? id - 2 : null)
+          .setFatherId(id > 2 && id % 2 == 0 ? id - 2 : null));
+    }
+    graph.putAll(horses);
+    assertThat(graph.size()).isEqualTo(count);
+    assertThat(graph.ancestors(count, count)).hasSize(count / 2 - 1);
+
+    for (long id = 3; id <= count; id += 3) {
+      graph.remove(id);
+    }
+    for (long id = 1; id <= count; id++) {
+      assertThat(graph.contains(id)).isEqualTo(id % 3 != 0);
+    }
+    // a removed horse cuts the line of its descendants
+    assertThat(graph.motherOf(5)).isEqualTo(PedigreeGraph.NONE);
+    assertThat(graph.ancestors(13, count)).containsExactly(11);
+    assertThat(graph.ancestors(7, count)).containsExactly(5);
+  }
+
+  private HorseMinimalDto minimal(long id) throws NotFoundException {
+    HorseDetailDto horse = horseService.getById(id);
+    return new HorseMinimalDto(horse.id(), horse.name(), horse.dateOfBirth(), horse.sex());
+  }
+}
@@ -0,0 +1,118 @@
+package at.ac.tuwien.sepm.assignment.individual.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import at.ac.tuwien.sepm.assignment.individual.dto.RegistryImportResultDto;
+import at.ac.tuwien.sepm.assignment.individual.exception.ConflictException;
+import at.ac.tuwien.sepm.assignment.individual.exception.ValidationException;
+import at.ac.tuwien.sepm.assignment.individual.type.RegistryFormat;
+
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * Imports a generated CSV registry, which is produced while it is read and never exists as a whole,
+ * and reports the rows per second and the peak heap usage.
+ * The number of rows defaults to {@value #DEFAULT_ROWS}, set it with {@code -Dregistry.rows=5000000}.
+ * The peak heap includes the in-memory test database, which grows with every imported row.
+ * Not part of the regular test run, execute it with {@code mvn test -Pbenchmark}.
+ */
+@ActiveProfiles({"test", "datagen"})
+@SpringBootTest
+public class RegistryImportBenchmark {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  private static final int DEFAULT_ROWS = 1_000_000;
+  private static final String HEADER = "type,key,first_name,last_name,email,name,description,date_of_birth,sex,owner_key,mother_key,father_key\n";
+
+  @Autowired
+  RegistryImportService registryImportService;
+
+  @Test
+  public void importingGeneratedRegistry() throws ValidationException, ConflictException {
+    LOG.trace("importingGeneratedRegistry");
+    int rows = Integer.getInteger("registry.rows", DEFAULT_ROWS);
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      pool.resetPeakUsage();
+    }
+
+    RegistryImportResultDto result = registryImportService.importRegistry(new GeneratedRegistry(rows), RegistryFormat.CSV, true);
+
+    long peakHeap = ManagementFactory.getMemoryPoolMXBeans().stream()
+        .filter(pool -> pool.getType() == MemoryType.HEAP)
+        .mapToLong(pool -> pool.getPeakUsage().getUsed())
+        .sum();
+    LOG.info("Imported {} owners and {} horses in {} ms: {} rows/s, peak heap {} MiB",
+        result.owners(), result.horses(), result.durationMillis(), result.rowsPerSecond(), peakHeap / (1024 * 1024));
+    assertThat(result.owners() + result.horses()).isEqualTo(rows);
+  }
+
+  /**
+   * A CSV registry of families of four rows: an owner, and a dam, a sire and a foal of that owner.
+   * Each row is generated when the previous one was read.
+   */
+  private static class GeneratedRegistry extends InputStream {
+    private final int rows;
+    private final String prefix = "bench" + System.nanoTime() + "-";
+    private int row = -1;
+    private byte[] line = HEADER.getBytes(StandardCharsets.UTF_8);
+    private int position;
+
+    GeneratedRegistry(int rows) {
+      this.rows = rows;
+    }
+
+    @Override
+    public int read() {
+      if (position == line.length && !nextLine()) {
+        return -1;
+      }
+      return line[position++];
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) {
+      if (length == 0) {
+        return 0;
+      }
+      if (position == line.length && !nextLine()) {
+        return -1;
+      }
+      int count = Math.min(length, line.length - position);
+      System.arraycopy(line, position, buffer, offset, count);
+      position += count;
+      return count;
+    }
+
+    private boolean nextLine() {
+      if (++row == rows) {
+        return false;
+      }
+      int family = row / 4;
+      String owner = prefix + "owner" + family;
+      String dam = prefix + "dam" + family;
+      String sire = prefix + "sire" + family;
+      String text = switch (row % 4) {
+        case 0 -> "owner,%s,First%d,Last%d,owner%d@example.com,,,,,,,\n".formatted(owner, family, family, family);
+        case 1 -> "horse,%s,,,,Dam %d,,2010-01-01,FEMALE,%s,,\n".formatted(dam, family, owner);
+        case 2 -> "horse,%s,,,,Sire %d,,2010-01-01,MALE,%s,,\n".formatted(sire, family, owner);
+        default -> "horse,,,,,Foal %d,Foal of family %d,2020-01-01,MALE,%s,%s,%s\n".formatted(family, family, owner, dam, sire);
+      };
+      line = text.getBytes(StandardCharsets.UTF_8);
+      position = 0;
+      return true;
+    }
+  }
+}
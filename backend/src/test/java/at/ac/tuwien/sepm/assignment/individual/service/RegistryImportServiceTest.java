@@ -0,0 +1,165 @@
+package at.ac.tuwien.sepm.assignment.individual.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseDetailDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseListDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseSearchDto;
+import at.ac.tuwien.sepm.assignment.individual.dto.RegistryImportResultDto;
+import at.ac.tuwien.sepm.assignment.individual.exception.ConflictException;
+import at.ac.tuwien.sepm.assignment.individual.exception.NotFoundException;
+import at.ac.tuwien.sepm.assignment.individual.exception.ValidationException;
+import at.ac.tuwien.sepm.assignment.individual.service.impl.PedigreeGraph;
+import at.ac.tuwien.sepm.assignment.individual.type.RegistryFormat;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+@ActiveProfiles({"test", "datagen"}) // enable "test" spring profile during test execution in order to pick up configuration from application-test.yml
+@SpringBootTest
+public class RegistryImportServiceTest {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  @Autowired
+  RegistryImportService registryImportService;
+
+  @Autowired
+  HorseService horseService;
+
+  @Autowired
+  PedigreeGraph pedigreeGraph;
+
+  @Test
+  public void importingCsvCreatesOwnersAndHorsesWithReferencesByKey() throws Exception {
+    LOG.trace("importingCsvCreatesOwnersAndHorsesWithReferencesByKey");
+    String csv = """
+        type,key,first_name,last_name,email,name,description,date_of_birth,sex,owner_key,mother_key,father_key
+        owner,csv-owner,Anna,Huber,anna.huber@example.com,,,,,,,
+        horse,csv-dam,,,,Csv Dam,"Calm, and ""fast"" too",2010-04-01,FEMALE,csv-owner,,
+        horse,csv-sire,,,,Csv Sire,,2011-05-02,MALE,,,
+        horse,,,,,Csv Foal,,2020-06-03,MALE,csv-owner,csv-dam,csv-sire
+        """;
+
+    RegistryImportResultDto result = registryImportService.importRegistry(input(csv), RegistryFormat.CSV, false);
+
+    assertThat(result.owners()).isEqualTo(1);
+    assertThat(result.horses()).isEqualTo(3);
+    HorseDetailDto dam = getByName("Csv Dam");
+    HorseDetailDto foal = getByName("Csv Foal");
+    assertThat(dam.description()).isEqualTo("Calm, and \"fast\" too");
+    assertThat(foal.owner().firstName()).isEqualTo("Anna");
+    assertThat(foal.mother().name()).isEqualTo("Csv Dam");
+    assertThat(foal.father().name()).isEqualTo("Csv Sire");
+    assertThat(pedigreeGraph.motherOf(foal.id())).isEqualTo(dam.id());
+
+    // cleanup:
+    horseService.delete(foal.id());
+    horseService.delete(dam.id());
+    horseService.delete(foal.fatherId());
+  }
+
+  @Test
+  public void importingNdjsonResolvesParentsOfEarlierChunksAndStoredHorses() throws Exception {
+    LOG.trace("importingNdjsonResolvesParentsOfEarlierChunksAndStoredHorses");
+    String stored = """
+        {"type": "horse", "key": "ndjson-dam", "name": "Ndjson Dam", "dateOfBirth": "2012-01-01", "sex": "FEMALE"}
+        """;
+    String ndjson = """
+        {"type": "horse", "key": "ndjson-sire", "name": "Ndjson Sire", "dateOfBirth": "2012-02-02", "sex": "MALE"}
+
+        {"type": "horse", "name": "Ndjson Foal", "dateOfBirth": "2021-03-03", "sex": "FEMALE", "motherKey": "ndjson-dam", "fatherKey": "ndjson-sire"}
+        """;
+
+    registryImportService.importRegistry(input(stored), RegistryFormat.NDJSON, false);
+    RegistryImportResultDto result = registryImportService.importRegistry(input(ndjson), RegistryFormat.NDJSON, false);
+
+    assertThat(result.owners()).isZero();
+    assertThat(result.horses()).isEqualTo(2);
+    HorseDetailDto foal = getByName("Ndjson Foal");
+    assertThat(foal.mother().name()).isEqualTo("Ndjson Dam");
+    assertThat(foal.father().name()).isEqualTo("Ndjson Sire");
+
+    // cleanup:
+    horseService.delete(foal.id());
+    horseService.delete(foal.motherId());
+    horseService.delete(foal.fatherId());
+  }
+
+  @Test
+  public void importingInvalidRecordThrowsValidationExceptionNamingItsLine() throws ConflictException, ValidationException {
+    LOG.trace("importingInvalidRecordThrowsValidationExceptionNamingItsLine");
+    String csv = """
+        type,key,name,date_of_birth,sex,mother_key
+        horse,invalid-dam,Invalid Dam,2010-01-01,MALE,
+        horse,invalid-foal,Invalid Foal,2020-01-01,FEMALE,invalid-dam
+        horse,invalid-filly,Invalid Filly,2020-01-01,MARE,
+        """;
+
+    ValidationException e = assertThrows(ValidationException.class,
+        () -> registryImportService.importRegistry(input(csv), RegistryFormat.CSV, false));
+
+    assertThat(e.errors()).containsExactly("Line 4: Sex 'MARE' is neither MALE nor FEMALE");
+    assertThat(e.summary()).contains("no record was imported");
+    assertThat(searchByName("Invalid Dam")).isEmpty();
+  }
+
+  @Test
+  public void importingInvalidParentThrowsValidationExceptionAndImportsNothingOfTheChunk() throws ConflictException, ValidationException {
+    LOG.trace("importingInvalidParentThrowsValidationExceptionAndImportsNothingOfTheChunk");
+    String csv = """
+        type,key,name,date_of_birth,sex,mother_key
+        horse,invalid-dam,Invalid Dam,2010-01-01,MALE,
+        horse,invalid-foal,Invalid Foal,2020-01-01,FEMALE,invalid-dam
+        """;
+
+    ValidationException e = assertThrows(ValidationException.class,
+        () -> registryImportService.importRegistry(input(csv), RegistryFormat.CSV, false));
+
+    assertThat(e.errors()).containsExactly("Line 3: Mother's sex must be female");
+    assertThat(searchByName("Invalid Dam")).isEmpty();
+  }
+
+  @Test
+  public void importingInvalidRecordOfALaterChunkImportsNothingUnlessPartial() throws ConflictException, ValidationException {
+    LOG.trace("importingInvalidRecordOfALaterChunkImportsNothingUnlessPartial");
+    // more valid records than fit into one chunk, then an invalid one
+    var csv = new StringBuilder("type,name,date_of_birth,sex\n");
+    for (int i = 0; i < 1_000; i++) {
+      csv.append("horse,Chunked Import ").append(i).append(",2015-01-01,MALE\n");
+    }
+    csv.append("horse,Chunked Import Invalid,2015-01-01,MARE\n");
+
+    ValidationException e = assertThrows(ValidationException.class,
+        () -> registryImportService.importRegistry(input(csv.toString()), RegistryFormat.CSV, false));
+
+    assertThat(e.errors()).containsExactly("Line 1002: Sex 'MARE' is neither MALE nor FEMALE");
+    assertThat(e.summary()).contains("no record was imported");
+    assertThat(searchByName("Chunked Import")).isEmpty();
+  }
+
+  private HorseDetailDto getByName(String name) throws ValidationException, ConflictException, NotFoundException {
+    List<HorseListDto> horses = searchByName(name);
+    assertThat(horses).hasSize(1);
+    return horseService.getById(horses.get(0).id());
+  }
+
+  private List<HorseListDto> searchByName(String name) throws ValidationException, ConflictException {
+    return horseService.search(new HorseSearchDto(name, null, null, null, null, null, null, null)).toList();
+  }
+
+  private static InputStream input(String content) {
+    return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,158 @@
+package at.ac.tuwien.sepm.assignment.individual.service.impl;
+
+import at.ac.tuwien.sepm.assignment.individual.dto.HorseFamilyTreeDto;
+import at.ac.tuwien.sepm.assignment.individual.entity.Horse;
+import at.ac.tuwien.sepm.assignment.individual.type.Sex;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.lang.invoke.MethodHandles;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares assembling family trees with {@link FamilyTreeBuilder} to the recursive assembly done before,
+ * which searched the list of ancestors for every horse of the tree.
+ * The synthetic pedigrees are a line of dams, each with a sire of no known parents, so a tree of g generations holds 2g - 1 horses.
+ * It also compares the size and serialization time of nested family trees to family graphs, for pedigrees of heavy inbreeding.
+ * Not part of the regular test run, execute it with {@code mvn test -Pbenchmark}.
+ */
+public class FamilyTreeBuilderBenchmark {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  private static final int[] GENERATIONS = {10, 100, 1000};
+  private static final int MEASURED_TREE_HORSES = 2_000_000;
+  private static final int[] INBRED_GENERATIONS = {5, 10, 15, 20};
+
+  @Test
+  public void assemblingFamilyTrees() {
+    LOG.trace("assemblingFamilyTrees");
+    for (int generations : GENERATIONS) {
+      List<Horse> pedigree = pedigree(generations);
+      Supplier<HorseFamilyTreeDto> recursive = () -> recursively(0L, pedigree, generations, 1);
+      Supplier<HorseFamilyTreeDto> builder = () -> FamilyTreeBuilder.build(0L,
+          pedigree.stream().collect(Collectors.toMap(Horse::getId, Function.identity())), generations);
+
+      int rounds = Math.max(1, MEASURED_TREE_HORSES / pedigree.size());
+      double recursiveMicros = averageMicros(recursive, generations, rounds);
+      double builderMicros = averageMicros(builder, generations, rounds);
+      LOG.info("Family tree of {} generations: recursive {} us, builder {} us ({}x)",
+          generations, format(recursiveMicros), format(builderMicros), Math.round(recursiveMicros / builderMicros));
+    }
+  }
+
+  @Test
+  public void serializingInbredFamilyTrees() throws JsonProcessingException {
+    LOG.trace("serializingInbredFamilyTrees");
+    ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    for (int generations : INBRED_GENERATIONS) {
+      Map<Long, Horse> pedigree = inbredPedigree(generations);
+      long start = System.nanoTime();
+      byte[] tree = objectMapper.writeValueAsBytes(FamilyTreeBuilder.build(0L, pedigree, generations));
+      double treeMillis = (System.nanoTime() - start) / 1_000_000.0;
+      start = System.nanoTime();
+      byte[] graph = objectMapper.writeValueAsBytes(FamilyTreeBuilder.buildGraph(0L, pedigree, generations));
+      double graphMillis = (System.nanoTime() - start) / 1_000_000.0;
+      LOG.info("Inbred family tree of {} generations: nested {} bytes in {} ms, graph {} bytes in {} ms",
+          generations, tree.length, format(treeMillis), graph.length, format(graphMillis));
+    }
+  }
+
+  /**
+   * Both horses of a generation are children of both horses of the generation before,
+   * so every horse but the first is an ancestor along 2^(g - 1) paths of its generation g.
+   * Horse 0 and the mares have even IDs, the stallions odd ones.
+   */
+  private static Map<Long, Horse> inbredPedigree(int generations) {
+    Map<Long, Horse> horses = new HashMap<>();
+    LocalDate youngest = LocalDate.of(3000, 1, 1);
+    for (long generation = 0; generation < generations; generation++) {
+      for (long id = 2 * generation; id < 2 * generation + 2; id++) {
+        boolean hasParents = generation + 1 < generations;
+        horses.put(id, new Horse()
+            .setId(id)
+            .setName("Horse " + id)
+            .setDateOfBirth(youngest.minusYears(generation))
+            .setSex(id % 2 == 0 ? Sex.FEMALE : Sex.MALE)
+            .setMotherId(hasParents ? 2 * generation + 2 : null)
+            .setFatherId(hasParents ? 2 * generation + 3 : null));
+      }
+    }
+    return horses;
+  }
+
+  /**
+   * Horse 0 and its dams have the IDs 0 to generations - 1, the sire of dam or horse i has the ID -(i + 1).
+   */
+  private static List<Horse> pedigree(int generations) {
+    List<Horse> horses = new ArrayList<>();
+    LocalDate youngest = LocalDate.of(3000, 1, 1);
+    for (long i = 0; i < generations; i++) {
+      horses.add(new Horse()
+          .setId(i)
+          .setName("Dam " + i)
+          .setDateOfBirth(youngest.minusYears(i))
+          .setSex(Sex.FEMALE)
+          .setMotherId(i + 1 < generations ? i + 1 : null)
+          .setFatherId(i + 1 < generations ? -(i + 1) : null));
+      if (i > 0) {
+        horses.add(new Horse()
+            .setId(-i)
+            .setName("Sire " + i)
+            .setDateOfBirth(youngest.minusYears(i))
+            .setSex(Sex.MALE));
+      }
+    }
+    return horses;
+  }
+
+  private static double averageMicros(Supplier<HorseFamilyTreeDto> assembly, int generations, int rounds) {
+    // the first rounds only warm up
+    for (int i = 0; i < Math.min(rounds, 100); i++) {
+      if (depth(assembly.get()) != generations) {
+        throw new IllegalStateException("Family tree does not have %d generations".formatted(generations));
+      }
+    }
+    long start = System.nanoTime();
+    for (int i = 0; i < rounds; i++) {
+      assembly.get();
+    }
+    return (System.nanoTime() - start) / 1_000.0 / rounds;
+  }
+
+  private static int depth(HorseFamilyTreeDto tree) {
+    int depth = 0;
+    for (HorseFamilyTreeDto dam = tree; dam != null; dam = dam.mother()) {
+      depth++;
+    }
+    return depth;
+  }
+
+  /**
+   * The assembly as it was done before.
+   */
+  private static HorseFamilyTreeDto recursively(Long horseId, List<Horse> list, long limit, long currentGeneration) {
+    if (horseId == null || currentGeneration > limit) {
+      return null;
+    }
+    Horse h = list.stream().filter(horse -> horse.getId().equals(horseId)).toList().get(0);
+    return new HorseFamilyTreeDto(h.getId(), h.getName(), h.getDateOfBirth(), h.getSex(),
+        recursively(h.getMotherId(), list, limit, currentGeneration + 1),
+        recursively(h.getFatherId(), list, limit, currentGeneration + 1));
+  }
+
+  private static String format(double micros) {
+    return "%.1f".formatted(micros);
+  }
+}
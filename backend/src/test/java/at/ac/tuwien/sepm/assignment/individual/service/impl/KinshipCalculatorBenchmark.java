@@ -0,0 +1,142 @@
+package at.ac.tuwien.sepm.assignment.individual.service.impl;
+
+import at.ac.tuwien.sepm.assignment.individual.entity.Horse;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares computing inbreeding coefficients with {@link KinshipCalculator} to enumerating the paths through common ancestors,
+ * as in Wright's formula, on pedigrees of repeated full sibling mating, the heaviest inbreeding there is.
+ * Path enumeration grows exponentially with the generations, so it is only run on the shallow pedigrees.
+ * Not part of the regular test run, execute it with {@code mvn test -Pbenchmark}.
+ */
+public class KinshipCalculatorBenchmark {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  private static final int[] GENERATIONS = {4, 6, 8, 10, 12, 100, 1000};
+  private static final int MAX_ENUMERATED_GENERATIONS = 12;
+  private static final int ROUNDS = 5;
+
+  @Test
+  public void computingInbreeding() {
+    LOG.trace("computingInbreeding");
+    for (int generations : GENERATIONS) {
+      Map<Long, Horse> pedigree = fullSiblingMating(generations);
+      long youngest = 2L * (generations - 1);
+
+      double coefficient = 0;
+      long start = System.nanoTime();
+      for (int i = 0; i < ROUNDS; i++) {
+        coefficient = new KinshipCalculator(pedigree.values()).inbreeding(youngest);
+      }
+      double calculatorMillis = (System.nanoTime() - start) / 1_000_000.0 / ROUNDS;
+
+      if (generations <= MAX_ENUMERATED_GENERATIONS) {
+        start = System.nanoTime();
+        double enumerated = new PathEnumeration(pedigree).inbreeding(youngest);
+        double enumerationMillis = (System.nanoTime() - start) / 1_000_000.0;
+        if (Math.abs(enumerated - coefficient) > 1e-9) {
+          throw new IllegalStateException("Inbreeding of %d generations differs: %f and %f".formatted(generations, coefficient, enumerated));
+        }
+        LOG.info("Inbreeding {} after {} generations: calculator {} ms, path enumeration {} ms",
+            format(coefficient), generations, format(calculatorMillis), format(enumerationMillis));
+      } else {
+        LOG.info("Inbreeding {} after {} generations: calculator {} ms", format(coefficient), generations, format(calculatorMillis));
+      }
+    }
+  }
+
+  /**
+   * Both horses of a generation are children of both horses of the generation before.
+   * The mare of generation g has the ID 2g, the stallion 2g + 1.
+   */
+  private static Map<Long, Horse> fullSiblingMating(int generations) {
+    Map<Long, Horse> horses = new HashMap<>();
+    for (long generation = 0; generation < generations; generation++) {
+      Long mother = generation == 0 ? null : 2 * generation - 2;
+      Long father = generation == 0 ? null : 2 * generation - 1;
+      horses.put(2 * generation, new Horse().setId(2 * generation).setMotherId(mother).setFatherId(father));
+      horses.put(2 * generation + 1, new Horse().setId(2 * generation + 1).setMotherId(mother).setFatherId(father));
+    }
+    return horses;
+  }
+
+  private static String format(double value) {
+    return "%.6f".formatted(value);
+  }
+
+  /**
+   * Wright's formula: the sum over all pairs of paths from the parents up to a common ancestor A,
+   * which share no horse but A, of (1/2)^(n + 1) (1 + F(A)), where n is the number of horses on both paths.
+   */
+  private static final class PathEnumeration {
+    private final Map<Long, Horse> pedigree;
+
+    PathEnumeration(Map<Long, Horse> pedigree) {
+      this.pedigree = pedigree;
+    }
+
+    double inbreeding(long id) {
+      Horse horse = pedigree.get(id);
+      if (horse.getMotherId() == null || horse.getFatherId() == null) {
+        return 0;
+      }
+      List<List<Long>> motherPaths = pathsUp(horse.getMotherId());
+      List<List<Long>> fatherPaths = pathsUp(horse.getFatherId());
+      double coefficient = 0;
+      for (List<Long> motherPath : motherPaths) {
+        Long ancestor = motherPath.get(motherPath.size() - 1);
+        for (List<Long> fatherPath : fatherPaths) {
+          if (ancestor.equals(fatherPath.get(fatherPath.size() - 1)) && disjointButAncestor(motherPath, fatherPath)) {
+            int horses = motherPath.size() + fatherPath.size() - 1;
+            coefficient += Math.pow(0.5, horses) * (1 + inbreeding(ancestor));
+          }
+        }
+      }
+      return coefficient;
+    }
+
+    /**
+     * All paths from a horse up to each of its ancestors, and to the horse itself.
+     */
+    private List<List<Long>> pathsUp(long id) {
+      List<List<Long>> paths = new ArrayList<>();
+      List<Long> start = List.of(id);
+      List<List<Long>> open = new ArrayList<>(List.of(start));
+      while (!open.isEmpty()) {
+        List<Long> path = open.remove(open.size() - 1);
+        paths.add(path);
+        Horse last = pedigree.get(path.get(path.size() - 1));
+        for (Long parent : new Long[] {last.getMotherId(), last.getFatherId()}) {
+          if (parent != null) {
+            List<Long> extended = new ArrayList<>(path);
+            extended.add(parent);
+            open.add(extended);
+          }
+        }
+      }
+      return paths;
+    }
+
+    private static boolean disjointButAncestor(List<Long> first, List<Long> second) {
+      Set<Long> horses = new HashSet<>(first.subList(0, first.size() - 1));
+      for (Long horse : second.subList(0, second.size() - 1)) {
+        if (horses.contains(horse)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
@@ -0,0 +1,97 @@
+package at.ac.tuwien.sepm.assignment.individual.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import at.ac.tuwien.sepm.assignment.individual.entity.Horse;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class KinshipCalculatorTest {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  @Test
+  public void inbreedingOfClassicMatingsIsKnownCoefficient() {
+    LOG.trace("inbreedingOfClassicMatingsIsKnownCoefficient");
+    // 1 and 2 are unrelated founders, 3 and 4 their full siblings, 5 a half sibling of them by 1
+    var calculator = new KinshipCalculator(List.of(
+        horse(1, null, null), horse(2, null, null), horse(6, null, null),
+        horse(3, 2L, 1L), horse(4, 2L, 1L), horse(5, 6L, 1L),
+        horse(10, 3L, 4L), horse(11, 3L, 5L), horse(12, 3L, 1L)));
+    assertThat(calculator.inbreeding(3)).isZero();
+    assertThat(calculator.inbreeding(10)).isCloseTo(0.25, within(1e-12));
+    assertThat(calculator.inbreeding(11)).isCloseTo(0.125, within(1e-12));
+    assertThat(calculator.inbreeding(12)).isCloseTo(0.25, within(1e-12));
+    assertThat(calculator.kinship(3, 4)).isCloseTo(0.25, within(1e-12));
+    assertThat(calculator.kinship(1, 1)).isCloseTo(0.5, within(1e-12));
+  }
+
+  @Test
+  public void repeatedFullSiblingMatingFollowsRecurrence() {
+    LOG.trace("repeatedFullSiblingMatingFollowsRecurrence");
+    // both horses of a generation are children of both horses of the generation before, the IDs count up generation by generation
+    int generations = 200;
+    List<Horse> pedigree = new ArrayList<>();
+    for (long generation = 0; generation < generations; generation++) {
+      Long mother = generation == 0 ? null : 2 * generation - 2;
+      Long father = generation == 0 ? null : 2 * generation - 1;
+      pedigree.add(horse(2 * generation, mother, father));
+      pedigree.add(horse(2 * generation + 1, mother, father));
+    }
+    var calculator = new KinshipCalculator(pedigree);
+    // F(t) = 1/4 + F(t - 1) / 2 + F(t - 2) / 4
+    double beforeLast = 0;
+    double last = 0;
+    for (long generation = 1; generation < generations; generation++) {
+      double expected = generation == 1 ? 0 : 0.25 + last / 2 + beforeLast / 4;
+      assertThat(calculator.inbreeding(2 * generation)).isCloseTo(expected, within(1e-9));
+      beforeLast = last;
+      last = expected;
+    }
+    assertThat(last).isGreaterThan(0.99);
+  }
+
+  @Test
+  public void kinshipMatrixOfHerdMatchesPairwiseKinship() {
+    LOG.trace("kinshipMatrixOfHerdMatchesPairwiseKinship");
+    // parents are drawn from the horses before, so the pedigree is inbred in many ways
+    var random = new Random(42);
+    int size = 400;
+    List<Horse> pedigree = new ArrayList<>();
+    for (long id = 0; id < size; id++) {
+      Long mother = id < 20 || random.nextInt(10) == 0 ? null : (long) random.nextInt((int) id);
+      Long father = id < 20 || random.nextInt(10) == 0 ? null : (long) random.nextInt((int) id);
+      pedigree.add(horse(id, mother, father == null || father.equals(mother) ? null : father));
+    }
+    var calculator = new KinshipCalculator(pedigree);
+    // more than two tiles, the last of them partial
+    long[] herd = LongStream.range(size - 2 * KinshipMatrix.TILE_SIZE - 10, size).toArray();
+    var pool = new ForkJoinPool(4);
+    try {
+      KinshipMatrix matrix = KinshipMatrix.compute(calculator, herd, pool);
+      assertThat(matrix.size()).isEqualTo(herd.length);
+      for (int i = 0; i < herd.length; i++) {
+        assertThat(matrix.idAt(i)).isEqualTo(herd[i]);
+        for (int j = 0; j < herd.length; j++) {
+          assertThat(matrix.get(i, j)).isCloseTo(calculator.kinship(herd[i], herd[j]), within(1e-12));
+        }
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  private static Horse horse(long id, Long motherId, Long fatherId) {
+    return new Horse().setId(id).setMotherId(motherId).setFatherId(fatherId);
+  }
+}
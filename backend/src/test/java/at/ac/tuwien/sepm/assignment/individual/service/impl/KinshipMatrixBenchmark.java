@@ -0,0 +1,99 @@
+package at.ac.tuwien.sepm.assignment.individual.service.impl;
+
+import at.ac.tuwien.sepm.assignment.individual.entity.Horse;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures the kinship matrix of a herd of 5000 horses with pools of one thread up to one per core,
+ * and compares it to computing the kinship of every pair on its own for a smaller herd.
+ * The synthetic population has 2500 horses per generation, each a foal of a random mare and stallion of the generation before,
+ * and the herd are its two youngest generations, so every horse of the herd has close to 1000 ancestors.
+ * Not part of the regular test run, execute it with {@code mvn test -Pbenchmark}.
+ */
+public class KinshipMatrixBenchmark {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  private static final int GENERATIONS = 10;
+  private static final int GENERATION_SIZE = 2500;
+  private static final int PAIRWISE_HERD_SIZE = 500;
+
+  @Test
+  public void computingKinshipMatrices() {
+    LOG.trace("computingKinshipMatrices");
+    List<Horse> population = population();
+    long[] herd = LongStream.range(population.size() - 2L * GENERATION_SIZE, population.size()).toArray();
+
+    long start = System.nanoTime();
+    var calculator = new KinshipCalculator(population);
+    KinshipMatrix.compute(calculator, herd, ForkJoinPool.commonPool());
+    LOG.info("Kinship matrix of {} horses, first run: {} ms", herd.length, Math.round(millis(start)));
+
+    int cores = Runtime.getRuntime().availableProcessors();
+    double singleThreadMillis = 0;
+    for (int threads = 1; threads <= cores; threads *= 2) {
+      var pool = new ForkJoinPool(threads);
+      try {
+        // one run warms the pool up
+        KinshipMatrix.compute(calculator, herd, pool);
+        start = System.nanoTime();
+        KinshipMatrix.compute(calculator, herd, pool);
+        double elapsed = millis(start);
+        if (threads == 1) {
+          singleThreadMillis = elapsed;
+        }
+        LOG.info("Kinship matrix of {} horses on {} threads: {} ms ({}x of one thread)",
+            herd.length, threads, Math.round(elapsed), "%.1f".formatted(singleThreadMillis / elapsed));
+      } finally {
+        pool.shutdown();
+      }
+    }
+
+    long[] smallHerd = LongStream.range(population.size() - PAIRWISE_HERD_SIZE, population.size()).toArray();
+    start = System.nanoTime();
+    double sum = 0;
+    for (int i = 0; i < smallHerd.length; i++) {
+      for (int j = 0; j <= i; j++) {
+        sum += calculator.kinship(smallHerd[i], smallHerd[j]);
+      }
+    }
+    double pairwiseMillis = millis(start);
+    start = System.nanoTime();
+    KinshipMatrix matrix = KinshipMatrix.compute(calculator, smallHerd, ForkJoinPool.commonPool());
+    double matrixMillis = millis(start);
+    LOG.info("Kinship of {} horses: pair by pair {} ms, matrix {} ms (mean kinship {})", smallHerd.length, Math.round(pairwiseMillis),
+        Math.round(matrixMillis), "%.4f".formatted(sum / matrix.size() / (matrix.size() + 1) * 2));
+  }
+
+  /**
+   * Horses of generation g have the IDs g * GENERATION_SIZE up to the next generation, the first half of them mares.
+   */
+  private static List<Horse> population() {
+    var random = new Random(42);
+    List<Horse> horses = new ArrayList<>();
+    for (long generation = 0; generation < GENERATIONS; generation++) {
+      long parents = (generation - 1) * GENERATION_SIZE;
+      for (long id = generation * GENERATION_SIZE; id < (generation + 1) * GENERATION_SIZE; id++) {
+        horses.add(new Horse()
+            .setId(id)
+            .setMotherId(generation == 0 ? null : parents + random.nextInt(GENERATION_SIZE / 2))
+            .setFatherId(generation == 0 ? null : parents + GENERATION_SIZE / 2 + random.nextInt(GENERATION_SIZE / 2)));
+      }
+    }
+    return horses;
+  }
+
+  private static double millis(long start) {
+    return (System.nanoTime() - start) / 1_000_000.0;
+  }
+}
@@ -0,0 +1,48 @@
+import {HorseFamilyGraph, HorseFamilyTree} from '../../../dto/horse';
+
+/**
+ * Turns a family graph into the family tree of its first horse, up to {@code limit} generations.
+ * Every ancestor is shown with its own ancestors once, at the earliest generation it appears in,
+ * as the generations are built one after the other. Its other appearances are leaves that refer to that generation,
+ * so the tree grows with the number of ancestors, not with the number of paths to them, however inbred the horse is.
+ * Every node of the tree is an object of its own, so state like being collapsed belongs to one path only.
+ */
+export const familyGraphToTree = (graph: HorseFamilyGraph, limit: number): HorseFamilyTree | undefined => {
+  if (graph.nodes.length === 0) {
+    return undefined;
+  }
+  const toTree = (index: number): HorseFamilyTree => {
+    const node = graph.nodes[index];
+    return {id: node.id, name: node.name, dateOfBirth: node.dateOfBirth, sex: node.sex};
+  };
+  // the generation every ancestor is shown in with its own ancestors, by its index in the graph
+  const shownInGeneration = new Map<number, number>([[0, 1]]);
+  const root = toTree(0);
+  const queue: { index: number; tree: HorseFamilyTree; generation: number }[] = [{index: 0, tree: root, generation: 1}];
+  const parentOf = (index: number | undefined, generation: number): HorseFamilyTree | undefined => {
+    if (index == null) {
+      return undefined;
+    }
+    const parent = toTree(index);
+    const shownIn = shownInGeneration.get(index);
+    if (shownIn !== undefined) {
+      // a horse without known parents looks the same wherever it is shown
+      const node = graph.nodes[index];
+      if (node.mother != null || node.father != null) {
+        parent.shownInGeneration = shownIn;
+      }
+    } else {
+      shownInGeneration.set(index, generation);
+      queue.push({index, tree: parent, generation});
+    }
+    return parent;
+  };
+  for (let next = 0; next < queue.length; next++) {
+    const {index, tree, generation} = queue[next];
+    if (generation < limit) {
+      tree.mother = parentOf(graph.nodes[index].mother, generation + 1);
+      tree.father = parentOf(graph.nodes[index].father, generation + 1);
+    }
+  }
+  return root;
+};
@@ -1,5 +1,5 @@
 import { Component, OnInit } from '@angular/core';
-import {Horse} from '../../../dto/horse';
+import {HorseFamilyGraph, HorseFamilyTree} from '../../../dto/horse';
 import {HorseService} from '../../../service/horse.service';
 import {ActivatedRoute, Router} from '@angular/router';
 import {
@@ -8,6 +8,7 @@ import {
 import {NgbModal} from '@ng-bootstrap/ng-bootstrap';
 import {constructErrorMessageWithList} from '../../../shared/validator';
 import {ToastrService} from 'ngx-toastr';
+import {familyGraphToTree} from './family-graph-adapter';
 
 @Component({
   selector: 'app-family-tree',
@@ -22,7 +23,7 @@ export class FamilyTreeComponent implements OnInit {
   public id: number;
   public editingLimit = false;
 
-  public familyTreeRoot: Horse;
+  public familyTreeRoot: HorseFamilyTree;
 
   constructor(private horseService: HorseService,
               private route: ActivatedRoute,
@@ -41,11 +42,11 @@ export class FamilyTreeComponent implements OnInit {
     this.getFamilyTreeData();
   }
 
-  public dateOfBirthAsLocaleDate(horse: Horse): string {
+  public dateOfBirthAsLocaleDate(horse: HorseFamilyTree): string {
     return new Date(horse.dateOfBirth).toLocaleDateString();
   }
 
-  public openDeleteConfirm(horseUserWantedToDelete: Horse): void {
+  public openDeleteConfirm(horseUserWantedToDelete: HorseFamilyTree): void {
     const modalRef = this.modalService.open(ConfirmDeleteModalContentComponent);
     modalRef.componentInstance.horse = horseUserWantedToDelete;
 
@@ -73,9 +74,9 @@ export class FamilyTreeComponent implements OnInit {
 
   public getFamilyTreeData(): void {
     const id = Number(this.route.snapshot.paramMap.get('id'));
-    const limit = Number(this.route.snapshot.queryParamMap.get('limit'));
-    this.horseService.getFamilyTree(id, limit).subscribe({
-      next: (familyTreeHorse: Horse) => this.familyTreeRoot = familyTreeHorse,
+    // the graph holds every ancestor once, the nested tree would repeat inbred ones with all their ancestors on every path
+    this.horseService.getFamilyGraph(id, this.limit).subscribe({
+      next: (familyGraph: HorseFamilyGraph) => this.familyTreeRoot = familyGraphToTree(familyGraph, this.limit),
       error: (error) => {
         console.error('Error while getting family tree', error);
         const errorMessage = error.status === 0
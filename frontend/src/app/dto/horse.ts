@@ -21,6 +21,35 @@ export interface HorseDetail {
   father?: HorseMinimal;
 }
 
+export interface HorseFamilyTree {
+  id: number;
+  name: string;
+  dateOfBirth: Date;
+  sex: Sex;
+  mother?: HorseFamilyTree;
+  father?: HorseFamilyTree;
+  isCollapsed?: boolean;
+  // set if the horse is shown with its ancestors in that generation of the tree already, instead of here
+  shownInGeneration?: number;
+}
+
+/**
+ * A family tree in which every ancestor appears once.
+ * The first node is the horse itself, parents are referenced by their index in the nodes.
+ */
+export interface HorseFamilyGraph {
+  nodes: HorseFamilyGraphNode[];
+}
+
+export interface HorseFamilyGraphNode {
+  id: number;
+  name: string;
+  dateOfBirth: Date;
+  sex: Sex;
+  mother?: number;
+  father?: number;
+}
+
 interface HorseMinimal {
   id: number;
   name: string;
@@ -1,8 +1,9 @@
-import {HttpClient, HttpParams} from '@angular/common/http';
+import {HttpClient, HttpHeaders, HttpParams} from '@angular/common/http';
 import {Injectable} from '@angular/core';
 import {Observable} from 'rxjs';
+import {map, tap} from 'rxjs/operators';
 import {environment} from 'src/environments/environment';
-import {Horse, HorseDetail, HorseSearchFilter} from '../dto/horse';
+import {Horse, HorseDetail, HorseFamilyGraph, HorseSearchFilter} from '../dto/horse';
 
 const baseUri = environment.backendUrl + '/horses';
 
@@ -10,6 +11,8 @@ const baseUri = environment.backendUrl + '/horses';
   providedIn: 'root'
 })
 export class HorseService {
+  // the entity tags of the horses whose details were fetched, so an update of them fails if they were changed since
+  private detailEntityTags = new Map<number, string>();
 
   constructor(
     private http: HttpClient
@@ -50,7 +53,10 @@ export class HorseService {
   }
 
   public getHorseById(id: number): Observable<HorseDetail> {
-    return this.http.get<HorseDetail>(baseUri + '/' + id);
+    return this.http.get<HorseDetail>(baseUri + '/' + id, {observe: 'response'}).pipe(
+      tap(response => this.rememberEntityTag(id, response.headers.get('ETag'))),
+      map(response => response.body as HorseDetail)
+    );
   }
 
   /**
@@ -66,10 +72,23 @@ export class HorseService {
     );
   }
 
+  /**
+   * Update a horse in the system. If its details were fetched before, the update fails with status 412
+   * if the horse was changed since.
+   *
+   * @param horse the data to update the horse with
+   * @return an Observable for the updated horse
+   */
   public update(horse: HorseDetail): Observable<HorseDetail> {
-    return this.http.put<Horse>(
+    const entityTag = horse.id === undefined ? undefined : this.detailEntityTags.get(horse.id);
+    const headers = entityTag ? new HttpHeaders({'If-Match': entityTag}) : undefined;
+    return this.http.put<HorseDetail>(
       baseUri + '/' + horse.id,
-      horse
+      horse,
+      {headers, observe: 'response'}
+    ).pipe(
+      tap(response => this.rememberEntityTag(horse.id, response.headers.get('ETag'))),
+      map(response => response.body as HorseDetail)
     );
   }
 
@@ -90,4 +109,18 @@ export class HorseService {
     }
     return this.http.get<Horse>(baseUri + '/' + id + '/familyTree', {params});
   }
+
+  getFamilyGraph(id: number, limit: number): Observable<HorseFamilyGraph> {
+    let params: HttpParams = new HttpParams().append('format', 'graph');
+    if (limit) {
+      params = params.append('limit', limit);
+    }
+    return this.http.get<HorseFamilyGraph>(baseUri + '/' + id + '/familyTree', {params});
+  }
+
+  private rememberEntityTag(id: number | undefined, entityTag: string | null): void {
+    if (id !== undefined && entityTag) {
+      this.detailEntityTags.set(id, entityTag);
+    }
+  }
 }